@@ -3,10 +3,12 @@ package com.networknt.apikey;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.networknt.config.Config;
 import com.networknt.config.ConfigException;
+import com.networknt.utility.PathPrefixMatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -22,6 +24,7 @@ public class ApiKeyConfig {
 
     boolean enabled;
     List<ApiKey> pathPrefixAuths;
+    volatile PathPrefixMatcher<List<ApiKey>> pathPrefixAuthMatcher = PathPrefixMatcher.empty();
     private Config config;
     private Map<String, Object> mappedConfig;
 
@@ -68,6 +71,16 @@ public class ApiKeyConfig {
 
     public void setPathPrefixAuths(List<ApiKey> pathPrefixAuths) {
         this.pathPrefixAuths = pathPrefixAuths;
+        setPathPrefixAuthMatcher();
+    }
+
+    /**
+     * The pathPrefixAuths grouped by the path prefix and compiled for the per request lookup.
+     *
+     * @return PathPrefixMatcher of the ApiKey list for each prefix
+     */
+    public PathPrefixMatcher<List<ApiKey>> getPathPrefixAuthMatcher() {
+        return pathPrefixAuthMatcher;
     }
 
     private void setConfigData() {
@@ -110,5 +123,16 @@ public class ApiKeyConfig {
                 throw new ConfigException("pathPrefixAuth must be a list of string object map.");
             }
         }
+        setPathPrefixAuthMatcher();
+    }
+
+    private void setPathPrefixAuthMatcher() {
+        Map<String, List<ApiKey>> prefixApiKeys = new LinkedHashMap<>();
+        if(pathPrefixAuths != null) {
+            for(ApiKey apiKey: pathPrefixAuths) {
+                prefixApiKeys.computeIfAbsent(apiKey.getPathPrefix(), k -> new ArrayList<>()).add(apiKey);
+            }
+        }
+        pathPrefixAuthMatcher = PathPrefixMatcher.compile(prefixApiKeys);
     }
 }
@@ -4,6 +4,7 @@ import com.networknt.config.Config;
 import com.networknt.handler.Handler;
 import com.networknt.handler.MiddlewareHandler;
 import com.networknt.utility.ModuleRegistry;
+import com.networknt.utility.PathPrefixMatcher;
 import io.undertow.Handlers;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
@@ -99,10 +100,10 @@ public class ApiKeyHandler implements MiddlewareHandler {
         if (config.getPathPrefixAuths() != null) {
             boolean matched = false;
             boolean found = false;
-            // iterate all the ApiKey entries to find if any of them matches the request path.
-            for(ApiKey apiKey: config.getPathPrefixAuths()) {
-                if(requestPath.startsWith(apiKey.getPathPrefix())) {
-                    found = true;
+            // walk all the prefixes that match the request path from the longest to the shortest.
+            for(PathPrefixMatcher.Entry<List<ApiKey>> entry = config.getPathPrefixAuthMatcher().match(requestPath); entry != null && !matched; entry = entry.getParent()) {
+                found = true;
+                for(ApiKey apiKey: entry.getValue()) {
                     // found the matched prefix, validate the apiKey by getting the header and compare.
                     String k = exchange.getRequestHeaders().getFirst(apiKey.getHeaderName());
                     if(apiKey.getApiKey().equals(k)) {
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.audit;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The destination of the audit entries written by the AuditSink. The entries are passed in batches of UTF-8
+ * JSON objects, each of them terminated by a new line. As the JSON generator escapes the control characters in
+ * the strings, a new line always ends an entry.
+ *
+ * The methods are only called from the writer thread of the sink.
+ */
+public interface AuditAppender extends Closeable {
+    /**
+     * @param buffer the buffer with the batch of entries
+     * @param offset the offset of the first entry in the buffer
+     * @param length the length of the batch
+     * @throws IOException if the batch cannot be written
+     */
+    void append(byte[] buffer, int offset, int length) throws IOException;
+}
@@ -48,6 +48,18 @@ class AuditConfig {
     private static final String ENABLED = "enabled";
     private static final String REQUEST_BODY_MAX_SIZE = "requestBodyMaxSize";
     private static final String RESPONSE_BODY_MAX_SIZE = "responseBodyMaxSize";
+    private static final String ASYNC = "async";
+    private static final String APPENDER = "appender";
+    private static final String FILE_NAME = "fileName";
+    private static final String MAX_FILE_SIZE = "maxFileSize";
+    private static final String MAX_BACKUP_FILES = "maxBackupFiles";
+    private static final String BUFFER_SIZE = "bufferSize";
+    private static final String BATCH_SIZE = "batchSize";
+    private static final String BACKPRESSURE = "backpressure";
+    private static final String SAMPLE_RATE = "sampleRate";
+
+    public static final String LOGGER_APPENDER = "logger";
+    public static final String FILE_APPENDER = "file";
 
     private  Map<String, Object> mappedConfig;
     public static final String CONFIG_NAME = "audit";
@@ -65,6 +77,15 @@ class AuditConfig {
     private int requestBodyMaxSize;
     private int responseBodyMaxSize;
     private boolean enabled;
+    private boolean async;
+    private String appender = LOGGER_APPENDER;
+    private String fileName = "audit.log";
+    private long maxFileSize = 100 * 1024 * 1024;
+    private int maxBackupFiles = 10;
+    private int bufferSize = 8192;
+    private int batchSize = 256;
+    private AuditSink.Backpressure backpressure = AuditSink.Backpressure.DROP;
+    private int sampleRate = 10;
 
     private AuditConfig() {
         this(CONFIG_NAME);
@@ -145,6 +166,24 @@ class AuditConfig {
 
     public int getResponseBodyMaxSize() { return responseBodyMaxSize; }
 
+    public boolean isAsync() { return async; }
+
+    public String getAppender() { return appender; }
+
+    public String getFileName() { return fileName; }
+
+    public long getMaxFileSize() { return maxFileSize; }
+
+    public int getMaxBackupFiles() { return maxBackupFiles; }
+
+    public int getBufferSize() { return bufferSize; }
+
+    public int getBatchSize() { return batchSize; }
+
+    public AuditSink.Backpressure getBackpressure() { return backpressure; }
+
+    public int getSampleRate() { return sampleRate; }
+
     Config getConfig() {
         return config;
     }
@@ -229,5 +268,45 @@ class AuditConfig {
             enabled = true;
         }
         timestampFormat = (String)getMappedConfig().get(TIMESTAMP_FORMAT);
+        object = getMappedConfig().get(ASYNC);
+        if(object != null && (Boolean) object) {
+            async = true;
+        }
+        object = getMappedConfig().get(APPENDER);
+        if(object != null && !((String)object).isEmpty()) {
+            appender = (String)object;
+        }
+        object = getMappedConfig().get(FILE_NAME);
+        if(object != null && !((String)object).isEmpty()) {
+            fileName = (String)object;
+        }
+        object = getMappedConfig().get(MAX_FILE_SIZE);
+        if(object != null) {
+            maxFileSize = ((Number) object).longValue();
+        }
+        object = getMappedConfig().get(MAX_BACKUP_FILES);
+        if(object != null) {
+            maxBackupFiles = (Integer) object;
+        }
+        object = getMappedConfig().get(BUFFER_SIZE);
+        if(object != null) {
+            bufferSize = (Integer) object;
+        }
+        object = getMappedConfig().get(BATCH_SIZE);
+        if(object != null) {
+            batchSize = (Integer) object;
+        }
+        object = getMappedConfig().get(BACKPRESSURE);
+        if(object != null && !((String)object).isEmpty()) {
+            try {
+                backpressure = AuditSink.Backpressure.valueOf(((String)object).trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new ConfigException("backpressure must be one of drop, sample or block.");
+            }
+        }
+        object = getMappedConfig().get(SAMPLE_RATE);
+        if(object != null) {
+            sampleRate = (Integer) object;
+        }
     }
 }
@@ -46,7 +46,8 @@ import java.util.*;
  *
  * This handler can be used on production but be aware that it will impact the overall performance.
  * Turning off statusCode and responseTime can make it faster as these have to be captured on the
- * response chain instead of request chain.
+ * response chain instead of request chain. Setting async to true moves the serialization and the logging
+ * off the IO thread to the writer thread of the AuditSink.
  *
  * For most business and the majority of microservices, you don't need to enable this handler due to
  * performance reason. The default audit log will be the audit.log configured in the default logback.xml;
@@ -95,6 +96,8 @@ public class AuditHandler implements MiddlewareHandler {
 
     private DateTimeFormatter DATE_TIME_FORMATTER;
 
+    private volatile AuditSink sink;
+
     public AuditHandler() {
         if (logger.isInfoEnabled()) logger.info("AuditHandler is loaded.");
         config = AuditConfig.load();
@@ -112,6 +115,9 @@ public class AuditHandler implements MiddlewareHandler {
 
             }
         }
+        if (config.isAsync()) {
+            sink = AuditSink.start(config);
+        }
     }
 
     @Override
@@ -168,9 +174,9 @@ public class AuditHandler implements MiddlewareHandler {
                         // audit entries only is it is an error, if auditOnError flag is set
                         if (config.isAuditOnError()) {
                             if (exchange1.getStatusCode() >= 400)
-                                config.getAuditFunc().accept(Config.getInstance().getMapper().writeValueAsString(auditMap));
+                                audit(auditMap);
                         } else {
-                            config.getAuditFunc().accept(Config.getInstance().getMapper().writeValueAsString(auditMap));
+                            audit(auditMap);
                         }
                     } catch (JsonProcessingException e) {
                         throw new RuntimeException(e);
@@ -182,12 +188,24 @@ public class AuditHandler implements MiddlewareHandler {
                 }
             });
         } else {
-            config.getAuditFunc().accept(config.getConfig().getMapper().writeValueAsString(auditMap));
+            audit(auditMap);
         }
         if(logger.isDebugEnabled()) logger.debug("AuditHandler.handleRequest ends.");
         next(exchange);
     }
 
+    /**
+     * Pass the entry to the async sink if it is enabled; otherwise, serialize it and log it on the current thread.
+     */
+    private void audit(Map<String, Object> auditMap) throws JsonProcessingException {
+        AuditSink sink = this.sink;
+        if (config.isAsync() && sink != null) {
+            sink.offer(auditMap);
+        } else {
+            config.getAuditFunc().accept(config.getConfig().getMapper().writeValueAsString(auditMap));
+        }
+    }
+
     private void auditHeader(HttpServerExchange exchange, Map<String, Object> auditMap) {
         for (String name : config.getHeaderList()) {
             String value = exchange.getRequestHeaders().getFirst(name);
@@ -249,7 +267,7 @@ public class AuditHandler implements MiddlewareHandler {
             String contentType = exchange.getRequestHeaders().getFirst(Headers.CONTENT_TYPE);
             if(contentType != null) {
                 if(contentType.startsWith("application/json")) {
-                    if(config.isMask()) requestBodyString = Mask.maskJson(requestBodyString, REQUEST_BODY_KEY);
+                    if(config.isMask()) requestBodyString = Mask.maskJson(requestBodyString, REQUEST_BODY_KEY, config.getRequestBodyMaxSize());
                 } else if(contentType.startsWith("text") || contentType.startsWith("application/xml")) {
                     if(config.isMask()) requestBodyString = Mask.maskString(requestBodyString, REQUEST_BODY_KEY);
                 } else {
@@ -279,7 +297,7 @@ public class AuditHandler implements MiddlewareHandler {
             String contentType = exchange.getResponseHeaders().getFirst(Headers.CONTENT_TYPE);
             if(contentType != null) {
                 if(contentType.startsWith("application/json")) {
-                    if(config.isMask()) responseBodyString =Mask.maskJson(responseBodyString, RESPONSE_BODY_KEY);
+                    if(config.isMask()) responseBodyString = Mask.maskJson(responseBodyString, RESPONSE_BODY_KEY, config.getResponseBodyMaxSize());
                 } else if(contentType.startsWith("text") || contentType.startsWith("application/xml")) {
                     if(config.isMask()) responseBodyString = Mask.maskString(responseBodyString, RESPONSE_BODY_KEY);
                 } else {
@@ -367,5 +385,12 @@ public class AuditHandler implements MiddlewareHandler {
     @Override
     public void reload() {
         config.reload();
+        if (config.isAsync()) {
+            // a new sink is started if the appender, buffer or backpressure settings are changed.
+            sink = AuditSink.start(config);
+        } else {
+            sink = null;
+            AuditSink.stop();
+        }
     }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.audit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded lock-free ring buffer for many producers and a single consumer. Each slot has a sequence number
+ * that tells whether it is free for the producer of a position or filled for the consumer, so a producer only
+ * contends on the tail with a CAS and never waits for the consumer.
+ *
+ * The capacity is rounded up to a power of two.
+ *
+ * @param <E> the type of the elements
+ */
+class AuditRingBuffer<E> {
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    AuditRingBuffer(int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        slots = new AtomicReferenceArray<>(size);
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @param e the element to add
+     * @return false if the buffer is full
+     */
+    boolean offer(E e) {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots.lazySet(index, e);
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                // another producer has taken the position.
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Called by the consumer thread only.
+     *
+     * @return the oldest element or null if the buffer is empty
+     */
+    E poll() {
+        long pos = head.get();
+        int index = (int) (pos & mask);
+        if (sequences.get(index) != pos + 1) {
+            return null;
+        }
+        E e = slots.get(index);
+        slots.lazySet(index, null);
+        // the slot is free for the producer of the position one round later.
+        sequences.set(index, pos + mask + 1);
+        head.lazySet(pos + 1);
+        return e;
+    }
+
+    int size() {
+        return (int) Math.max(0L, tail.get() - head.get());
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
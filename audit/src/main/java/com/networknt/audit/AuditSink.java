@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.audit;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The asynchronous writer of the audit entries. The AuditHandler puts the audit map of a request into a bounded
+ * lock-free ring buffer, and a dedicated writer thread drains it in batches, streams the entries as JSON lines
+ * into a reused buffer with a single JsonGenerator and passes each batch to the AuditAppender. No string is
+ * created for an entry unless the appender is the audit logger.
+ *
+ * When the buffer is full, the backpressure policy decides what happens to a new entry:
+ *
+ * DROP drops it.
+ * SAMPLE keeps one out of sampleRate entries once the buffer is half full, and drops it when the buffer is full.
+ * BLOCK waits for the writer to free a slot. It blocks the thread that completes the exchange, which is often an
+ * IO thread, so it should only be used when every entry must be written.
+ *
+ * The number of dropped entries, the number of pending entries and the lag of the writer are exported by the
+ * metrics handler.
+ */
+public class AuditSink {
+    static final Logger logger = LoggerFactory.getLogger(AuditSink.class);
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long BLOCK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long CLOSE_TIMEOUT = 5000;
+    private static volatile AuditSink instance;
+    private static boolean shutdownHook;
+
+    public enum Backpressure {
+        DROP, SAMPLE, BLOCK
+    }
+
+    private final AuditRingBuffer<Entry> buffer;
+    private final AuditAppender appender;
+    private final ObjectMapper mapper;
+    private final Backpressure backpressure;
+    private final int sampleRate;
+    private final int batchSize;
+    private final int highWaterMark;
+    private final Thread writer;
+    private String settings;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong sampleCount = new AtomicLong();
+    private volatile long lag;
+    private volatile boolean parked;
+    private volatile boolean running = true;
+
+    AuditSink(AuditAppender appender, ObjectMapper mapper, int bufferSize, int batchSize, Backpressure backpressure, int sampleRate) {
+        this.buffer = new AuditRingBuffer<>(bufferSize);
+        this.appender = appender;
+        this.mapper = mapper;
+        this.backpressure = backpressure;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.batchSize = Math.max(1, batchSize);
+        this.highWaterMark = buffer.capacity() / 2;
+        this.writer = new Thread(this::run, "audit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Start the sink of the audit config. The sink is shared by all the AuditHandler instances. If a sink is
+     * started already, it is reused unless its settings have been changed by a reload; in that case, it is closed
+     * and a new one is started. The current sink is closed by a shutdown hook so that the pending entries are
+     * written when the server is stopped.
+     *
+     * @param config the audit config
+     * @return the started sink
+     */
+    static synchronized AuditSink start(AuditConfig config) {
+        String settings = settings(config);
+        if (instance != null && settings.equals(instance.settings)) {
+            return instance;
+        }
+        stop();
+        AuditSink sink = new AuditSink(createAppender(config), config.getConfig().getMapper(), config.getBufferSize(),
+                config.getBatchSize(), config.getBackpressure(), config.getSampleRate());
+        sink.settings = settings;
+        if (!shutdownHook) {
+            Runtime.getRuntime().addShutdownHook(new Thread(AuditSink::stop, "audit-sink-shutdown"));
+            shutdownHook = true;
+        }
+        instance = sink;
+        return sink;
+    }
+
+    /**
+     * Close the started sink, if any, after its pending entries are written. It is called when the async mode is
+     * turned off by a reload.
+     */
+    static synchronized void stop() {
+        AuditSink sink = instance;
+        if (sink != null) {
+            instance = null;
+            sink.close();
+        }
+    }
+
+    private static String settings(AuditConfig config) {
+        return config.getAppender() + '|' + config.getFileName() + '|' + config.getMaxFileSize() + '|'
+                + config.getMaxBackupFiles() + '|' + config.getBufferSize() + '|' + config.getBatchSize() + '|'
+                + config.getBackpressure() + '|' + config.getSampleRate();
+    }
+
+    /**
+     * @return the started sink or null if the audit entries are written synchronously
+     */
+    public static AuditSink getInstance() {
+        return instance;
+    }
+
+    private static AuditAppender createAppender(AuditConfig config) {
+        if (AuditConfig.FILE_APPENDER.equalsIgnoreCase(config.getAppender())) {
+            try {
+                return new FileAuditAppender(config.getFileName(), config.getMaxFileSize(), config.getMaxBackupFiles());
+            } catch (IOException e) {
+                logger.error("Failed to open the audit file " + config.getFileName() + ", fall back to the audit logger", e);
+            }
+        }
+        // look up the function on each entry so that a reload of logLevelIsError is applied.
+        return new LoggerAuditAppender(s -> config.getAuditFunc().accept(s));
+    }
+
+    /**
+     * Put an audit entry into the buffer. The map must not be changed after it is passed to the sink.
+     *
+     * @param auditMap the audit entry
+     * @return false if the entry is dropped
+     */
+    public boolean offer(Map<String, Object> auditMap) {
+        Entry entry = new Entry(auditMap, System.nanoTime());
+        boolean accepted;
+        switch (backpressure) {
+            case SAMPLE:
+                if (buffer.size() >= highWaterMark && sampleCount.incrementAndGet() % sampleRate != 0) {
+                    accepted = false;
+                } else {
+                    accepted = buffer.offer(entry);
+                }
+                break;
+            case BLOCK:
+                accepted = buffer.offer(entry);
+                while (!accepted && running) {
+                    LockSupport.unpark(writer);
+                    LockSupport.parkNanos(BLOCK_NANOS);
+                    accepted = buffer.offer(entry);
+                }
+                break;
+            default:
+                accepted = buffer.offer(entry);
+        }
+        if (!accepted) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        if (parked) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of entries dropped by the backpressure policy
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return the number of entries passed to the appender
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * @return the number of entries waiting in the buffer
+     */
+    public int getPending() {
+        return buffer.size();
+    }
+
+    /**
+     * @return the time in milliseconds the oldest entry of the last batch has waited in the buffer
+     */
+    public long getLag() {
+        return lag;
+    }
+
+    /**
+     * Stop accepting entries, write the pending ones and close the appender.
+     */
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(CLOSE_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        Batch batch = new Batch();
+        JsonGenerator generator = null;
+        try {
+            generator = createGenerator(batch);
+            while (running || buffer.size() > 0) {
+                Entry entry = buffer.poll();
+                if (entry == null) {
+                    parked = true;
+                    // check again after the flag is set so that an entry offered in between is not missed.
+                    if (buffer.size() == 0 && running) {
+                        LockSupport.parkNanos(this, IDLE_NANOS);
+                    }
+                    parked = false;
+                    continue;
+                }
+                long oldest = entry.time;
+                int count = 0;
+                do {
+                    int mark = batch.size();
+                    try {
+                        mapper.writeValue(generator, entry.auditMap);
+                        generator.writeRaw('\n');
+                        generator.flush();
+                        count++;
+                    } catch (IOException | RuntimeException e) {
+                        logger.error("Failed to serialize the audit entry", e);
+                        dropped.incrementAndGet();
+                        batch.truncate(mark);
+                        generator = createGenerator(batch);
+                    }
+                } while (count < batchSize && (entry = buffer.poll()) != null);
+                lag = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest);
+                try {
+                    appender.append(batch.buffer(), 0, batch.size());
+                    written.addAndGet(count);
+                } catch (IOException e) {
+                    logger.error("Failed to append " + count + " audit entries", e);
+                    dropped.addAndGet(count);
+                }
+                batch.reset();
+            }
+        } catch (Throwable e) {
+            logger.error("The audit writer is stopped", e);
+        } finally {
+            try {
+                appender.close();
+            } catch (IOException e) {
+                logger.error("Failed to close the audit appender", e);
+            }
+        }
+    }
+
+    private JsonGenerator createGenerator(Batch batch) throws IOException {
+        JsonGenerator generator = mapper.getFactory().createGenerator(batch, JsonEncoding.UTF8);
+        // the entries are separated by the new lines instead.
+        generator.setRootValueSeparator(null);
+        return generator;
+    }
+
+    private static final class Entry {
+        final Map<String, Object> auditMap;
+        final long time;
+
+        Entry(Map<String, Object> auditMap, long time) {
+            this.auditMap = auditMap;
+            this.time = time;
+        }
+    }
+
+    /**
+     * A byte array output stream whose buffer is passed to the appender without a copy.
+     */
+    private static final class Batch extends ByteArrayOutputStream {
+        Batch() {
+            super(64 * 1024);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+
+        void truncate(int size) {
+            count = size;
+        }
+    }
+}
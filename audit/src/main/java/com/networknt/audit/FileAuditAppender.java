@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.audit;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * An appender that writes the batches of entries directly to a file, one write per batch. When the file would
+ * grow over the max size, it is rolled to fileName.1, the older backups are shifted by one and the oldest one
+ * is deleted once there are maxBackupFiles of them.
+ *
+ * A single batch is never split, so a file can be bigger than the max size by less than one batch.
+ */
+public class FileAuditAppender implements AuditAppender {
+    private final Path path;
+    private final long maxFileSize;
+    private final int maxBackupFiles;
+    private FileOutputStream out;
+    private long size;
+
+    public FileAuditAppender(String fileName, long maxFileSize, int maxBackupFiles) throws IOException {
+        this.path = Paths.get(fileName);
+        this.maxFileSize = maxFileSize;
+        this.maxBackupFiles = maxBackupFiles;
+        open();
+    }
+
+    @Override
+    public void append(byte[] buffer, int offset, int length) throws IOException {
+        if (size > 0 && size + length > maxFileSize) {
+            rotate();
+        }
+        out.write(buffer, offset, length);
+        size += length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void open() throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        File file = path.toFile();
+        out = new FileOutputStream(file, true);
+        size = file.length();
+    }
+
+    private void rotate() throws IOException {
+        out.close();
+        if (maxBackupFiles > 0) {
+            Files.deleteIfExists(backup(maxBackupFiles));
+            for (int i = maxBackupFiles - 1; i >= 1; i--) {
+                Path backup = backup(i);
+                if (Files.exists(backup)) {
+                    Files.move(backup, backup(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(path, backup(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(path);
+        }
+        open();
+    }
+
+    private Path backup(int index) {
+        return path.resolveSibling(path.getFileName() + "." + index);
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.audit;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * An appender that passes each entry to the audit logger defined in the logback.xml, so that the existing
+ * audit appender of the logging configuration is still used when the entries are written asynchronously.
+ */
+public class LoggerAuditAppender implements AuditAppender {
+    private final Consumer<String> auditFunc;
+
+    public LoggerAuditAppender(Consumer<String> auditFunc) {
+        this.auditFunc = auditFunc;
+    }
+
+    @Override
+    public void append(byte[] buffer, int offset, int length) {
+        int start = offset;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            if (buffer[i] == '\n') {
+                auditFunc.accept(new String(buffer, start, i - start, StandardCharsets.UTF_8));
+                start = i + 1;
+            }
+        }
+        if (start < end) {
+            auditFunc.accept(new String(buffer, start, end - start, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
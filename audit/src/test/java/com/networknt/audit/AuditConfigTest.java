@@ -43,6 +43,9 @@ public class AuditConfigTest {
         Assert.assertFalse(config.isAuditOnError());
         Assert.assertFalse(config.isMask());
         Assert.assertNotNull(config.getTimestampFormat());
+        Assert.assertFalse(config.isAsync());
+        Assert.assertEquals(AuditConfig.LOGGER_APPENDER, config.getAppender());
+        Assert.assertEquals(AuditSink.Backpressure.DROP, config.getBackpressure());
     }
 
     @Test
@@ -0,0 +1,132 @@
+package com.networknt.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+public class AuditSinkTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRingBuffer() {
+        AuditRingBuffer<Integer> buffer = new AuditRingBuffer<>(3);
+        Assert.assertEquals(4, buffer.capacity());
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(buffer.offer(i));
+        }
+        Assert.assertFalse(buffer.offer(4));
+        Assert.assertEquals(4, buffer.size());
+        Assert.assertEquals(Integer.valueOf(0), buffer.poll());
+        Assert.assertTrue(buffer.offer(4));
+        for (int i = 1; i <= 4; i++) {
+            Assert.assertEquals(Integer.valueOf(i), buffer.poll());
+        }
+        Assert.assertNull(buffer.poll());
+        Assert.assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        List<String> lines = Collections.synchronizedList(new ArrayList<>());
+        AuditSink sink = new AuditSink(new LoggerAuditAppender(lines::add), new ObjectMapper(), 1024, 64, AuditSink.Backpressure.BLOCK, 1);
+        int threads = 4;
+        int entries = 5000;
+        CountDownLatch latch = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            new Thread(() -> {
+                for (int i = 0; i < entries; i++) {
+                    sink.offer(entry(thread + "-" + i));
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+        sink.close();
+        Assert.assertEquals(0, sink.getDropped());
+        Assert.assertEquals(threads * entries, sink.getWritten());
+        Assert.assertEquals(threads * entries, lines.size());
+        Assert.assertEquals("{\"id\":\"0-0\",\"statusCode\":200}", lines.stream().filter(l -> l.contains("\"0-0\"")).findFirst().get());
+    }
+
+    @Test
+    public void testDropWhenFull() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<String> lines = new ArrayList<>();
+        AuditSink sink = new AuditSink(new LoggerAuditAppender(line -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            lines.add(line);
+        }), new ObjectMapper(), 4, 1, AuditSink.Backpressure.DROP, 1);
+        // the writer takes the first entry and waits in the appender.
+        sink.offer(entry("first"));
+        while (sink.getPending() > 0) {
+            Thread.sleep(1);
+        }
+        for (int i = 0; i < 10; i++) {
+            sink.offer(entry("e" + i));
+        }
+        Assert.assertEquals(6, sink.getDropped());
+        blocked.countDown();
+        sink.close();
+        Assert.assertEquals(5, lines.size());
+        Assert.assertEquals(5, sink.getWritten());
+    }
+
+    @Test
+    public void testFileRotation() throws Exception {
+        File file = new File(folder.getRoot(), "audit.log");
+        // each entry is 30 bytes with the new line, so two entries fit into a file.
+        AuditSink sink = new AuditSink(new FileAuditAppender(file.getPath(), 64, 2), new ObjectMapper(), 16, 1, AuditSink.Backpressure.BLOCK, 1);
+        for (int i = 0; i < 8; i++) {
+            sink.offer(entry("id" + i));
+        }
+        sink.close();
+        Assert.assertEquals(8, sink.getWritten());
+        Assert.assertEquals("{\"id\":\"id6\",\"statusCode\":200}\n{\"id\":\"id7\",\"statusCode\":200}\n",
+                new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        Assert.assertTrue(new File(folder.getRoot(), "audit.log.1").exists());
+        Assert.assertTrue(new File(folder.getRoot(), "audit.log.2").exists());
+        Assert.assertFalse(new File(folder.getRoot(), "audit.log.3").exists());
+        Assert.assertTrue(new String(Files.readAllBytes(new File(folder.getRoot(), "audit.log.2").toPath()), StandardCharsets.UTF_8).startsWith("{\"id\":\"id2\""));
+    }
+
+    @Test
+    public void testRestartWhenSettingsChanged() {
+        AuditSink sink = AuditSink.start(AuditConfig.load("audit-async"));
+        try {
+            Assert.assertSame(sink, AuditSink.start(AuditConfig.load("audit-async")));
+            Assert.assertSame(sink, AuditSink.getInstance());
+            // the default buffer size is different, so the first sink is closed and replaced.
+            AuditSink restarted = AuditSink.start(AuditConfig.load());
+            Assert.assertNotSame(sink, restarted);
+            Assert.assertSame(restarted, AuditSink.getInstance());
+        } finally {
+            AuditSink.stop();
+        }
+        Assert.assertNull(AuditSink.getInstance());
+    }
+
+    private static Map<String, Object> entry(String id) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("id", id);
+        map.put("statusCode", 200);
+        return map;
+    }
+}
@@ -20,7 +20,11 @@ import com.networknt.registry.URL;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * To obtain maximum scalability, microservices allow Y-Axis scale to break up big
@@ -33,17 +37,18 @@ import java.util.List;
  * or one user always to be routed to one service instance. However, this key can be a
  * combination of multiple fields from the request.
  *
+ * Each instance is placed on a hash ring with a number of virtual nodes by its host and
+ * port, so the index of the instance in the urls doesn't matter and only about 1/n of the
+ * keys are moved to another instance when an instance joins or leaves. The ring is built
+ * once per list of urls and the lookup is a binary search.
  *
  * Created by steve on 07/05/17.
  */
 public class ConsistentHashLoadBalance implements LoadBalance {
     static Logger logger = LoggerFactory.getLogger(ConsistentHashLoadBalance.class);
+    static final int VIRTUAL_NODES = 160;
 
-    // TODO need to keep a lookup table to map the hash to host:ip, using index in the
-    // urls is not reliable as the sequence will be changed after service restart.
-    // maybe we need somehow to have an instanceId for each service instance. UUID will
-    // do the job. It will be registered as extra parameter like public key and public
-    // key certificate of the service.
+    private final Map<String, Ring> rings = new ConcurrentHashMap<>();
 
     public ConsistentHashLoadBalance() {
         if(logger.isInfoEnabled()) logger.info("A ConsistentHashLoadBalance instance is started");
@@ -54,27 +59,80 @@ public class ConsistentHashLoadBalance implements LoadBalance {
     public URL select(List<URL> urls, String serviceId, String tag, String requestKey) {
         URL url = null;
         if (urls.size() > 1) {
-            url = doSelect(urls, requestKey);
+            url = doSelect(urls, tag == null ? serviceId : serviceId + "|" + tag, requestKey);
         } else if (urls.size() == 1) {
             url = urls.get(0);
         }
         return url;
     }
 
-    private URL doSelect(List<URL> urls, String requestKey) {
-        int hash = getHash(requestKey);
-        // convert hash to an index in urls. This assumes there are the same number
-        // This will be changed later on.
-        return urls.get(hash % urls.size());
+    private URL doSelect(List<URL> urls, String key, String requestKey) {
+        Ring ring = rings.get(key);
+        if (ring == null || !isSameInstances(ring.urls, urls)) {
+            ring = new Ring(urls);
+            rings.put(key, ring);
+        } else if (ring.urls != urls) {
+            // the same instances in a new list, and the next selection with the list is an identity check.
+            ring.urls = urls;
+        }
+        return ring.get(hash(requestKey == null ? "" : requestKey));
+    }
+
+    /**
+     * 64-bit FNV-1a of the UTF-8 bytes followed by the finalizer of MurmurHash3 to spread similar keys over the ring.
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
     }
 
-    private int getHash(String hashKey) {
-        int hashcode;
-        if(hashKey != null) {
-            hashcode = hashKey.hashCode();
-        } else {
-            hashcode = 0;
+    /**
+     * The sorted hashes of the virtual nodes and the url of each of them.
+     */
+    private static final class Ring {
+        volatile List<URL> urls;
+        final long[] hashes;
+        final URL[] nodes;
+
+        Ring(List<URL> urls) {
+            this.urls = urls;
+            int size = urls.size() * VIRTUAL_NODES;
+            long[][] entries = new long[size][];
+            int n = 0;
+            for (int i = 0; i < urls.size(); i++) {
+                URL url = urls.get(i);
+                String instance = url.getHost() + ":" + url.getPort() + "#";
+                for (int v = 0; v < VIRTUAL_NODES; v++) {
+                    entries[n++] = new long[] {hash(instance + v), i};
+                }
+            }
+            Arrays.sort(entries, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+            hashes = new long[size];
+            nodes = new URL[size];
+            for (int i = 0; i < size; i++) {
+                hashes[i] = entries[i][0];
+                nodes[i] = urls.get((int) entries[i][1]);
+            }
+        }
+
+        URL get(long hash) {
+            int index = Arrays.binarySearch(hashes, hash);
+            if (index < 0) {
+                index = -index - 1;
+                if (index == hashes.length) {
+                    index = 0;
+                }
+            }
+            return nodes[index];
         }
-        return getPositive(hashcode);
     }
 }
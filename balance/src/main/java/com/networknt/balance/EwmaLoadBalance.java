@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.balance;
+
+import com.networknt.registry.URL;
+
+import java.util.function.Function;
+
+/**
+ * A power of two choices load balance that weights the in-flight requests of an instance with the EWMA of its
+ * latency. The cost of an instance is the expected time to serve a new request behind the ones that are in
+ * flight, so a slow instance gets less traffic even before its requests pile up.
+ *
+ * An instance without any response yet is taken as an average instance of the service, so that a new instance
+ * gets its share of the traffic right away without all the requests piling up on it before its first response.
+ *
+ * @author Steve Hu
+ */
+public class EwmaLoadBalance extends PowerOfTwoChoicesLoadBalance {
+
+    public EwmaLoadBalance() {
+        super();
+    }
+
+    EwmaLoadBalance(Function<URL, InstanceStats> statsLookup) {
+        super(statsLookup);
+    }
+
+    @Override
+    protected double cost(InstanceStats stats, InstanceStats[] peers) {
+        double ewma = stats.getEwma();
+        if (ewma == 0.0) {
+            ewma = averageEwma(peers);
+            // none of the instances has responded, and the in-flight requests are compared.
+            if (ewma == 0.0) return stats.getInFlight();
+        }
+        return ewma * (stats.getInFlight() + 1);
+    }
+
+    /**
+     * @return the average EWMA of the instances that have responded, or 0 if none of them has
+     */
+    static double averageEwma(InstanceStats[] peers) {
+        double sum = 0.0;
+        int count = 0;
+        for (InstanceStats peer : peers) {
+            double ewma = peer.getEwma();
+            if (ewma > 0.0) {
+                sum += ewma;
+                count++;
+            }
+        }
+        return count == 0 ? 0.0 : sum / count;
+    }
+}
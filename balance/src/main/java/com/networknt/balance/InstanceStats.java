@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.balance;
+
+import com.networknt.registry.URL;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The number of in-flight requests and the exponentially weighted moving average (EWMA) of the latency of a
+ * service instance. They are fed by the Http2Client and the router proxy client when a request is sent and its
+ * response is received, and they are used by the PowerOfTwoChoicesLoadBalance and the EwmaLoadBalance.
+ *
+ * The EWMA decays with the time between two responses instead of a fixed weight per response, so an instance
+ * that is called less often is not stuck with an old latency.
+ *
+ * @author Steve Hu
+ */
+public class InstanceStats {
+    // the time in which the weight of a latency decays to 1/e.
+    static final long DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final int MAX_INSTANCES = 10000;
+    private static final long IDLE_NANOS = TimeUnit.HOURS.toNanos(1);
+    private static final Map<String, InstanceStats> instances = new ConcurrentHashMap<>();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong ewmaBits = new AtomicLong(Double.doubleToRawLongBits(0.0));
+    private volatile long lastUpdate;
+
+    InstanceStats() {
+        this(System.nanoTime());
+    }
+
+    InstanceStats(long now) {
+        this.lastUpdate = now;
+    }
+
+    public static InstanceStats get(String host, int port) {
+        String key = host + ":" + port;
+        InstanceStats stats = instances.get(key);
+        if (stats == null) {
+            if (instances.size() >= MAX_INSTANCES) {
+                // the instances come and go with the deployments, and the ones that have not been called for an hour
+                // are removed to keep the map bounded.
+                long now = System.nanoTime();
+                instances.values().removeIf(s -> s.inFlight.get() == 0 && now - s.lastUpdate > IDLE_NANOS);
+            }
+            stats = instances.computeIfAbsent(key, k -> new InstanceStats());
+        }
+        return stats;
+    }
+
+    public static InstanceStats get(URL url) {
+        return get(url.getHost(), url.getPort());
+    }
+
+    /**
+     * Called when a request is sent to the instance.
+     */
+    public void onStart() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * Called when the response of a request is received from the instance or the request has failed.
+     *
+     * @param latencyNanos the time between the request and the response in nanoseconds
+     */
+    public void onComplete(long latencyNanos) {
+        onComplete(latencyNanos, System.nanoTime());
+    }
+
+    void onComplete(long latencyNanos, long now) {
+        inFlight.decrementAndGet();
+        long elapsed = Math.max(0L, now - lastUpdate);
+        lastUpdate = now;
+        double weight = Math.exp(-(double) elapsed / DECAY_NANOS);
+        while (true) {
+            long bits = ewmaBits.get();
+            double ewma = Double.longBitsToDouble(bits);
+            // the first latency is taken as it is.
+            double updated = ewma == 0.0 ? latencyNanos : ewma * weight + latencyNanos * (1.0 - weight);
+            if (ewmaBits.compareAndSet(bits, Double.doubleToRawLongBits(updated))) {
+                return;
+            }
+        }
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return the EWMA of the latency in nanoseconds, or 0 if there is no response from the instance yet
+     */
+    public double getEwma() {
+        return Double.longBitsToDouble(ewmaBits.get());
+    }
+}
@@ -43,4 +43,29 @@ public interface LoadBalance {
         return 0x7fffffff & originValue;
     }
 
+    /**
+     * Check if two lists of urls have the same instances in the same order. It is used to reuse the state
+     * that is built for a list when a caller passes a new list with the same instances.
+     *
+     * @param urls List
+     * @param other List
+     * @return true if the host and port of the urls are the same
+     */
+    default boolean isSameInstances(List<URL> urls, List<URL> other) {
+        if (urls == other) {
+            return true;
+        }
+        if (urls.size() != other.size()) {
+            return false;
+        }
+        for (int i = 0; i < urls.size(); i++) {
+            URL a = urls.get(i);
+            URL b = other.get(i);
+            if (a != b && (!a.getPort().equals(b.getPort()) || !a.getHost().equals(b.getHost()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.balance;
+
+import com.networknt.registry.URL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Power of two choices picks two instances at random and selects the one with fewer in-flight requests. It
+ * avoids the herd behavior of always picking the least loaded instance with stale information, and it moves
+ * the traffic away from a slow instance as its requests pile up.
+ *
+ * The in-flight requests are counted in the InstanceStats by the Http2Client and the router proxy client. The
+ * stats of the instances are cached per list of urls, so that a selection doesn't look up any map as long as
+ * the cluster passes the same list.
+ *
+ * @author Steve Hu
+ */
+public class PowerOfTwoChoicesLoadBalance implements LoadBalance {
+    static Logger logger = LoggerFactory.getLogger(PowerOfTwoChoicesLoadBalance.class);
+
+    private final Function<URL, InstanceStats> statsLookup;
+    private final Map<String, Candidates> candidates = new ConcurrentHashMap<>();
+
+    public PowerOfTwoChoicesLoadBalance() {
+        this(InstanceStats::get);
+        if(logger.isInfoEnabled()) logger.info("A " + getClass().getSimpleName() + " instance is started");
+    }
+
+    PowerOfTwoChoicesLoadBalance(Function<URL, InstanceStats> statsLookup) {
+        this.statsLookup = statsLookup;
+    }
+
+    @Override
+    public URL select(List<URL> urls, String serviceId, String tag, String requestKey) {
+        int size = urls.size();
+        if (size <= 1) {
+            return size == 1 ? urls.get(0) : null;
+        }
+        String key = tag == null ? serviceId : serviceId + "|" + tag;
+        Candidates c = candidates.get(key);
+        if (c == null || !isSameInstances(c.urls, urls)) {
+            c = new Candidates(urls, statsLookup);
+            candidates.put(key, c);
+        } else if (c.urls != urls) {
+            // the same instances in a new list, and the next selection with the list is an identity check.
+            c.urls = urls;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        // the second is any other instance so that two different instances are always compared.
+        int second = (first + 1 + random.nextInt(size - 1)) % size;
+        return cost(c.stats[first], c.stats) <= cost(c.stats[second], c.stats) ? urls.get(first) : urls.get(second);
+    }
+
+    /**
+     * @param stats the stats of an instance
+     * @param peers the stats of all the instances of the service
+     * @return the cost of sending a request to the instance, and the one with the lower cost is selected
+     */
+    protected double cost(InstanceStats stats, InstanceStats[] peers) {
+        return stats.getInFlight();
+    }
+
+    /**
+     * The stats of a list of urls in the same order.
+     */
+    private static final class Candidates {
+        volatile List<URL> urls;
+        final InstanceStats[] stats;
+
+        Candidates(List<URL> urls, Function<URL, InstanceStats> statsLookup) {
+            this.urls = urls;
+            this.stats = new InstanceStats[urls.size()];
+            for (int i = 0; i < stats.length; i++) {
+                stats[i] = statsLookup.apply(urls.get(i));
+            }
+        }
+    }
+}
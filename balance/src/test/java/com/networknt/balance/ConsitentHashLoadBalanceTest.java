@@ -18,11 +18,11 @@ package com.networknt.balance;
 
 import com.networknt.registry.URL;
 import com.networknt.registry.URLImpl;
-import com.networknt.service.SingletonServiceFactory;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
@@ -35,26 +35,54 @@ public class ConsitentHashLoadBalanceTest {
     @Test
     public void testSelect() throws Exception {
         List<URL> urls = new ArrayList<>();
-
-        //TODO complete the test cases when the class is completed. Need implementation.
-        /*
         urls.add(new URLImpl("http", "127.0.0.1", 8081, "v1", new HashMap<String, String>()));
         urls.add(new URLImpl("http", "127.0.0.1", 8082, "v1", new HashMap<String, String>()));
         urls.add(new URLImpl("http", "127.0.0.1", 8083, "v1", new HashMap<String, String>()));
         urls.add(new URLImpl("http", "127.0.0.1", 8084, "v1", new HashMap<String, String>()));
 
-        URL url1 = loadBalance.select(urls, "user1");
-        URL url2 = loadBalance.select(urls, "user1");
+        URL url1 = loadBalance.select(urls, "serviceId", "tag", "user1");
+        URL url2 = loadBalance.select(urls, "serviceId", "tag", "user1");
         Assert.assertEquals(url1, url2);
+        // the index of the instance in the list doesn't matter.
+        List<URL> reversed = new ArrayList<>(urls);
+        Collections.reverse(reversed);
+        Assert.assertEquals(url1, loadBalance.select(reversed, "serviceId", "tag", "user1"));
+    }
 
-        URL url3 = loadBalance.select(urls, "user1");
-        Assert.assertEquals(url1, url3);
-
+    @Test
+    public void testSelectWithEmptyList() throws Exception {
+        Assert.assertNull(loadBalance.select(new ArrayList<>(), "serviceId", "tag", "user1"));
+    }
 
-        URL url4 = loadBalance.select(urls, "user2");
-        Assert.assertNotEquals(url1, url4);
-        URL url5 = loadBalance.select(urls, "user3");
-        Assert.assertNotEquals(url4, url5);
-        */
+    @Test
+    public void testInstanceJoins() throws Exception {
+        List<URL> urls = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            urls.add(new URLImpl("http", "127.0.0.1", 8081 + i, "v1", new HashMap<String, String>()));
+        }
+        int keys = 10000;
+        URL[] before = new URL[keys];
+        int[] counts = new int[10];
+        for (int i = 0; i < keys; i++) {
+            before[i] = loadBalance.select(urls, "serviceId", null, "user" + i);
+            counts[before[i].getPort() - 8081]++;
+        }
+        // the keys are spread over all the instances.
+        for (int count : counts) {
+            Assert.assertTrue("count " + count, count > keys / 10 / 2 && count < keys / 10 * 2);
+        }
+        List<URL> joined = new ArrayList<>(urls);
+        joined.add(new URLImpl("http", "127.0.0.1", 8091, "v1", new HashMap<String, String>()));
+        int moved = 0;
+        for (int i = 0; i < keys; i++) {
+            URL url = loadBalance.select(joined, "serviceId", null, "user" + i);
+            if (!url.equals(before[i])) {
+                moved++;
+                // a key is only moved to the new instance.
+                Assert.assertEquals(8091, (int) url.getPort());
+            }
+        }
+        // about 1/11 of the keys are moved.
+        Assert.assertTrue("moved " + moved, moved > keys / 11 / 2 && moved < keys / 11 * 2);
     }
 }
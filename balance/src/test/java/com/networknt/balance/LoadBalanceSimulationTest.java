@@ -0,0 +1,108 @@
+package com.networknt.balance;
+
+import com.networknt.registry.URL;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A discrete event simulation of five instances with four workers each, where one of the instances is ten
+ * times slower than the others. The requests arrive at half of the capacity of the cluster, which is more than
+ * the slow instance can serve with its share of a round robin. It prints the latency percentiles of each load
+ * balance and checks that the ones that are fed with the InstanceStats have a much lower tail latency.
+ */
+public class LoadBalanceSimulationTest {
+    private static final int INSTANCES = 5;
+    private static final int WORKERS = 4;
+    private static final long FAST_SERVICE = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW_SERVICE = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int REQUESTS = 50000;
+
+    @Test
+    public void testSlowInstance() {
+        // the capacity of the four fast instances is 1600 requests per second.
+        long interval = TimeUnit.SECONDS.toNanos(1) / 800;
+        long[] roundRobin = simulate(new RoundRobinLoadBalance(), null, interval);
+        Map<Integer, InstanceStats> p2cStats = new HashMap<>();
+        long[] p2c = simulate(new PowerOfTwoChoicesLoadBalance(url -> p2cStats.get(url.getPort())), p2cStats, interval);
+        Map<Integer, InstanceStats> ewmaStats = new HashMap<>();
+        long[] ewma = simulate(new EwmaLoadBalance(url -> ewmaStats.get(url.getPort())), ewmaStats, interval);
+        print("RoundRobinLoadBalance", roundRobin);
+        print("PowerOfTwoChoicesLoadBalance", p2c);
+        print("EwmaLoadBalance", ewma);
+        Assert.assertTrue(percentile(p2c, 0.99) * 5 < percentile(roundRobin, 0.99));
+        Assert.assertTrue(percentile(ewma, 0.99) * 5 < percentile(roundRobin, 0.99));
+    }
+
+    private long[] simulate(LoadBalance loadBalance, Map<Integer, InstanceStats> stats, long interval) {
+        List<URL> urls = PowerOfTwoChoicesLoadBalanceTest.createUrls(INSTANCES);
+        if (stats != null) {
+            for (URL url : urls) {
+                stats.put(url.getPort(), new InstanceStats(0L));
+            }
+        }
+        Random random = new Random(1);
+        int[] busy = new int[INSTANCES];
+        List<ArrayDeque<long[]>> queues = new ArrayList<>();
+        for (int i = 0; i < INSTANCES; i++) {
+            queues.add(new ArrayDeque<>());
+        }
+        // the completions are {time, instance, arrival}
+        PriorityQueue<long[]> completions = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        long[] latencies = new long[REQUESTS];
+        int completed = 0;
+        int arrived = 0;
+        long nextArrival = 0;
+        while (completed < REQUESTS) {
+            if (arrived < REQUESTS && (completions.isEmpty() || nextArrival <= completions.peek()[0])) {
+                long now = nextArrival;
+                URL url = loadBalance.select(urls, "serviceId", null, null);
+                int instance = url.getPort() - 8081;
+                if (stats != null) stats.get(url.getPort()).onStart();
+                long service = (long) (-Math.log(1.0 - random.nextDouble()) * (instance == 0 ? SLOW_SERVICE : FAST_SERVICE));
+                if (busy[instance] < WORKERS) {
+                    busy[instance]++;
+                    completions.add(new long[] {now + service, instance, now});
+                } else {
+                    queues.get(instance).add(new long[] {service, now});
+                }
+                arrived++;
+                nextArrival = now + (long) (-Math.log(1.0 - random.nextDouble()) * interval);
+            } else {
+                long[] completion = completions.poll();
+                long now = completion[0];
+                int instance = (int) completion[1];
+                long latency = now - completion[2];
+                latencies[completed++] = latency;
+                if (stats != null) stats.get(8081 + instance).onComplete(latency, now);
+                long[] next = queues.get(instance).poll();
+                if (next != null) {
+                    completions.add(new long[] {now + next[0], instance, next[1]});
+                } else {
+                    busy[instance]--;
+                }
+            }
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(p * sorted.length))];
+    }
+
+    private static void print(String name, long[] latencies) {
+        System.out.println(name + " p50 = " + TimeUnit.NANOSECONDS.toMillis(percentile(latencies, 0.5))
+                + "ms p99 = " + TimeUnit.NANOSECONDS.toMillis(percentile(latencies, 0.99))
+                + "ms p99.9 = " + TimeUnit.NANOSECONDS.toMillis(percentile(latencies, 0.999)) + "ms");
+    }
+}
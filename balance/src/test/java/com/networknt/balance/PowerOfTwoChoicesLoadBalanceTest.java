@@ -0,0 +1,81 @@
+package com.networknt.balance;
+
+import com.networknt.registry.URL;
+import com.networknt.registry.URLImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PowerOfTwoChoicesLoadBalanceTest {
+
+    @Test
+    public void testBusyInstanceIsAvoided() {
+        Map<Integer, InstanceStats> stats = new HashMap<>();
+        LoadBalance loadBalance = new PowerOfTwoChoicesLoadBalance(url -> stats.computeIfAbsent(url.getPort(), p -> new InstanceStats(0L)));
+        List<URL> urls = createUrls(3);
+        for (int i = 0; i < 10; i++) {
+            stats.computeIfAbsent(8081, p -> new InstanceStats(0L)).onStart();
+        }
+        for (int i = 0; i < 1000; i++) {
+            URL url = loadBalance.select(urls, "serviceId", null, null);
+            Assert.assertNotEquals(8081, (int) url.getPort());
+        }
+    }
+
+    @Test
+    public void testSlowInstanceIsAvoided() {
+        Map<Integer, InstanceStats> stats = new HashMap<>();
+        LoadBalance loadBalance = new EwmaLoadBalance(url -> stats.computeIfAbsent(url.getPort(), p -> new InstanceStats(0L)));
+        List<URL> urls = createUrls(3);
+        for (int port = 8081; port <= 8083; port++) {
+            InstanceStats s = stats.computeIfAbsent(port, p -> new InstanceStats(0L));
+            s.onStart();
+            s.onComplete(port == 8082 ? 100000000L : 10000000L, 1000000L);
+        }
+        Assert.assertEquals(100000000.0, stats.get(8082).getEwma(), 1.0);
+        for (int i = 0; i < 1000; i++) {
+            URL url = loadBalance.select(urls, "serviceId", null, null);
+            Assert.assertNotEquals(8082, (int) url.getPort());
+        }
+    }
+
+    @Test
+    public void testNewInstanceIsNotPiledOn() {
+        Map<Integer, InstanceStats> stats = new HashMap<>();
+        LoadBalance loadBalance = new EwmaLoadBalance(url -> stats.computeIfAbsent(url.getPort(), p -> new InstanceStats(0L)));
+        List<URL> urls = createUrls(3);
+        for (int port = 8081; port <= 8082; port++) {
+            InstanceStats s = stats.computeIfAbsent(port, p -> new InstanceStats(0L));
+            s.onStart();
+            s.onComplete(10000000L, 1000000L);
+        }
+        // 8083 has just joined, and none of the requests sent to it has responded yet.
+        int selected = 0;
+        for (int i = 0; i < 300; i++) {
+            URL url = loadBalance.select(urls, "serviceId", null, null);
+            stats.get(url.getPort()).onStart();
+            if (url.getPort() == 8083) selected++;
+        }
+        Assert.assertTrue("the new instance is selected " + selected + " times", selected > 50 && selected < 150);
+    }
+
+    @Test
+    public void testSelectWithOneOrNoInstance() {
+        LoadBalance loadBalance = new PowerOfTwoChoicesLoadBalance();
+        Assert.assertNull(loadBalance.select(new ArrayList<>(), "serviceId", null, null));
+        List<URL> urls = createUrls(1);
+        Assert.assertSame(urls.get(0), loadBalance.select(urls, "serviceId", null, null));
+    }
+
+    static List<URL> createUrls(int n) {
+        List<URL> urls = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            urls.add(new URLImpl("http", "127.0.0.1", 8081 + i, "v1", new HashMap<String, String>()));
+        }
+        return urls;
+    }
+}
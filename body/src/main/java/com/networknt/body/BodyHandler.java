@@ -16,7 +16,12 @@
 
 package com.networknt.body;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.networknt.config.Config;
 import com.networknt.handler.Handler;
 import com.networknt.handler.MiddlewareHandler;
@@ -24,6 +29,7 @@ import com.networknt.httpstring.AttachmentConstants;
 import com.networknt.utility.ModuleRegistry;
 import com.networknt.utility.StringUtils;
 import io.undertow.Handlers;
+import io.undertow.connector.PooledByteBuffer;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.handlers.form.FormData;
@@ -33,9 +39,13 @@ import io.undertow.util.AttachmentKey;
 import io.undertow.util.Headers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xnio.ChannelListener;
+import org.xnio.channels.StreamSourceChannel;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
@@ -68,6 +78,11 @@ public class BodyHandler implements MiddlewareHandler {
 
     public static  BodyConfig config;
 
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+    private static final TypeReference<List<Object>> LIST_TYPE = new TypeReference<>() {};
+    // the factory is immutable and shared by all the form requests.
+    private static final FormParserFactory FORM_PARSER_FACTORY = FormParserFactory.builder().build();
+
     private volatile HttpHandler next;
 
     public BodyHandler() {
@@ -100,6 +115,14 @@ public class BodyHandler implements MiddlewareHandler {
         // parse the body to map or list if content type is application/json
         String contentType = exchange.getRequestHeaders().getFirst(Headers.CONTENT_TYPE);
         if (contentType != null) {
+            if (contentType.startsWith("application/json")) {
+                StreamSourceChannel channel = exchange.getRequestChannel();
+                // the channel is null if it is taken by a previous handler already, and the blocking stream is used.
+                if (channel != null) {
+                    new JsonBodyReader(exchange, contentType).start(channel);
+                    return;
+                }
+            }
             if (exchange.isInIoThread()) {
                 exchange.dispatch(this);
                 return;
@@ -107,14 +130,8 @@ public class BodyHandler implements MiddlewareHandler {
             exchange.startBlocking();
             try {
                 if (contentType.startsWith("application/json")) {
-                    InputStream inputStream = exchange.getInputStream();
-                    String unparsedRequestBody = StringUtils.inputStreamToString(inputStream, StandardCharsets.UTF_8);
-                    // attach the unparsed request body into exchange if the cacheRequestBody is enabled in body.yml
-                    if (config.isCacheRequestBody()) {
-                        exchange.putAttachment(AttachmentConstants.REQUEST_BODY_STRING, unparsedRequestBody);
-                    }
                     // attach the parsed request body into exchange if the body parser is enabled
-                    boolean res = attachJsonBody(exchange, unparsedRequestBody);
+                    boolean res = attachJsonBody(exchange, exchange.getInputStream().readAllBytes());
                     // this will ensure that the next handler won't be called.
                     if (!res) {
                         if(logger.isDebugEnabled()) logger.debug("BodyHandler.handleRequest ends with an error.");
@@ -150,8 +167,7 @@ public class BodyHandler implements MiddlewareHandler {
      */
     private void attachFormDataBody(final HttpServerExchange exchange) throws IOException {
         Object data;
-        FormParserFactory formParserFactory = FormParserFactory.builder().build();
-        FormDataParser parser = formParserFactory.createParser(exchange);
+        FormDataParser parser = FORM_PARSER_FACTORY.createParser(exchange);
         if (parser != null) {
             FormData formData = parser.parseBlocking();
             data = BodyConverter.convert(formData);
@@ -163,34 +179,197 @@ public class BodyHandler implements MiddlewareHandler {
     }
 
     /**
-     * Method used to parse the body into a Map or a List and attach it into exchange
+     * Method used to parse the body into a Map or a List and attach it into exchange when the request channel
+     * is not available and the body is read from the blocking input stream.
      *
      * @param exchange exchange to be attached
-     * @param string   unparsed request body
+     * @param bytes    unparsed request body
      * @throws IOException IO Exception
      * @return boolean
      */
-    private boolean attachJsonBody(final HttpServerExchange exchange, String string) throws IOException {
-        Object body;
-        if (string != null) {
-            string = string.trim();
-            if (string.startsWith("{")) {
-                body = Config.getInstance().getMapper().readValue(string, new TypeReference<Map<String, Object>>() {
-                });
-            } else if (string.startsWith("[")) {
-                body = Config.getInstance().getMapper().readValue(string, new TypeReference<List<Object>>() {
-                });
-            } else {
+    private boolean attachJsonBody(final HttpServerExchange exchange, byte[] bytes) throws IOException {
+        // attach the unparsed request body into exchange if the cacheRequestBody is enabled in body.yml
+        if (config.isCacheRequestBody()) {
+            exchange.putAttachment(AttachmentConstants.REQUEST_BODY_STRING, new String(bytes, StandardCharsets.UTF_8));
+        }
+        ObjectMapper mapper = Config.getInstance().getMapper();
+        try (JsonParser parser = mapper.getFactory().createParser(bytes)) {
+            JsonToken token = parser.nextToken();
+            if (token != JsonToken.START_OBJECT && token != JsonToken.START_ARRAY) {
                 // error here. The content type in head doesn't match the body.
                 setExchangeStatus(exchange, CONTENT_TYPE_MISMATCH, "application/json");
                 return false;
             }
-            exchange.putAttachment(AttachmentConstants.REQUEST_BODY, body);
+            exchange.putAttachment(AttachmentConstants.REQUEST_BODY, readBody(mapper, parser, token));
         }
-        // if this is the get or delete request, the body wil be null, but we still need to go to the next handler.
         return true;
     }
 
+    private static Object readBody(ObjectMapper mapper, JsonParser parser, JsonToken root) throws IOException {
+        if (root == JsonToken.START_OBJECT) {
+            return mapper.readValue(parser, MAP_TYPE);
+        }
+        return mapper.readValue(parser, LIST_TYPE);
+    }
+
+    /**
+     * Reads the JSON body of a request from the request channel without blocking. The bytes of each pooled buffer
+     * are fed to the non-blocking Jackson parser as they arrive and the tokens are kept in a TokenBuffer, so the
+     * body is never turned into a String unless cacheRequestBody is enabled. Once the body is parsed, the next
+     * handler is dispatched to a worker thread in blocking mode as it was before.
+     */
+    private final class JsonBodyReader implements ChannelListener<StreamSourceChannel> {
+        private final HttpServerExchange exchange;
+        private final String contentType;
+        private final ObjectMapper mapper = Config.getInstance().getMapper();
+        private final JsonParser parser;
+        private final TokenBuffer tokens;
+        private final ByteArrayOutputStream raw;
+        private JsonToken root;
+        private int depth;
+        private boolean done;
+
+        JsonBodyReader(HttpServerExchange exchange, String contentType) throws IOException {
+            this.exchange = exchange;
+            this.contentType = contentType;
+            this.parser = mapper.getFactory().createNonBlockingByteBufferParser();
+            this.tokens = new TokenBuffer(parser);
+            this.raw = config.isCacheRequestBody() ? new ByteArrayOutputStream() : null;
+        }
+
+        void start(StreamSourceChannel channel) {
+            try {
+                if (!read(channel)) {
+                    channel.getReadSetter().set(this);
+                    channel.resumeReads();
+                    return;
+                }
+            } catch (IOException e) {
+                fail(e);
+                return;
+            }
+            complete();
+        }
+
+        @Override
+        public void handleEvent(StreamSourceChannel channel) {
+            boolean completed;
+            try {
+                completed = read(channel);
+            } catch (IOException e) {
+                channel.getReadSetter().set(null);
+                channel.suspendReads();
+                fail(e);
+                return;
+            }
+            if (completed) {
+                channel.getReadSetter().set(null);
+                channel.suspendReads();
+                complete();
+            }
+        }
+
+        /**
+         * @return true if the body is read or it is not a JSON object or array, false if the channel has no more bytes for now
+         */
+        private boolean read(StreamSourceChannel channel) throws IOException {
+            try (PooledByteBuffer pooled = exchange.getConnection().getByteBufferPool().allocate()) {
+                ByteBuffer buffer = pooled.getBuffer();
+                for (;;) {
+                    buffer.clear();
+                    int r = channel.read(buffer);
+                    if (r == -1) {
+                        if (!done) {
+                            parser.getNonBlockingInputFeeder().endOfInput();
+                            parse();
+                        }
+                        return true;
+                    } else if (r == 0) {
+                        return false;
+                    }
+                    buffer.flip();
+                    if (raw != null) {
+                        copy(buffer.duplicate());
+                    }
+                    // the rest after the root value is ignored like the trailing tokens of ObjectMapper.readValue.
+                    if (!done) {
+                        // the parser holds on to the buffer until all the bytes are parsed, and it is cleared after.
+                        ((ByteBufferFeeder) parser.getNonBlockingInputFeeder()).feedInput(buffer);
+                        parse();
+                        if (root != null && !isObjectOrArray()) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+
+        private boolean isObjectOrArray() {
+            return root == JsonToken.START_OBJECT || root == JsonToken.START_ARRAY;
+        }
+
+        private void parse() throws IOException {
+            JsonToken token;
+            while (!done && (token = parser.nextToken()) != JsonToken.NOT_AVAILABLE && token != null) {
+                if (root == null) {
+                    root = token;
+                    if (!isObjectOrArray()) {
+                        return;
+                    }
+                }
+                tokens.copyCurrentEvent(parser);
+                if (token.isStructStart()) {
+                    depth++;
+                } else if (token.isStructEnd() && --depth == 0) {
+                    done = true;
+                }
+            }
+        }
+
+        private void copy(ByteBuffer buffer) {
+            if (buffer.hasArray()) {
+                raw.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            } else {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                raw.writeBytes(bytes);
+            }
+        }
+
+        private void complete() {
+            // attach the unparsed request body into exchange if the cacheRequestBody is enabled in body.yml
+            if (raw != null) {
+                exchange.putAttachment(AttachmentConstants.REQUEST_BODY_STRING, raw.toString(StandardCharsets.UTF_8));
+            }
+            if (!isObjectOrArray()) {
+                // error here. The content type in head doesn't match the body.
+                setExchangeStatus(exchange, CONTENT_TYPE_MISMATCH, "application/json");
+                if(logger.isDebugEnabled()) logger.debug("BodyHandler.handleRequest ends with an error.");
+                return;
+            }
+            try {
+                if (!done) {
+                    throw new IOException("Unexpected end of the JSON request body");
+                }
+                exchange.putAttachment(AttachmentConstants.REQUEST_BODY, readBody(mapper, tokens.asParser(), root));
+            } catch (IOException e) {
+                fail(e);
+                return;
+            }
+            if(logger.isDebugEnabled()) logger.debug("BodyHandler.handleRequest ends.");
+            exchange.dispatch(ex -> {
+                ex.startBlocking();
+                Handler.next(ex, next);
+            });
+        }
+
+        private void fail(IOException e) {
+            logger.error("IOException: ", e);
+            setExchangeStatus(exchange, CONTENT_TYPE_MISMATCH, contentType);
+            if(logger.isDebugEnabled()) logger.debug("BodyHandler.handleRequest ends with an error.");
+        }
+    }
+
     @Override
     public HttpHandler getNext() {
         return next;
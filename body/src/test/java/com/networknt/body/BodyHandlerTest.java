@@ -516,4 +516,52 @@ public class BodyHandlerTest {
         }
         Assert.assertEquals("{key1:value1,key2:value2}", reference.get().getAttachment(Http2Client.RESPONSE_BODY));
     }
+
+    @Test
+    public void testPostLargeJsonMap() throws Exception {
+        final AtomicReference<ClientResponse> reference = new AtomicReference<>();
+        final Http2Client client = Http2Client.getInstance();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final ClientConnection connection;
+        try {
+            connection = client.connect(new URI("http://localhost:7080"), Http2Client.WORKER, Http2Client.BUFFER_POOL, OptionMap.EMPTY).get();
+        } catch (Exception e) {
+            throw new ClientException(e);
+        }
+
+        // bigger than a pooled buffer so that the tokens are split between the reads.
+        StringBuilder post = new StringBuilder("{");
+        StringBuilder expected = new StringBuilder("{");
+        for (int i = 0; i < 5000; i++) {
+            if (i > 0) {
+                post.append(", ");
+                expected.append(",");
+            }
+            post.append("\"key").append(i).append("\":\"value").append(i).append("\"");
+            expected.append("key").append(i).append(":value").append(i);
+        }
+        post.append("}");
+        expected.append("}");
+        try {
+            connection.getIoThread().execute(new Runnable() {
+                @Override
+                public void run() {
+                    final ClientRequest request = new ClientRequest().setMethod(Methods.POST).setPath("/post");
+                    request.getRequestHeaders().put(Headers.HOST, "localhost");
+                    request.getRequestHeaders().put(Headers.CONTENT_TYPE, "application/json");
+                    request.getRequestHeaders().put(Headers.TRANSFER_ENCODING, "chunked");
+                    connection.sendRequest(request, client.createClientCallback(reference, latch, post.toString()));
+                }
+            });
+
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            logger.error("IOException: ", e);
+            throw new ClientException(e);
+        } finally {
+            IoUtils.safeClose(connection);
+        }
+        Assert.assertEquals(200, reference.get().getResponseCode());
+        Assert.assertEquals(expected.toString(), reference.get().getAttachment(Http2Client.RESPONSE_BODY));
+    }
 }
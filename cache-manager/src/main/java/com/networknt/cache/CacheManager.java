@@ -1,6 +1,7 @@
 package com.networknt.cache;
 
 import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Weigher;
 import com.networknt.service.SingletonServiceFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,6 +29,19 @@ public interface CacheManager {
     }
 
     void addCache(String cacheName, long maxSize, long expiryInMinutes);
+
+    /**
+     * Add a cache that is bounded by the total weight of the entries instead of the number of the entries.
+     *
+     * @param cacheName the name of the cache
+     * @param maxWeight the maximum total weight of the entries
+     * @param weigher the weigher of an entry
+     * @param expiryInMinutes the time an entry is kept after it is written
+     * @throws UnsupportedOperationException if the cache manager can't weigh the entries
+     */
+    default void addCache(String cacheName, long maxWeight, Weigher<Object, Object> weigher, long expiryInMinutes) {
+        throw new UnsupportedOperationException("weighted cache is not supported by " + getClass().getName());
+    }
     Cache<Object, Object> getCache(String cacheName);
     void removeCache(String cacheName);
 }
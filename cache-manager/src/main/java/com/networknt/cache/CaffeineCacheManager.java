@@ -2,6 +2,7 @@ package com.networknt.cache;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Weigher;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -19,6 +20,16 @@ public class CaffeineCacheManager implements CacheManager {
         caches.put(cacheName, cache);
     }
 
+    @Override
+    public void addCache(String cacheName, long maxWeight, Weigher<Object, Object> weigher, long expiryInMinutes) {
+        Cache<Object, Object> cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher(weigher)
+                .expireAfterWrite(expiryInMinutes, TimeUnit.MINUTES)
+                .build();
+        caches.put(cacheName, cache);
+    }
+
     @Override
     public Cache<Object, Object> getCache(String cacheName) {
         return caches.get(cacheName);
@@ -1,6 +1,7 @@
 package com.networknt.client;
 
 import com.networknt.config.Config;
+import com.networknt.utility.PathPrefixMatcher;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -47,11 +48,17 @@ public final class ClientConfig {
     public static final int DEFAULT_ERROR_THRESHOLD = 5;
     public static final int DEFAULT_TIMEOUT = 3000;
     public static final int DEFAULT_RESET_TIMEOUT = 600000;
+    public static final int DEFAULT_FAILURE_RATE_THRESHOLD = 50;
+    public static final int DEFAULT_ROLLING_WINDOW = 60000;
+    public static final int DEFAULT_HALF_OPEN_PERMITS = 1;
     public static final boolean DEFAULT_INJECT_OPEN_TRACING = false;
     public static final boolean DEFAULT_INJECT_CALLER_ID = false;
     private static final String BUFFER_SIZE = "bufferSize";
     private static final String ERROR_THRESHOLD = "errorThreshold";
     private static final String RESET_TIMEOUT = "resetTimeout";
+    private static final String FAILURE_RATE_THRESHOLD = "failureRateThreshold";
+    private static final String ROLLING_WINDOW = "rollingWindow";
+    private static final String HALF_OPEN_PERMITS = "halfOpenPermits";
     private static final String INJECT_OPEN_TRACING = "injectOpenTracing";
     private static final String INJECT_CALLER_ID = "injectCallerId";
     public static final int DEFAULT_CONNECTION_POOL_SIZE = 1000;
@@ -64,6 +71,7 @@ public final class ClientConfig {
     private static final String CONNECTION_POOL_SIZE = "connectionPoolSize";
     private static final String MAX_REQUEST_PER_CONNECTION = "maxReqPerConn";
     private static final String CONNECTION_EXPIRE_TIME = "connectionExpireTime";
+    private static final String SHARDED_CONNECTION_POOL = "shardedConnectionPool";
     private static final String MAX_CONNECTION_NUM_PER_HOST = "maxConnectionNumPerHost";
     private static final String MIN_CONNECTION_NUM_PER_HOST = "minConnectionNumPerHost";
 
@@ -77,16 +85,21 @@ public final class ClientConfig {
     private Map<String, Object> derefConfig;
     private Map<String, Object> signConfig;
     private Map<String, String> pathPrefixServices;
+    private volatile PathPrefixMatcher<String> pathPrefixServiceMatcher = PathPrefixMatcher.empty();
     private int bufferSize = DEFAULT_BUFFER_SIZE;
     private int resetTimeout = DEFAULT_RESET_TIMEOUT;
     private int timeout = DEFAULT_TIMEOUT;
     private int errorThreshold = DEFAULT_ERROR_THRESHOLD;
+    private int failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+    private int rollingWindow = DEFAULT_ROLLING_WINDOW;
+    private int halfOpenPermits = DEFAULT_HALF_OPEN_PERMITS;
     private boolean injectOpenTracing = DEFAULT_INJECT_OPEN_TRACING;
     private boolean injectCallerId = DEFAULT_INJECT_CALLER_ID;
     private int connectionPoolSize = DEFAULT_CONNECTION_POOL_SIZE;
     private int maxReqPerConn = DEFAULT_MAX_REQUEST_PER_CONNECTION;
     private boolean requestEnableHttp2 = DEFAULT_REQUEST_ENABLE_HTTP2;
     private long connectionExpireTime = DEFAULT_CONNECTION_EXPIRE_TIME;
+    private boolean shardedConnectionPool;
     private int maxConnectionNumPerHost = DEFAULT_MAX_CONNECTION_PER_HOST;
     private int minConnectionNumPerHost = DEFAULT_MIN_CONNECTION_PER_HOST;
 
@@ -161,6 +174,15 @@ public final class ClientConfig {
         if (requestConfig.containsKey(ERROR_THRESHOLD)) {
             errorThreshold = (int) requestConfig.get(ERROR_THRESHOLD);
         }
+        if (requestConfig.containsKey(FAILURE_RATE_THRESHOLD)) {
+            failureRateThreshold = (int) requestConfig.get(FAILURE_RATE_THRESHOLD);
+        }
+        if (requestConfig.containsKey(ROLLING_WINDOW)) {
+            rollingWindow = (int) requestConfig.get(ROLLING_WINDOW);
+        }
+        if (requestConfig.containsKey(HALF_OPEN_PERMITS)) {
+            halfOpenPermits = (int) requestConfig.get(HALF_OPEN_PERMITS);
+        }
         if (requestConfig.containsKey(TIMEOUT)) {
             timeout = (int) requestConfig.get(TIMEOUT);
         }
@@ -182,6 +204,9 @@ public final class ClientConfig {
         if (requestConfig.containsKey(CONNECTION_EXPIRE_TIME)) {
             connectionExpireTime = Long.parseLong(requestConfig.get(CONNECTION_EXPIRE_TIME).toString());
         }
+        if (requestConfig.containsKey(SHARDED_CONNECTION_POOL)) {
+            shardedConnectionPool = (boolean) requestConfig.get(SHARDED_CONNECTION_POOL);
+        }
         if (requestConfig.containsKey(MAX_CONNECTION_NUM_PER_HOST)) {
             maxConnectionNumPerHost = (int) requestConfig.get(MAX_CONNECTION_NUM_PER_HOST);
         }
@@ -231,6 +256,7 @@ public final class ClientConfig {
     private void setPathPrefixServices() {
         if (mappedConfig.get(PATH_PREFIX_SERVICES) != null && mappedConfig.get(PATH_PREFIX_SERVICES) instanceof Map) {
             pathPrefixServices = (Map)mappedConfig.get(PATH_PREFIX_SERVICES);
+            pathPrefixServiceMatcher = PathPrefixMatcher.compile(pathPrefixServices);
         }
     }
 
@@ -238,6 +264,13 @@ public final class ClientConfig {
 
     public Map<String, String> getPathPrefixServices() { return pathPrefixServices; }
 
+    /**
+     * The pathPrefixServices compiled for the per request lookup of the serviceId.
+     *
+     * @return PathPrefixMatcher of the serviceId for each prefix
+     */
+    public PathPrefixMatcher<String> getPathPrefixServiceMatcher() { return pathPrefixServiceMatcher; }
+
     public int getBufferSize() {
         return bufferSize;
     }
@@ -274,6 +307,18 @@ public final class ClientConfig {
         return errorThreshold;
     }
 
+    public int getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    public int getRollingWindow() {
+        return rollingWindow;
+    }
+
+    public int getHalfOpenPermits() {
+        return halfOpenPermits;
+    }
+
     public boolean isInjectOpenTracing() { return injectOpenTracing; }
 
     public boolean isInjectCallerId() {
@@ -300,6 +345,10 @@ public final class ClientConfig {
         return connectionExpireTime;
     }
 
+    public boolean isShardedConnectionPool() {
+        return shardedConnectionPool;
+    }
+
     public int getMaxConnectionNumPerHost() {
         return maxConnectionNumPerHost;
     }
@@ -18,7 +18,9 @@
 
 package com.networknt.client;
 
+import com.networknt.balance.InstanceStats;
 import com.networknt.client.circuitbreaker.CircuitBreaker;
+import com.networknt.client.circuitbreaker.CircuitBreakerRegistry;
 import com.networknt.client.http.*;
 import com.networknt.client.listener.ByteBufferReadChannelListener;
 import com.networknt.client.listener.ByteBufferWriteChannelListener;
@@ -26,7 +28,9 @@ import com.networknt.client.oauth.Jwt;
 import com.networknt.client.oauth.TokenManager;
 import com.networknt.client.simplepool.SimpleConnectionHolder;
 import com.networknt.client.simplepool.SimpleConnectionMaker;
+import com.networknt.client.simplepool.ShardedURIConnectionPool;
 import com.networknt.client.simplepool.SimpleURIConnectionPool;
+import com.networknt.client.simplepool.URIConnectionPool;
 import com.networknt.client.simplepool.undertow.SimpleClientConnectionMaker;
 import com.networknt.client.ssl.ClientX509ExtendedTrustManager;
 import com.networknt.client.ssl.CompositeX509TrustManager;
@@ -144,7 +148,7 @@ public class Http2Client {
     // This is the old connection pool that is kept for backward compatibility.
     private final Http2ClientConnectionPool http2ClientConnectionPool = Http2ClientConnectionPool.getInstance();
     // This is the new connection pool that is used by the new request method.
-    private final Map<URI, SimpleURIConnectionPool> pools = new ConcurrentHashMap<>();
+    private final Map<URI, URIConnectionPool> pools = new ConcurrentHashMap<>();
 
     static {
         List<String> masks = List.of(MASK_KEY_CLIENT_SECRET, MASK_KEY_TRUST_STORE_PASS, MASK_KEY_KEY_STORE_PASS, MASK_KEY_KEY_PASS);
@@ -283,15 +287,19 @@ public class Http2Client {
     }
 
     public SimpleConnectionHolder.ConnectionToken borrow(final URI uri, final XnioWorker worker, ByteBufferPool bufferPool, OptionMap options) {
-        SimpleURIConnectionPool pool = pools.get(uri);
-        if(pool == null) {
-            SimpleConnectionMaker undertowConnectionMaker = SimpleClientConnectionMaker.instance();
-            pool = new SimpleURIConnectionPool(uri, ClientConfig.get().getConnectionExpireTime(), ClientConfig.get().getConnectionPoolSize(), null, worker, bufferPool, null, options, undertowConnectionMaker);
-            pools.putIfAbsent(uri, pool);
-        }
+        URIConnectionPool pool = pools.computeIfAbsent(uri, k -> createConnectionPool(k, worker, bufferPool, null, options));
         return pool.borrow(ClientConfig.get().getTimeout());
     }
 
+    private static URIConnectionPool createConnectionPool(URI uri, XnioWorker worker, ByteBufferPool bufferPool, XnioSsl ssl, OptionMap options) {
+        SimpleConnectionMaker undertowConnectionMaker = SimpleClientConnectionMaker.instance();
+        ClientConfig clientConfig = ClientConfig.get();
+        if(clientConfig.isShardedConnectionPool()) {
+            return new ShardedURIConnectionPool(uri, clientConfig.getConnectionExpireTime(), clientConfig.getConnectionPoolSize(), null, worker, bufferPool, ssl, options, undertowConnectionMaker);
+        }
+        return new SimpleURIConnectionPool(uri, clientConfig.getConnectionExpireTime(), clientConfig.getConnectionPoolSize(), null, worker, bufferPool, ssl, options, undertowConnectionMaker);
+    }
+
     @Deprecated
     public ClientConnection borrowConnection(long timeoutSeconds, final URI uri, final XnioWorker worker, ByteBufferPool bufferPool, OptionMap options) {
         IoFuture<ClientConnection> future = borrowConnection(uri, worker, bufferPool, options);
@@ -368,12 +376,8 @@ public class Http2Client {
 
     public SimpleConnectionHolder.ConnectionToken borrow(final URI uri, final XnioWorker worker, XnioSsl ssl, ByteBufferPool bufferPool, OptionMap options) {
         if(HTTPS.equals(uri.getScheme()) && ssl == null) ssl = getDefaultXnioSsl();
-        SimpleURIConnectionPool pool = pools.get(uri);
-        if(pool == null) {
-            SimpleConnectionMaker undertowConnectionMaker = SimpleClientConnectionMaker.instance();
-            pool = new SimpleURIConnectionPool(uri, ClientConfig.get().getConnectionExpireTime(), ClientConfig.get().getConnectionPoolSize(), null, worker, bufferPool, ssl, options, undertowConnectionMaker);
-            pools.putIfAbsent(uri, pool);
-        }
+        final XnioSsl xnioSsl = ssl;
+        URIConnectionPool pool = pools.computeIfAbsent(uri, k -> createConnectionPool(k, worker, bufferPool, xnioSsl, options));
         return pool.borrow(ClientConfig.get().getTimeout());
     }
 
@@ -1233,12 +1237,34 @@ public class Http2Client {
         };
     }
 
+    /**
+     * Get a circuit breaker to call the uri. The circuit is shared by all the calls to the same scheme, host and
+     * port, and the CircuitBreaker.callAsync() can be used on an IO thread as it doesn't block.
+     * @param uri URI of target service
+     * @param request request
+     * @param requestBody request body
+     * @return circuit breaker of the call
+     */
     public CircuitBreaker getRequestService(URI uri, ClientRequest request, Optional<String> requestBody) {
-        return new CircuitBreaker(() -> callService(uri, request, requestBody));
+        return new CircuitBreaker(CircuitBreakerRegistry.getKey(uri), () -> callService(uri, request, requestBody));
     }
 
     public CircuitBreaker getRequestService(URI uri, ClientRequest request, Optional<String> requestBody, boolean isHttp2) {
-        return new CircuitBreaker(() -> callService(uri, request, requestBody, isHttp2));
+        return new CircuitBreaker(CircuitBreakerRegistry.getKey(uri), () -> callService(uri, request, requestBody, isHttp2));
+    }
+
+    /**
+     * Get a circuit breaker to call the service by using the serviceId. The circuit is shared by all the calls to
+     * the serviceId regardless of the instance that is picked by the load balancer.
+     * @param protocol target service protocol
+     * @param serviceId target service's service Id
+     * @param envTag environment tag
+     * @param request request
+     * @param requestBody request body
+     * @return circuit breaker of the call
+     */
+    public CircuitBreaker getRequestService(String protocol, String serviceId, String envTag, ClientRequest request, Optional<String> requestBody) {
+        return new CircuitBreaker(serviceId, () -> callService(protocol, serviceId, envTag, request, requestBody));
     }
 
     /**
@@ -1263,6 +1289,7 @@ public class Http2Client {
             });
         }
         futureClientResponse.thenAcceptAsync(clientResponse -> http2ClientConnectionPool.resetConnectionStatus(currentConnection.get()));
+        trackInstanceStats(uri, futureClientResponse);
         return futureClientResponse;
     }
 
@@ -1289,9 +1316,22 @@ public class Http2Client {
             });
         }
         futureClientResponse.thenAcceptAsync(clientResponse -> http2ClientConnectionPool.resetConnectionStatus(currentConnection.get()));
+        trackInstanceStats(uri, futureClientResponse);
         return futureClientResponse;
     }
 
+    /**
+     * Feed the in-flight requests and the latency of the instance to the load balancers of the cluster.
+     * @param uri URI of target service
+     * @param futureClientResponse the future of the response
+     */
+    private void trackInstanceStats(URI uri, CompletableFuture<ClientResponse> futureClientResponse) {
+        InstanceStats stats = InstanceStats.get(uri.getHost(), uri.getPort());
+        long startTime = System.nanoTime();
+        stats.onStart();
+        futureClientResponse.whenComplete((response, e) -> stats.onComplete(System.nanoTime() - startTime));
+    }
+
     /**
      * This method is used to call the service by using the serviceId and obtain a response
      * service discovery, load balancing and connection pool are embedded.
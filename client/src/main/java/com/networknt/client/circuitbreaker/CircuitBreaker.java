@@ -19,66 +19,88 @@ package com.networknt.client.circuitbreaker;
 import com.networknt.client.ClientConfig;
 import io.undertow.client.ClientResponse;
 
-import java.time.Instant;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
 /**
- * Circuit breaker implementation based on the configuration in client.yml
+ * Circuit breaker implementation based on the configuration in client.yml. The state is kept per endpoint
+ * in the CircuitBreakerRegistry, so a failing endpoint doesn't open the circuit of the others.
  *
  * @author Jeferson Perito
  */
 public class CircuitBreaker {
+    private static final String DEFAULT_KEY = "default";
 
-    private Supplier<CompletableFuture<ClientResponse>> supplier;
-    private static AtomicInteger timeoutCount;
-    private long lastErrorTime;
+    private final Supplier<CompletableFuture<ClientResponse>> supplier;
+    private final EndpointCircuit circuit;
 
+    /**
+     * @param supplier the supplier of the call
+     * @deprecated all the circuit breakers created with this constructor share one circuit, use the constructor
+     * with the key of the endpoint instead.
+     */
+    @Deprecated
     public CircuitBreaker(Supplier<CompletableFuture<ClientResponse>> supplier) {
-        this.supplier = supplier;
-        this.timeoutCount = new AtomicInteger(0);
+        this(DEFAULT_KEY, supplier);
     }
 
-    public ClientResponse call() throws TimeoutException, ExecutionException, InterruptedException {
-        State state = checkState();
+    /**
+     * @param key the key of the endpoint, which is a URI or a serviceId
+     * @param supplier the supplier of the call
+     */
+    public CircuitBreaker(String key, Supplier<CompletableFuture<ClientResponse>> supplier) {
+        this.supplier = supplier;
+        this.circuit = CircuitBreakerRegistry.getInstance().getCircuit(key);
+    }
 
+    /**
+     * Call the endpoint without blocking. The future is completed exceptionally with an IllegalStateException
+     * if the circuit is opened and with a TimeoutException if there is no response within the timeout.
+     *
+     * @return the future of the client response
+     */
+    public CompletableFuture<ClientResponse> callAsync() {
+        if (!circuit.tryAcquirePermission()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("circuit is opened."));
+        }
+        CompletableFuture<ClientResponse> future;
         try {
-            if (State.OPEN == state) {
-                throw new IllegalStateException("circuit is opened.");
-            }
-
-            ClientResponse clientResponse = supplier.get().get(ClientConfig.get().getTimeout(), TimeUnit.MILLISECONDS);
-            timeoutCount = new AtomicInteger(0);
-
-            return clientResponse;
-        } catch (InterruptedException | ExecutionException e) {
-            throw e;
-        } catch (TimeoutException e) {
-            recordTimeout();
-            throw e;
+            future = supplier.get();
+        } catch (RuntimeException e) {
+            circuit.onFailure();
+            return CompletableFuture.failedFuture(e);
         }
+        // the timeout is on a copy so that the future of the call is still completed by a late response, which
+        // is what releases the connection back to the pool.
+        return future.copy().orTimeout(ClientConfig.get().getTimeout(), TimeUnit.MILLISECONDS).whenComplete((response, e) -> {
+            if (e == null) {
+                circuit.onSuccess();
+            } else {
+                circuit.onFailure();
+            }
+        });
     }
 
-    private State checkState() {
-        ClientConfig clientConfig = ClientConfig.get();
-
-        boolean isExtrapolatedResetTimeout = Instant.now().toEpochMilli() - lastErrorTime > clientConfig.getResetTimeout();
-        boolean isExtrapolatedErrorThreshold = timeoutCount.get() >= clientConfig.getErrorThreshold();
-        if (isExtrapolatedErrorThreshold && isExtrapolatedResetTimeout) {
-            return State.HALF_OPEN;
-        }
-        if (timeoutCount.get() >= clientConfig.getErrorThreshold()) {
-            return State.OPEN;
+    public ClientResponse call() throws TimeoutException, ExecutionException, InterruptedException {
+        try {
+            return callAsync().get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof TimeoutException) {
+                throw (TimeoutException) cause;
+            }
+            if (cause instanceof IllegalStateException) {
+                throw (IllegalStateException) cause;
+            }
+            throw e;
         }
-        return State.CLOSE;
     }
 
-    private void recordTimeout() {
-        timeoutCount.getAndIncrement();
-        lastErrorTime = Instant.now().toEpochMilli();
+    public EndpointCircuit getCircuit() {
+        return circuit;
     }
 }
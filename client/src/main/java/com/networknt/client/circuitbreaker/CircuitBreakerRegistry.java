@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.client.circuitbreaker;
+
+import com.networknt.client.ClientConfig;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * The registry of the circuits of all the endpoints that are called by the Http2Client. A circuit is created
+ * with the request section of client.yml the first time its endpoint is called, and the listeners are notified
+ * so that the metrics module can export the state of the circuit.
+ *
+ * @author Steve Hu
+ */
+public class CircuitBreakerRegistry {
+    private static final CircuitBreakerRegistry instance = new CircuitBreakerRegistry();
+
+    private final Map<String, EndpointCircuit> circuits = new ConcurrentHashMap<>();
+    private final List<Consumer<EndpointCircuit>> listeners = new CopyOnWriteArrayList<>();
+
+    private CircuitBreakerRegistry() {
+    }
+
+    public static CircuitBreakerRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * @param uri the URI of the endpoint
+     * @return the key of the circuit, which is the scheme, host and port of the URI
+     */
+    public static String getKey(URI uri) {
+        return uri.getScheme() + "://" + uri.getHost() + ":" + uri.getPort();
+    }
+
+    public EndpointCircuit getCircuit(String key) {
+        EndpointCircuit circuit = circuits.get(key);
+        if (circuit == null) {
+            EndpointCircuit created = createCircuit(key);
+            circuit = circuits.putIfAbsent(key, created);
+            if (circuit == null) {
+                circuit = created;
+                for (Consumer<EndpointCircuit> listener : listeners) {
+                    listener.accept(circuit);
+                }
+            }
+        }
+        return circuit;
+    }
+
+    public Collection<EndpointCircuit> getCircuits() {
+        return Collections.unmodifiableCollection(circuits.values());
+    }
+
+    /**
+     * Add a listener that is called for each existing circuit and each circuit that is created later.
+     *
+     * @param listener the listener of the new circuits
+     */
+    public void addListener(Consumer<EndpointCircuit> listener) {
+        listeners.add(listener);
+        circuits.values().forEach(listener);
+    }
+
+    /**
+     * Remove all the circuits so that they start closed again. It is mainly for testing.
+     */
+    public void clear() {
+        circuits.clear();
+    }
+
+    private static EndpointCircuit createCircuit(String key) {
+        ClientConfig config = ClientConfig.get();
+        return new EndpointCircuit(key, config.getErrorThreshold(), config.getFailureRateThreshold(),
+                config.getResetTimeout(), config.getRollingWindow(), config.getHalfOpenPermits());
+    }
+}
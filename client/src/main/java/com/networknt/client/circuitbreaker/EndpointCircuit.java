@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.client.circuitbreaker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The circuit of a single endpoint, which is a URI or a serviceId. The calls and failures are counted in a
+ * rolling window of buckets, and the circuit is opened when the failures in the window reach the errorThreshold
+ * and the failureRateThreshold in client.yml. After resetTimeout, the circuit is half open and only lets
+ * halfOpenPermits calls through. The circuit is closed once all of them have succeeded, and it is opened again
+ * as soon as one of them fails.
+ * <p>
+ * Each bucket is a long that packs the bucket epoch, the number of calls and the number of failures so that it
+ * can be updated with a CAS without any lock.
+ *
+ * @author Steve Hu
+ */
+public class EndpointCircuit {
+    private static final Logger logger = LoggerFactory.getLogger(EndpointCircuit.class);
+    static final int BUCKETS = 10;
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final int EPOCH_SHIFT = 2 * COUNT_BITS;
+    private static final long EPOCH_MASK = (1L << (64 - EPOCH_SHIFT)) - 1;
+
+    private final String key;
+    private final int errorThreshold;
+    private final int failureRateThreshold;
+    private final long resetTimeoutNanos;
+    private final long bucketNanos;
+    private final int halfOpenPermits;
+    private final long startNanos = System.nanoTime();
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSE);
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicInteger probes = new AtomicInteger();
+    private final AtomicInteger probeSuccesses = new AtomicInteger();
+    private volatile long openedAt;
+
+    EndpointCircuit(String key, int errorThreshold, int failureRateThreshold, long resetTimeout, long rollingWindow, int halfOpenPermits) {
+        this.key = key;
+        this.errorThreshold = Math.max(1, errorThreshold);
+        this.failureRateThreshold = failureRateThreshold;
+        this.resetTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(resetTimeout);
+        this.bucketNanos = Math.max(1L, TimeUnit.MILLISECONDS.toNanos(rollingWindow) / BUCKETS);
+        this.halfOpenPermits = Math.max(1, halfOpenPermits);
+    }
+
+    /**
+     * Try to get the permission to call the endpoint. A call that is permitted must be followed by
+     * onSuccess or onFailure once it is completed.
+     *
+     * @return true if the call can go ahead
+     */
+    public boolean tryAcquirePermission() {
+        while (true) {
+            State current = state.get();
+            if (current == State.CLOSE) {
+                return true;
+            }
+            if (current == State.HALF_OPEN) {
+                return probes.incrementAndGet() <= halfOpenPermits;
+            }
+            if (System.nanoTime() - openedAt < resetTimeoutNanos) {
+                return false;
+            }
+            // the probe counters are reset when the circuit is opened, so there is nothing else to do here.
+            if (state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+                if(logger.isDebugEnabled()) logger.debug("Circuit " + key + " is half open.");
+            }
+        }
+    }
+
+    public void onSuccess() {
+        long now = System.nanoTime();
+        record(now, false);
+        if (state.get() == State.HALF_OPEN && probeSuccesses.incrementAndGet() >= halfOpenPermits
+                && state.compareAndSet(State.HALF_OPEN, State.CLOSE)) {
+            // the failures before the circuit was opened must not count against the closed circuit.
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0L);
+            }
+            if(logger.isDebugEnabled()) logger.debug("Circuit " + key + " is closed.");
+        }
+    }
+
+    public void onFailure() {
+        long now = System.nanoTime();
+        record(now, true);
+        State current = state.get();
+        if (current == State.HALF_OPEN) {
+            open(State.HALF_OPEN, now);
+        } else if (current == State.CLOSE) {
+            long counts = getCounts(now);
+            long calls = counts >>> 32;
+            long failures = counts & 0xffffffffL;
+            if (failures >= errorThreshold && failures * 100 >= failureRateThreshold * calls) {
+                open(State.CLOSE, now);
+            }
+        }
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public State getState() {
+        State current = state.get();
+        if (current == State.OPEN && System.nanoTime() - openedAt >= resetTimeoutNanos) {
+            return State.HALF_OPEN;
+        }
+        return current;
+    }
+
+    /**
+     * @return the failure rate in percent of the calls in the rolling window
+     */
+    public int getFailureRate() {
+        long counts = getCounts(System.nanoTime());
+        long calls = counts >>> 32;
+        return calls == 0 ? 0 : (int) ((counts & 0xffffffffL) * 100 / calls);
+    }
+
+    private void open(State from, long now) {
+        probes.set(0);
+        probeSuccesses.set(0);
+        openedAt = now;
+        if (state.compareAndSet(from, State.OPEN)) {
+            logger.warn("Circuit " + key + " is opened with failure rate " + getFailureRate() + "%.");
+        }
+    }
+
+    private long epoch(long now) {
+        return (now - startNanos) / bucketNanos;
+    }
+
+    private void record(long now, boolean failure) {
+        long epoch = epoch(now);
+        int index = (int) (epoch % BUCKETS);
+        long bucketEpoch = epoch & EPOCH_MASK;
+        while (true) {
+            long bucket = buckets.get(index);
+            long calls = 0, failures = 0;
+            if (bucket >>> EPOCH_SHIFT == bucketEpoch) {
+                calls = (bucket >>> COUNT_BITS) & COUNT_MASK;
+                failures = bucket & COUNT_MASK;
+            }
+            // saturate instead of overflowing into the epoch, the rate is still about right.
+            if (calls < COUNT_MASK) {
+                calls++;
+                if (failure) failures++;
+            }
+            if (buckets.compareAndSet(index, bucket, bucketEpoch << EPOCH_SHIFT | calls << COUNT_BITS | failures)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the calls in the upper and the failures in the lower bits of the rolling window
+     */
+    private long getCounts(long now) {
+        long epoch = epoch(now);
+        long start = epoch - BUCKETS + 1;
+        long calls = 0, failures = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long bucket = buckets.get(i);
+            // the full epoch of the bucket from the lower bits that are kept in it.
+            long bucketEpoch = epoch - ((epoch - (bucket >>> EPOCH_SHIFT)) & EPOCH_MASK);
+            if (bucketEpoch >= start) {
+                calls += (bucket >>> COUNT_BITS) & COUNT_MASK;
+                failures += bucket & COUNT_MASK;
+            }
+        }
+        return calls << 32 | failures;
+    }
+}
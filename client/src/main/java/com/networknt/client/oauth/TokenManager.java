@@ -104,15 +104,8 @@ public class TokenManager {
         if(ClientConfig.get().isMultipleAuthServers()) {
             String path = clientRequest.getPath();
             if(logger.isTraceEnabled()) logger.trace("clientRequest path = " + path);
-            // get the target serviceId based on the request path.
-            Map<String, String> pathPrefixServices = ClientConfig.get().getPathPrefixServices();
-            // lookup the serviceId based on the full path and the prefix mapping by iteration here.
-            String serviceId = null;
-            for(Map.Entry<String, String> entry: pathPrefixServices.entrySet()) {
-                if(path.startsWith(entry.getKey())) {
-                    serviceId = entry.getValue();
-                }
-            }
+            // get the target serviceId based on the request path with the longest matched prefix.
+            String serviceId = ClientConfig.get().getPathPrefixServiceMatcher().get(path);
             if(logger.isTraceEnabled()) logger.trace("serviceId = " + serviceId);
             // based on the serviceId, we can find the configuration of the auth server from the client credentials
             Map<String, Object> clientCredentials = (Map<String, Object>)ClientConfig.get().getTokenConfig().get(ClientConfig.CLIENT_CREDENTIALS);
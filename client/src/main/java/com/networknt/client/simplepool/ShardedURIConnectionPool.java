@@ -0,0 +1,309 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.networknt.client.simplepool;
+
+import io.undertow.connector.ByteBufferPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnio.OptionMap;
+import org.xnio.XnioIoThread;
+import org.xnio.XnioWorker;
+import org.xnio.ssl.XnioSsl;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/***
+ * A connection pool for a single URI that doesn't take a pool wide lock on borrow and restore.
+ *
+ * The connections are split into shards, one per IO thread of the worker. A thread borrows from the shard of its IO
+ * thread (or a shard picked by its thread id) and only looks at the other shards when its own shard is full. Each
+ * shard keeps the HTTP/1.1 connections that are not borrowed in a queue, and the HTTP/2 connection that is shared by
+ * all the borrowers of the shard, so that a borrow or a restore is O(1). The pool size is divided evenly between the
+ * shards.
+ *
+ * Closing the expired connections that are not borrowed, dropping the connections that are closed unexpectedly and
+ * closing the leaked connections are done by a timer instead of on every borrow and restore. See SimpleURIConnectionPool
+ * for the connection states and the leaked connections.
+ */
+public final class ShardedURIConnectionPool implements URIConnectionPool {
+    private static final Logger logger = LoggerFactory.getLogger(ShardedURIConnectionPool.class);
+    private static final long MAX_REAP_INTERVAL = 1000;
+    private static final long MIN_REAP_INTERVAL = 10;
+    private static final ScheduledExecutorService reaperExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "connection-pool-reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final SimpleConnectionMaker connectionMaker;
+    private final long EXPIRY_TIME;
+    private final URI uri;
+    private InetSocketAddress bindAddress;
+    private XnioWorker worker;
+    private ByteBufferPool bufferPool;
+    private XnioSsl ssl;
+    private OptionMap options;
+
+    private final Shard[] shards;
+    /** The set of all connections created by the SimpleConnectionMaker for this uri */
+    private final Set<SimpleConnection> allCreatedConnections = ConcurrentHashMap.newKeySet();
+    /** The shard of every connection that is tracked by this connection pool */
+    private final Map<SimpleConnectionHolder, Shard> owners = new ConcurrentHashMap<>();
+    /** The number of connections that are being created */
+    private final AtomicInteger creating = new AtomicInteger();
+    /** The untracked connections found by the last reap. They are closed if they are still untracked on the next one */
+    private Set<SimpleConnection> leakCandidates = new HashSet<>();
+    private final ScheduledFuture<?> reaper;
+
+    public ShardedURIConnectionPool(URI uri, long expireTime, int poolSize, int shardCount, SimpleConnectionMaker connectionMaker) {
+        EXPIRY_TIME = expireTime;
+        this.uri = uri;
+        this.connectionMaker = connectionMaker;
+        this.shards = createShards(poolSize, shardCount);
+        this.reaper = scheduleReaper();
+    }
+
+    public ShardedURIConnectionPool(URI uri, long expireTime, int poolSize, InetSocketAddress bindAddress, XnioWorker worker, ByteBufferPool bufferPool, XnioSsl ssl, OptionMap options, SimpleConnectionMaker connectionMaker) {
+        EXPIRY_TIME = expireTime;
+        this.uri = uri;
+        this.bindAddress = bindAddress;
+        this.worker = worker;
+        this.bufferPool = bufferPool;
+        this.ssl = ssl;
+        this.options = options;
+        this.connectionMaker = connectionMaker;
+        this.shards = createShards(poolSize, worker != null ? worker.getIoThreadCount() : Runtime.getRuntime().availableProcessors());
+        this.reaper = scheduleReaper();
+    }
+
+    private static Shard[] createShards(int poolSize, int shardCount) {
+        int count = Math.max(1, Math.min(shardCount, poolSize));
+        Shard[] shards = new Shard[count];
+        for(int i = 0; i < count; i++)
+            shards[i] = new Shard((poolSize + count - 1) / count);
+        return shards;
+    }
+
+    private ScheduledFuture<?> scheduleReaper() {
+        long interval = Math.max(MIN_REAP_INTERVAL, Math.min(EXPIRY_TIME, MAX_REAP_INTERVAL));
+        return reaperExecutor.scheduleWithFixedDelay(this::reap, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public SimpleConnectionHolder.ConnectionToken borrow(long createConnectionTimeout) throws RuntimeException {
+        long now = System.currentTimeMillis();
+        int index = shardIndex();
+        Shard shard = shards[index];
+
+        SimpleConnectionHolder.ConnectionToken connectionToken = borrowIdle(shard, createConnectionTimeout, now);
+        if(connectionToken == null)
+            connectionToken = create(shard, createConnectionTimeout, now);
+
+        // the shard is full, try the idle connections of the other shards before giving up.
+        for(int i = 1; connectionToken == null && i < shards.length; i++)
+            connectionToken = borrowIdle(shards[(index + i) % shards.length], createConnectionTimeout, now);
+
+        if(connectionToken == null)
+            throw new RuntimeException("An attempt was made to exceed the maximum size was of the " + uri.toString() + " connection pool");
+
+        if(logger.isDebugEnabled()) logger.debug("After borrow - [SHARD: {}] [TRACKED: {}]", index, owners.size());
+        return connectionToken;
+    }
+
+    @Override
+    public void restore(SimpleConnectionHolder.ConnectionToken connectionToken) {
+        if(connectionToken == null)
+            return;
+
+        SimpleConnectionHolder holder = connectionToken.holder();
+        holder.restore(connectionToken);
+
+        // a HTTP/1.1 connection goes back to the idle queue of its shard. A connection that is no longer tracked
+        // or not borrowable anymore is left for the reaper.
+        Shard shard = owners.get(holder);
+        if(shard != null && !holder.connection().isMultiplexingSupported() && holder.borrowable(System.currentTimeMillis()))
+            shard.idle.offer(holder);
+
+        if(logger.isDebugEnabled()) logger.debug("After restore - [TRACKED: {}]", owners.size());
+    }
+
+    /**
+     * Stop the reaper and close all the connections that are not borrowed. It is for the pools that are not used
+     * anymore, and the pool must not be used after it is closed.
+     */
+    public void close() {
+        reaper.cancel(false);
+        for(SimpleConnectionHolder holder : owners.keySet())
+            if(!holder.borrowed())
+                holder.connection().safeClose();
+        Set<SimpleConnection> tracked = trackedConnections();
+        for(SimpleConnection connection : allCreatedConnections)
+            if(connection.isOpen() && !tracked.contains(connection))
+                connection.safeClose();
+    }
+
+    private int shardIndex() {
+        if(shards.length == 1)
+            return 0;
+        Thread thread = Thread.currentThread();
+        if(thread instanceof XnioIoThread)
+            return ((XnioIoThread) thread).getNumber() % shards.length;
+        return (int) (thread.getId() % shards.length);
+    }
+
+    private SimpleConnectionHolder.ConnectionToken borrowIdle(Shard shard, long createConnectionTimeout, long now) {
+        SimpleConnectionHolder.ConnectionToken connectionToken;
+        SimpleConnectionHolder holder = shard.multiplexed;
+        if(holder != null && (connectionToken = tryBorrow(holder, createConnectionTimeout, now)) != null)
+            return connectionToken;
+
+        // the connections in the queue that are closed or expired are dropped from the queue and closed by the reaper.
+        while((holder = shard.idle.poll()) != null) {
+            if((connectionToken = tryBorrow(holder, createConnectionTimeout, now)) != null)
+                return connectionToken;
+        }
+        return null;
+    }
+
+    private static SimpleConnectionHolder.ConnectionToken tryBorrow(SimpleConnectionHolder holder, long createConnectionTimeout, long now) {
+        if(!holder.borrowable(now))
+            return null;
+        try {
+            return holder.borrow(createConnectionTimeout, now);
+        } catch (IllegalStateException e) {
+            // the connection is not borrowable anymore as another thread has borrowed it in between.
+            return null;
+        }
+    }
+
+    private SimpleConnectionHolder.ConnectionToken create(Shard shard, long createConnectionTimeout, long now) {
+        if(shard.size.incrementAndGet() > shard.maxSize) {
+            shard.size.decrementAndGet();
+            return null;
+        }
+        final SimpleConnectionHolder holder;
+        creating.incrementAndGet();
+        try {
+            holder = new SimpleConnectionHolder(EXPIRY_TIME, createConnectionTimeout, uri, bindAddress, worker, bufferPool, ssl, options, allCreatedConnections, connectionMaker);
+            shard.holders.add(holder);
+            owners.put(holder, shard);
+        } catch (RuntimeException e) {
+            shard.size.decrementAndGet();
+            throw e;
+        } finally {
+            creating.decrementAndGet();
+        }
+
+        SimpleConnectionHolder.ConnectionToken connectionToken = holder.borrow(createConnectionTimeout, now);
+        if(holder.connection().isMultiplexingSupported())
+            shard.multiplexed = holder;
+        return connectionToken;
+    }
+
+    /**
+     * Close the expired connections that are not borrowed, stop tracking the closed connections and close the leaked
+     * connections. It runs on the reaper thread only.
+     */
+    void reap() {
+        try {
+            long now = System.currentTimeMillis();
+            for(Shard shard : shards) {
+                Iterator<SimpleConnectionHolder> holders = shard.holders.iterator();
+                while(holders.hasNext()) {
+                    SimpleConnectionHolder holder = holders.next();
+                    if(!holder.closed() && !holder.borrowed() && holder.expired(now)) {
+                        try {
+                            holder.safeClose(now);
+                        } catch (IllegalStateException e) {
+                            // borrowed in between, it will be closed once it is restored.
+                            continue;
+                        }
+                    }
+                    if(holder.closed()) {
+                        if(logger.isDebugEnabled()) logger.debug("Connection to {} closed - Stopping connection tracking", uri);
+                        holders.remove();
+                        owners.remove(holder);
+                        shard.idle.remove(holder);
+                        if(shard.multiplexed == holder)
+                            shard.multiplexed = null;
+                        allCreatedConnections.remove(holder.connection());
+                        shard.size.decrementAndGet();
+                    }
+                }
+            }
+            closeLeakedConnections();
+        } catch (Throwable e) {
+            logger.error("Failed to reap the connections of " + uri, e);
+        }
+    }
+
+    private void closeLeakedConnections() {
+        Set<SimpleConnection> leaked = new HashSet<>(allCreatedConnections);
+        leaked.removeAll(trackedConnections());
+
+        // a connection that is being created is not tracked yet, so only the connections that are untracked on two
+        // reaps in a row while no connection is being created are considered leaked.
+        if(creating.get() == 0) {
+            for(SimpleConnection connection : leaked) {
+                if(leakCandidates.contains(connection)) {
+                    if(connection.isOpen())
+                        connection.safeClose();
+                    allCreatedConnections.remove(connection);
+                    if(logger.isDebugEnabled()) logger.debug("Leaked connection closed -> {}", uri);
+                }
+            }
+            leaked.retainAll(allCreatedConnections);
+        }
+        leakCandidates = leaked;
+    }
+
+    private Set<SimpleConnection> trackedConnections() {
+        Set<SimpleConnection> tracked = new HashSet<>();
+        for(SimpleConnectionHolder holder : owners.keySet())
+            tracked.add(holder.connection());
+        return tracked;
+    }
+
+    /**
+     * @return the number of connections that are tracked by this connection pool
+     */
+    int size() {
+        return owners.size();
+    }
+
+    private static final class Shard {
+        final int maxSize;
+        final AtomicInteger size = new AtomicInteger();
+        final Set<SimpleConnectionHolder> holders = ConcurrentHashMap.newKeySet();
+        final Queue<SimpleConnectionHolder> idle = new ConcurrentLinkedQueue<>();
+        volatile SimpleConnectionHolder multiplexed;
+
+        Shard(int maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
+}
@@ -43,7 +43,7 @@ import java.util.concurrent.ThreadLocalRandom;
         4. Borrowed:                connections that have borrowed tokens
         5. notBorrowedExpired:      connections that have no borrowed tokens -- only these can be closed by the pool
 */
-public final class SimpleURIConnectionPool {
+public final class SimpleURIConnectionPool implements URIConnectionPool {
     private static final Logger logger = LoggerFactory.getLogger(SimpleURIConnectionPool.class);
     private final SimpleConnectionMaker connectionMaker;
     private final long EXPIRY_TIME;
@@ -96,6 +96,7 @@ public final class SimpleURIConnectionPool {
      * @return a connection token that represents the borrowing of a connection by a thread
      * @throws RuntimeException if an attempt is made to exceed the maximum size of the connection pool
      */
+    @Override
     public synchronized SimpleConnectionHolder.ConnectionToken borrow(long createConnectionTimeout) throws RuntimeException {
         long now = System.currentTimeMillis();
         final SimpleConnectionHolder holder;
@@ -115,7 +116,7 @@ public final class SimpleURIConnectionPool {
         SimpleConnectionHolder.ConnectionToken connectionToken = holder.borrow(createConnectionTimeout, now);
         readConnectionHolder(holder, now, () -> allKnownConnections.remove(holder));
 
-        logger.debug(showConnections("borrow"));
+        if(logger.isDebugEnabled()) logger.debug(showConnections("borrow"));
 
         return connectionToken;
     }
@@ -129,6 +130,7 @@ public final class SimpleURIConnectionPool {
      *
      * @param connectionToken the connection token that represents the borrowing of a connection by a thread
      */
+    @Override
     public synchronized void restore(SimpleConnectionHolder.ConnectionToken connectionToken) {
         if(connectionToken == null)
             return;
@@ -139,7 +141,7 @@ public final class SimpleURIConnectionPool {
         holder.restore(connectionToken);
         readAllConnectionHolders(now);
 
-        logger.debug(showConnections("restore"));
+        if(logger.isDebugEnabled()) logger.debug(showConnections("restore"));
     }
 
     /**
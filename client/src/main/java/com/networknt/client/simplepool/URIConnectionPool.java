@@ -0,0 +1,37 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.networknt.client.simplepool;
+
+/***
+ * A connection pool for a single URI. Connections are borrowed as ConnectionTokens and every token that is
+ * borrowed must be restored to the same pool.
+ *
+ * SimpleURIConnectionPool serializes all the borrows and restores of a URI, and ShardedURIConnectionPool spreads
+ * them over a shard per IO thread.
+ */
+public interface URIConnectionPool {
+    /***
+     * @param createConnectionTimeout the maximum time to wait for a connection to be created
+     * @return a connection token that represents the borrowing of a connection by a thread
+     * @throws RuntimeException if an attempt is made to exceed the maximum size of the connection pool
+     */
+    SimpleConnectionHolder.ConnectionToken borrow(long createConnectionTimeout) throws RuntimeException;
+
+    /***
+     * Restores borrowed connections
+     *
+     * @param connectionToken the connection token that represents the borrowing of a connection by a thread
+     */
+    void restore(SimpleConnectionHolder.ConnectionToken connectionToken);
+}
@@ -0,0 +1,100 @@
+package com.networknt.client.circuitbreaker;
+
+import io.undertow.client.ClientResponse;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+public class CircuitBreakerTest {
+
+    @Before
+    public void setUp() {
+        CircuitBreakerRegistry.getInstance().clear();
+    }
+
+    @Test
+    public void testCircuitIsPerEndpoint() throws Exception {
+        CircuitBreaker failing = new CircuitBreaker("https://localhost:1", CircuitBreakerTest::failed);
+        CircuitBreaker working = new CircuitBreaker("https://localhost:2", CircuitBreakerTest::succeeded);
+        for (int i = 0; i < 2; i++) {
+            try {
+                failing.call();
+                Assert.fail();
+            } catch (ExecutionException e) {
+                // expected
+            }
+        }
+        Assert.assertEquals(State.OPEN, failing.getCircuit().getState());
+        try {
+            failing.call();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("circuit is opened.", e.getMessage());
+        }
+        // the other endpoint is not affected.
+        Assert.assertNull(working.call());
+        Assert.assertEquals(State.CLOSE, working.getCircuit().getState());
+    }
+
+    @Test
+    public void testFailureRate() throws Exception {
+        CircuitBreaker success = new CircuitBreaker("serviceId", CircuitBreakerTest::succeeded);
+        CircuitBreaker failure = new CircuitBreaker("serviceId", CircuitBreakerTest::failed);
+        for (int i = 0; i < 8; i++) {
+            success.call();
+        }
+        // the errorThreshold is reached but the failure rate of 2 out of 10 is below 50%.
+        for (int i = 0; i < 2; i++) {
+            Assert.assertTrue(failure.callAsync().isCompletedExceptionally());
+        }
+        Assert.assertEquals(State.CLOSE, success.getCircuit().getState());
+        Assert.assertEquals(20, success.getCircuit().getFailureRate());
+        for (int i = 0; i < 8; i++) {
+            failure.callAsync();
+        }
+        Assert.assertEquals(State.OPEN, success.getCircuit().getState());
+    }
+
+    @Test
+    public void testHalfOpenProbe() throws Exception {
+        EndpointCircuit circuit = new EndpointCircuit("probe", 2, 50, 100, 60000, 2);
+        circuit.onFailure();
+        circuit.onFailure();
+        Assert.assertFalse(circuit.tryAcquirePermission());
+        Thread.sleep(150);
+        // only two probes are let through.
+        Assert.assertTrue(circuit.tryAcquirePermission());
+        Assert.assertTrue(circuit.tryAcquirePermission());
+        Assert.assertFalse(circuit.tryAcquirePermission());
+        circuit.onSuccess();
+        Assert.assertEquals(State.HALF_OPEN, circuit.getState());
+        circuit.onSuccess();
+        Assert.assertEquals(State.CLOSE, circuit.getState());
+        Assert.assertEquals(0, circuit.getFailureRate());
+
+        // a failed probe opens the circuit again.
+        circuit.onFailure();
+        circuit.onFailure();
+        Thread.sleep(150);
+        Assert.assertTrue(circuit.tryAcquirePermission());
+        circuit.onFailure();
+        Assert.assertFalse(circuit.tryAcquirePermission());
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void testTimeout() throws Exception {
+        new CircuitBreaker("timeout", CompletableFuture::new).call();
+    }
+
+    private static CompletableFuture<ClientResponse> succeeded() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static CompletableFuture<ClientResponse> failed() {
+        return CompletableFuture.failedFuture(new RuntimeException("connection refused"));
+    }
+}
@@ -0,0 +1,218 @@
+package com.networknt.client.simplepool;
+
+import io.undertow.connector.ByteBufferPool;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.xnio.OptionMap;
+import org.xnio.XnioWorker;
+import org.xnio.ssl.XnioSsl;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ShardedURIConnectionPoolTest {
+    private static final URI uri = URI.create("https://localhost:8443");
+
+    @Test
+    public void testHttp11Reuse() {
+        MockConnectionMaker maker = new MockConnectionMaker(false);
+        ShardedURIConnectionPool pool = new ShardedURIConnectionPool(uri, 60000, 2, 1, maker);
+        try {
+            SimpleConnectionHolder.ConnectionToken token1 = pool.borrow(1000);
+            SimpleConnectionHolder.ConnectionToken token2 = pool.borrow(1000);
+            Assert.assertNotSame(token1.connection(), token2.connection());
+            try {
+                pool.borrow(1000);
+                Assert.fail("the pool size is 2");
+            } catch (RuntimeException e) {
+                // expected
+            }
+            pool.restore(token1);
+            SimpleConnectionHolder.ConnectionToken token3 = pool.borrow(1000);
+            Assert.assertSame(token1.connection(), token3.connection());
+            Assert.assertEquals(2, maker.created.get());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testHttp2Multiplexing() {
+        MockConnectionMaker maker = new MockConnectionMaker(true);
+        ShardedURIConnectionPool pool = new ShardedURIConnectionPool(uri, 60000, 10, 1, maker);
+        try {
+            for (int i = 0; i < 100; i++) {
+                pool.borrow(1000);
+            }
+            Assert.assertEquals(1, maker.created.get());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testExpiredAndClosedConnectionsAreReaped() throws Exception {
+        MockConnectionMaker maker = new MockConnectionMaker(false);
+        ShardedURIConnectionPool pool = new ShardedURIConnectionPool(uri, 50, 4, 1, maker);
+        try {
+            SimpleConnectionHolder.ConnectionToken borrowed = pool.borrow(1000);
+            SimpleConnectionHolder.ConnectionToken restored = pool.borrow(1000);
+            SimpleConnectionHolder.ConnectionToken closed = pool.borrow(1000);
+            pool.restore(restored);
+            closed.connection().safeClose();
+            Assert.assertEquals(3, pool.size());
+            Thread.sleep(300);
+            // only the borrowed connection is still tracked after it has expired.
+            Assert.assertEquals(1, pool.size());
+            Assert.assertTrue(borrowed.connection().isOpen());
+            Assert.assertFalse(restored.connection().isOpen());
+            pool.restore(borrowed);
+            Thread.sleep(300);
+            Assert.assertEquals(0, pool.size());
+            Assert.assertFalse(borrowed.connection().isOpen());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentBorrowAndRestore() throws Exception {
+        MockConnectionMaker maker = new MockConnectionMaker(false);
+        ShardedURIConnectionPool pool = new ShardedURIConnectionPool(uri, 60000, 64, 8, maker);
+        AtomicInteger inUse = new AtomicInteger();
+        Callable<Void> task = () -> {
+            for (int i = 0; i < 10000; i++) {
+                SimpleConnectionHolder.ConnectionToken token = pool.borrow(1000);
+                MockConnection connection = (MockConnection) token.connection();
+                // a HTTP/1.1 connection must never be shared by two threads.
+                Assert.assertEquals(1, connection.users.incrementAndGet());
+                inUse.incrementAndGet();
+                connection.users.decrementAndGet();
+                pool.restore(token);
+            }
+            return null;
+        };
+        ExecutorService executorService = Executors.newFixedThreadPool(16);
+        try {
+            for (Future<Void> future : executorService.invokeAll(Collections.nCopies(16, task))) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdown();
+            pool.close();
+        }
+        Assert.assertEquals(160000, inUse.get());
+        Assert.assertTrue(maker.created.get() <= 64);
+    }
+
+    /**
+     * Compare the throughput of the SimpleURIConnectionPool and the ShardedURIConnectionPool for HTTP/1.1 and HTTP/2
+     * connections with 1, 8 and 64 threads. It is ignored as it takes a while, and it should be run manually when
+     * the connection pools are changed.
+     */
+    @Ignore
+    @Test
+    public void testThroughput() throws Exception {
+        for (boolean http2 : new boolean[] {false, true}) {
+            for (int threads : new int[] {1, 8, 64}) {
+                SimpleURIConnectionPool simplePool = new SimpleURIConnectionPool(uri, 600000, 1000, new MockConnectionMaker(http2));
+                ShardedURIConnectionPool shardedPool = new ShardedURIConnectionPool(uri, 600000, 1000, Runtime.getRuntime().availableProcessors(), new MockConnectionMaker(http2));
+                System.out.println((http2 ? "HTTP/2" : "HTTP/1.1") + " threads = " + threads
+                        + " SimpleURIConnectionPool ops/s = " + throughput(simplePool, threads)
+                        + " ShardedURIConnectionPool ops/s = " + throughput(shardedPool, threads));
+                shardedPool.close();
+            }
+        }
+    }
+
+    private long throughput(URIConnectionPool pool, int threads) throws Exception {
+        int perThread = 1000000 / threads;
+        Callable<Void> task = () -> {
+            for (int i = 0; i < perThread; i++) {
+                pool.restore(pool.borrow(1000));
+            }
+            return null;
+        };
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        for (Future<Void> future : executorService.invokeAll(Collections.nCopies(threads, task))) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executorService.shutdown();
+        return (long) perThread * threads * TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    static class MockConnection implements SimpleConnection {
+        private final boolean http2;
+        private volatile boolean open = true;
+        final AtomicInteger users = new AtomicInteger();
+
+        MockConnection(boolean http2) {
+            this.http2 = http2;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public Object getRawConnection() {
+            return this;
+        }
+
+        @Override
+        public boolean isMultiplexingSupported() {
+            return http2;
+        }
+
+        @Override
+        public String getLocalAddress() {
+            return "localhost:" + hashCode();
+        }
+
+        @Override
+        public void safeClose() {
+            open = false;
+        }
+    }
+
+    static class MockConnectionMaker implements SimpleConnectionMaker {
+        private final boolean http2;
+        final AtomicInteger created = new AtomicInteger();
+
+        MockConnectionMaker(boolean http2) {
+            this.http2 = http2;
+        }
+
+        @Override
+        public SimpleConnection makeConnection(long createConnectionTimeout, boolean isHttp2, URI uri, Set<SimpleConnection> allCreatedConnections) {
+            return makeConnection(createConnectionTimeout, null, uri, null, null, null, null, allCreatedConnections);
+        }
+
+        @Override
+        public SimpleConnection makeConnection(long createConnectionTimeout, InetSocketAddress bindAddress, URI uri, XnioWorker worker, XnioSsl ssl, ByteBufferPool bufferPool, OptionMap options, Set<SimpleConnection> allCreatedConnections) {
+            SimpleConnection connection = new MockConnection(http2);
+            allCreatedConnections.add(connection);
+            created.incrementAndGet();
+            return connection;
+        }
+
+        @Override
+        public SimpleConnection reuseConnection(long createConnectionTimeout, SimpleConnection connection) {
+            if (!connection.isOpen())
+                throw new RuntimeException("Reused-connection has been unexpectedly closed");
+            return connection;
+        }
+    }
+}
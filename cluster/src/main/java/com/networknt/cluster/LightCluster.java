@@ -19,7 +19,6 @@ package com.networknt.cluster;
 import com.networknt.balance.LoadBalance;
 import com.networknt.registry.*;
 import com.networknt.service.SingletonServiceFactory;
-import com.networknt.utility.ConcurrentHashSet;
 import com.networknt.utility.Constants;
 import com.networknt.utility.StringUtils;
 import org.slf4j.Logger;
@@ -28,7 +27,12 @@ import org.slf4j.LoggerFactory;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * This is the only concrete implementation of cluster interface. It basically integrates
@@ -36,14 +40,44 @@ import java.util.stream.Collectors;
  * to convert a protocol, service id and request key to a url that can be addressed and
  * invoked.
  *
+ * The discovered urls are kept in an immutable snapshot per protocol, service id and tag
+ * along with the base url strings and URIs, so that a lookup is only a volatile read and a load
+ * balancer pick. The first lookup of a service subscribes to the registry and discovers it once.
+ * After that, the snapshot is only updated by the registry notifications and a background thread
+ * that discovers the snapshots again once they are older than one second, as not all registries
+ * notify the listeners. The registry is never called on the request threads after the first lookup.
+ *
  * Created by stevehu on 2017-01-27.
  */
 public class LightCluster implements Cluster {
     private static Logger logger = LoggerFactory.getLogger(LightCluster.class);
-    private static Registry registry = SingletonServiceFactory.getBean(Registry.class);
-    private static LoadBalance loadBalance = SingletonServiceFactory.getBean(LoadBalance.class);
+    static final long REFRESH_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+    // the daemon thread that discovers the stale snapshots of all the clusters.
+    private static final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "light-cluster-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Registry registry;
+    private final LoadBalance loadBalance;
+    private final Map<String, ServiceSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
 
     public LightCluster() {
+        this(SingletonServiceFactory.getBean(Registry.class), SingletonServiceFactory.getBean(LoadBalance.class));
+    }
+
+    /**
+     * Construct with the registry and the load balance. It is used by the SingletonServiceFactory
+     * when both are defined in the service.yml.
+     *
+     * @param registry the registry to discover the services
+     * @param loadBalance the load balance to select a url
+     */
+    public LightCluster(Registry registry, LoadBalance loadBalance) {
+        this.registry = registry;
+        this.loadBalance = loadBalance;
         if(logger.isInfoEnabled()) logger.info("A LightCluster instance is started");
     }
 
@@ -61,13 +95,13 @@ public class LightCluster implements Cluster {
             logger.debug("The serviceId cannot be blank");
             return null;
         }
-        URL url = loadBalance.select(discovery(protocol, serviceId, tag), serviceId, tag, requestKey);
+        Instances instances = discovery(protocol, serviceId, tag);
+        URL url = loadBalance.select(instances.urls, serviceId, tag, requestKey);
         if (url != null) {
-            logger.debug("Final url after load balance = {}.", url);
-            // construct a url in string
-            return protocol + "://" + url.getHost() + ":" + url.getPort();
+            if(logger.isDebugEnabled()) logger.debug("Final url after load balance = {}.", url);
+            return instances.getBaseUrl(url);
         } else {
-            logger.debug("The service: {} cannot be found from service discovery.", serviceId);
+            if(logger.isDebugEnabled()) logger.debug("The service: {} cannot be found from service discovery.", serviceId);
             return null;
         }
     }
@@ -85,29 +119,41 @@ public class LightCluster implements Cluster {
             logger.debug("The serviceId cannot be blank");
             return new ArrayList<>();
         }
+        return new ArrayList<>(discovery(protocol, serviceId, tag).uris);
+    }
 
-        // transform to a list of URIs
-        return discovery(protocol, serviceId, tag).stream()
-                .map(this::toUri)
-                .collect(Collectors.toList());
+    private Instances discovery(String protocol, String serviceId, String tag) {
+        String key = tag == null ? protocol + "://" + serviceId : protocol + "://" + serviceId + "|" + tag;
+        ServiceSnapshot snapshot = snapshots.get(key);
+        if(snapshot == null) {
+            // the snapshot is created and discovered outside of the map so that no lock is held during the discovery.
+            ServiceSnapshot created = new ServiceSnapshot(protocol, serviceId, tag);
+            snapshot = snapshots.putIfAbsent(key, created);
+            if(snapshot == null) {
+                snapshot = created;
+                created.start();
+                if(refreshScheduled.compareAndSet(false, true)) {
+                    refresher.scheduleWithFixedDelay(this::refreshStale, REFRESH_INTERVAL, REFRESH_INTERVAL, TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+        return snapshot.awaitInstances();
     }
 
-    private List<URL> discovery(String protocol, String serviceId, String tag) {
-        if(logger.isDebugEnabled()) logger.debug("protocol = " + protocol + " serviceId = " + serviceId + " tag = " + tag);
-        URL subscribeUrl = URLImpl.valueOf(protocol + "://localhost/" + serviceId);
-        if(tag != null) {
-            subscribeUrl.addParameter(Constants.TAG_ENVIRONMENT, tag);
+    /**
+     * Discover the snapshots that are not updated by a notification or a discovery within the refresh interval.
+     */
+    void refreshStale() {
+        for(ServiceSnapshot snapshot : snapshots.values()) {
+            try {
+                snapshot.refreshIfStale();
+            } catch (Throwable e) {
+                logger.error("Failed to discover " + snapshot.subscribeUrl, e);
+            }
         }
-        if(logger.isDebugEnabled()) logger.debug("subscribeUrl = " + subscribeUrl);
-        // subscribe is async and the result won't come back immediately.
-        registry.subscribe(subscribeUrl, null);
-        // do a lookup for the quick response from either cache or registry service.
-        List<URL> urls = registry.discover(subscribeUrl);
-        if(logger.isDebugEnabled()) logger.debug("discovered urls = " + urls);
-        return urls;
     }
 
-    private URI toUri(URL url) {
+    private static URI toUri(URL url) {
         URI uri = null;
         try {
             uri = new URI(url.getProtocol(), null, url.getHost(), url.getPort(), null, null, null);
@@ -116,4 +162,103 @@ public class LightCluster implements Cluster {
         }
         return uri;
     }
+
+    /**
+     * The immutable result of a discovery. The base urls are looked up by identity as the load
+     * balancers pick one of the urls in the list.
+     */
+    private static final class Instances {
+        static final Instances EMPTY = new Instances(null, Collections.emptyList());
+
+        final String protocol;
+        final List<URL> urls;
+        final List<URI> uris;
+        final Map<URL, String> baseUrls = new IdentityHashMap<>();
+
+        Instances(String protocol, List<URL> discovered) {
+            this.protocol = protocol;
+            this.urls = Collections.unmodifiableList(new ArrayList<>(discovered));
+            List<URI> uriList = new ArrayList<>(urls.size());
+            for(URL url : urls) {
+                uriList.add(toUri(url));
+                // the protocol of the lookup is used as the discovered url might have a different one.
+                baseUrls.put(url, protocol + "://" + url.getHost() + ":" + url.getPort());
+            }
+            this.uris = Collections.unmodifiableList(uriList);
+        }
+
+        String getBaseUrl(URL url) {
+            String baseUrl = baseUrls.get(url);
+            return baseUrl != null ? baseUrl : protocol + "://" + url.getHost() + ":" + url.getPort();
+        }
+    }
+
+    /**
+     * The discovered instances of a protocol, service id and tag that is kept up to date by the
+     * registry notifications and the background discovery once the instances are stale.
+     */
+    private final class ServiceSnapshot implements NotifyListener {
+        private final String protocol;
+        private final URL subscribeUrl;
+        // released once the first discovery is done so that the concurrent first lookups wait for it.
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile long refreshedAt;
+        volatile Instances instances = Instances.EMPTY;
+
+        ServiceSnapshot(String protocol, String serviceId, String tag) {
+            if(logger.isDebugEnabled()) logger.debug("protocol = " + protocol + " serviceId = " + serviceId + " tag = " + tag);
+            this.protocol = protocol;
+            URL url = URLImpl.valueOf(protocol + "://localhost/" + serviceId);
+            if(tag != null) {
+                url.addParameter(Constants.TAG_ENVIRONMENT, tag);
+            }
+            if(logger.isDebugEnabled()) logger.debug("subscribeUrl = " + url);
+            this.subscribeUrl = url;
+        }
+
+        void start() {
+            try {
+                // subscribe is async and the result won't come back immediately.
+                registry.subscribe(subscribeUrl, this);
+                // do a lookup for the quick response from either cache or registry service.
+                refresh();
+            } finally {
+                started.countDown();
+            }
+        }
+
+        Instances awaitInstances() {
+            if(started.getCount() > 0) {
+                try {
+                    started.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return instances;
+        }
+
+        @Override
+        public void notify(URL registryUrl, List<URL> urls) {
+            if(logger.isDebugEnabled()) logger.debug("notified urls = " + urls + " for subscribeUrl = " + subscribeUrl);
+            update(urls);
+        }
+
+        void refreshIfStale() {
+            if(started.getCount() == 0 && System.nanoTime() - refreshedAt >= REFRESH_INTERVAL) {
+                refresh();
+            }
+        }
+
+        private void refresh() {
+            List<URL> urls = registry.discover(subscribeUrl);
+            if(logger.isDebugEnabled()) logger.debug("discovered urls = " + urls);
+            update(urls);
+        }
+
+        private void update(List<URL> urls) {
+            instances = urls == null || urls.isEmpty() ? Instances.EMPTY : new Instances(protocol, urls);
+            refreshedAt = System.nanoTime();
+        }
+    }
 }
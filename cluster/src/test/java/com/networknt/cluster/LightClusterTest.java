@@ -16,12 +16,21 @@
 
 package com.networknt.cluster;
 
+import com.networknt.balance.RoundRobinLoadBalance;
+import com.networknt.registry.NotifyListener;
+import com.networknt.registry.Registry;
+import com.networknt.registry.URL;
+import com.networknt.registry.URLImpl;
 import com.networknt.service.SingletonServiceFactory;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by stevehu on 2017-01-27.
@@ -62,4 +71,90 @@ public class LightClusterTest {
         List<URI> l = cluster.services("http", "com.networknt.apib-1.0.0", null);
         Assert.assertEquals(2, l.size());
     }
+
+    @Test
+    public void testServicesSnapshotIsNotShared() {
+        List<URI> l = cluster.services("http", "com.networknt.apib-1.0.0", null);
+        l.clear();
+        Assert.assertEquals(2, cluster.services("http", "com.networknt.apib-1.0.0", null).size());
+        Assert.assertTrue(cluster.services("http", "com.networknt.unknown-1.0.0", null).isEmpty());
+        Assert.assertNull(cluster.serviceToUrl("http", "com.networknt.unknown-1.0.0", null, null));
+    }
+
+    @Test
+    public void testRegistryNotCalledOnLookup() throws Exception {
+        CountingRegistry registry = new CountingRegistry();
+        registry.urls = List.of(URLImpl.valueOf("http://localhost:8080/com.networknt.counting-1.0.0"));
+        LightCluster lightCluster = new LightCluster(registry, new RoundRobinLoadBalance());
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals("http://localhost:8080", lightCluster.serviceToUrl("http", "com.networknt.counting-1.0.0", null, null));
+        }
+        // the service is only discovered by the first lookup.
+        Assert.assertEquals(1, registry.discovered.get());
+        Assert.assertEquals(1, registry.discoveredByCaller.get());
+
+        // the notification updates the snapshot.
+        registry.listener.notify(null, List.of(URLImpl.valueOf("http://localhost:8081/com.networknt.counting-1.0.0")));
+        Assert.assertEquals("http://localhost:8081", lightCluster.serviceToUrl("http", "com.networknt.counting-1.0.0", null, null));
+
+        // the background thread discovers the stale snapshot.
+        registry.urls = List.of(URLImpl.valueOf("http://localhost:8082/com.networknt.counting-1.0.0"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!"http://localhost:8082".equals(lightCluster.serviceToUrl("http", "com.networknt.counting-1.0.0", null, null))
+                && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        Assert.assertEquals("http://localhost:8082", lightCluster.serviceToUrl("http", "com.networknt.counting-1.0.0", null, null));
+        Assert.assertEquals(1, registry.discoveredByCaller.get());
+    }
+
+    static class CountingRegistry implements Registry {
+        final Thread caller = Thread.currentThread();
+        final AtomicInteger discovered = new AtomicInteger();
+        final AtomicInteger discoveredByCaller = new AtomicInteger();
+        volatile List<URL> urls = Collections.emptyList();
+        volatile NotifyListener listener;
+
+        @Override
+        public List<URL> discover(URL url) {
+            discovered.incrementAndGet();
+            if (Thread.currentThread() == caller) discoveredByCaller.incrementAndGet();
+            return urls;
+        }
+
+        @Override
+        public void subscribe(URL url, NotifyListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void unsubscribe(URL url, NotifyListener listener) {
+        }
+
+        @Override
+        public void register(URL url) {
+        }
+
+        @Override
+        public void unregister(URL url) {
+        }
+
+        @Override
+        public void available(URL url) {
+        }
+
+        @Override
+        public void unavailable(URL url) {
+        }
+
+        @Override
+        public Collection<URL> getRegisteredServiceUrls() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public URL getUrl() {
+            return null;
+        }
+    }
 }
@@ -3,6 +3,7 @@ package com.networknt.config.reload.handler;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.networknt.body.BodyHandler;
 import com.networknt.config.Config;
+import com.networknt.config.ConfigInjection;
 import com.networknt.config.reload.model.ConfigReloadConfig;
 import com.networknt.handler.LightHttpHandler;
 import com.networknt.httpstring.AttachmentConstants;
@@ -51,23 +52,9 @@ public class ConfigReloadHandler implements LightHttpHandler {
         List<String> reloads =  new ArrayList<>();
         if (config.isEnabled()) {
             reLoadConfigs();
-            if (modules==null || modules.isEmpty() || modules.contains(MODULE_DEFAULT)) {
-                if (modules==null) modules = new ArrayList<>();
-                if (!modules.isEmpty()) modules.clear();
-
-                Map<String, Object> modulesRegistry =  ModuleRegistry.getRegistry();
-                for (Map.Entry<String, Object> entry: modulesRegistry.entrySet()) {
-                    modules.add(entry.getKey());
-                }
-            }
-
-            for (String module: modules) {
-                try {
-                    Class handler = Class.forName(module);
-                    if (processReloadMethod(handler)) reloads.add(handler.getName());
-                } catch (ClassNotFoundException e) {
-                    throw new RuntimeException("Handler class: " + module + " has not been found");
-                }
+            // the values.yml is read once for all the modules that are reloaded.
+            try (ConfigInjection.ResolutionContext ignored = ConfigInjection.openResolutionContext()) {
+                reloadModules(modules, reloads);
             }
             exchange.getResponseHeaders().add(new HttpString("Content-Type"), "application/json");
             exchange.setStatusCode(HttpStatus.OK.value());
@@ -78,6 +65,27 @@ public class ConfigReloadHandler implements LightHttpHandler {
         }
     }
 
+    private void reloadModules(List<String> modules, List<String> reloads) {
+        if (modules==null || modules.isEmpty() || modules.contains(MODULE_DEFAULT)) {
+            if (modules==null) modules = new ArrayList<>();
+            if (!modules.isEmpty()) modules.clear();
+
+            Map<String, Object> modulesRegistry =  ModuleRegistry.getRegistry();
+            for (Map.Entry<String, Object> entry: modulesRegistry.entrySet()) {
+                modules.add(entry.getKey());
+            }
+        }
+
+        for (String module: modules) {
+            try {
+                Class handler = Class.forName(module);
+                if (processReloadMethod(handler)) reloads.add(handler.getName());
+            } catch (ClassNotFoundException e) {
+                throw new RuntimeException("Handler class: " + module + " has not been found");
+            }
+        }
+    }
+
     private boolean processReloadMethod(Class<?> handler) {
         try {
             Method reload = handler.getDeclaredMethod(RELOAD_METHOD);
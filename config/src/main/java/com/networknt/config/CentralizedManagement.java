@@ -37,11 +37,15 @@ import java.util.Map;
 public class CentralizedManagement {
     // Merge map config with values generated by ConfigInjection.class and return map
     public static void mergeMap(Map<String, Object> config) {
-        merge(config);
+        try (ConfigInjection.ResolutionContext ignored = ConfigInjection.openResolutionContext()) {
+            merge(config);
+        }
     }
     // Merge map config with values generated by ConfigInjection.class and return mapping object
     public static Object mergeObject(Object config, Class clazz) {
-        merge(config);
+        try (ConfigInjection.ResolutionContext ignored = ConfigInjection.openResolutionContext()) {
+            merge(config);
+        }
         return convertMapToObj((Map<String, Object>) config, clazz);
     }
     // Search the config map recursively, expand List and Map level by level util no further expand
@@ -103,7 +107,7 @@ public class CentralizedManagement {
     }
 
     // Method used to convert map to object based on the reference class provided
-    private static Object convertMapToObj(Map<String, Object> map, Class clazz) {
+    static Object convertMapToObj(Map<String, Object> map, Class clazz) {
         ObjectMapper mapper = new ObjectMapper();
         Object obj = mapper.convertValue(map, clazz);
         return obj;
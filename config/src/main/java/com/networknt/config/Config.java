@@ -44,6 +44,7 @@ import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.networknt.config.yml.DecryptConstructor;
 import com.networknt.config.yml.YmlConstants;
+import com.networknt.decrypt.Decryptor;
 
 import static com.networknt.config.ConfigInjection.CENTRALIZED_MANAGEMENT;
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -116,6 +117,28 @@ public abstract class Config {
 
     public abstract String getDecryptorClassPublic();
 
+    /**
+     * Load a config file ahead of its first use so that the config files can be parsed in parallel at the server
+     * startup. The file is parsed, injected and decrypted, and it is kept until the config is loaded as a map or an
+     * object for the first time. Then the config is loaded from the preloaded map instead of the file.
+     *
+     * @param configName The name of the config file, without an extension
+     * @return true if the config file is preloaded, false if it is not found, already loaded or cannot be preloaded.
+     */
+    public boolean preloadConfig(String configName) {
+        return false;
+    }
+
+    /**
+     * Drop the preloaded config files that have not been loaded. It is called once the server is started so that
+     * the config files of the modules that are not used are not kept.
+     *
+     * @return the number of the preloaded config files that are dropped
+     */
+    public int clearPreloadedConfig() {
+        return 0;
+    }
+
     private static final class FileConfigImpl extends Config {
     	static final String CONFIG_NAME = "config";
         static final String CONFIG_EXT_JSON = ".json";
@@ -140,6 +163,12 @@ public abstract class Config {
         // Memory cache of all the configuration object. Each config will be loaded on the first time it is accessed.
         final Map<String, Object> configCache = new ConcurrentHashMap<>(10, 0.9f, 1);
 
+        // The config files that are parsed by preloadConfig. Each one is removed when the config is loaded.
+        final Map<String, Map<String, Object>> preloadCache = new ConcurrentHashMap<>();
+
+        // The lock of each config file so that different files can be loaded at the same time.
+        private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
         // An instance of Jackson ObjectMapper that can be used anywhere else for Json.
         final static ObjectMapper mapper = new ObjectMapper();
 
@@ -149,21 +178,43 @@ public abstract class Config {
             mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
         }
         
-        final Yaml yaml;
+        // A Yaml instance is not thread safe, so each thread that loads config files has its own.
+        final ThreadLocal<Yaml> yaml;
+
+        // The decryptor is thread safe and shared by the Yaml instances of all the threads so that the password
+        // and the derived keys are only resolved once.
+        private final String decryptorClass;
+        private volatile Decryptor decryptor;
 
         FileConfigImpl(){
         	super();
-      	    String decryptorClass = getDecryptorClass();
+      	    decryptorClass = getDecryptorClass();
        	    configLoaderClass = getConfigLoaderClass();
-            synchronized (FileConfigImpl.class) {
-                if (null == decryptorClass || decryptorClass.trim().isEmpty()) {
-                    yaml = new Yaml();
-                } else {
-                    final Resolver resolver = new Resolver();
-                    resolver.addImplicitResolver(YmlConstants.CRYPT_TAG, YmlConstants.CRYPT_PATTERN, YmlConstants.CRYPT_FIRST);
-                    yaml = new Yaml(DecryptConstructor.getInstance(decryptorClass), new Representer(new DumperOptions()), new DumperOptions(), resolver);
+            yaml = ThreadLocal.withInitial(this::createYaml);
+        }
+
+        private Yaml createYaml() {
+            if (null == decryptorClass || decryptorClass.trim().isEmpty()) {
+                return new Yaml();
+            } else {
+                final Resolver resolver = new Resolver();
+                resolver.addImplicitResolver(YmlConstants.CRYPT_TAG, YmlConstants.CRYPT_PATTERN, YmlConstants.CRYPT_FIRST);
+                return new Yaml(DecryptConstructor.getInstance(getDecryptor()), new Representer(new DumperOptions()), new DumperOptions(), resolver);
+            }
+        }
+
+        private Decryptor getDecryptor() {
+            Decryptor result = decryptor;
+            if (result == null) {
+                synchronized (this) {
+                    result = decryptor;
+                    if (result == null) {
+                        result = DecryptConstructor.createDecryptor(decryptorClass);
+                        decryptor = result;
+                    }
                 }
             }
+            return result;
         }
 
         private static Config initialize() {
@@ -180,12 +231,17 @@ public abstract class Config {
 
         @Override
         public Yaml getYaml() {
-            return yaml;
+            return yaml.get();
         }
 
         @Override
         public void clear() {
             configCache.clear();
+            preloadCache.clear();
+        }
+
+        private Object getLock(String configName) {
+            return locks.computeIfAbsent(configName, k -> new Object());
         }
 
         @Override
@@ -208,7 +264,7 @@ public abstract class Config {
         public String getStringFromFile(String filename, String path) {
             String content = (String) configCache.get(filename);
             if (content == null) {
-                synchronized (FileConfigImpl.class) {
+                synchronized (getLock(filename)) {
                     content = (String) configCache.get(filename);
                     if (content == null) {
                         content = loadStringFromFile(filename, path);
@@ -241,7 +297,7 @@ public abstract class Config {
         public Object getJsonObjectConfig(String configName, Class clazz, String path) {
             Object config = configCache.get(configName);
             if (config == null) {
-                synchronized (FileConfigImpl.class) {
+                synchronized (getLock(configName)) {
                     config = configCache.get(configName);
                     if (config == null) {
                         config = loadJsonObjectConfigWithSpecificConfigLoader(configName, clazz, path);
@@ -263,7 +319,7 @@ public abstract class Config {
         public Object getDefaultJsonObjectConfig(String configName, Class clazz, String path) {
             Object config = configCache.get(configName);
             if (config == null) {
-                synchronized (FileConfigImpl.class) {
+                synchronized (getLock(configName)) {
                     config = configCache.get(configName);
                     if (config == null) {
                         config = loadObjectConfig(configName, clazz, path);
@@ -320,7 +376,7 @@ public abstract class Config {
         public Map<String, Object> getJsonMapConfig(String configName, String path) {
             Map<String, Object> config = (Map<String, Object>) configCache.get(configName);
             if (config == null) {
-                synchronized (FileConfigImpl.class) {
+                synchronized (getLock(configName)) {
                     config = (Map<String, Object>) configCache.get(configName);
                     if (config == null) {
                         config = loadJsonMapConfigWithSpecificConfigLoader(configName, path);
@@ -341,7 +397,7 @@ public abstract class Config {
         public Map<String, Object> getDefaultJsonMapConfig(String configName, String path) {
             Map<String, Object> config = (Map<String, Object>) configCache.get(configName);
             if (config == null) {
-                synchronized (FileConfigImpl.class) {
+                synchronized (getLock(configName)) {
                     config = (Map<String, Object>) configCache.get(configName);
                     if (config == null) {
                         config = loadMapConfig(configName, path);
@@ -455,10 +511,10 @@ public abstract class Config {
                 if (inStream != null) {
                     // The config file specified in the config.yml shouldn't be injected
                     if (ConfigInjection.isExclusionConfigFile(configName)) {
-                        config = yaml.loadAs(inStream, clazz);
+                        config = getYaml().loadAs(inStream, clazz);
                     } else {
                         // Parse into map first, since map is easier to be manipulated in merging process
-                        Map<String, Object> configMap = yaml.load(inStream);
+                        Map<String, Object> configMap = getYaml().load(inStream);
                         config = CentralizedManagement.mergeObject(configMap, clazz);
                     }
                 }
@@ -470,6 +526,9 @@ public abstract class Config {
         }
 
         private <T> Object loadObjectConfig(String configName, Class<T> clazz, String path) {
+            Map<String, Object> preloaded = removePreloaded(configName, path);
+            // the preloaded config is already injected.
+            if (preloaded != null) return CentralizedManagement.convertMapToObj(preloaded, clazz);
             Object config;
             for (String extension : configExtensionsOrdered) {
                 config = loadSpecificConfigFileAsObject(configName, extension, clazz, path);
@@ -490,7 +549,7 @@ public abstract class Config {
             String ymlFilename = configName + fileExtension;
             try (InputStream inStream = getConfigStream(ymlFilename, path)) {
                 if (inStream != null) {
-                    config = yaml.load(inStream);
+                    config = getYaml().load(inStream);
                     if (!ConfigInjection.isExclusionConfigFile(configName)) {
                         CentralizedManagement.mergeMap(config); // mutates the config map in place.
                     }
@@ -504,6 +563,12 @@ public abstract class Config {
         
         
         private Map<String, Object> loadMapConfig(String configName, String path) {
+            Map<String, Object> preloaded = removePreloaded(configName, path);
+            if (preloaded != null) return preloaded;
+            return parseMapConfig(configName, path);
+        }
+
+        private Map<String, Object> parseMapConfig(String configName, String path) {
             Map<String, Object> config;
             for (String extension : configExtensionsOrdered) {
                 config = loadSpecificConfigFileAsMap(configName, extension, path);
@@ -512,6 +577,33 @@ public abstract class Config {
             return null;
         }
 
+        private Map<String, Object> removePreloaded(String configName, String path) {
+            // only the config files in the default path are preloaded.
+            if (preloadCache.isEmpty() || (path != null && !path.isEmpty())) return null;
+            return preloadCache.remove(configName);
+        }
+
+        @Override
+        public int clearPreloadedConfig() {
+            int size = preloadCache.size();
+            preloadCache.clear();
+            return size;
+        }
+
+        @Override
+        public boolean preloadConfig(String configName) {
+            // a specific config loader might not load the config from the file, and the config files
+            // that are excluded from the injection are loaded as objects directly.
+            if (configLoaderClass != null || ConfigInjection.isExclusionConfigFile(configName)) return false;
+            synchronized (getLock(configName)) {
+                if (configCache.containsKey(configName) || preloadCache.containsKey(configName)) return false;
+                Map<String, Object> config = parseMapConfig(configName, "");
+                if (config == null) return false;
+                preloadCache.put(configName, config);
+                return true;
+            }
+        }
+
         private InputStream getConfigStream(String configFilename, String path) {
 
             InputStream inStream = null;
@@ -649,12 +741,17 @@ public abstract class Config {
             return config;
         }
 
-        private Map<String, Object> loadJsonMapConfigWithSpecificConfigLoader(String configName, String path) {
-            Map<String, Object> config = null;
+        private synchronized ConfigLoader getConfigLoader() {
             // Initialize config loader
             if (configLoaderClass != null && this.configLoader == null) {
                 this.configLoader = ConfigLoaderConstructor.getInstance(configLoaderClass).getConfigLoader();
             }
+            return configLoader;
+        }
+
+        private Map<String, Object> loadJsonMapConfigWithSpecificConfigLoader(String configName, String path) {
+            Map<String, Object> config = null;
+            ConfigLoader configLoader = getConfigLoader();
             if (configLoader != null) {
                 logger.trace("Trying to load {} with extension yaml, yml or json by using ConfigLoader: {}.", configName, configLoader.getClass().getName());
                 if (path == null || path.equals("")) {
@@ -673,11 +770,8 @@ public abstract class Config {
 
         private Object loadJsonObjectConfigWithSpecificConfigLoader(String configName, Class clazz, String path) {
             Object config = null;
-            // Initialize config loader
-            if (configLoaderClass != null && this.configLoader == null) {
-                this.configLoader = ConfigLoaderConstructor.getInstance(configLoaderClass).getConfigLoader();
-            }
-            if (this.configLoader != null) {
+            ConfigLoader configLoader = getConfigLoader();
+            if (configLoader != null) {
                 logger.trace("Trying to load {} with extension yaml, yml or json by using ConfigLoader: {}.", configName, configLoader.getClass().getName());
                 if (path == null || path.equals("")) {
                     config = configLoader.loadObjectConfig(configName, clazz);
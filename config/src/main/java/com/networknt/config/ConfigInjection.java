@@ -22,6 +22,7 @@ import com.networknt.decrypt.Decryptor;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -39,6 +40,11 @@ import java.util.regex.Pattern;
  * This parameter can be set through setting system property "injection_order" in
  * commend line
  * <p>
+ * The values.yml and the environment variables are read once for all the placeholders that are resolved in a
+ * {@link ResolutionContext}. The config loading of a file opens one, and the server startup and the config reload
+ * open one for all the files that are loaded in the cycle. A placeholder that is resolved outside a context reads
+ * values.yml again so that the changes are picked up by the config reload.
+ * <p>
  * Created by jiachen on 2019-01-08.
  */
 public class ConfigInjection {
@@ -62,6 +68,12 @@ public class ConfigInjection {
     private static String[] falseArray = {"n", "N", "no", "No", "NO", "false", "False", "FALSE", "off", "Off", "OFF"};
     private static Decryptor decryptor = DecryptConstructor.getInstance().getDecryptor();
 
+    // The parsed contents of the placeholders. A content that is not a valid pattern is mapped to NO_PATTERN.
+    private static final Map<String, InjectionPattern> injectionPatterns = new ConcurrentHashMap<>();
+    private static final InjectionPattern NO_PATTERN = new InjectionPattern();
+    // The values of the current load or reload cycle. They are shared by all threads that load the config files.
+    private static volatile ResolutionValues values;
+
     // Method used to generate the values from environment variables or "values.yaml"
     public static Object getInjectValue(String string) {
         Matcher m = pattern.matcher(string);
@@ -117,18 +129,44 @@ public class ConfigInjection {
     }
 
 
+    /**
+     * Open the resolution context of a load or reload cycle. The values.yml and the environment variables are read
+     * when the first context is opened, and the nested contexts share them until the outermost one is closed.
+     *
+     * @return ResolutionContext a new handle of the context that must be closed at the end of the cycle
+     */
+    public static ResolutionContext openResolutionContext() {
+        synchronized (ConfigInjection.class) {
+            if (values == null) {
+                // change to no cache method to support config-reload.
+                values = new ResolutionValues(Config.getInstance().getDefaultJsonMapConfigNoCache(CENTRALIZED_MANAGEMENT), System.getenv());
+            }
+            values.depth++;
+            return new ResolutionContext(values);
+        }
+    }
+
     // Method used to parse the content inside pattern "${}"
     private static Object getValue(String content) {
         InjectionPattern injectionPattern = getInjectionPattern(content);
         Object value = null;
         if (injectionPattern != null) {
+            ResolutionValues current = values;
+            Map<String, Object> valueMap;
+            Map<String, String> env;
+            if (current != null) {
+                valueMap = current.valueMap;
+                env = current.env;
+            } else {
+                // change to no cache method to support config-reload.
+                valueMap = Config.getInstance().getDefaultJsonMapConfigNoCache(CENTRALIZED_MANAGEMENT);
+                env = System.getenv();
+            }
             // Flag to validate whether the environment or values.yml contains the corresponding field
             Boolean containsField = false;
             // Use key of injectionPattern to get value from both environment variables and "values.yaml"
-            String envValString = System.getenv(convertEnvVars(injectionPattern.getKey()));
+            String envValString = env.get(injectionPattern.getEnvKey());
             Object envValue = decryptEnvValue(decryptor, envValString);
-            // change to no cache method to support config-reload.
-            Map<String, Object> valueMap = Config.getInstance().getDefaultJsonMapConfigNoCache(CENTRALIZED_MANAGEMENT);
             Object fileValue = (valueMap != null) ? valueMap.get(injectionPattern.getKey()) : null;
             // Return different value from different sources based on injection order defined before
             if ((INJECTION_ORDER_CODE.equals("2") && envValue != null) || (INJECTION_ORDER_CODE.equals("1") && fileValue == null)) {
@@ -138,7 +176,7 @@ public class ConfigInjection {
             }
             // Skip none validation to inject null or empty string directly when the corresponding field is presented in value.yml or environment
             if ((valueMap != null && valueMap.containsKey(injectionPattern.getKey())) ||
-                    (System.getenv() != null && System.getenv().containsKey(injectionPattern.getKey()))) {
+                    env.containsKey(injectionPattern.getKey())) {
                 containsField = true;
             }
             // Return default value when no matched value found from environment variables and "values.yaml"
@@ -160,9 +198,20 @@ public class ConfigInjection {
         return value;
     }
 
-    // Get instance of InjectionPattern based on the contents inside pattern "${}"
+    // Get instance of InjectionPattern based on the contents inside pattern "${}". It is parsed once for each content.
     private static InjectionPattern getInjectionPattern(String contents) {
-        if (contents == null || contents.trim().equals("")) {
+        if (contents == null) {
+            return null;
+        }
+        InjectionPattern injectionPattern = injectionPatterns.computeIfAbsent(contents, c -> {
+            InjectionPattern parsed = parseInjectionPattern(c);
+            return parsed == null ? NO_PATTERN : parsed;
+        });
+        return injectionPattern == NO_PATTERN ? null : injectionPattern;
+    }
+
+    private static InjectionPattern parseInjectionPattern(String contents) {
+        if (contents.trim().equals("")) {
             return null;
         }
         InjectionPattern injectionPattern = new InjectionPattern();
@@ -175,6 +224,7 @@ public class ConfigInjection {
         }
         // Set key of the injectionPattern
         injectionPattern.setKey(array[0]);
+        injectionPattern.setEnvKey(convertEnvVars(array[0]));
         if (array.length == 2) {
             // Adding space after colon is enabled, so trim is needed
             array[1] = array[1].trim();
@@ -204,6 +254,7 @@ public class ConfigInjection {
      */
     private static class InjectionPattern {
         private String key;
+        private String envKey;
         private String defaultValue;
         private String errorText;
 
@@ -230,6 +281,57 @@ public class ConfigInjection {
         public void setKey(String key) {
             this.key = key;
         }
+
+        public String getEnvKey() {
+            return envKey;
+        }
+
+        public void setEnvKey(String envKey) {
+            this.envKey = envKey;
+        }
+    }
+
+    /**
+     * A handle of the resolution context of a load or reload cycle. Each open returns its own handle, and the
+     * cycle ends when all the handles are closed so that the next cycle reads the values.yml again. Closing a
+     * handle more than once has no effect.
+     */
+    public static final class ResolutionContext implements AutoCloseable {
+        final ResolutionValues values;
+        // guarded by the ConfigInjection class.
+        private boolean closed;
+
+        private ResolutionContext(ResolutionValues values) {
+            this.values = values;
+        }
+
+        @Override
+        public void close() {
+            synchronized (ConfigInjection.class) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (--values.depth == 0 && ConfigInjection.values == values) {
+                    ConfigInjection.values = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * The values.yml and the environment variables that are shared by the open handles of a cycle.
+     */
+    static final class ResolutionValues {
+        private final Map<String, Object> valueMap;
+        private final Map<String, String> env;
+        // the number of the open handles, guarded by the ConfigInjection class.
+        private int depth;
+
+        private ResolutionValues(Map<String, Object> valueMap, Map<String, String> env) {
+            this.valueMap = valueMap;
+            this.env = env;
+        }
     }
 
     // Method used to cast string into int, double or boolean
@@ -6,13 +6,26 @@ import org.slf4j.LoggerFactory;
 import org.yaml.snakeyaml.LoaderOptions;
 import org.yaml.snakeyaml.constructor.AbstractConstruct;
 import org.yaml.snakeyaml.constructor.Constructor;
+import org.yaml.snakeyaml.nodes.MappingNode;
 import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeTuple;
 import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.SequenceNode;
 
 import com.networknt.decrypt.Decryptor;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Decrypts values in configuration yml files.
+ *
+ * All the encrypted values of a document are collected from the node tree and decrypted with one
+ * Decryptor.decryptAll call before the document is constructed so that the decryptor can decrypt
+ * them in parallel instead of one by one when each value is constructed.
  * 
  * @author Daniel Zhao
  *
@@ -21,6 +34,8 @@ public class DecryptConstructor extends Constructor {
 	private static final Logger logger = LoggerFactory.getLogger(DecryptConstructor.class);
 	
 	private final Decryptor decryptor;
+	// the decrypted values of the document that is being constructed by the encrypted values.
+	private Map<String, Object> decrypted;
 	
 	public static final String CONFIG_ITEM_DECRYPTOR_CLASS = "decryptorClass";
 	public static final String DEFAULT_DECRYPTOR_CLASS = AutoAESSaltDecryptor.class.getCanonicalName();
@@ -30,10 +45,14 @@ public class DecryptConstructor extends Constructor {
 	}
 	
 	private DecryptConstructor(String decryptorClass) {
+		this(createDecryptor(decryptorClass));
+	}
+
+	private DecryptConstructor(Decryptor decryptor) {
 		super(new LoaderOptions());
-		
-		decryptor= createDecryptor(decryptorClass);
-		
+
+		this.decryptor = decryptor;
+
 		this.yamlConstructors.put(YmlConstants.CRYPT_TAG, new ConstructYamlDecryptedStr());
 	}
 
@@ -45,12 +64,18 @@ public class DecryptConstructor extends Constructor {
 		return new DecryptConstructor(decryptorClass);
 	}
 
-	private Decryptor createDecryptor(String decryptorClass) {
-		// do not create a new decryptor if it is already created.
-		if(decryptor != null) {
-			return decryptor;
-		}
+	/**
+	 * Create a constructor with a decryptor that is shared by all the constructors, so that the keys that are
+	 * derived and the password are not resolved again by each one.
+	 *
+	 * @param decryptor the shared decryptor
+	 * @return DecryptConstructor
+	 */
+	public static DecryptConstructor getInstance(Decryptor decryptor) {
+		return new DecryptConstructor(decryptor);
+	}
 
+	public static Decryptor createDecryptor(String decryptorClass) {
 		if (logger.isTraceEnabled()) {
 			logger.trace("creating decryptor {}", decryptorClass);
 		}
@@ -75,6 +100,54 @@ public class DecryptConstructor extends Constructor {
 		return decryptor;
 	}
 
+	@Override
+	protected Object constructObject(Node node) {
+		// the values are only decrypted for the root node of a document.
+		if(decrypted != null) {
+			return super.constructObject(node);
+		}
+		decrypted = decryptAll(node);
+		try {
+			return super.constructObject(node);
+		} finally {
+			decrypted = null;
+		}
+	}
+
+	private Map<String, Object> decryptAll(Node root) {
+		Map<String, String> encrypted = new LinkedHashMap<>();
+		collectEncrypted(root, encrypted, Collections.newSetFromMap(new IdentityHashMap<>()));
+		if(encrypted.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		if (logger.isTraceEnabled()) {
+			logger.trace("decrypting {} values", encrypted.size());
+		}
+		return decryptor.decryptAll(encrypted);
+	}
+
+	private static void collectEncrypted(Node node, Map<String, String> encrypted, Set<Node> visited) {
+		// an alias refers to the same node, and it can be recursive.
+		if(node == null || !visited.add(node)) {
+			return;
+		}
+		if(node instanceof ScalarNode) {
+			if(YmlConstants.CRYPT_TAG.equals(node.getTag())) {
+				String value = ((ScalarNode) node).getValue();
+				encrypted.put(value, value);
+			}
+		} else if(node instanceof SequenceNode) {
+			for(Node item : ((SequenceNode) node).getValue()) {
+				collectEncrypted(item, encrypted, visited);
+			}
+		} else if(node instanceof MappingNode) {
+			for(NodeTuple tuple : ((MappingNode) node).getValue()) {
+				collectEncrypted(tuple.getKeyNode(), encrypted, visited);
+				collectEncrypted(tuple.getValueNode(), encrypted, visited);
+			}
+		}
+	}
+
 	public class ConstructYamlDecryptedStr extends AbstractConstruct {
         @Override
         public Object construct(Node node) {
@@ -82,7 +155,8 @@ public class DecryptConstructor extends Constructor {
         }
 
 		private Object constructDecryptedScalar(ScalarNode node) {
-			return decryptor.decrypt(node.getValue());
+			Object value = decrypted == null ? null : decrypted.get(node.getValue());
+			return value != null ? value : decryptor.decrypt(node.getValue());
 		}
     }
 }
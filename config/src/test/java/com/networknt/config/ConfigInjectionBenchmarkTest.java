@@ -0,0 +1,104 @@
+package com.networknt.config;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The startup of a gateway with a synthetic config tree of 50 files and 2,000 placeholders. The placeholders are
+ * resolved one by one as before, and then with the config files merged in one resolution context as the server
+ * does during the startup and the config reload. The timing is logged only as it depends on the machine.
+ */
+public class ConfigInjectionBenchmarkTest {
+    private static final Logger logger = LoggerFactory.getLogger(ConfigInjectionBenchmarkTest.class);
+    private static final int FILES = 50;
+    private static final int PLACEHOLDERS_PER_FILE = 40;
+    private static final String[] PLACEHOLDERS = {"${TEST.string}", "${key1}", "${key3:default}", "${missing.key:default}", "${missing.number:8080}"};
+    private static final Object[] EXPECTED = {"test", "key11", "key33", "default", 8080};
+
+    private static List<Map<String, Object>> createConfigTree() {
+        List<Map<String, Object>> files = new ArrayList<>();
+        for (int f = 0; f < FILES; f++) {
+            Map<String, Object> file = new HashMap<>();
+            for (int p = 0; p < PLACEHOLDERS_PER_FILE; p++) {
+                file.put("property" + p, PLACEHOLDERS[p % PLACEHOLDERS.length]);
+            }
+            files.add(file);
+        }
+        return files;
+    }
+
+    private static void assertResolved(List<Map<String, Object>> files) {
+        for (Map<String, Object> file : files) {
+            for (int p = 0; p < PLACEHOLDERS_PER_FILE; p++) {
+                Assert.assertEquals(EXPECTED[p % EXPECTED.length], file.get("property" + p));
+            }
+        }
+    }
+
+    @Test
+    public void testStartupResolution() {
+        // warm up the config loading and the class initialization.
+        CentralizedManagement.mergeMap(createConfigTree().get(0));
+
+        List<Map<String, Object>> files = createConfigTree();
+        long start = System.nanoTime();
+        for (Map<String, Object> file : files) {
+            for (Map.Entry<String, Object> entry : file.entrySet()) {
+                entry.setValue(ConfigInjection.getInjectValue((String) entry.getValue()));
+            }
+        }
+        long perPlaceholder = System.nanoTime() - start;
+        assertResolved(files);
+
+        files = createConfigTree();
+        start = System.nanoTime();
+        try (ConfigInjection.ResolutionContext ignored = ConfigInjection.openResolutionContext()) {
+            for (Map<String, Object> file : files) {
+                CentralizedManagement.mergeMap(file);
+            }
+        }
+        long perCycle = System.nanoTime() - start;
+        assertResolved(files);
+
+        logger.info("Resolved {} placeholders in {} ms one by one and in {} ms in a resolution context.",
+                FILES * PLACEHOLDERS_PER_FILE, perPlaceholder / 1000000, perCycle / 1000000);
+    }
+
+    @Test
+    public void testNestedContext() {
+        ConfigInjection.ResolutionContext outer = ConfigInjection.openResolutionContext();
+        ConfigInjection.ResolutionContext inner = ConfigInjection.openResolutionContext();
+        // the nested context is a separate handle that shares the values of the outer one.
+        Assert.assertNotSame(outer, inner);
+        Assert.assertSame(outer.values, inner.values);
+        inner.close();
+        ConfigInjection.ResolutionContext sibling = ConfigInjection.openResolutionContext();
+        Assert.assertSame(outer.values, sibling.values);
+        sibling.close();
+        outer.close();
+        // the values are read again in the next cycle.
+        ConfigInjection.ResolutionContext next = ConfigInjection.openResolutionContext();
+        Assert.assertNotSame(outer.values, next.values);
+        next.close();
+    }
+
+    @Test
+    public void testCloseIsIdempotent() {
+        ConfigInjection.ResolutionContext outer = ConfigInjection.openResolutionContext();
+        ConfigInjection.ResolutionContext inner = ConfigInjection.openResolutionContext();
+        inner.close();
+        inner.close();
+        // closing the inner handle twice doesn't end the cycle of the outer one.
+        ConfigInjection.ResolutionContext sibling = ConfigInjection.openResolutionContext();
+        Assert.assertSame(outer.values, sibling.values);
+        sibling.close();
+        outer.close();
+    }
+}
@@ -1,13 +1,72 @@
 package com.networknt.config;
 
 import com.networknt.config.yml.DecryptConstructor;
+import com.networknt.config.yml.YmlConstants;
+import com.networknt.decrypt.AESSaltDecryptor;
 import org.junit.Assert;
 import org.junit.Test;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.representer.Representer;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DecryptConstructorTest {
+    private static final String SECRET = "password";
+
     @Test
     public void testConstructor() {
         DecryptConstructor constructor = DecryptConstructor.getInstance();
         Assert.assertNotNull(constructor);
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDecryptAllOnce() throws Exception {
+        DecryptConstructor constructor = DecryptConstructor.getInstance(CountingDecryptor.class.getName());
+        CountingDecryptor decryptor = (CountingDecryptor) constructor.getDecryptor();
+        Resolver resolver = new Resolver();
+        resolver.addImplicitResolver(YmlConstants.CRYPT_TAG, YmlConstants.CRYPT_PATTERN, YmlConstants.CRYPT_FIRST);
+        Yaml yaml = new Yaml(constructor, new Representer(new DumperOptions()), new DumperOptions(), resolver);
+        Map<String, Object> map;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("config/secret-map-test.yml")) {
+            map = yaml.load(in);
+        }
+        Assert.assertEquals(SECRET, map.get("serverKeystorePass"));
+        Assert.assertEquals(SECRET, ((List<String>) map.get("testArray")).get(0));
+        Assert.assertEquals(SECRET, ((Map<String, String>) map.get("testMap")).get("key"));
+        // all the values of the document are decrypted with one call, and nothing is decrypted one by one.
+        Assert.assertEquals(1, decryptor.batches.get());
+        Assert.assertEquals(0, decryptor.singles.get());
+
+        yaml.load("key: value");
+        Assert.assertEquals(1, decryptor.batches.get());
+    }
+
+    public static class CountingDecryptor extends AESSaltDecryptor {
+        final AtomicInteger batches = new AtomicInteger();
+        final AtomicInteger singles = new AtomicInteger();
+        private volatile boolean inBatch;
+
+        @Override
+        public String decrypt(String input) {
+            if(!inBatch) singles.incrementAndGet();
+            return super.decrypt(input);
+        }
+
+        @Override
+        public <K> Map<K, Object> decryptAll(Map<K, ?> input) {
+            batches.incrementAndGet();
+            inBatch = true;
+            try {
+                return super.decryptAll(input);
+            } finally {
+                inBatch = false;
+            }
+        }
+    }
 }
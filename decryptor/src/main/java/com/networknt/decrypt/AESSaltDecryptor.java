@@ -11,13 +11,28 @@ import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.KeySpec;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.stream.IntStream;
 
 /**
  * This implementation is replaced by AESSaltDecryptor with dynamic salt instead of static one.
  * It allows different application to use different salt so that it is harder to any attacker
  * to perform dictionary attack.
+ *
+ * The decryptor is shared by all the threads that load config files. Each thread has its own
+ * Cipher instance as a Cipher is stateful, and the derived keys are cached by salt with an upper
+ * bound so that the values encrypted with a new salt each time cannot grow the cache forever.
+ * The key of a salt is derived by one thread while the others wait for it, and the password is
+ * only asked for once.
  */
 public class AESSaltDecryptor implements Decryptor {
     private static final Logger logger = LoggerFactory.getLogger(AESSaltDecryptor.class);
@@ -26,18 +41,26 @@ public class AESSaltDecryptor implements Decryptor {
     private static final int KEY_SIZE = 256;
     private static final String STRING_ENCODING = "UTF-8";
     private static final byte[] iv = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+    // CBC = Cipher Block chaining
+    // PKCS5Padding Indicates that the keys are padded
+    private static final String TRANSFORMATION = "AES/CBC/PKCS5Padding";
+    // the max number of the derived secrets in the cache.
+    static final int MAX_SECRETS = 64;
 
     // cache the secret to void recreating instances for each decrypt call as all config files
     // will use the same salt per application.
-    private Map<String, SecretKeySpec> secretMap = new ConcurrentHashMap<>();
-    private Cipher cipher;
+    private final Map<String, SecretKeySpec> secretMap = new ConcurrentHashMap<>();
+    // the key derivations in progress by salt so that a salt is derived once by concurrent threads.
+    private final Map<String, FutureTask<SecretKeySpec>> derivations = new ConcurrentHashMap<>();
+    private volatile char[] password;
+    // a Cipher instance cannot be used by multiple threads at the same time.
+    private final ThreadLocal<Cipher> cipher = ThreadLocal.withInitial(AESSaltDecryptor::createCipher);
     IvParameterSpec ivSpec;
 
     public AESSaltDecryptor() {
         try {
-            // CBC = Cipher Block chaining
-            // PKCS5Padding Indicates that the keys are padded
-            cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+            // fail fast if the transformation is not supported.
+            cipher.get();
             ivSpec = new IvParameterSpec(iv);
         } catch (Exception e) {
             logger.error("Failed to get the Cipher instance:", e);
@@ -45,6 +68,14 @@ public class AESSaltDecryptor implements Decryptor {
         }
     }
 
+    private static Cipher createCipher() {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     @Override
     public String decrypt(String input) {
         if (!input.startsWith(CRYPT_PREFIX)) {
@@ -59,18 +90,9 @@ public class AESSaltDecryptor implements Decryptor {
         }
 
         try {
-            byte[] salt = fromHex(parts[1]);
             byte[] hash = fromHex(parts[2]);
-            // try to get the secret from the cache first.
-            SecretKeySpec secret = secretMap.get(parts[1]);
-            if(secret == null) {
-                KeySpec spec = new PBEKeySpec(getPassword(), salt, ITERATIONS, KEY_SIZE);
-                /* Derive the key, given password and salt. */
-                SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-                SecretKey tmp = factory.generateSecret(spec);
-                secret = new SecretKeySpec(tmp.getEncoded(), "AES");
-                secretMap.put(parts[1], secret);
-            }
+            SecretKeySpec secret = getSecret(parts[1]);
+            Cipher cipher = this.cipher.get();
             cipher.init(Cipher.DECRYPT_MODE, secret, ivSpec);
             return new String(cipher.doFinal(hash), STRING_ENCODING);
         } catch (Exception e) {
@@ -78,6 +100,137 @@ public class AESSaltDecryptor implements Decryptor {
         }
     }
 
+    /**
+     * Decrypt the encrypted values in parallel. The password is resolved on the calling thread, and the
+     * key of each distinct salt is derived once before the values are decrypted in the common fork join
+     * pool. The first failure is thrown.
+     *
+     * @param input a map with the encrypted values. It is not changed.
+     * @param <K> the type of the keys
+     * @return a new map with the same keys in the same order and the decrypted values
+     */
+    @Override
+    public <K> Map<K, Object> decryptAll(Map<K, ?> input) {
+        List<Map.Entry<K, ?>> entries = new ArrayList<>(input.entrySet());
+        Object[] values = new Object[entries.size()];
+        long encrypted = 0;
+        for(int i = 0; i < values.length; i++) {
+            values[i] = entries.get(i).getValue();
+            if(isEncrypted(values[i])) encrypted++;
+        }
+        if(encrypted > 1) {
+            // the password may be resolved from the console or the stack of the calling thread.
+            password();
+            Set<String> salts = new LinkedHashSet<>();
+            for(Object value : values) {
+                if(isEncrypted(value)) {
+                    String[] parts = ((String)value).split(":");
+                    if(parts.length == 3) salts.add(parts[1]);
+                }
+            }
+            salts.parallelStream().forEach(salt -> {
+                try {
+                    getSecret(salt);
+                } catch (Exception e) {
+                    // the value with the salt fails with the cause when it is decrypted.
+                    if(logger.isDebugEnabled()) logger.debug("Failed to derive the key of salt " + salt, e);
+                }
+            });
+            IntStream.range(0, values.length).parallel()
+                    .filter(i -> isEncrypted(values[i]))
+                    .forEach(i -> values[i] = decrypt((String)values[i]));
+        } else if(encrypted == 1) {
+            for(int i = 0; i < values.length; i++) {
+                if(isEncrypted(values[i])) values[i] = decrypt((String)values[i]);
+            }
+        }
+        Map<K, Object> output = new LinkedHashMap<>();
+        for(int i = 0; i < values.length; i++) {
+            output.put(entries.get(i).getKey(), values[i]);
+        }
+        return output;
+    }
+
+    private static boolean isEncrypted(Object value) {
+        return value instanceof String && ((String)value).startsWith(CRYPT_PREFIX);
+    }
+
+    /**
+     * Get the secret of a salt from the cache or derive it. The key is derived outside of the map so
+     * that the threads that decrypt with other salts are not blocked, and the threads that need the
+     * same salt wait for the thread that derives it. An existing secret is removed when the cache is full.
+     *
+     * @param saltHex the salt in hex
+     * @return SecretKeySpec the AES secret
+     * @throws Exception if the key cannot be derived
+     */
+    private SecretKeySpec getSecret(String saltHex) throws Exception {
+        // try to get the secret from the cache first.
+        SecretKeySpec secret = secretMap.get(saltHex);
+        if(secret != null) {
+            return secret;
+        }
+        FutureTask<SecretKeySpec> task = new FutureTask<>(() -> {
+            SecretKeySpec derived = deriveSecret(saltHex);
+            Iterator<String> iterator = secretMap.keySet().iterator();
+            while(secretMap.size() >= MAX_SECRETS && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+            secretMap.put(saltHex, derived);
+            return derived;
+        });
+        FutureTask<SecretKeySpec> derivation = derivations.putIfAbsent(saltHex, task);
+        if(derivation == null) {
+            derivation = task;
+            try {
+                task.run();
+            } finally {
+                derivations.remove(saltHex, task);
+            }
+        }
+        try {
+            return derivation.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception)e.getCause() : e;
+        }
+    }
+
+    /**
+     * Derive the key, given password and salt.
+     *
+     * @param saltHex the salt in hex
+     * @return SecretKeySpec the AES secret
+     * @throws Exception if the key cannot be derived
+     */
+    SecretKeySpec deriveSecret(String saltHex) throws Exception {
+        KeySpec spec = new PBEKeySpec(password(), fromHex(saltHex), ITERATIONS, KEY_SIZE);
+        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        SecretKey tmp = factory.generateSecret(spec);
+        return new SecretKeySpec(tmp.getEncoded(), "AES");
+    }
+
+    /**
+     * @return the password from getPassword that is only called once
+     */
+    private char[] password() {
+        char[] result = password;
+        if(result == null) {
+            synchronized (this) {
+                result = password;
+                if(result == null) {
+                    result = getPassword();
+                    password = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    int getSecretCount() {
+        return secretMap.size();
+    }
+
     protected char[] getPassword() {
         return "light".toCharArray();
     }
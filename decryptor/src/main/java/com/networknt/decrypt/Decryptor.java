@@ -16,6 +16,9 @@
 
 package com.networknt.decrypt;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 public interface Decryptor {
 
     String CRYPT_PREFIX = "CRYPT";
@@ -35,4 +38,24 @@ public interface Decryptor {
      */
     String decrypt(String input);
 
+    /**
+     * Decrypt all the encrypted values of a map at once. The values that are not strings started with
+     * the CRYPT_PREFIX are copied as they are. The default implementation decrypts the values one by
+     * one, and an implementation can override it to decrypt the values in parallel.
+     *
+     * @param input a map with the encrypted values. It is not changed.
+     * @param <K> the type of the keys
+     * @return a new map with the same keys in the same order and the decrypted values
+     */
+    default <K> Map<K, Object> decryptAll(Map<K, ?> input) {
+        Map<K, Object> output = new LinkedHashMap<>();
+        for(Map.Entry<K, ?> entry : input.entrySet()) {
+            Object value = entry.getValue();
+            if(value instanceof String && ((String)value).startsWith(CRYPT_PREFIX)) {
+                value = decrypt((String)value);
+            }
+            output.put(entry.getKey(), value);
+        }
+        return output;
+    }
 }
@@ -3,6 +3,22 @@ package com.networknt.decrypt;
 import org.junit.Assert;
 import org.junit.Test;
 
+import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class AESDecryptorTest {
 
     @Test
@@ -26,4 +42,149 @@ public class AESDecryptorTest {
         }
 
     }
+
+    @Test
+    public void testConcurrentDecrypt() throws Exception {
+        AESSaltDecryptor decryptor = new AESSaltDecryptor();
+        List<String> secrets = new ArrayList<>();
+        for(int i = 0; i < 4; i++) {
+            secrets.add(encrypt("secret" + i));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for(int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    // a shared Cipher instance gives wrong results or BadPaddingException with concurrent calls.
+                    for(int n = 0; n < 500; n++) {
+                        int i = n % secrets.size();
+                        if(!("secret" + i).equals(decryptor.decrypt(secrets.get(i)))) return false;
+                    }
+                    return true;
+                }));
+            }
+            for(Future<Boolean> future : futures) {
+                Assert.assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDecryptAll() throws Exception {
+        Map<String, Object> input = new LinkedHashMap<>();
+        for(int i = 0; i < 8; i++) {
+            input.put("key" + i, encrypt("secret" + i));
+        }
+        input.put("plain", "value");
+        input.put("number", 1);
+        input.put("null", null);
+        Map<String, Object> output = new AESSaltDecryptor().decryptAll(input);
+        Assert.assertEquals(new ArrayList<>(input.keySet()), new ArrayList<>(output.keySet()));
+        for(int i = 0; i < 8; i++) {
+            Assert.assertEquals("secret" + i, output.get("key" + i));
+        }
+        Assert.assertEquals("value", output.get("plain"));
+        Assert.assertEquals(1, output.get("number"));
+        Assert.assertNull(output.get("null"));
+        // the input is not changed.
+        Assert.assertTrue(((String)input.get("key0")).startsWith(Decryptor.CRYPT_PREFIX));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testDecryptAllInvalid() {
+        Map<String, Object> input = new LinkedHashMap<>();
+        input.put("invalid", "CRYPT:1234");
+        input.put("other", "CRYPT:5678");
+        new AESSaltDecryptor().decryptAll(input);
+    }
+
+    @Test
+    public void testBoundedSecretCache() throws Exception {
+        AESSaltDecryptor decryptor = new AESSaltDecryptor();
+        for(int i = 0; i < AESSaltDecryptor.MAX_SECRETS + 10; i++) {
+            // each value is encrypted with a new salt.
+            Assert.assertEquals("secret" + i, decryptor.decrypt(encrypt("secret" + i)));
+            Assert.assertTrue(decryptor.getSecretCount() <= AESSaltDecryptor.MAX_SECRETS);
+        }
+        Assert.assertEquals(AESSaltDecryptor.MAX_SECRETS, decryptor.getSecretCount());
+    }
+
+    @Test
+    public void testDecryptAllDerivesOncePerSalt() throws Exception {
+        byte[] salt = newSalt();
+        Map<String, Object> input = new LinkedHashMap<>();
+        for(int i = 0; i < 8; i++) {
+            input.put("key" + i, encrypt("secret" + i, salt));
+        }
+        input.put("other", encrypt("other"));
+        CountingDecryptor decryptor = new CountingDecryptor();
+        Map<String, Object> output = decryptor.decryptAll(input);
+        Assert.assertEquals("secret7", output.get("key7"));
+        Assert.assertEquals("other", output.get("other"));
+        // the values of the config files share one salt, and its key is derived once.
+        Assert.assertEquals(2, decryptor.derivations.get());
+        Assert.assertEquals(1, decryptor.passwords.get());
+    }
+
+    @Test
+    public void testDecryptAllWithAutoDecryptor() throws Exception {
+        // the JUnit password is resolved on the calling thread and not on the threads of the pool.
+        AutoAESSaltDecryptor.password = null;
+        byte[] salt = newSalt();
+        Map<String, Object> input = new LinkedHashMap<>();
+        for(int i = 0; i < 8; i++) {
+            input.put("key" + i, encrypt("secret" + i, i % 2 == 0 ? salt : newSalt()));
+        }
+        Map<String, Object> output = new AutoAESSaltDecryptor().decryptAll(input);
+        for(int i = 0; i < 8; i++) {
+            Assert.assertEquals("secret" + i, output.get("key" + i));
+        }
+    }
+
+    static class CountingDecryptor extends AESSaltDecryptor {
+        final AtomicInteger derivations = new AtomicInteger();
+        final AtomicInteger passwords = new AtomicInteger();
+
+        @Override
+        SecretKeySpec deriveSecret(String saltHex) throws Exception {
+            derivations.incrementAndGet();
+            return super.deriveSecret(saltHex);
+        }
+
+        @Override
+        protected char[] getPassword() {
+            passwords.incrementAndGet();
+            return super.getPassword();
+        }
+    }
+
+    private static byte[] newSalt() {
+        byte[] salt = new byte[16];
+        new SecureRandom().nextBytes(salt);
+        return salt;
+    }
+
+    private static String encrypt(String input) throws Exception {
+        return encrypt(input, newSalt());
+    }
+
+    private static String encrypt(String input, byte[] salt) throws Exception {
+        PBEKeySpec spec = new PBEKeySpec("light".toCharArray(), salt, 65536, 256);
+        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        SecretKeySpec secret = new SecretKeySpec(factory.generateSecret(spec).getEncoded(), "AES");
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, secret, new IvParameterSpec(new byte[16]));
+        byte[] hash = cipher.doFinal(input.getBytes(StandardCharsets.UTF_8));
+        return Decryptor.CRYPT_PREFIX + ":" + toHex(salt) + ":" + toHex(hash);
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for(byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
 }
@@ -39,6 +39,8 @@ import static java.nio.charset.StandardCharsets.UTF_8;
  */
  class BodyDumper extends AbstractDumper implements IRequestDumpable, IResponseDumpable{
     private static final Logger logger = LoggerFactory.getLogger(BodyDumper.class);
+    private static final String TRUNCATED_BODY = "truncated response body";
+    private static final String UNMASKED_BODY = "response body cannot be masked";
     private String bodyContent = "";
 
     BodyDumper(DumpConfig config, HttpServerExchange exchange) {
@@ -87,7 +89,20 @@ import static java.nio.charset.StandardCharsets.UTF_8;
     public void dumpResponse(Map<String, Object> result) {
         byte[] responseBodyAttachment = exchange.getAttachment(StoreResponseStreamSinkConduit.RESPONSE);
         if(responseBodyAttachment != null) {
-            this.bodyContent = config.isMaskEnabled() ? Mask.maskJson(new ByteArrayInputStream(responseBodyAttachment), "responseBody") : new String(responseBodyAttachment, UTF_8);
+            if(Boolean.TRUE.equals(exchange.getAttachment(StoreResponseStreamSinkConduit.RESPONSE_TRUNCATED))) {
+                //the stored body is only the head of the response, so it cannot be parsed and masked.
+                this.bodyContent = config.isMaskEnabled() ? TRUNCATED_BODY : new String(responseBodyAttachment, UTF_8) + "...";
+            } else if(config.isMaskEnabled()) {
+                try {
+                    this.bodyContent = Mask.maskJson(new ByteArrayInputStream(responseBodyAttachment), "responseBody");
+                } catch (RuntimeException e) {
+                    //only json body can be masked, and the body that cannot be masked is not dumped.
+                    logger.debug("response body is not json: " + e.getMessage());
+                    this.bodyContent = UNMASKED_BODY;
+                }
+            } else {
+                this.bodyContent = new String(responseBodyAttachment, UTF_8);
+            }
         }
         this.putDumpInfoTo(result);
     }
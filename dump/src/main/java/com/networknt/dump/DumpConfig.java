@@ -16,10 +16,14 @@
 
 package com.networknt.dump;
 
+import com.networknt.utility.PathPrefixMatcher;
+
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * this class is to load dump.yml config file, and map settings to properties of this class.
@@ -32,6 +36,12 @@ public class DumpConfig {
     private boolean useJson = false;
     private Map<String, Object> request;
     private Map<String, Object> response;
+    private int maxBodySize = 65536;
+    private double samplePercentage = 100;
+    private Map<String, Object> pathSamplePercentages;
+    private PathPrefixMatcher<Double> pathSampleMatcher = PathPrefixMatcher.empty();
+    private boolean asyncWrite = true;
+    private int queueSize = 1024;
     private static Boolean DEFAULT = false;
 
     //request settings:
@@ -201,4 +211,76 @@ public class DumpConfig {
     public boolean isResponseBodyEnabled() {
         return responseBodyEnabled;
     }
+
+    public int getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    public void setMaxBodySize(int maxBodySize) {
+        this.maxBodySize = maxBodySize;
+    }
+
+    public double getSamplePercentage() {
+        return samplePercentage;
+    }
+
+    public void setSamplePercentage(double samplePercentage) {
+        this.samplePercentage = samplePercentage;
+    }
+
+    public Map<String, Object> getPathSamplePercentages() {
+        return pathSamplePercentages;
+    }
+
+    public void setPathSamplePercentages(Map<String, Object> pathSamplePercentages) {
+        this.pathSamplePercentages = pathSamplePercentages;
+        Map<String, Double> percentages = new LinkedHashMap<>();
+        if(pathSamplePercentages != null) {
+            pathSamplePercentages.forEach((k, v) -> {
+                if(v instanceof Number) percentages.put(k, ((Number)v).doubleValue());
+            });
+        }
+        this.pathSampleMatcher = PathPrefixMatcher.compile(percentages);
+    }
+
+    /**
+     * Get the sample percentage of a request path. The percentage of the longest path prefix in the
+     * pathSamplePercentages is used, and the samplePercentage is used for the other paths.
+     *
+     * @param path the request path
+     * @return double the percentage from 0 to 100
+     */
+    public double getSamplePercentage(String path) {
+        Double percentage = pathSampleMatcher.get(path);
+        return percentage == null ? samplePercentage : percentage;
+    }
+
+    /**
+     * Decide if a request is dumped based on the sample percentage of its path.
+     *
+     * @param path the request path
+     * @return true if the request is dumped
+     */
+    public boolean isSampled(String path) {
+        double percentage = getSamplePercentage(path);
+        if(percentage >= 100) return true;
+        if(percentage <= 0) return false;
+        return ThreadLocalRandom.current().nextDouble() * 100 < percentage;
+    }
+
+    public boolean isAsyncWrite() {
+        return asyncWrite;
+    }
+
+    public void setAsyncWrite(boolean asyncWrite) {
+        this.asyncWrite = asyncWrite;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
 }
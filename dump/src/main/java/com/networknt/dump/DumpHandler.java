@@ -71,7 +71,7 @@ public class DumpHandler implements MiddlewareHandler {
             exchange.dispatch(this);
             return;
         }
-        if(isEnabled()) {
+        if(isEnabled() && config.isSampled(exchange.getRequestPath())) {
             Map<String, Object> result = new LinkedHashMap<>();
             //create rootDumper which will do dumping.
             RootDumper rootDumper = new RootDumper(config, exchange);
@@ -80,14 +80,18 @@ public class DumpHandler implements MiddlewareHandler {
             //only add response wrapper when response config is not set to "false"
             if(config.isResponseEnabled()) {
                 //set Conduit to the conduit chain to store response body
-                exchange.addResponseWrapper((factory, exchange12) -> new StoreResponseStreamSinkConduit(factory.create(), exchange12));
+                exchange.addResponseWrapper((factory, exchange12) -> new StoreResponseStreamSinkConduit(factory.create(), exchange12, config.getMaxBodySize()));
             }
             //when complete exchange, dump response info to result, and log the result.
             exchange.addExchangeCompleteListener((exchange1, nextListener) ->{
                 try {
                     rootDumper.dumpResponse(result);
-                    //log the result
-                    DumpHelper.logResult(result, config);
+                    //log the result on the dump writer thread, or on this thread if it is not async.
+                    if(config.isAsyncWrite()) {
+                        DumpWriter.start(config).offer(result, config);
+                    } else {
+                        DumpHelper.logResult(result, config);
+                    }
                 } catch (Throwable e) {
                     logger.error("ExchangeListener throwable", e);
                 } finally {
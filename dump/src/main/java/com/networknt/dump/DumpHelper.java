@@ -16,12 +16,15 @@
 
 package com.networknt.dump;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.networknt.config.Config;
 import com.networknt.utility.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
@@ -31,6 +34,7 @@ import java.util.function.Consumer;
  */
 class DumpHelper {
     private static Logger logger = LoggerFactory.getLogger(DumpHandler.class);
+    private static final ObjectMapper mapper = Config.getInstance().getMapper();
 
     /**
      * A help method to log result pojo
@@ -82,18 +86,36 @@ class DumpHelper {
      * @param loggerFunc Consuer<T> getLoggerFuncBasedOnLevel(config.getLogLevel())
      */
     private static void logResultUsingJson(Map<String, Object> result, Consumer<String> loggerFunc) {
-        ObjectMapper mapper = new ObjectMapper();
         String resultJson = "";
         try {
-            resultJson = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(result);
-        } catch (JsonProcessingException e) {
+            resultJson = toJson(result);
+        } catch (IOException e) {
             logger.error(e.toString());
         }
         if(StringUtils.isNotBlank(resultJson)){
-            loggerFunc.accept("Dump Info:\n" + resultJson);
+            loggerFunc.accept("Dump Info: " + resultJson);
         }
     }
 
+    /**
+     * stream the result as a compact JSON record on one line with the shared mapper.
+     * @param result a Map<String, Object> contains http request/response info
+     * @return String the JSON record
+     * @throws IOException if the result cannot be serialized
+     */
+    static String toJson(Map<String, Object> result) throws IOException {
+        StringWriter writer = new StringWriter(256);
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(writer)) {
+            generator.writeStartObject();
+            for(Map.Entry<String, Object> entry : result.entrySet()) {
+                generator.writeFieldName(entry.getKey());
+                mapper.writeValue(generator, entry.getValue());
+            }
+            generator.writeEndObject();
+        }
+        return writer.toString();
+    }
+
     /**
      * calculate indent for formatting
      * @return "   " string of empty spaces
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.dump;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * the asynchronous writer of the dump records. The DumpHandler puts the result of an exchange into a
+ * bounded queue when the exchange is completed, and a daemon thread formats and logs the records so
+ * that the serialization and the logging are not done on the thread that completes the exchange.
+ * A record is dropped when the queue is full.
+ */
+class DumpWriter {
+    private static final Logger logger = LoggerFactory.getLogger(DumpWriter.class);
+    private static final long CLOSE_TIMEOUT = 5000;
+    // log a warning for the first dropped record and every DROP_LOG_INTERVAL dropped records after it.
+    private static final long DROP_LOG_INTERVAL = 1000;
+    private static DumpWriter instance;
+
+    private final BlockingQueue<Record> queue;
+    private final BiConsumer<Map<String, Object>, DumpConfig> sink;
+    private final Thread thread;
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean running = true;
+
+    DumpWriter(int queueSize, BiConsumer<Map<String, Object>, DumpConfig> sink) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        this.sink = sink;
+        this.thread = new Thread(this::run, "dump-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * start the writer once. it is shared by all the DumpHandler instances, and the pending records
+     * are written by a shutdown hook when the server is stopped.
+     * @param config type: DumpConfig
+     * @return DumpWriter the started writer
+     */
+    static synchronized DumpWriter start(DumpConfig config) {
+        if(instance == null) {
+            DumpWriter writer = new DumpWriter(config.getQueueSize(), DumpHelper::logResult);
+            Runtime.getRuntime().addShutdownHook(new Thread(writer::close, "dump-writer-shutdown"));
+            instance = writer;
+        }
+        return instance;
+    }
+
+    /**
+     * put a record into the queue. the result must not be changed after it is passed to the writer.
+     * @param result a Map<String, Object> contains http request/response info
+     * @param config type: DumpConfig
+     * @return false if the record is dropped
+     */
+    boolean offer(Map<String, Object> result, DumpConfig config) {
+        if(running && queue.offer(new Record(result, config))) {
+            return true;
+        }
+        long count = dropped.incrementAndGet();
+        if(count % DROP_LOG_INTERVAL == 1) {
+            logger.warn("The dump queue is full, {} records have been dropped.", count);
+        }
+        return false;
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * stop accepting records and write the pending ones.
+     */
+    void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(CLOSE_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while(running || !queue.isEmpty()) {
+            Record record;
+            try {
+                record = running ? queue.take() : queue.poll(0, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if(record == null) continue;
+            // log the record with the MDC of the exchange, e.g. the correlation id.
+            if(record.context != null) {
+                MDC.setContextMap(record.context);
+            }
+            try {
+                sink.accept(record.result, record.config);
+            } catch (Throwable e) {
+                logger.error("Failed to write the dump record", e);
+            } finally {
+                MDC.clear();
+            }
+        }
+    }
+
+    private static final class Record {
+        final Map<String, Object> result;
+        final DumpConfig config;
+        final Map<String, String> context;
+
+        Record(Map<String, Object> result, DumpConfig config) {
+            this.result = result;
+            this.config = config;
+            this.context = MDC.getCopyOfContextMap();
+        }
+    }
+}
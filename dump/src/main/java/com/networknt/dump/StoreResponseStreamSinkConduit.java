@@ -18,70 +18,58 @@
 
 package com.networknt.dump;
 
-import io.undertow.UndertowMessages;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.util.AttachmentKey;
 import org.xnio.conduits.AbstractStreamSinkConduit;
 import org.xnio.conduits.StreamSinkConduit;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * this class is basically the same as io.undertow.conduits.StoredResponseStreamSinkConduit
  * just to fix some problems
+ *
+ * The bytes that are written are copied from the buffers in bulk without changing them, and only
+ * the first maxSize bytes are stored. RESPONSE_TRUNCATED is true if the response is bigger.
  */
 public class StoreResponseStreamSinkConduit extends AbstractStreamSinkConduit<StreamSinkConduit> {
 
     public static final AttachmentKey<byte[]> RESPONSE = AttachmentKey.create(byte[].class);
-    private ByteArrayOutputStream outputStream;
+    public static final AttachmentKey<Boolean> RESPONSE_TRUNCATED = AttachmentKey.create(Boolean.class);
+    private static final int INITIAL_SIZE = 1024;
     private final HttpServerExchange exchange;
+    private final int maxSize;
+    private byte[] buffer;
+    private int size;
+    private boolean truncated;
 
     public StoreResponseStreamSinkConduit(StreamSinkConduit next, HttpServerExchange exchange) {
+        this(next, exchange, Integer.MAX_VALUE);
+    }
+
+    public StoreResponseStreamSinkConduit(StreamSinkConduit next, HttpServerExchange exchange, int maxSize) {
         super(next);
         this.exchange = exchange;
+        this.maxSize = maxSize <= 0 ? Integer.MAX_VALUE : maxSize;
         long length = exchange.getResponseContentLength();
-        if (length <= 0L) {
-            outputStream = new ByteArrayOutputStream();
-        } else {
-            if (length > Integer.MAX_VALUE) {
-                throw UndertowMessages.MESSAGES.responseTooLargeToBuffer(length);
-            }
-            outputStream = new ByteArrayOutputStream((int) length);
-        }
+        this.buffer = new byte[(int) Math.min(this.maxSize, length <= 0L ? INITIAL_SIZE : length)];
     }
 
     @Override
     public int write(ByteBuffer src) throws IOException {
         int start = src.position();
         int ret = super.write(src);
-        for (int i = start; i < start + ret; ++i) {
-            outputStream.write(src.get(i));
-        }
+        store(src, start, ret);
         return ret;
     }
 
     @Override
     public long write(ByteBuffer[] srcs, int offs, int len) throws IOException {
-        int[] starts = new int[len];
-        for (int i = 0; i < len; ++i) {
-            starts[i] = srcs[i + offs].position();
-        }
+        int[] starts = positions(srcs, offs, len);
         long ret = super.write(srcs, offs, len);
-        long rem = ret;
-
-        for (int i = 0; i < len; ++i) {
-            ByteBuffer buf = srcs[i + offs];
-            int pos = starts[i];
-            int limit = buf.limit();
-            //buf.position() could be later than buf.limit() due to after read the last byte, position will still move to next, but it's now larger than limit.
-            while (rem > 0 && pos <= buf.position() && pos < limit) {
-                outputStream.write(buf.get(pos));
-                pos++;
-                rem--;
-            }
-        }
+        store(srcs, offs, len, starts);
         return ret;
     }
 
@@ -89,43 +77,67 @@ public class StoreResponseStreamSinkConduit extends AbstractStreamSinkConduit<St
     public int writeFinal(ByteBuffer src) throws IOException {
         int start = src.position();
         int ret = super.writeFinal(src);
-        //without changing ByteBuffer remaining, copy to outputStream
-        for (int i = start; i < start + ret; ++i) {
-            outputStream.write(src.get(i));
-        }
+        store(src, start, ret);
         return ret;
     }
 
     @Override
     public long writeFinal(ByteBuffer[] srcs, int offs, int len) throws IOException {
+        int[] starts = positions(srcs, offs, len);
+        long ret = super.writeFinal(srcs, offs, len);
+        store(srcs, offs, len, starts);
+        return ret;
+    }
+
+    @Override
+    public void terminateWrites() throws IOException {
+        //after finish writes all through conduit, it will reach here, at this time, we put response info
+        if (buffer != null) {
+            exchange.putAttachment(RESPONSE, size == buffer.length ? buffer : Arrays.copyOf(buffer, size));
+            if (truncated) {
+                exchange.putAttachment(RESPONSE_TRUNCATED, true);
+            }
+            buffer = null;
+        }
+        super.terminateWrites();
+    }
+
+    private static int[] positions(ByteBuffer[] srcs, int offs, int len) {
         int[] starts = new int[len];
-        long toWrite = 0;
         for (int i = 0; i < len; ++i) {
             starts[i] = srcs[i + offs].position();
-            toWrite += srcs[i + offs].remaining();
         }
-        long ret = super.write(srcs, offs, len);
-        long rem = ret;
+        return starts;
+    }
 
+    private void store(ByteBuffer[] srcs, int offs, int len, int[] starts) {
+        // the position of each buffer is moved by the number of the bytes that are written from it.
         for (int i = 0; i < len; ++i) {
             ByteBuffer buf = srcs[i + offs];
-            int pos = starts[i];
-            int limit = buf.limit();
-            //buf.position() could be later than buf.limit() due to after read the last byte, position will still move to next, but it's now larger than limit.
-            while (rem > 0 && pos <= buf.position() && pos < limit) {
-                outputStream.write(buf.get(pos));
-                pos++;
-                rem--;
-            }
+            store(buf, starts[i], buf.position() - starts[i]);
         }
-        return ret;
     }
 
-    @Override
-    public void terminateWrites() throws IOException {
-        //after finish writes all through conduit, it will reach here, at this time, we put response info
-        exchange.putAttachment(RESPONSE, outputStream.toByteArray());
-        outputStream = null;
-        super.terminateWrites();
+    /**
+     * copy the bytes from start to start + length of the buffer without changing its position.
+     */
+    private void store(ByteBuffer src, int start, int length) {
+        if (length <= 0 || buffer == null) {
+            return;
+        }
+        int count = Math.min(length, maxSize - size);
+        if (count < length) {
+            truncated = true;
+        }
+        if (count <= 0) {
+            return;
+        }
+        if (size + count > buffer.length) {
+            buffer = Arrays.copyOf(buffer, (int) Math.min(maxSize, Math.max(size + count, 2L * buffer.length)));
+        }
+        ByteBuffer slice = src.duplicate();
+        slice.limit(start + count).position(start);
+        slice.get(buffer, size, count);
+        size += count;
     }
 }
@@ -35,10 +35,17 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 import org.xnio.IoUtils;
 import org.xnio.OptionMap;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
@@ -51,6 +58,7 @@ public class DumpHandlerTest {
     static final Logger logger = LoggerFactory.getLogger(DumpHandlerTest.class);
 
     static Undertow server = null;
+    static final String LARGE_BODY = String.join("", Collections.nCopies(100000, "a"));
 
     @BeforeClass
     public static void setUp() {
@@ -89,7 +97,8 @@ public class DumpHandlerTest {
 
     static RoutingHandler getTestHandler() {
         return Handlers.routing()
-                .add(Methods.POST, "/pet", exchange -> exchange.getResponseSender().send("OK"));
+                .add(Methods.POST, "/pet", exchange -> exchange.getResponseSender().send("OK"))
+                .add(Methods.GET, "/large", exchange -> exchange.getResponseSender().send(LARGE_BODY));
     }
 
     @Test
@@ -133,4 +142,104 @@ public class DumpHandlerTest {
     @Test
     public void testAuditWithoutTrace() throws Exception {
     }
+
+    @Test
+    public void testLargeResponse() throws Exception {
+        final AtomicReference<ClientResponse> reference = new AtomicReference<>();
+        final Http2Client client = Http2Client.getInstance();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final ClientConnection connection;
+        try {
+            connection = client.connect(new URI("http://localhost:7080"), Http2Client.WORKER, Http2Client.BUFFER_POOL, OptionMap.EMPTY).get();
+        } catch (Exception e) {
+            throw new ClientException(e);
+        }
+        try {
+            ClientRequest request = new ClientRequest().setMethod(Methods.GET).setPath("/large");
+            request.getRequestHeaders().put(Headers.HOST, "localhost");
+            connection.sendRequest(request, client.createClientCallback(reference, latch));
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            logger.error("Exception: ", e);
+            throw new ClientException(e);
+        } finally {
+            IoUtils.safeClose(connection);
+        }
+        // only the head of the body is stored for dumping, and the whole body is sent.
+        Assert.assertEquals(200, reference.get().getResponseCode());
+        Assert.assertEquals(LARGE_BODY, reference.get().getAttachment(Http2Client.RESPONSE_BODY));
+    }
+
+    @Test
+    public void testSampled() {
+        DumpConfig dumpConfig = new DumpConfig();
+        Assert.assertTrue(dumpConfig.isSampled("/v1/pets"));
+        dumpConfig.setSamplePercentage(0);
+        Assert.assertFalse(dumpConfig.isSampled("/v1/pets"));
+        Map<String, Object> percentages = new LinkedHashMap<>();
+        percentages.put("/v1/pets", 100);
+        percentages.put("/v1/pets/health", 0);
+        dumpConfig.setPathSamplePercentages(percentages);
+        Assert.assertTrue(dumpConfig.isSampled("/v1/pets/1"));
+        Assert.assertFalse(dumpConfig.isSampled("/v1/pets/health"));
+        Assert.assertFalse(dumpConfig.isSampled("/v1/users"));
+        dumpConfig.setSamplePercentage(50);
+        int sampled = 0;
+        for(int i = 0; i < 10000; i++) {
+            if(dumpConfig.isSampled("/v1/users")) sampled++;
+        }
+        Assert.assertTrue(sampled > 4000 && sampled < 6000);
+    }
+
+    @Test
+    public void testToJson() throws Exception {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("url", "/v1/pets");
+        request.put("headers", Collections.singletonMap("Host", "localhost"));
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("request", request);
+        result.put("response", Collections.singletonMap("statusCode", 200));
+        Assert.assertEquals("{\"request\":{\"url\":\"/v1/pets\",\"headers\":{\"Host\":\"localhost\"}},\"response\":{\"statusCode\":200}}",
+                DumpHelper.toJson(result));
+    }
+
+    @Test
+    public void testDumpWriter() throws Exception {
+        List<Map<String, Object>> records = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch block = new CountDownLatch(1);
+        DumpWriter writer = new DumpWriter(2, (result, dumpConfig) -> {
+            try {
+                block.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+            records.add(result);
+        });
+        DumpConfig dumpConfig = new DumpConfig();
+        int accepted = 0;
+        for(int i = 0; i < 10; i++) {
+            if(writer.offer(Collections.singletonMap("index", i), dumpConfig)) accepted++;
+        }
+        // the writer thread holds one record and the queue holds two, the rest are dropped.
+        Assert.assertTrue(accepted >= 2 && accepted <= 3);
+        Assert.assertEquals(10 - accepted, writer.getDropped());
+        block.countDown();
+        writer.close();
+        Assert.assertEquals(accepted, records.size());
+        Assert.assertEquals(0, records.get(0).get("index"));
+    }
+
+    @Test
+    public void testDumpWriterRestoresMdc() throws Exception {
+        List<String> correlationIds = Collections.synchronizedList(new ArrayList<>());
+        DumpWriter writer = new DumpWriter(2, (result, dumpConfig) -> correlationIds.add(MDC.get("cId")));
+        MDC.put("cId", "abc");
+        try {
+            writer.offer(Collections.singletonMap("index", 0), new DumpConfig());
+        } finally {
+            MDC.remove("cId");
+        }
+        writer.offer(Collections.singletonMap("index", 1), new DumpConfig());
+        writer.close();
+        Assert.assertEquals(Arrays.asList("abc", null), correlationIds);
+    }
 }
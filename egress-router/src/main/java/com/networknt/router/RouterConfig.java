@@ -15,8 +15,10 @@
  */
 package com.networknt.router;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.networknt.config.Config;
 import com.networknt.config.ConfigException;
+import com.networknt.handler.ProxyHandler;
 import com.networknt.handler.config.MethodRewriteRule;
 import com.networknt.handler.config.QueryHeaderRewriteRule;
 import com.networknt.handler.config.UrlRewriteRule;
@@ -49,6 +51,9 @@ public class RouterConfig {
     private static final String PRE_RESOLVE_FQDN_2_IP = "preResolveFQDN2IP";
     private static final String METRICS_INJECTION = "metricsInjection";
     private static final String METRICS_NAME = "metricsName";
+    private static final String COALESCING_PATH_PREFIXES = "coalescingPathPrefixes";
+    private static final String COALESCING_KEY_HEADERS = "coalescingKeyHeaders";
+    private static final String COALESCING_MAX_BODY_SIZE = "coalescingMaxBodySize";
 
     boolean http2Enabled;
     boolean httpsEnabled;
@@ -65,6 +70,9 @@ public class RouterConfig {
     boolean preResolveFQDN2IP;
     boolean metricsInjection;
     String metricsName;
+    List<String> coalescingPathPrefixes;
+    List<String> coalescingKeyHeaders;
+    int coalescingMaxBodySize = ProxyHandler.DEFAULT_COALESCING_MAX_BODY_SIZE;
 
     List<String> hostWhitelist;
     List<UrlRewriteRule> urlRewriteRules;
@@ -99,6 +107,7 @@ public class RouterConfig {
         setQueryParamRewriteRules();
         setHeaderRewriteRules();
         setPathPrefixMaxRequestTime();
+        setCoalescing();
     }
 
     public static RouterConfig load() {
@@ -118,6 +127,7 @@ public class RouterConfig {
         setQueryParamRewriteRules();
         setHeaderRewriteRules();
         setPathPrefixMaxRequestTime();
+        setCoalescing();
     }
     public void setConfigData() {
         Object object = getMappedConfig().get(HTTP2_ENABLED);
@@ -206,6 +216,12 @@ public class RouterConfig {
 
     public int getMaxQueueSize() { return maxQueueSize; }
 
+    public List<String> getCoalescingPathPrefixes() { return coalescingPathPrefixes; }
+
+    public List<String> getCoalescingKeyHeaders() { return coalescingKeyHeaders; }
+
+    public int getCoalescingMaxBodySize() { return coalescingMaxBodySize; }
+
     public List<String> getHostWhitelist() {
         return hostWhitelist;
     }
@@ -391,4 +407,40 @@ public class RouterConfig {
             }
         }
     }
+
+    public void setCoalescing() {
+        coalescingPathPrefixes = toList(COALESCING_PATH_PREFIXES, mappedConfig.get(COALESCING_PATH_PREFIXES));
+        coalescingKeyHeaders = toList(COALESCING_KEY_HEADERS, mappedConfig.get(COALESCING_KEY_HEADERS));
+        // the default key headers are used if they are not defined.
+        if(coalescingKeyHeaders.isEmpty()) coalescingKeyHeaders = ProxyHandler.DEFAULT_COALESCING_KEY_HEADERS;
+        Object object = mappedConfig.get(COALESCING_MAX_BODY_SIZE);
+        if(object != null) {
+            coalescingMaxBodySize = (Integer)object;
+        }
+    }
+
+    private static List<String> toList(String name, Object object) {
+        List<String> list = new ArrayList<>();
+        if(object instanceof String) {
+            String s = ((String)object).trim();
+            if(s.startsWith("[")) {
+                // json format
+                try {
+                    list = Config.getInstance().getMapper().readValue(s, new TypeReference<List<String>>() {});
+                } catch (IOException e) {
+                    throw new ConfigException("could not parse the " + name + " json with a list of strings.");
+                }
+            } else if(!s.isEmpty()) {
+                // comma separated
+                list = Arrays.asList(s.split("\\s*,\\s*"));
+            }
+        } else if(object instanceof List) {
+            for(Object item : (List<?>)object) {
+                list.add((String)item);
+            }
+        } else if(object != null) {
+            throw new ConfigException(name + " must be a string or a list of strings.");
+        }
+        return list;
+    }
 }
@@ -71,6 +71,9 @@ public class RouterHandler implements HttpHandler {
                 .setMethodRewriteRules(config.methodRewriteRules)
                 .setQueryParamRewriteRules(config.queryParamRewriteRules)
                 .setHeaderRewriteRules(config.headerRewriteRules)
+                .setCoalescingPathPrefixes(config.coalescingPathPrefixes)
+                .setCoalescingKeyHeaders(config.coalescingKeyHeaders)
+                .setCoalescingMaxBodySize(config.coalescingMaxBodySize)
                 .setNext(ResponseCodeHandler.HANDLE_404)
                 .build();
         if(config.isMetricsInjection()) {
@@ -119,6 +122,9 @@ public class RouterHandler implements HttpHandler {
                 .setMethodRewriteRules(config.methodRewriteRules)
                 .setQueryParamRewriteRules(config.queryParamRewriteRules)
                 .setHeaderRewriteRules(config.headerRewriteRules)
+                .setCoalescingPathPrefixes(config.coalescingPathPrefixes)
+                .setCoalescingKeyHeaders(config.coalescingKeyHeaders)
+                .setCoalescingMaxBodySize(config.coalescingMaxBodySize)
                 .setNext(ResponseCodeHandler.HANDLE_404)
                 .build();
         if(config.isMetricsInjection()) {
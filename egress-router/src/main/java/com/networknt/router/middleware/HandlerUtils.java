@@ -1,5 +1,6 @@
 package com.networknt.router.middleware;
 
+import com.networknt.utility.PathPrefixMatcher;
 import com.networknt.utility.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,6 +47,30 @@ public class HandlerUtils {
         return result;
     }
 
+    /**
+     * Looks up the appropriate serviceId for a given requestPath with the mapping compiled into a
+     * {@link PathPrefixMatcher}. The longest matched prefix wins if there are several prefixes that
+     * match the requestPath.
+     *
+     * @param searchKey search key
+     * @param matcher compiled mapping of prefix and service id
+     * @return pathPrefix and serviceId in an array that is found
+     */
+    public static String[] findServiceEntry(String searchKey, PathPrefixMatcher<String> matcher) {
+        if(logger.isDebugEnabled()) logger.debug("findServiceEntry for " + searchKey);
+        if(matcher == null || matcher.isEmpty()) {
+            if(logger.isDebugEnabled()) logger.debug("mapping is empty in the configuration.");
+            return null;
+        }
+        PathPrefixMatcher.Entry<String> entry = matcher.match(searchKey);
+        if(entry == null) {
+            if(logger.isDebugEnabled()) logger.debug("serviceEntry not found!");
+            return null;
+        }
+        if(logger.isDebugEnabled()) logger.debug("prefix = " + entry.getKey() + " serviceId = " + entry.getValue());
+        return new String[] {entry.getKey(), entry.getValue()};
+    }
+
     public static String normalisePath(String requestPath) {
         if(!requestPath.startsWith("/")) {
             return "/" + requestPath;
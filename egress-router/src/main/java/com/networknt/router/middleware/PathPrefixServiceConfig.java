@@ -2,6 +2,7 @@ package com.networknt.router.middleware;
 
 import com.networknt.config.Config;
 import com.networknt.config.ConfigException;
+import com.networknt.utility.PathPrefixMatcher;
 import com.networknt.config.JsonMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,6 +28,7 @@ public class PathPrefixServiceConfig {
     // variables
     private  Map<String, Object> mappedConfig;
     private Map<String, String> mapping;
+    private volatile PathPrefixMatcher<String> mappingMatcher = PathPrefixMatcher.empty();
     private boolean enabled;
 
     // the config object
@@ -61,6 +63,15 @@ public class PathPrefixServiceConfig {
         return mapping;
     }
 
+    /**
+     * The mapping compiled for the per request lookup. It is rebuilt and replaced as a whole on reload.
+     *
+     * @return PathPrefixMatcher of the mapping
+     */
+    public PathPrefixMatcher<String> getMappingMatcher() {
+        return mappingMatcher;
+    }
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -101,6 +112,7 @@ public class PathPrefixServiceConfig {
             } else {
                 logger.error("Mapping is the wrong type. Only JSON string and YAML map are supported.");
             }
+            mappingMatcher = PathPrefixMatcher.compile(mapping);
         }
     }
 
@@ -79,7 +79,7 @@ public class PathPrefixServiceHandler implements MiddlewareHandler {
 
     protected void pathPrefixService(HttpServerExchange exchange) throws Exception {
         String requestPath = exchange.getRequestURI();
-        String[] serviceEntry = HandlerUtils.findServiceEntry(HandlerUtils.normalisePath(requestPath), config.getMapping());
+        String[] serviceEntry = HandlerUtils.findServiceEntry(HandlerUtils.normalisePath(requestPath), config.getMappingMatcher());
 
         // if service URL is in the header, we don't need to do the service discovery with serviceId.
         HeaderValues serviceIdHeader = exchange.getRequestHeaders().get(HttpStringConstants.SERVICE_ID);
@@ -2,6 +2,7 @@ package com.networknt.router.middleware;
 
 import com.networknt.config.Config;
 import com.networknt.config.ConfigException;
+import com.networknt.utility.PathPrefixMatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,6 +29,7 @@ public class ServiceDictConfig {
     // variables
     private Map<String, Object> mappedConfig;
     private Map<String, String> mapping;
+    private volatile PathPrefixMatcher<String> mappingMatcher = PathPrefixMatcher.empty();
     private boolean enabled;
 
     // the config object
@@ -62,6 +64,15 @@ public class ServiceDictConfig {
         return mapping;
     }
 
+    /**
+     * The mapping compiled for the per request lookup. It is rebuilt and replaced as a whole on reload.
+     *
+     * @return PathPrefixMatcher of the mapping
+     */
+    public PathPrefixMatcher<String> getMappingMatcher() {
+        return mappingMatcher;
+    }
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -84,7 +95,7 @@ public class ServiceDictConfig {
                 if(s.startsWith("{")) {
                     // json map
                     try {
-                        mapping = Config.getInstance().getMapper().readValue(s, Map.class);
+                        rawMapping = Config.getInstance().getMapper().readValue(s, Map.class);
                     } catch (IOException e) {
                         logger.error("IOException:", e);
                     }
@@ -107,6 +118,7 @@ public class ServiceDictConfig {
                 mapping.put(HandlerUtils.toInternalKey(entry.getKey()), entry.getValue());
             }
             mapping = Collections.unmodifiableMap(mapping);
+            mappingMatcher = PathPrefixMatcher.compile(mapping);
         }
     }
 
@@ -18,6 +18,7 @@
 
 package io.undertow.server.handlers.proxy;
 
+import com.networknt.balance.InstanceStats;
 import com.networknt.client.ClientConfig;
 import com.networknt.client.ServerExchangeCarrier;
 import com.networknt.cluster.Cluster;
@@ -206,6 +207,14 @@ public class LoadBalancingRouterProxyClient implements ProxyClient {
                 if(logger.isTraceEnabled()) logger.trace("callback could not resolve backend.");
             } else {
                 exchange.addToAttachmentList(ATTEMPTED_HOSTS, host);
+                // feed the in-flight requests and the latency of the instance to the load balancers of the cluster.
+                final InstanceStats stats = host.stats;
+                final long startTime = System.nanoTime();
+                stats.onStart();
+                exchange.addExchangeCompleteListener((exchange1, nextListener) -> {
+                    stats.onComplete(System.nanoTime() - startTime);
+                    nextListener.proceed();
+                });
                 host.connectionPool.connect(target, exchange, callback, timeout, timeUnit, false);
                 if(logger.isTraceEnabled()) logger.trace("got connection from the connection pool");
             }
@@ -346,12 +355,14 @@ public class LoadBalancingRouterProxyClient implements ProxyClient {
         final String serviceId;
         final URI uri;
         final XnioSsl ssl;
+        final InstanceStats stats;
 
         private Host(String serviceId, InetSocketAddress bindAddress, URI uri, XnioSsl ssl, OptionMap options) {
             this.connectionPool = new ProxyConnectionPool(this, bindAddress, uri, ssl, client, options);
             this.serviceId = serviceId;
             this.uri = uri;
             this.ssl = ssl;
+            this.stats = InstanceStats.get(uri.getHost(), uri.getPort());
         }
 
         @Override
@@ -48,8 +48,7 @@ import static io.undertow.Handlers.websocket;
  */
 public class Handler {
 
-    private static final AttachmentKey<Integer> CHAIN_SEQ = AttachmentKey.create(Integer.class);
-    private static final AttachmentKey<String> CHAIN_ID = AttachmentKey.create(String.class);
+    private static final AttachmentKey<ChainCursor> CHAIN_CURSOR = AttachmentKey.create(ChainCursor.class);
     private static final Logger LOG = LoggerFactory.getLogger(Handler.class);
     private static final String CONFIG_NAME = "handler";
     private static String configName = CONFIG_NAME;
@@ -61,6 +60,8 @@ public class Handler {
     // each handler keyed by a name.
     static final Map<String, HttpHandler> handlers = new HashMap<>();
     static final Map<String, List<HttpHandler>> handlerListById = new HashMap<>();
+    // the same chains as arrays so that a hop only reads an array element and increments the cursor.
+    static final Map<String, HttpHandler[]> chainById = new HashMap<>();
     static final Map<HttpString, PathTemplateMatcher<String>> methodToMatcherMap = new HashMap<>();
     static List<HttpHandler> defaultHandlers;
     // this is the last handler that need to be called when OrchestratorHandler is injected into the beginning of the chain
@@ -121,7 +122,7 @@ public class Handler {
 
                     handlerChain.add(chainItem);
                 }
-                handlerListById.put(chainName, handlerChain);
+                putChain(chainName, handlerChain);
             }
         }
     }
@@ -151,7 +152,7 @@ public class Handler {
 
         if (config != null && config.getDefaultHandlers() != null) {
             defaultHandlers = getHandlersFromExecList(config.getDefaultHandlers());
-            handlerListById.put("defaultHandlers", defaultHandlers);
+            putChain("defaultHandlers", defaultHandlers);
         }
     }
 
@@ -210,7 +211,7 @@ public class Handler {
                 pathTemplateMatcher.add(pathChain.getPath(), Integer.toString(randInt));
 
             methodToMatcherMap.put(method, pathTemplateMatcher);
-            handlerListById.put(Integer.toString(randInt), handlers);
+            putChain(Integer.toString(randInt), handlers);
         }
     }
 
@@ -258,18 +259,15 @@ public class Handler {
      * @throws Exception exception
      */
     public static void next(HttpServerExchange ex, String execName, Boolean returnToOrigFlow) throws Exception {
-        var currentChainId = ex.getAttachment(CHAIN_ID);
-        var currentNextIndex = ex.getAttachment(CHAIN_SEQ);
+        var currentCursor = ex.getAttachment(CHAIN_CURSOR);
 
-        ex.putAttachment(CHAIN_ID, execName);
-        ex.putAttachment(CHAIN_SEQ, 0);
+        ex.putAttachment(CHAIN_CURSOR, new ChainCursor(getChain(execName)));
 
         next(ex);
 
-        // return to current flow.
+        // return to current flow. The cursor of the current flow still points to its next handler.
         if (returnToOrigFlow) {
-            ex.putAttachment(CHAIN_ID, currentChainId);
-            ex.putAttachment(CHAIN_SEQ, currentNextIndex);
+            ex.putAttachment(CHAIN_CURSOR, currentCursor);
             next(ex);
         }
     }
@@ -282,17 +280,10 @@ public class Handler {
      * @return The HttpHandler that should be executed next.
      */
     public static HttpHandler getNext(HttpServerExchange httpServerExchange) {
-        var chainId = httpServerExchange.getAttachment(CHAIN_ID);
-        var handlersForId = handlerListById.get(chainId);
-        var nextIndex = httpServerExchange.getAttachment(CHAIN_SEQ);
+        var cursor = httpServerExchange.getAttachment(CHAIN_CURSOR);
 
         // Check if we've reached the end of the chain.
-        if (nextIndex < handlersForId.size()) {
-            httpServerExchange.putAttachment(CHAIN_SEQ, nextIndex + 1);
-            return handlersForId.get(nextIndex);
-        }
-
-        return null;
+        return cursor == null ? null : cursor.next();
     }
 
     /**
@@ -345,8 +336,7 @@ public class Handler {
                 }
 
                 var id = result.getValue();
-                ex.putAttachment(CHAIN_ID, id);
-                ex.putAttachment(CHAIN_SEQ, 0);
+                ex.putAttachment(CHAIN_CURSOR, new ChainCursor(chainById.get(id)));
                 return true;
             }
         }
@@ -366,13 +356,33 @@ public class Handler {
 
         // check if defaultHandlers is empty
         if (defaultHandlers != null && defaultHandlers.size() > 0) {
-            ex.putAttachment(CHAIN_ID, "defaultHandlers");
-            ex.putAttachment(CHAIN_SEQ, 0);
+            ex.putAttachment(CHAIN_CURSOR, new ChainCursor(chainById.get("defaultHandlers")));
             return true;
         }
         return false;
     }
 
+    /**
+     * Register a flat list of handlers by the id of a handler, a chain or a path, and compile it into the array
+     * that is executed by the cursor of an exchange.
+     *
+     * @param id       The id of the handler, chain or path.
+     * @param handlers The handlers in the order of execution.
+     */
+    static void putChain(String id, List<HttpHandler> handlers) {
+        handlerListById.put(id, handlers);
+        chainById.put(id, handlers.toArray(new HttpHandler[0]));
+    }
+
+    private static HttpHandler[] getChain(String id) {
+        var chain = chainById.get(id);
+
+        if (chain == null)
+            throw new RuntimeException("Unknown handler or chain: " + id);
+
+        return chain;
+    }
+
     /**
      * Converts the list of chains and handlers to a flat list of handlers. If a
      * chain is named the same as a handler, the chain is resolved first.
@@ -458,7 +468,7 @@ public class Handler {
 
         registerMiddlewareHandler(resolvedHandler);
         handlers.put(namedClass.first, resolvedHandler);
-        handlerListById.put(namedClass.first, Collections.singletonList(resolvedHandler));
+        putChain(namedClass.first, Collections.singletonList(resolvedHandler));
     }
 
     /**
@@ -487,7 +497,7 @@ public class Handler {
                 }
                 registerMiddlewareHandler(httpHandler);
                 handlers.put(namedClass.first, httpHandler);
-                handlerListById.put(namedClass.first, Collections.singletonList(httpHandler));
+                putChain(namedClass.first, Collections.singletonList(httpHandler));
             } else if (entry.getValue() instanceof List) {
 
                 // If the values in the config are a list, call the constructor of the handler
@@ -502,7 +512,7 @@ public class Handler {
                 }
                 registerMiddlewareHandler(httpHandler);
                 handlers.put(namedClass.first, httpHandler);
-                handlerListById.put(namedClass.first, Collections.singletonList(httpHandler));
+                putChain(namedClass.first, Collections.singletonList(httpHandler));
             }
         }
     }
@@ -546,4 +556,21 @@ public class Handler {
     public static Map<String, HttpHandler> getHandlers() {
         return handlers;
     }
+
+    /**
+     * The position of an exchange in a compiled chain. There is one cursor per exchange for the flow it is in,
+     * and it is only accessed by the thread that is handling the exchange.
+     */
+    static final class ChainCursor {
+        private final HttpHandler[] handlers;
+        private int index;
+
+        ChainCursor(HttpHandler[] handlers) {
+            this.handlers = handlers;
+        }
+
+        HttpHandler next() {
+            return index < handlers.length ? handlers[index++] : null;
+        }
+    }
 }
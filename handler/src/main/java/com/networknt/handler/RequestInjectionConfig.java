@@ -16,8 +16,13 @@ public class RequestInjectionConfig {
     public static final String CONFIG_NAME = "request-injection";
     private static final String ENABLED = "enabled";
     private static final String APPLIED_BODY_INJECTION_PATH_PREFIXES = "appliedBodyInjectionPathPrefixes";
+    private static final String MAX_REQUEST_BODY_SIZE = "maxRequestBodySize";
+    public static final long DEFAULT_MAX_REQUEST_BODY_SIZE = 16 * 1024 * 1024;
     private boolean enabled;
+    private long maxRequestBodySize = DEFAULT_MAX_REQUEST_BODY_SIZE;
     private List<String> appliedBodyInjectionPathPrefixes;
+    // the prefixes are copied into an array on load and reload so that the request path doesn't iterate the list.
+    private volatile String[] appliedBodyInjectionPathPrefixArray = new String[0];
 
     private Map<String, Object> mappedConfig;
     private Config config;
@@ -60,10 +65,29 @@ public class RequestInjectionConfig {
         return enabled;
     }
 
+    public long getMaxRequestBodySize() {
+        return maxRequestBodySize;
+    }
+
     public List<String> getAppliedBodyInjectionPathPrefixes() {
         return appliedBodyInjectionPathPrefixes;
     }
 
+    /**
+     * Check if the body of a request path is injected. A prefix is matched with startsWith, so /v1/pet applies to
+     * /v1/pets as well.
+     *
+     * @param requestPath the request path
+     * @return true if the request path starts with one of the appliedBodyInjectionPathPrefixes
+     */
+    public boolean isAppliedBodyInjectionPathPrefix(String requestPath) {
+        for (var prefix : this.appliedBodyInjectionPathPrefixArray)
+            if (requestPath.startsWith(prefix))
+                return true;
+
+        return false;
+    }
+
     Map<String, Object> getMappedConfig() {
         return mappedConfig;
     }
@@ -73,6 +97,16 @@ public class RequestInjectionConfig {
 
         if (object != null && (Boolean) object)
             enabled = true;
+
+        object = getMappedConfig().get(MAX_REQUEST_BODY_SIZE);
+
+        if (object != null) {
+
+            if (object instanceof Number)
+                maxRequestBodySize = ((Number) object).longValue();
+
+            else maxRequestBodySize = Long.parseLong(object.toString().trim());
+        }
     }
 
     private void setConfigList() {
@@ -106,6 +140,9 @@ public class RequestInjectionConfig {
 
             } else throw new ConfigException("appliedBodyInjectionPathPrefixes must be a string or a list of strings.");
         }
+
+        this.appliedBodyInjectionPathPrefixArray = this.appliedBodyInjectionPathPrefixes == null
+                ? new String[0] : this.appliedBodyInjectionPathPrefixes.toArray(new String[0]);
     }
 
 }
@@ -1,7 +1,6 @@
 package com.networknt.handler;
 
 import com.networknt.httpstring.AttachmentConstants;
-import com.networknt.httpstring.ContentType;
 import com.networknt.service.SingletonServiceFactory;
 import com.networknt.utility.ModuleRegistry;
 import io.undertow.Handlers;
@@ -11,14 +10,15 @@ import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.protocol.http.HttpContinue;
 import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.Methods;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnio.ChannelListener;
 import org.xnio.IoUtils;
 import org.xnio.channels.StreamSourceChannel;
 
-import java.nio.ByteBuffer;
-import java.util.Arrays;
+import java.io.IOException;
 
 /**
  * This is the middleware used in the request/response chain to inject the implementations of RequestInterceptorHandler interface
@@ -31,21 +31,25 @@ public class RequestInterceptorInjectionHandler implements MiddlewareHandler {
 
     private static final Logger LOG = LoggerFactory.getLogger(RequestInterceptorInjectionHandler.class);
     public static final int MAX_BUFFERS = 1024;
+    private static final String PAYLOAD_TOO_LARGE = "ERR10068";
 
     private volatile HttpHandler next;
     private static RequestInjectionConfig config;
-    private RequestInterceptor[] interceptors = null;
+    private final RequestInterceptor[] interceptors;
+    private final boolean contentRequired;
 
     public RequestInterceptorInjectionHandler() {
         config = RequestInjectionConfig.load();
         LOG.info("RequestInterceptorInjectionHandler is loaded!");
         interceptors = SingletonServiceFactory.getBeans(RequestInterceptor.class);
+        contentRequired = injectorContentRequired(interceptors);
     }
 
     public RequestInterceptorInjectionHandler(RequestInjectionConfig cfg) {
         config = cfg;
         LOG.info("RequestInterceptorInjectionHandler is loaded!");
         interceptors = SingletonServiceFactory.getBeans(RequestInterceptor.class);
+        contentRequired = injectorContentRequired(interceptors);
     }
 
     @Override
@@ -83,51 +87,40 @@ public class RequestInterceptorInjectionHandler implements MiddlewareHandler {
     @Override
     public void handleRequest(HttpServerExchange httpServerExchange) throws Exception {
 
-        var method = httpServerExchange.getRequestMethod().toString();
+        // the next handler is kept on the stack and in the reader as the handler instance is shared by the requests.
+        final var nextHandler = Handler.getNext(httpServerExchange, next);
+        final var readBody = this.shouldReadBody(httpServerExchange);
 
-        this.next = Handler.getNext(httpServerExchange);
+        if (logger.isTraceEnabled())
+            logger.trace("readBody = {} method = {} requestComplete = {} requiresContinueResponse = {}", readBody, httpServerExchange.getRequestMethod(), httpServerExchange.isRequestComplete(), HttpContinue.requiresContinueResponse(httpServerExchange.getRequestHeaders()));
 
-            if(logger.isTraceEnabled())
-                logger.trace("injectionContentRequired = {} appliedBodyInjectionPathPrefix = {} method = {} requestComplete = {} requiresContinueResponse = {}", this.injectorContentRequired(), this.isAppliedBodyInjectionPathPrefix(httpServerExchange.getRequestPath()), method, httpServerExchange.isRequestComplete(), HttpContinue.requiresContinueResponse(httpServerExchange.getRequestHeaders()));
+        if (readBody) {
+            final var maxSize = config.getMaxRequestBodySize();
 
-        if (this.shouldReadBody(httpServerExchange)) {
-            final var channel = httpServerExchange.getRequestChannel();
-            final var bufferedData = new PooledByteBuffer[MAX_BUFFERS];
+            // reject the request before any byte is read if the declared length is over the limit.
+            if (httpServerExchange.getRequestContentLength() > maxSize) {
+                setExchangeStatus(httpServerExchange, PAYLOAD_TOO_LARGE);
+                return;
+            }
 
-            int readBuffers = 0;
-            var buffer = httpServerExchange.getConnection().getByteBufferPool().allocate();
+            final var reader = new BodyReader(httpServerExchange, nextHandler, maxSize);
+            final var channel = httpServerExchange.getRequestChannel();
 
             try {
-                for (; ; ) {
-                    int r;
-                    var b = buffer.getBuffer();
-                    r = channel.read(b);
-
-                    if (r == -1) {
-                        handleEndOfStream(b, bufferedData, readBuffers, buffer);
-                        break;
-
-                    } else if (r == 0) {
-                        this.setChannelRead(channel, buffer, readBuffers, bufferedData, httpServerExchange);
-                        channel.resumeReads();
-                        return;
 
-                    } else if (!b.hasRemaining()) {
-                        b.flip();
-                        bufferedData[readBuffers++] = buffer;
-
-                        if (readBuffers == MAX_BUFFERS)
-                            break;
+                if (!reader.read(channel)) {
 
-                        buffer = httpServerExchange.getConnection().getByteBufferPool().allocate();
-                    }
+                    // the rest of the body is read by the listener and the next handler is executed from there.
+                    channel.getReadSetter().set(reader);
+                    channel.resumeReads();
+                    return;
                 }
 
-                this.saveBufferAndResetUndertowConnector(httpServerExchange, bufferedData);
+                reader.complete();
 
             } catch (Exception | Error e) {
-                safeCloseBuffers(bufferedData, buffer);
-                httpServerExchange.endExchange();
+                reader.abort(e);
+                return;
             }
 
         } else {
@@ -137,89 +130,185 @@ public class RequestInterceptorInjectionHandler implements MiddlewareHandler {
         }
 
         // If there are any error and one of the interceptor response the error to the caller, we don't need to call the next.
-        if(logger.isTraceEnabled())
+        if (logger.isTraceEnabled())
             logger.trace("Exchange response started status = {}", httpServerExchange.isResponseStarted());
 
-        if(!httpServerExchange.isResponseStarted())
-            Handler.next(httpServerExchange, next);
+        if (!httpServerExchange.isResponseStarted())
+            Handler.next(httpServerExchange, nextHandler);
 
     }
 
     private boolean shouldReadBody(final HttpServerExchange ex) {
-        var headers = ex.getRequestHeaders();
-        var requestMethod = ex.getRequestMethod().toString();
-        var requestPath = ex.getRequestPath();
-
-        return this.injectorContentRequired()
-                && this.isAppliedBodyInjectionPathPrefix(requestPath)
-                && this.hasContent(requestMethod)
+        return this.contentRequired
+                && this.hasContent(ex.getRequestMethod())
                 && !ex.isRequestComplete()
-                && !HttpContinue.requiresContinueResponse(headers);
+                && config.isAppliedBodyInjectionPathPrefix(ex.getRequestPath())
+                && !HttpContinue.requiresContinueResponse(ex.getRequestHeaders());
     }
 
-    private boolean hasContent(String method) {
-        return method.equalsIgnoreCase("post") || method.equalsIgnoreCase("put") || method.equalsIgnoreCase("patch");
+    private boolean hasContent(HttpString method) {
+        return Methods.POST.equals(method) || Methods.PUT.equals(method) || Methods.PATCH.equals(method);
     }
 
     /**
-     * Check if any of the interceptors require content.
+     * Check if any of the interceptors require content. It is called once when the interceptors are loaded.
      *
+     * @param interceptors - the request interceptors.
      * @return - true if required.
      */
-    private boolean injectorContentRequired() {
-        return this.interceptors != null && this.interceptors.length > 0 &&
-                Arrays.stream(this.interceptors).anyMatch(RequestInterceptor::isRequiredContent);
+    private static boolean injectorContentRequired(RequestInterceptor[] interceptors) {
+
+        if (interceptors != null)
+            for (var interceptor : interceptors)
+                if (interceptor.isRequiredContent())
+                    return true;
+
+        return false;
     }
 
     /**
-     * Create a new read channel listener for the request channel. This is needed for 'chunked' requests larger than our server buffer set.
-     *
-     * @param c            - the request channel.
-     * @param cPooledBuffer  - pool buffer.
-     * @param cRead  - our read.
-     * @param bufferedData       - total buffered data.
-     * @param ex - current exchange.
+     * Reads the request body of an exchange into pooled buffers. An instance is created for each request so that the
+     * buffers and the next handler of a read that continues in the read listener are never shared between requests.
+     * The size is checked as the bytes arrive, and the request is rejected as soon as it exceeds the maxRequestBodySize.
      */
-    private void setChannelRead(final StreamSourceChannel c, final PooledByteBuffer cPooledBuffer, final int cRead, final PooledByteBuffer[] bufferedData, final HttpServerExchange ex) {
-        c.getReadSetter().set(new ChannelListener<StreamSourceChannel>() {
-            PooledByteBuffer buffer = cPooledBuffer;
-            int readBuffers = cRead;
+    private final class BodyReader implements ChannelListener<StreamSourceChannel> {
+        private final HttpServerExchange exchange;
+        private final HttpHandler nextHandler;
+        private final long maxSize;
+        private final PooledByteBuffer[] bufferedData = new PooledByteBuffer[MAX_BUFFERS];
+        private PooledByteBuffer buffer;
+        private int readBuffers;
+        private long readBytes;
+
+        BodyReader(final HttpServerExchange exchange, final HttpHandler nextHandler, final long maxSize) {
+            this.exchange = exchange;
+            this.nextHandler = nextHandler;
+            this.maxSize = maxSize;
+        }
 
-            @Override
-            public void handleEvent(StreamSourceChannel channel) {
-                try {
+        /**
+         * Read the available bytes of the channel.
+         *
+         * @param channel - the request channel.
+         * @return - true if the whole body is read, false if the channel has no more bytes for now.
+         * @throws IOException - if the channel cannot be read.
+         * @throws RequestTooLargeException - if the body is bigger than the limit.
+         */
+        boolean read(final StreamSourceChannel channel) throws IOException {
 
-                    for (; ; ) {
-                        int r;
-                        var b = buffer.getBuffer();
-                        r = channel.read(b);
+            for (; ; ) {
 
-                        if (r == -1) {
-                            handleEndOfStream(b, bufferedData, readBuffers, buffer);
-                            suspendReads(ex, bufferedData, channel, next);
-                            return;
+                if (buffer == null)
+                    buffer = exchange.getConnection().getByteBufferPool().allocate();
 
-                        } else if (r == 0)
-                            return;
+                var b = buffer.getBuffer();
+                int r = channel.read(b);
 
-                        else if (!b.hasRemaining()) {
-                            b.flip();
-                            bufferedData[readBuffers++] = buffer;
+                if (r == -1) {
 
-                            if (readBuffers == MAX_BUFFERS) {
-                                suspendReads(ex, bufferedData, channel, next);
-                                return;
-                            }
+                    if (b.position() == 0)
+                        buffer.close();
 
-                            buffer = ex.getConnection().getByteBufferPool().allocate();
-                        }
+                    else {
+                        b.flip();
+                        bufferedData[readBuffers++] = buffer;
                     }
-                } catch (Throwable e) {
-                    safeCloseBuffers(bufferedData, buffer);
-                    ex.endExchange();
+
+                    buffer = null;
+                    return true;
+
+                } else if (r == 0)
+                    return false;
+
+                readBytes += r;
+
+                if (readBytes > maxSize)
+                    throw new RequestTooLargeException();
+
+                if (!b.hasRemaining()) {
+
+                    if (readBuffers == MAX_BUFFERS)
+                        throw new RequestTooLargeException();
+
+                    b.flip();
+                    bufferedData[readBuffers++] = buffer;
+                    buffer = null;
                 }
             }
-        });
+        }
+
+        /**
+         * Save the buffered body to the exchange and invoke the interceptors.
+         */
+        void complete() {
+            saveBufferAndResetUndertowConnector(exchange, bufferedData);
+        }
+
+        /**
+         * Release the buffers and end the exchange with an error.
+         *
+         * @param e - the cause.
+         */
+        void abort(final Throwable e) {
+            safeCloseBuffers(bufferedData, buffer);
+            buffer = null;
+
+            if (e instanceof RequestTooLargeException) {
+
+                if (LOG.isDebugEnabled())
+                    LOG.debug("The request body is bigger than {} bytes.", maxSize);
+
+                // the connection cannot be reused as the rest of the body is not read.
+                exchange.setPersistent(false);
+                setExchangeStatus(exchange, PAYLOAD_TOO_LARGE);
+
+            } else {
+                LOG.error("Failed to read the request body: " + e.getMessage(), e);
+                exchange.endExchange();
+            }
+        }
+
+        @Override
+        public void handleEvent(final StreamSourceChannel channel) {
+
+            try {
+
+                if (!read(channel))
+                    return;
+
+            } catch (Throwable e) {
+                channel.getReadSetter().set(null);
+                channel.suspendReads();
+                abort(e);
+                return;
+            }
+
+            channel.getReadSetter().set(null);
+            channel.suspendReads();
+            complete();
+
+            if (LOG.isTraceEnabled())
+                LOG.trace("Next is: {}", nextHandler.getClass());
+
+            if (exchange.isResponseStarted())
+                exchange.endExchange();
+
+            else Connectors.executeRootHandler(nextHandler, exchange);
+        }
+    }
+
+    /**
+     * Thrown by the reader when the request body is over the limit. It has no stack trace as it is an expected outcome.
+     */
+    private static final class RequestTooLargeException extends IOException {
+        RequestTooLargeException() {
+            super("The request body is too large", null);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
     }
 
     /**
@@ -236,27 +325,6 @@ public class RequestInterceptorInjectionHandler implements MiddlewareHandler {
             IoUtils.safeClose(buf);
     }
 
-    /**
-     * Suspend our reads and remove the channel listener we created.
-     *
-     * @param ex - current exchange
-     * @param bufferedData       - total buffered data.
-     * @param c            - request channel
-     * @param next               - next http handler
-     */
-    private void suspendReads(final HttpServerExchange ex, final PooledByteBuffer[] bufferedData, StreamSourceChannel c, HttpHandler next) {
-        saveBufferAndResetUndertowConnector(ex, bufferedData);
-
-        c.getReadSetter().set(null);
-        c.suspendReads();
-
-        if (LOG.isTraceEnabled())
-            LOG.info("Next is: {}", next.getClass());
-
-        Connectors.executeRootHandler(next, ex);
-    }
-
-
     /**
      * Save the total buffer as an attachment. Update content length just in case
      *
@@ -283,17 +351,6 @@ public class RequestInterceptorInjectionHandler implements MiddlewareHandler {
         }
     }
 
-    private static void handleEndOfStream(ByteBuffer b, PooledByteBuffer[] bufferedData, int readBuffers, PooledByteBuffer buffer) {
-
-        if (b.position() == 0)
-            buffer.close();
-
-        else {
-            b.flip();
-            bufferedData[readBuffers] = buffer;
-        }
-    }
-
     /**
      * Invokes the interceptors that use request body.
      *
@@ -318,8 +375,4 @@ public class RequestInterceptorInjectionHandler implements MiddlewareHandler {
             }
         }
     }
-
-    private boolean isAppliedBodyInjectionPathPrefix(String requestPath) {
-        return config.getAppliedBodyInjectionPathPrefixes() != null && config.getAppliedBodyInjectionPathPrefixes().stream().anyMatch(requestPath::startsWith);
-    }
 }
@@ -22,6 +22,8 @@ public class ResponseInjectionConfig {
     private static final String APPLIED_BODY_INJECTION_PATH_PREFIXES = "appliedBodyInjectionPathPrefixes";
     private boolean enabled;
     private List<String> appliedBodyInjectionPathPrefixes;
+    // the prefixes are copied into an array on load and reload so that the response path doesn't iterate the list.
+    private volatile String[] appliedBodyInjectionPathPrefixArray = new String[0];
 
     private Map<String, Object> mappedConfig;
     private Config config;
@@ -68,6 +70,21 @@ public class ResponseInjectionConfig {
         return appliedBodyInjectionPathPrefixes;
     }
 
+    /**
+     * Check if the response body of a request path is injected. A prefix is matched with startsWith, so /v1/pet
+     * applies to /v1/pets as well.
+     *
+     * @param requestPath the request path
+     * @return true if the request path starts with one of the appliedBodyInjectionPathPrefixes
+     */
+    public boolean isAppliedBodyInjectionPathPrefix(String requestPath) {
+        for (var prefix : appliedBodyInjectionPathPrefixArray)
+            if (requestPath.startsWith(prefix))
+                return true;
+
+        return false;
+    }
+
     Map<String, Object> getMappedConfig() {
         return mappedConfig;
     }
@@ -111,6 +128,8 @@ public class ResponseInjectionConfig {
 
             } else throw new ConfigException("appliedBodyInjectionPathPrefixes must be a string or a list of strings.");
         }
+        appliedBodyInjectionPathPrefixArray = appliedBodyInjectionPathPrefixes == null
+                ? new String[0] : appliedBodyInjectionPathPrefixes.toArray(new String[0]);
     }
 
 }
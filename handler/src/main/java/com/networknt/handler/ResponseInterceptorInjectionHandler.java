@@ -27,12 +27,14 @@ public class ResponseInterceptorInjectionHandler implements MiddlewareHandler {
     public static final AttachmentKey<HeaderMap> ORIGINAL_ACCEPT_ENCODINGS_KEY = AttachmentKey.create(HeaderMap.class);
 
     private ResponseInterceptor[] interceptors = null;
+    // resolved once as the interceptors are singletons.
+    private boolean requiredContent = false;
     private volatile HttpHandler next;
     private static ResponseInjectionConfig config;
 
     public ResponseInterceptorInjectionHandler() throws Exception {
         config = ResponseInjectionConfig.load();
-        interceptors = SingletonServiceFactory.getBeans(ResponseInterceptor.class);
+        initInterceptors();
         LOG.info("SinkConduitInjectorHandler is loaded!");
     }
 
@@ -45,9 +47,15 @@ public class ResponseInterceptorInjectionHandler implements MiddlewareHandler {
     @Deprecated
     public ResponseInterceptorInjectionHandler(ResponseInjectionConfig cfg) throws Exception {
         config = cfg;
+        initInterceptors();
         LOG.info("SinkConduitInjectorHandler is loaded!");
     }
 
+    private void initInterceptors() {
+        interceptors = SingletonServiceFactory.getBeans(ResponseInterceptor.class);
+        requiredContent = interceptors != null && Arrays.stream(interceptors).anyMatch(ResponseInterceptor::isRequiredContent);
+    }
+
     @Override
     public HttpHandler getNext() {
         return next;
@@ -113,6 +121,12 @@ public class ResponseInterceptorInjectionHandler implements MiddlewareHandler {
     @Override
     public void handleRequest(HttpServerExchange exchange) throws Exception {
 
+        // without any interceptor, the response is passed through without a conduit.
+        if (interceptors == null || interceptors.length == 0) {
+            Handler.next(exchange, next);
+            return;
+        }
+
         // of the response buffering it if any interceptor resolvers the request
         // and requires the content from the backend
         exchange.addResponseWrapper((ConduitFactory<StreamSinkConduit> factory, HttpServerExchange currentExchange) -> {
@@ -145,15 +159,10 @@ public class ResponseInterceptorInjectionHandler implements MiddlewareHandler {
 
     private boolean requiresContentSinkConduit(final HttpServerExchange exchange) {
         return this.interceptorsRequireContent()
-                && isAppliedBodyInjectionPathPrefix(exchange.getRequestPath())
+                && config.isAppliedBodyInjectionPathPrefix(exchange.getRequestPath())
                 && !isCompressed(exchange);
     }
 
-    private boolean isAppliedBodyInjectionPathPrefix(String requestPath) {
-        return config.getAppliedBodyInjectionPathPrefixes() != null
-                && config.getAppliedBodyInjectionPathPrefixes().stream().anyMatch(requestPath::startsWith);
-    }
-
     private boolean hasCompressionFormat(String values) {
         return Arrays.stream(values.split(",")).anyMatch(
                 (v) -> Headers.GZIP.toString().equals(v)
@@ -163,6 +172,6 @@ public class ResponseInterceptorInjectionHandler implements MiddlewareHandler {
     }
 
     private boolean interceptorsRequireContent() {
-        return interceptors != null && Arrays.stream(interceptors).anyMatch(ri -> ri.isRequiredContent());
+        return requiredContent;
     }
 }
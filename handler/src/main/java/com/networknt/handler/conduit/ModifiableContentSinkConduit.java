@@ -1,6 +1,5 @@
 package com.networknt.handler.conduit;
 
-import com.networknt.handler.BuffersUtils;
 import com.networknt.handler.ResponseInterceptor;
 import com.networknt.httpstring.AttachmentConstants;
 import com.networknt.service.SingletonServiceFactory;
@@ -11,27 +10,49 @@ import io.undertow.util.Headers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnio.IoUtils;
-import org.xnio.XnioWorker;
+import org.xnio.Buffers;
 import org.xnio.channels.StreamSourceChannel;
 import org.xnio.conduits.*;
 
 import java.io.IOException;
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
+/**
+ * A conduit that buffers the response body so that the response interceptors can read and update it before it
+ * is sent to the client. The body is kept in the pooled buffers attached to the exchange, the interceptors are
+ * executed when the writes are terminated, and the updated buffers are written to the next conduit with gathering
+ * writes in flush. It never waits for the next conduit to become writable, so the same code path serves HTTP/1.1
+ * and HTTP/2 on the IO thread, and the caller of flush resumes the writes when the next conduit is full.
+ *
+ * It is only created by the ResponseInterceptorInjectionHandler when an interceptor requires the content. Otherwise,
+ * the ContentStreamSinkConduit executes the interceptors before the response headers are sent.
+ */
 public class ModifiableContentSinkConduit extends AbstractStreamSinkConduit<StreamSinkConduit> {
     public static int MAX_BUFFERS = 1024;
 
     static final Logger LOG = LoggerFactory.getLogger(ModifiableContentSinkConduit.class);
 
+    // ServerFixedLengthStreamSinkConduit.reset is package private, and it is looked up once instead of per response.
+    private static final MethodHandle FIXED_LENGTH_RESET = findFixedLengthReset();
+
     private final HttpServerExchange exchange;
 
     private final ResponseInterceptor[] interceptors;
 
-    private volatile boolean writingResponse = false;
+    // the index of the buffer that is being filled. It is in write mode while the other buffers are flipped.
+    private int current = -1;
+
+    private boolean writingResponse = false;
+
+    private ByteBuffer[] pending;
 
-    private final Object lock = new Object();
+    private int pendingIndex;
+
+    private boolean nextTerminated = false;
 
     /**
      * Construct a new instance.
@@ -48,6 +69,21 @@ public class ModifiableContentSinkConduit extends AbstractStreamSinkConduit<Stre
         resetBufferPool(exchange);
     }
 
+    private static MethodHandle findFixedLengthReset() {
+        try {
+            var lookup = MethodHandles.privateLookupIn(ServerFixedLengthStreamSinkConduit.class, MethodHandles.lookup());
+            return lookup.findVirtual(ServerFixedLengthStreamSinkConduit.class, "reset",
+                    MethodType.methodType(void.class, long.class, HttpServerExchange.class));
+
+        } catch (ReflectiveOperationException | RuntimeException e) {
+
+            if (LOG.isErrorEnabled())
+                LOG.error("could not find ServerFixedLengthStreamSinkConduit.reset method", e);
+
+            return null;
+        }
+    }
+
     /**
      * init buffers pool with a single, empty buffer.
      *
@@ -68,20 +104,38 @@ public class ModifiableContentSinkConduit extends AbstractStreamSinkConduit<Stre
 
     @Override
     public int write(ByteBuffer src) throws IOException {
-        return BuffersUtils.append(src, exchange.getAttachment(AttachmentConstants.BUFFERED_RESPONSE_DATA_KEY), exchange);
+
+        var buffers = exchange.getAttachment(AttachmentConstants.BUFFERED_RESPONSE_DATA_KEY);
+        int copied = 0;
+
+        while (src.hasRemaining()) {
+
+            if (current < 0 || !buffers[current].getBuffer().hasRemaining()) {
+
+                if (current + 1 >= buffers.length)
+                    throw new IOException("The response body is bigger than the " + buffers.length + " buffers of the response interceptors.");
+
+                if (current >= 0)
+                    buffers[current].getBuffer().flip();
+
+                current++;
+                buffers[current] = exchange.getConnection().getByteBufferPool().allocate();
+            }
+            copied += Buffers.copy(buffers[current].getBuffer(), src);
+        }
+
+        return copied;
     }
 
     @Override
-    public long write(ByteBuffer[] dsts, int offs, int len) throws IOException {
+    public long write(ByteBuffer[] srcs, int offs, int len) throws IOException {
 
-        for (int i = offs; i < len; ++i) {
-            var srcBuffer = dsts[offs + i];
+        long written = 0;
 
-            if (srcBuffer.hasRemaining())
-                return write(srcBuffer);
-        }
+        for (int i = offs; i < offs + len; ++i)
+            written += write(srcs[i]);
 
-        return 0;
+        return written;
     }
 
     @Override
@@ -107,204 +161,143 @@ public class ModifiableContentSinkConduit extends AbstractStreamSinkConduit<Stre
     @Override
     public void terminateWrites() throws IOException {
 
-        if (this.interceptors == null || this.interceptors.length == 0)
-            next.terminateWrites();
-
-        else if (!isWritingResponse()) {
-
-            synchronized (lock) {
-                this.writingResponse = true;
-            }
-
-            if (LOG.isTraceEnabled())
-                LOG.trace("terminating writes with interceptors length = " + (this.interceptors.length));
+        if (writingResponse)
+            return;
 
-            try {
+        writingResponse = true;
 
-                for (var interceptor : this.interceptors) {
+        var buffers = exchange.getAttachment(AttachmentConstants.BUFFERED_RESPONSE_DATA_KEY);
 
-                    if (LOG.isDebugEnabled())
-                        LOG.debug("Executing interceptor " + interceptor.getClass());
+        if (current >= 0)
+            buffers[current].getBuffer().flip();
 
-                    interceptor.handleRequest(exchange);
-                }
+        if (LOG.isTraceEnabled())
+            LOG.trace("terminating writes with interceptors length = " + (this.interceptors.length));
 
-            } catch (Exception e) {
+        executeInterceptors();
 
-                if (LOG.isErrorEnabled())
-                    LOG.error("Error executing interceptors: " + e.getMessage(), e);
+        // the interceptors might have replaced the buffers.
+        buffers = exchange.getAttachment(AttachmentConstants.BUFFERED_RESPONSE_DATA_KEY);
+        int count = 0;
+        long length = 0;
 
-                throw new RuntimeException(e);
-            }
+        while (buffers != null && count < buffers.length && buffers[count] != null && buffers[count].getBuffer() != null) {
+            length += buffers[count].getBuffer().remaining();
+            count++;
+        }
 
-            var dests = this.exchange.getAttachment(AttachmentConstants.BUFFERED_RESPONSE_DATA_KEY);
+        pending = new ByteBuffer[count];
 
-            if (LOG.isTraceEnabled())
-                LOG.trace("Next conduit is: {}", next.getClass().getName());
+        for (int i = 0; i < count; i++)
+            pending[i] = buffers[i].getBuffer();
 
-            /* only update content-length header if it exists. Response might have transfer encoding */
-            if (this.exchange.getResponseHeaders().get(Headers.CONTENT_LENGTH) != null)
-                this.updateContentLength(this.exchange, dests);
+        if (LOG.isTraceEnabled())
+            LOG.trace("Next conduit is: {}", next.getClass().getName());
 
-            this.writeToNextConduit(dests);
-        }
+        /* only update content-length header if it exists. Response might have transfer encoding */
+        if (this.exchange.getResponseHeaders().get(Headers.CONTENT_LENGTH) != null)
+            this.updateContentLength(this.exchange, length);
     }
 
     /**
-     * Writes to the next conduit.
-     * We track the position of the buffer after writing because of cases where the conduit does not consume everything.
-     * e.g. When transfer is chunked.
+     * Writes the buffered response to the next conduit once the writes are terminated. We track the position of
+     * the buffers between the calls because the next conduit might not consume everything, e.g. when the HTTP/2
+     * flow control window is exhausted. The caller of flush waits for the next conduit to become writable and
+     * calls flush again.
      *
-     * @param responseDataPooledBuffers - pooled response buffers (after modification)
+     * @return true if the buffered response is written and the next conduit is flushed
      * @throws IOException - throws IO exception when writing to next conduits buffers.
      */
-    private void writeToNextConduit(final PooledByteBuffer[] responseDataPooledBuffers) throws IOException {
-
-        /* http2 uses StreamSinkChannelWrappingConduit. */
-        if (!(this.next instanceof StreamSinkChannelWrappingConduit))
-            this.http1Write(responseDataPooledBuffers);
-
-        else this.http2Write(responseDataPooledBuffers);
-    }
-
-    private void http1Write(final PooledByteBuffer[] buffers) throws IOException {
-
-        for (var buffer : buffers) {
+    @Override
+    public boolean flush() throws IOException {
 
-            if (buffer == null)
-                break;
+        if (pending != null) {
 
-            if (LOG.isTraceEnabled())
-                LOG.trace("buffer position {} and buffer limit {}", buffer.getBuffer().position(), buffer.getBuffer().limit());
+            while (pendingIndex < pending.length) {
+                long res = next.write(pending, pendingIndex, pending.length - pendingIndex);
 
-            while (buffer.getBuffer().position() < buffer.getBuffer().limit()) {
+                while (pendingIndex < pending.length && !pending[pendingIndex].hasRemaining())
+                    pendingIndex++;
 
-                if (LOG.isTraceEnabled())
-                    LOG.trace("Before write buffer position: {}", buffer.getBuffer().position());
+                if (res == 0 && pendingIndex < pending.length) {
 
-                next.write(buffer.getBuffer());
-
-                if (LOG.isTraceEnabled())
-                    LOG.trace("After write buffer position: {}", buffer.getBuffer().position());
+                    if (LOG.isTraceEnabled())
+                        LOG.trace("The next conduit is full with {} buffers left", pending.length - pendingIndex);
 
+                    return false;
+                }
             }
 
+            pending = null;
+            releaseBuffers();
         }
 
-        next.terminateWrites();
-
+        if (writingResponse && !nextTerminated) {
+            next.terminateWrites();
+            nextTerminated = true;
+        }
 
+        return next.flush();
     }
 
-    private void http2Write(final PooledByteBuffer[] buffers) {
-        final var ioThread = next.getWriteThread();
-        final var workerThread = next.getWorker();
-
-        if (ioThread == Thread.currentThread())
-            this.executeHttp2WriteThread(workerThread, buffers);
+    @Override
+    public void truncateWrites() throws IOException {
+        pending = null;
+        releaseBuffers();
 
-        else throw new IllegalStateException("Conduit should not be called in a non IO-thread...");
+        next.truncateWrites();
     }
 
-    private void executeHttp2WriteThread(XnioWorker workerThread, final PooledByteBuffer[] buffers) {
-        workerThread.execute(() -> {
-
-            try {
-                int index = 0;
-                long totalWritten = 0;
-
-                for (var buffer : buffers) {
-
-                    if (buffer == null || buffer.getBuffer() == null)
-                        break;
+    private void executeInterceptors() {
 
-                    var written = 0;
+        if (this.interceptors == null)
+            return;
 
-                    if (LOG.isTraceEnabled())
-                        LOG.trace("[{}] Before-Write: current pass: '{}' bytes, total: '{}' bytes, buffer size: '{}' bytes", index, written, totalWritten, buffer.getBuffer().limit());
+        try {
 
-                    var lastWrite = this.doWrite(buffers, buffer, written, index);
+            for (var interceptor : this.interceptors) {
 
-                    totalWritten += written;
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Executing interceptor " + interceptor.getClass());
 
-                    if (LOG.isTraceEnabled())
-                        LOG.trace("[{}] After-Write: current pass: '{}' bytes, total: '{}' bytes, buffer size: '{}' bytes", index, written, totalWritten, buffer.getBuffer().limit());
-
-                    buffer.close();
-                    index++;
-
-                    if (lastWrite)
-                        break;
-                }
-
-                if (LOG.isTraceEnabled())
-                    LOG.trace("Terminating writes...");
-
-                next.terminateWrites();
-            } catch (IOException e) {
-                throw new RuntimeException("Failed to execute conduit writes on Worker Thread. " + e.getMessage(), e);
+                interceptor.handleRequest(exchange);
             }
-        });
-    }
-
-    private boolean doWrite(PooledByteBuffer[] buffers, PooledByteBuffer buffer, int written, int index) throws IOException {
-        boolean lastWrite = false;
-        while (buffer.getBuffer().position() < buffer.getBuffer().limit()) {
-            long res;
 
-            if (this.isLastWrite(buffers, index)) {
-
-                if (LOG.isTraceEnabled())
-                    LOG.trace("Final write occurred...");
+        } catch (Exception e) {
 
-                res = next.write(buffer.getBuffer());
-                lastWrite = true;
+            if (LOG.isErrorEnabled())
+                LOG.error("Error executing interceptors: " + e.getMessage(), e);
 
-            } else res = next.write(buffer.getBuffer());
-
-            written += res;
-
-            if (this.isBufferConsumed(buffer, res, index))
-                break;
-
-            next.awaitWritable();
+            throw new RuntimeException(e);
         }
-        return lastWrite;
     }
 
-    private boolean isBufferConsumed(PooledByteBuffer buffer, long res, int index) {
-
-        if (LOG.isTraceEnabled())
-            LOG.trace("[{}] Checking if the buffer was fully consumed...", index);
-
-        return !(res == 0L) && (buffer.getBuffer().position() >= buffer.getBuffer().limit());
-    }
-
-    private boolean isLastWrite(PooledByteBuffer[] buffers, int index) {
+    /**
+     * Return the buffers to the pool once they are written.
+     */
+    private void releaseBuffers() {
+        var buffers = exchange.getAttachment(AttachmentConstants.BUFFERED_RESPONSE_DATA_KEY);
 
-        if (LOG.isTraceEnabled())
-            LOG.trace("[{}] Checking if this is the last write....", index);
+        if (buffers == null)
+            return;
 
-        return buffers[index + 1] == null || buffers[index + 1].getBuffer() == null;
-    }
+        for (int i = 0; i < buffers.length; i++) {
 
-    private boolean isWritingResponse() {
-        return writingResponse;
+            if (buffers[i] != null) {
+                buffers[i].close();
+                buffers[i] = null;
+            }
+        }
     }
 
     /**
-     * Calculates the length of the buffered data and updates the content-length header.
+     * Updates the content-length header with the length of the buffered data.
      * Do not call this method when content-length is not already set in the response. This is to preserve transfer-encoding restrictions.
      *
      * @param exchange - current http exchange.
-     * @param dests    - the updated buffered response data.
+     * @param length   - the length of the updated buffered response data.
      */
-    private void updateContentLength(HttpServerExchange exchange, PooledByteBuffer[] dests) {
-        long length = 0;
-
-        for (var dest : dests)
-            if (dest != null)
-                length += dest.getBuffer().limit();
+    private void updateContentLength(HttpServerExchange exchange, long length) {
 
         if (LOG.isTraceEnabled())
             LOG.trace("PooledByteBuffer array added up length = " + length);
@@ -314,25 +307,15 @@ public class ModifiableContentSinkConduit extends AbstractStreamSinkConduit<Stre
         // need also to update length of ServerFixedLengthStreamSinkConduit.
         // Should we do this for anything that extends AbstractFixedLengthStreamSinkConduit?
         if (this.next instanceof ServerFixedLengthStreamSinkConduit) {
-            Method m;
 
             if (LOG.isTraceEnabled())
                 LOG.trace("The next conduit is ServerFixedLengthStreamSinkConduit and reset the length.");
 
-            try {
-                m = ServerFixedLengthStreamSinkConduit.class.getDeclaredMethod("reset", long.class, HttpServerExchange.class);
-                m.setAccessible(true);
-
-            } catch (NoSuchMethodException | SecurityException ex) {
-
-                if (LOG.isErrorEnabled())
-                    LOG.error("could not find ServerFixedLengthStreamSinkConduit.reset method", ex);
-
-                throw new RuntimeException("could not find ServerFixedLengthStreamSinkConduit.reset method", ex);
-            }
+            if (FIXED_LENGTH_RESET == null)
+                throw new RuntimeException("could not find ServerFixedLengthStreamSinkConduit.reset method");
 
             try {
-                m.invoke(next, length, exchange);
+                FIXED_LENGTH_RESET.invokeExact((ServerFixedLengthStreamSinkConduit) this.next, length, exchange);
 
                 if (LOG.isTraceEnabled())
                     LOG.trace("reset ServerFixedLengthStreamSinkConduit length = " + length);
@@ -340,13 +323,13 @@ public class ModifiableContentSinkConduit extends AbstractStreamSinkConduit<Stre
             } catch (Throwable ex) {
 
                 if (LOG.isErrorEnabled())
-                    LOG.error("could not access BUFFERED_REQUEST_DATA field", ex);
+                    LOG.error("could not reset the length of ServerFixedLengthStreamSinkConduit", ex);
 
-                throw new RuntimeException("could not access BUFFERED_REQUEST_DATA field", ex);
+                throw new RuntimeException("could not reset the length of ServerFixedLengthStreamSinkConduit", ex);
             }
 
-        } else if (LOG.isWarnEnabled())
-            LOG.warn("updateContentLength() next is {}", this.next.getClass().getSimpleName());
+        } else if (LOG.isDebugEnabled())
+            LOG.debug("updateContentLength() next is {}", this.next.getClass().getSimpleName());
 
     }
 
@@ -20,12 +20,15 @@ import com.networknt.handler.config.EndpointSource;
 import com.networknt.handler.config.PathChain;
 import com.networknt.utility.Tuple;
 import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
 import io.undertow.util.HttpString;
 import io.undertow.util.Methods;
 import io.undertow.util.PathTemplateMatcher;
 import org.junit.Assert;
+import org.junit.Ignore;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -121,5 +124,54 @@ public class HandlerTest {
         Handler.setConfig("invalid-method");
     }
 
+    @Test
+    public void compiledChain_next_callsHandlersInOrder() throws Exception {
+        List<String> calls = new ArrayList<>();
+        Handler.putChain("order", Arrays.asList(recorder("a", calls), recorder("b", calls), recorder("c", calls)));
+        Handler.putChain("sub", Arrays.asList(recorder("x", calls), recorder("y", calls)));
+        HttpServerExchange exchange = new HttpServerExchange(null);
+        Handler.next(exchange, "order", false);
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), calls);
+        Assert.assertNull(Handler.getNext(exchange));
+
+        // the original flow continues after the sub flow.
+        calls.clear();
+        Handler.putChain("outer", Arrays.asList(exchange1 -> {
+            calls.add("outer");
+            Handler.next(exchange1, "sub", true);
+        }, recorder("after", calls)));
+        Handler.next(new HttpServerExchange(null), "outer", false);
+        Assert.assertEquals(Arrays.asList("outer", "x", "y", "after"), calls);
+    }
+
+    /**
+     * A benchmark of a chain of 20 handlers that each call Handler.next. The repo doesn't use JMH, so it is a
+     * timed loop that is run manually.
+     */
+    @Test
+    @Ignore
+    public void benchmarkChainOf20Handlers() throws Exception {
+        List<HttpHandler> chain = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            chain.add(Handler::next);
+        }
+        Handler.putChain("benchmark", chain);
+        int iterations = 5_000_000;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                Handler.next(new HttpServerExchange(null), "benchmark", false);
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.println("round " + round + ": " + (iterations * 1_000_000_000L / elapsed) + " chains/s, "
+                    + (elapsed / iterations) + " ns/chain");
+        }
+    }
 
+    private static HttpHandler recorder(String name, List<String> calls) {
+        return exchange -> {
+            calls.add(name);
+            Handler.next(exchange);
+        };
+    }
 }
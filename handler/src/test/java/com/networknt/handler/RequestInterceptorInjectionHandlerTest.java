@@ -0,0 +1,176 @@
+package com.networknt.handler;
+
+import com.networknt.httpstring.AttachmentConstants;
+import com.networknt.service.SingletonServiceFactory;
+import io.undertow.Undertow;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HttpString;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class RequestInterceptorInjectionHandlerTest {
+    private static final int PORT = 7082;
+    private static final HttpString BUFFERED_LENGTH = new HttpString("X-Buffered-Length");
+    static Undertow server = null;
+
+    @BeforeClass
+    public static void setUp() {
+        SingletonServiceFactory.setBean(RequestInterceptor.class.getName(), new RequestInterceptor[]{new LengthInterceptor()});
+        RequestInterceptorInjectionHandler handler = new RequestInterceptorInjectionHandler(RequestInjectionConfig.load("request-injection-test"));
+        handler.setNext(exchange -> exchange.getRequestReceiver().receiveFullString((ex, body) -> ex.getResponseSender().send(body)));
+        server = Undertow.builder()
+                .addHttpListener(PORT, "localhost")
+                .setHandler(handler)
+                .build();
+        server.start();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+        SingletonServiceFactory.setBean(RequestInterceptor.class.getName(), null);
+    }
+
+    @Test
+    public void testAppliedBodyInjectionPathPrefix() {
+        RequestInjectionConfig config = RequestInjectionConfig.load("request-injection-test");
+        // the prefixes are raw string prefixes instead of path segments.
+        Assert.assertTrue(config.isAppliedBodyInjectionPathPrefix("/v1/pet"));
+        Assert.assertTrue(config.isAppliedBodyInjectionPathPrefix("/v1/pets"));
+        Assert.assertTrue(config.isAppliedBodyInjectionPathPrefix("/v1/pet/1"));
+        Assert.assertFalse(config.isAppliedBodyInjectionPathPrefix("/v1/pe"));
+        Assert.assertFalse(config.isAppliedBodyInjectionPathPrefix("/v2/pets"));
+    }
+
+    @Test
+    public void testBodyIsBuffered() throws Exception {
+        String body = "{\"name\":\"cat\"}";
+        HttpResponse<String> response = send("/v1/body", HttpRequest.BodyPublishers.ofString(body));
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals(body, response.body());
+        Assert.assertEquals(String.valueOf(body.length()), response.headers().firstValue(BUFFERED_LENGTH.toString()).orElse(null));
+    }
+
+    @Test
+    public void testChunkedBodyIsBuffered() throws Exception {
+        // bigger than a pooled buffer so that the body is read by the listener.
+        String body = "x".repeat(40000);
+        HttpResponse<String> response = send("/v1/body", chunked(body));
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals(body, response.body());
+        Assert.assertEquals("40000", response.headers().firstValue(BUFFERED_LENGTH.toString()).orElse(null));
+    }
+
+    @Test
+    public void testPathNotApplied() throws Exception {
+        HttpResponse<String> response = send("/v1/other", HttpRequest.BodyPublishers.ofString("other"));
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals("other", response.body());
+        Assert.assertEquals("none", response.headers().firstValue(BUFFERED_LENGTH.toString()).orElse(null));
+    }
+
+    @Test
+    public void testContentLengthTooLarge() throws Exception {
+        HttpResponse<String> response = send("/v1/body", HttpRequest.BodyPublishers.ofString("x".repeat(70000)));
+        Assert.assertEquals(413, response.statusCode());
+        Assert.assertTrue(response.body().contains("ERR10068"));
+    }
+
+    @Test
+    public void testChunkedTooLarge() throws Exception {
+        HttpResponse<String> response = send("/v1/body", chunked("x".repeat(70000)));
+        Assert.assertEquals(413, response.statusCode());
+        Assert.assertTrue(response.body().contains("ERR10068"));
+    }
+
+    @Test
+    public void testConcurrentRequests() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        List<CompletableFuture<HttpResponse<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            // the bodies have different lengths so that a mixed up buffer is detected.
+            String body = String.valueOf(i).repeat(1000 + i * 500);
+            futures.add(client.sendAsync(HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + "/v1/body"))
+                    .POST(i % 2 == 0 ? HttpRequest.BodyPublishers.ofString(body) : chunked(body)).build(), HttpResponse.BodyHandlers.ofString()));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            HttpResponse<String> response = futures.get(i).get();
+            String body = String.valueOf(i).repeat(1000 + i * 500);
+            Assert.assertEquals(200, response.statusCode());
+            Assert.assertEquals(body, response.body());
+            Assert.assertEquals(String.valueOf(body.length()), response.headers().firstValue(BUFFERED_LENGTH.toString()).orElse(null));
+        }
+    }
+
+    private static HttpRequest.BodyPublisher chunked(String body) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        return HttpRequest.BodyPublishers.ofInputStream(() -> new ByteArrayInputStream(bytes));
+    }
+
+    private static HttpResponse<String> send(String path, HttpRequest.BodyPublisher publisher) throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        return client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + path)).POST(publisher).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Puts the length of the buffered request body into a response header.
+     */
+    static class LengthInterceptor implements RequestInterceptor {
+
+        @Override
+        public boolean isRequiredContent() {
+            return true;
+        }
+
+        @Override
+        public void handleRequest(HttpServerExchange exchange) throws Exception {
+            var buffers = exchange.getAttachment(AttachmentConstants.BUFFERED_REQUEST_DATA_KEY);
+            if (buffers == null) {
+                exchange.getResponseHeaders().put(BUFFERED_LENGTH, "none");
+                return;
+            }
+            long length = 0;
+            for (var buffer : buffers) {
+                if (buffer != null) {
+                    length += buffer.getBuffer().remaining();
+                }
+            }
+            exchange.getResponseHeaders().put(BUFFERED_LENGTH, length);
+        }
+
+        @Override
+        public HttpHandler getNext() {
+            return null;
+        }
+
+        @Override
+        public MiddlewareHandler setNext(HttpHandler next) {
+            return this;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return true;
+        }
+
+        @Override
+        public void register() {
+        }
+    }
+}
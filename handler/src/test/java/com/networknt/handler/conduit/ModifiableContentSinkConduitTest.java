@@ -0,0 +1,161 @@
+package com.networknt.handler.conduit;
+
+import com.networknt.handler.BuffersUtils;
+import com.networknt.handler.MiddlewareHandler;
+import com.networknt.handler.ResponseInterceptor;
+import com.networknt.httpstring.AttachmentConstants;
+import com.networknt.service.SingletonServiceFactory;
+import io.undertow.Undertow;
+import io.undertow.UndertowOptions;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class ModifiableContentSinkConduitTest {
+    private static final int PORT = 7081;
+    // bigger than the socket and HTTP/2 flow control buffers so that the next conduit is full at least once.
+    private static final String LARGE = "x".repeat(1024 * 1024);
+    static Undertow server = null;
+    static ResponseInterceptor[] interceptors;
+
+    @BeforeClass
+    public static void setUp() {
+        interceptors = SingletonServiceFactory.getBeans(ResponseInterceptor.class);
+        HttpHandler handler = exchange -> {
+            exchange.addResponseWrapper((factory, ex) -> new ModifiableContentSinkConduit(factory.create(), ex));
+            switch (exchange.getRequestPath()) {
+                case "/fixed":
+                    exchange.getResponseSender().send("fixed");
+                    break;
+                case "/large":
+                    exchange.getResponseSender().send(LARGE);
+                    break;
+                case "/chunked":
+                    if (exchange.isInIoThread()) {
+                        exchange.dispatch(exchange.getDispatchExecutor(), ex -> {
+                            ex.startBlocking();
+                            try (OutputStream out = ex.getOutputStream()) {
+                                for (int i = 0; i < 3; i++) {
+                                    out.write(("chunk" + i).getBytes(StandardCharsets.UTF_8));
+                                    out.flush();
+                                }
+                            }
+                        });
+                    }
+                    break;
+                default:
+                    exchange.setStatusCode(404);
+            }
+        };
+        server = Undertow.builder()
+                .addHttpListener(PORT, "localhost")
+                .setServerOption(UndertowOptions.ENABLE_HTTP2, true)
+                .setHandler(handler)
+                .build();
+        server.start();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+        // restore the interceptors of the service.yml for the other tests.
+        SingletonServiceFactory.setBean(ResponseInterceptor.class.getName(), interceptors);
+    }
+
+    @Before
+    public void setInterceptor() {
+        SingletonServiceFactory.setBean(ResponseInterceptor.class.getName(), new ResponseInterceptor[]{new AppendInterceptor()});
+    }
+
+    @Test
+    public void testFixedLength() throws Exception {
+        HttpResponse<String> response = send(HttpClient.Version.HTTP_1_1, "/fixed");
+        Assert.assertEquals(HttpClient.Version.HTTP_1_1, response.version());
+        Assert.assertEquals("fixed-intercepted", response.body());
+        Assert.assertEquals("17", response.headers().firstValue("Content-Length").orElse(null));
+    }
+
+    @Test
+    public void testChunked() throws Exception {
+        HttpResponse<String> response = send(HttpClient.Version.HTTP_1_1, "/chunked");
+        Assert.assertEquals("chunk0chunk1chunk2-intercepted", response.body());
+        Assert.assertEquals("chunked", response.headers().firstValue("Transfer-Encoding").orElse(null));
+    }
+
+    @Test
+    public void testLargeFixedLength() throws Exception {
+        HttpResponse<String> response = send(HttpClient.Version.HTTP_1_1, "/large");
+        Assert.assertEquals(LARGE + "-intercepted", response.body());
+    }
+
+    @Test
+    public void testHttp2() throws Exception {
+        // the first request is upgraded to h2c.
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+        for (String path : new String[]{"/fixed", "/fixed", "/large", "/chunked"}) {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + path)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            Assert.assertEquals(200, response.statusCode());
+            Assert.assertTrue(response.body().endsWith("-intercepted"));
+            if ("/large".equals(path)) {
+                Assert.assertEquals(HttpClient.Version.HTTP_2, response.version());
+                Assert.assertEquals(LARGE.length() + "-intercepted".length(), response.body().length());
+            }
+        }
+    }
+
+    private static HttpResponse<String> send(HttpClient.Version version, String path) throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(version).build();
+        return client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + path)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Appends -intercepted to the response body.
+     */
+    static class AppendInterceptor implements ResponseInterceptor {
+        @Override
+        public boolean isRequiredContent() {
+            return true;
+        }
+
+        @Override
+        public void handleRequest(HttpServerExchange exchange) throws Exception {
+            String body = BuffersUtils.toString(getBuffer(exchange), StandardCharsets.UTF_8) + "-intercepted";
+            BuffersUtils.transfer(ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_8)),
+                    exchange.getAttachment(AttachmentConstants.BUFFERED_RESPONSE_DATA_KEY), exchange);
+        }
+
+        @Override
+        public HttpHandler getNext() {
+            return null;
+        }
+
+        @Override
+        public MiddlewareHandler setNext(HttpHandler next) {
+            return this;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return true;
+        }
+
+        @Override
+        public void register() {
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.networknt.config.Config;
 import com.networknt.config.ConfigException;
 import com.networknt.config.JsonMapper;
+import com.networknt.utility.PathPrefixMatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,6 +28,7 @@ public class HeaderConfig {
     List<String> responseRemoveList;
     Map<String, Object> responseUpdateMap;
     Map<String, Object> pathPrefixHeader;
+    volatile PathPrefixMatcher<Object> pathPrefixHeaderMatcher = PathPrefixMatcher.empty();
     private Config config;
     private Map<String, Object> mappedConfig;
 
@@ -76,6 +78,16 @@ public class HeaderConfig {
 
     public void setPathPrefixHeader(Map<String, Object> pathPrefixHeader) {
         this.pathPrefixHeader = pathPrefixHeader;
+        this.pathPrefixHeaderMatcher = PathPrefixMatcher.compile(pathPrefixHeader);
+    }
+
+    /**
+     * The pathPrefixHeader compiled for the per request lookup. It is rebuilt whenever the map is set.
+     *
+     * @return PathPrefixMatcher of the pathPrefixHeader
+     */
+    public PathPrefixMatcher<Object> getPathPrefixHeaderMatcher() {
+        return pathPrefixHeaderMatcher;
     }
 
     private void setConfigData() {
@@ -271,5 +283,6 @@ public class HeaderConfig {
                 }
             }
         }
+        pathPrefixHeaderMatcher = PathPrefixMatcher.compile(pathPrefixHeader);
     }
 }
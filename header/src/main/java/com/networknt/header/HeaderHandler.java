@@ -19,6 +19,7 @@ package com.networknt.header;
 import com.networknt.handler.Handler;
 import com.networknt.handler.MiddlewareHandler;
 import com.networknt.utility.ModuleRegistry;
+import com.networknt.utility.PathPrefixMatcher;
 import io.undertow.Handlers;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
@@ -89,57 +90,60 @@ public class HeaderHandler implements MiddlewareHandler {
         if(responseHeaderUpdate != null) {
             responseHeaderUpdate.forEach((k, v) -> exchange.getResponseHeaders().put(new HttpString(k), (String)v));
         }
-        // handler per path prefix header if configured.
-        Map<String, Object> pathPrefixHeader = config.getPathPrefixHeader();
-        if(pathPrefixHeader != null) {
-            String requestPath = exchange.getRequestPath();
-            for(Map.Entry<String, Object> entry: config.getPathPrefixHeader().entrySet()) {
-                if(requestPath.startsWith(entry.getKey())) {
-                    if(logger.isTraceEnabled()) logger.trace("found with requestPath = " + requestPath + " prefix = " + entry.getKey());
-                    Map<String, Object> valueMap = (Map<String, Object>)entry.getValue();
-                    // handle the request header for the request path
-                    Map<String, Object> requestHeaderMap = (Map<String, Object>)valueMap.get(HeaderConfig.REQUEST);
-                    if(requestHeaderMap != null) {
-                        List<String> requestHeaderRemoveList = (List<String>)requestHeaderMap.get(HeaderConfig.REMOVE);
-                        if(requestHeaderRemoveList != null) {
-                            requestHeaderRemoveList.forEach(s -> {
-                                exchange.getRequestHeaders().remove(s);
-                                if(logger.isTraceEnabled()) logger.trace("remove request header " + s);
-                            });
-                        }
-                        Map<String, Object> requestHeaderUpdateMap = (Map<String, Object>)requestHeaderMap.get(HeaderConfig.UPDATE);
-                        if(requestHeaderUpdateMap != null) {
-                            requestHeaderUpdateMap.forEach((k, v) -> {
-                                exchange.getRequestHeaders().put(new HttpString(k), (String)v);
-                                if(logger.isTraceEnabled()) logger.trace("update request header " + k + " with value " + v);
-                            });
-                        }
-                    }
-                    // handle the response header for the request path
-                    Map<String, Object> responseHeaderMap = (Map<String, Object>)valueMap.get(HeaderConfig.RESPONSE);
-                    if(responseHeaderMap != null) {
-                        List<String> responseHeaderRemoveList = (List<String>)responseHeaderMap.get(HeaderConfig.REMOVE);
-                        if(responseHeaderRemoveList != null) {
-                            responseHeaderRemoveList.forEach(s -> {
-                                exchange.getResponseHeaders().remove(s);
-                                if(logger.isTraceEnabled()) logger.trace("remove response header " + s);
-                            });
-                        }
-                        Map<String, Object> responseHeaderUpdateMap = (Map<String, Object>)responseHeaderMap.get(HeaderConfig.UPDATE);
-                        if(responseHeaderUpdateMap != null) {
-                            responseHeaderUpdateMap.forEach((k, v) -> {
-                                exchange.getResponseHeaders().put(new HttpString(k), (String)v);
-                                if(logger.isTraceEnabled()) logger.trace("update response header " + k + " with value " + v);
-                            });
-                        }
-                    }
-                }
-            }
+        // handler per path prefix header if configured. All the matched prefixes are applied from the
+        // shortest to the longest so that the most specific prefix has the final say on an update.
+        PathPrefixMatcher.Entry<Object> entry = config.getPathPrefixHeaderMatcher().match(exchange.getRequestPath());
+        if(entry != null) {
+            handlePathPrefixHeader(exchange, entry);
         }
         if(logger.isDebugEnabled()) logger.debug("HeaderHandler.handleRequest ends.");
         Handler.next(exchange, next);
     }
 
+    private void handlePathPrefixHeader(final HttpServerExchange exchange, PathPrefixMatcher.Entry<Object> entry) {
+        if(entry.getParent() != null) {
+            handlePathPrefixHeader(exchange, entry.getParent());
+        }
+        if(logger.isTraceEnabled()) logger.trace("found with requestPath = " + exchange.getRequestPath() + " prefix = " + entry.getKey());
+        Map<String, Object> valueMap = (Map<String, Object>)entry.getValue();
+        // handle the request header for the request path
+        Map<String, Object> requestHeaderMap = (Map<String, Object>)valueMap.get(HeaderConfig.REQUEST);
+        if(requestHeaderMap != null) {
+            List<String> requestHeaderRemoveList = (List<String>)requestHeaderMap.get(HeaderConfig.REMOVE);
+            if(requestHeaderRemoveList != null) {
+                requestHeaderRemoveList.forEach(s -> {
+                    exchange.getRequestHeaders().remove(s);
+                    if(logger.isTraceEnabled()) logger.trace("remove request header " + s);
+                });
+            }
+            Map<String, Object> requestHeaderUpdateMap = (Map<String, Object>)requestHeaderMap.get(HeaderConfig.UPDATE);
+            if(requestHeaderUpdateMap != null) {
+                requestHeaderUpdateMap.forEach((k, v) -> {
+                    exchange.getRequestHeaders().put(new HttpString(k), (String)v);
+                    if(logger.isTraceEnabled()) logger.trace("update request header " + k + " with value " + v);
+                });
+            }
+        }
+        // handle the response header for the request path
+        Map<String, Object> responseHeaderMap = (Map<String, Object>)valueMap.get(HeaderConfig.RESPONSE);
+        if(responseHeaderMap != null) {
+            List<String> responseHeaderRemoveList = (List<String>)responseHeaderMap.get(HeaderConfig.REMOVE);
+            if(responseHeaderRemoveList != null) {
+                responseHeaderRemoveList.forEach(s -> {
+                    exchange.getResponseHeaders().remove(s);
+                    if(logger.isTraceEnabled()) logger.trace("remove response header " + s);
+                });
+            }
+            Map<String, Object> responseHeaderUpdateMap = (Map<String, Object>)responseHeaderMap.get(HeaderConfig.UPDATE);
+            if(responseHeaderUpdateMap != null) {
+                responseHeaderUpdateMap.forEach((k, v) -> {
+                    exchange.getResponseHeaders().put(new HttpString(k), (String)v);
+                    if(logger.isTraceEnabled()) logger.trace("update response header " + k + " with value " + v);
+                });
+            }
+        }
+    }
+
     @Override
     public HttpHandler getNext() {
         return next;
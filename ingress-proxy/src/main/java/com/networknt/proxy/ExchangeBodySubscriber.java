@@ -0,0 +1,180 @@
+package com.networknt.proxy;
+
+import io.undertow.server.Connectors;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.SameThreadExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnio.IoUtils;
+import org.xnio.channels.StreamSinkChannel;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Flow;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Send a request to an external service with the HttpClient asynchronously and stream the response back to the
+ * exchange. The exchange is dispatched so that the worker thread is released while the request is in flight, and
+ * the status, headers and body are written to the response channel on the IO thread of the exchange as they arrive.
+ * The next part of the body is only requested when the previous one has been written so that a slow client does not
+ * make the response buffered in memory.
+ *
+ * @author Steve Hu
+ */
+public final class ExchangeBodySubscriber implements Flow.Subscriber<List<ByteBuffer>> {
+    private static final Logger logger = LoggerFactory.getLogger(ExchangeBodySubscriber.class);
+    private static final Set<HttpString> EXCLUDED_HEADERS = Set.of(Headers.CONNECTION, Headers.KEEP_ALIVE,
+            Headers.TRANSFER_ENCODING, Headers.TE, Headers.TRAILER, Headers.UPGRADE);
+
+    private final HttpServerExchange exchange;
+    private final Consumer<HttpServerExchange> onComplete;
+    private HttpResponse.ResponseInfo responseInfo;
+    private Flow.Subscription subscription;
+    private StreamSinkChannel sink;
+    // the buffers that are being written and the flag of the end of the body. They are only used on the IO thread.
+    private ByteBuffer[] pending;
+    private boolean completed;
+
+    private ExchangeBodySubscriber(HttpServerExchange exchange, Consumer<HttpServerExchange> onComplete) {
+        this.exchange = exchange;
+        this.onComplete = onComplete;
+    }
+
+    /**
+     * Send the request asynchronously and stream the response to the exchange.
+     *
+     * @param client     the HttpClient of the external service
+     * @param request    the request to the external service
+     * @param exchange   the exchange to which the response is sent
+     * @param onComplete called on the IO thread before the exchange is ended after the response is written
+     * @param onError    called in a handler call of the exchange if the request fails before the response is started
+     */
+    public static void sendAsync(HttpClient client, HttpRequest request, HttpServerExchange exchange,
+                                 Consumer<HttpServerExchange> onComplete, BiConsumer<HttpServerExchange, Throwable> onError) {
+        final ExchangeBodySubscriber subscriber = new ExchangeBodySubscriber(exchange, onComplete);
+        // the request is sent once the handler returns so that the callbacks never run while it is in call.
+        exchange.dispatch(SameThreadExecutor.INSTANCE, () -> client.sendAsync(request, subscriber::bodySubscriber)
+                .whenComplete((response, throwable) -> {
+                    if(throwable != null) {
+                        exchange.getIoThread().execute(() -> subscriber.fail(throwable, onError));
+                    }
+                }));
+    }
+
+    private HttpResponse.BodySubscriber<Void> bodySubscriber(HttpResponse.ResponseInfo responseInfo) {
+        this.responseInfo = responseInfo;
+        return HttpResponse.BodySubscribers.fromSubscriber(this);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        exchange.getIoThread().execute(this::start);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> buffers) {
+        exchange.getIoThread().execute(() -> {
+            if(sink == null) return;
+            pending = buffers.toArray(new ByteBuffer[0]);
+            write();
+        });
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        // the failure is handled by the future of the request.
+        if(logger.isDebugEnabled()) logger.debug("The response body of " + exchange.getRequestPath() + " failed:", throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        exchange.getIoThread().execute(() -> {
+            completed = true;
+            if(pending == null) finish();
+        });
+    }
+
+    private void start() {
+        if(exchange.isComplete()) {
+            subscription.cancel();
+            return;
+        }
+        exchange.setStatusCode(responseInfo.statusCode());
+        HeaderMap responseHeaders = exchange.getResponseHeaders();
+        for (Map.Entry<String, List<String>> header : responseInfo.headers().map().entrySet()) {
+            // remove empty key in the response header start with a colon.
+            if(header.getKey() != null && !header.getKey().startsWith(":") && header.getValue().get(0) != null) {
+                HttpString name = new HttpString(header.getKey());
+                if(EXCLUDED_HEADERS.contains(name)) continue;
+                for(String s : header.getValue()) {
+                    if(logger.isTraceEnabled()) logger.trace("copy response header key = " + header.getKey() + " value = " + s);
+                    responseHeaders.add(name, s);
+                }
+            }
+        }
+        sink = exchange.getResponseChannel();
+        sink.getWriteSetter().set(channel -> write());
+        subscription.request(1);
+    }
+
+    /**
+     * Write the pending buffers, and request the next ones once they are written.
+     */
+    private void write() {
+        if(pending == null) {
+            sink.suspendWrites();
+            return;
+        }
+        try {
+            long remaining = 0;
+            for(ByteBuffer buffer : pending) remaining += buffer.remaining();
+            while(remaining > 0) {
+                long written = sink.write(pending);
+                if(written == 0) {
+                    sink.resumeWrites();
+                    return;
+                }
+                remaining -= written;
+            }
+            sink.suspendWrites();
+            pending = null;
+            if(completed) {
+                finish();
+            } else {
+                subscription.request(1);
+            }
+        } catch (IOException e) {
+            if(logger.isDebugEnabled()) logger.debug("Cannot write the response of " + exchange.getRequestPath() + ":", e);
+            subscription.cancel();
+            IoUtils.safeClose(exchange.getConnection());
+        }
+    }
+
+    private void finish() {
+        if(sink == null) return;
+        onComplete.accept(exchange);
+        exchange.endExchange();
+    }
+
+    private void fail(Throwable throwable, BiConsumer<HttpServerExchange, Throwable> onError) {
+        if(sink != null || exchange.isResponseStarted()) {
+            // the response has been started, so the client can only find out from the closed connection.
+            logger.error("The response of " + exchange.getRequestPath() + " is incomplete:", throwable);
+            IoUtils.safeClose(exchange.getConnection());
+            return;
+        }
+        Connectors.executeRootHandler(ex -> onError.accept(ex, throwable), exchange);
+    }
+}
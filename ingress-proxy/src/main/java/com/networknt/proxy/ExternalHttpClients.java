@@ -0,0 +1,68 @@
+package com.networknt.proxy;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The HttpClient instances that are shared by the requests of a handler to the same external host. Each client has
+ * its own bounded executor for the response callbacks so that a slow host cannot take the threads of the others.
+ * The callbacks only hand the response over to the IO thread of the exchange, so a few threads per host are enough.
+ * The queue of the executor is bounded. When it is full, the callback runs on the thread of the client that submits
+ * it instead of being dropped, which would leave the exchange without a response, and this slows the host down.
+ * The threads of an idle host are released after a minute.
+ *
+ * @author Steve Hu
+ */
+public final class ExternalHttpClients {
+    static final int EXECUTOR_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    static final int EXECUTOR_QUEUE_SIZE = 1024;
+    private static final long EXECUTOR_KEEP_ALIVE_SECONDS = 60;
+    private static final Map<String, HttpClient> clients = new ConcurrentHashMap<>();
+
+    private ExternalHttpClients() {
+    }
+
+    /**
+     * Get the client of a handler for the host of the URI, and create it with the builder the first time.
+     *
+     * @param name    the name of the handler so that the handlers with different client configurations are separated
+     * @param uri     the URI of the request
+     * @param builder the factory of the client builder of the handler
+     * @return HttpClient the shared client
+     * @throws Exception if the client builder cannot be created
+     */
+    public static HttpClient getClient(String name, URI uri, Callable<HttpClient.Builder> builder) throws Exception {
+        String key = name + "|" + uri.getScheme() + "://" + uri.getAuthority();
+        HttpClient client = clients.get(key);
+        if(client == null) {
+            synchronized (clients) {
+                client = clients.get(key);
+                if(client == null) {
+                    client = builder.call().executor(createExecutor(key)).build();
+                    clients.put(key, client);
+                }
+            }
+        }
+        return client;
+    }
+
+    private static ExecutorService createExecutor(String key) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(EXECUTOR_THREADS, EXECUTOR_THREADS,
+                EXECUTOR_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(EXECUTOR_QUEUE_SIZE), runnable -> {
+                    Thread thread = new Thread(runnable, "external-client-" + key + "-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
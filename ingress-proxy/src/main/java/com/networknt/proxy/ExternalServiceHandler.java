@@ -24,12 +24,9 @@ import java.net.InetSocketAddress;
 import java.net.ProxySelector;
 import java.net.URI;
 import java.net.http.HttpClient;
-import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.nio.ByteBuffer;
 import java.time.Duration;
-import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.regex.Matcher;
@@ -48,10 +45,17 @@ public class ExternalServiceHandler implements MiddlewareHandler {
 
     private volatile HttpHandler next;
     private static ExternalServiceConfig config;
-    private HttpClient client;
 
     public ExternalServiceHandler() {
-        config = ExternalServiceConfig.load();
+        this(ExternalServiceConfig.CONFIG_NAME);
+    }
+
+    /**
+     * Please don't use this constructor as it is designed for testing only.
+     * @param configName String
+     */
+    public ExternalServiceHandler(String configName) {
+        config = ExternalServiceConfig.load(configName);
         if(config.isMetricsInjection()) {
             // get the metrics handler from the handler chain for metrics registration. If we cannot get the
             // metrics handler, then an error message will be logged.
@@ -170,48 +174,26 @@ public class ExternalServiceHandler implements MiddlewareHandler {
                         if(config.isMetricsInjection() && metricsHandler != null) metricsHandler.injectMetrics(exchange, startTime, config.getMetricsName(), endpoint);
                         return;
                     }
-                    if(client == null) {
-                        try {
-                            HttpClient.Builder clientBuilder = HttpClient.newBuilder()
-                                    .followRedirects(HttpClient.Redirect.NORMAL)
-                                    .connectTimeout(Duration.ofMillis(ClientConfig.get().getTimeout()))
-                                    .sslContext(Http2Client.createSSLContext());
-                            if(config.getProxyHost() != null) clientBuilder.proxy(ProxySelector.of(new InetSocketAddress(config.getProxyHost(), config.getProxyPort() == 0 ? 443 : config.getProxyPort())));
-                            if(config.isEnableHttp2()) clientBuilder.version(HttpClient.Version.HTTP_2);
-                            // this a workaround to bypass the hostname verification in jdk11 http client.
-                            Map<String, Object> tlsMap = (Map<String, Object>)ClientConfig.get().getMappedConfig().get(Http2Client.TLS);
-                            final Properties props = System.getProperties();
-                            props.setProperty("jdk.httpclient.allowRestrictedHeaders", "Host");
-                            props.setProperty("jdk.httpclient.allowRestrictedHeaders", "Connection");
-                            if(tlsMap != null && !Boolean.TRUE.equals(tlsMap.get(TLSConfig.VERIFY_HOSTNAME))) {
-                                props.setProperty("jdk.internal.httpclient.disableHostnameVerification", Boolean.TRUE.toString());
-                            }
-                            client = clientBuilder.build();
-                        } catch (Exception e) {
-                            logger.error("Cannot create HttpClient:", e);
-                            throw e;
-                        }
+                    HttpClient client;
+                    try {
+                        client = ExternalHttpClients.getClient(ExternalServiceConfig.CONFIG_NAME, request.uri(), this::createClientBuilder);
+                    } catch (Exception e) {
+                        logger.error("Cannot create HttpClient:", e);
+                        throw e;
                     }
-
-                    HttpResponse<byte[]> response  = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
-                    HttpHeaders responseHeaders = response.headers();
-                    byte[] responseBody = response.body();
-                    exchange.setStatusCode(response.statusCode());
-                    for (Map.Entry<String, List<String>> header : responseHeaders.map().entrySet()) {
-                        // remove empty key in the response header start with a colon.
-                        if(header.getKey() != null && !header.getKey().startsWith(":") && header.getValue().get(0) != null) {
-                            for(String s : header.getValue()) {
-                                if(logger.isTraceEnabled()) logger.trace("Add response header key = " + header.getKey() + " value = " + s);
-                                exchange.getResponseHeaders().add(new HttpString(header.getKey()), s);
-                            }
+                    // the worker thread is released while the request is in flight, and the response is streamed back.
+                    ExchangeBodySubscriber.sendAsync(client, request, exchange, ex -> {
+                        if(logger.isDebugEnabled()) logger.debug("ExternalServiceHandler response to " + requestHost + " is completed.");
+                        if(config.isMetricsInjection() && metricsHandler != null) {
+                            if(logger.isTraceEnabled()) logger.trace("injecting metrics for " + config.getMetricsName());
+                            metricsHandler.injectMetrics(ex, startTime, config.getMetricsName(), endpoint);
                         }
-                    }
-                    exchange.getResponseSender().send(ByteBuffer.wrap(responseBody));
+                    }, (ex, e) -> {
+                        logger.error("Cannot access the external service " + requestHost + ":", e);
+                        setExchangeStatus(ex, ESTABLISH_CONNECTION_ERROR, requestHost);
+                        if(config.isMetricsInjection() && metricsHandler != null) metricsHandler.injectMetrics(ex, startTime, config.getMetricsName(), endpoint);
+                    });
                     if(logger.isDebugEnabled()) logger.debug("ExternalServiceHandler.handleRequest ends.");
-                    if(config.isMetricsInjection() && metricsHandler != null) {
-                        if(logger.isTraceEnabled()) logger.trace("injecting metrics for " + config.getMetricsName());
-                        metricsHandler.injectMetrics(exchange, startTime, config.getMetricsName(), endpoint);
-                    }
                     return;
                 }
             }
@@ -220,6 +202,24 @@ public class ExternalServiceHandler implements MiddlewareHandler {
         Handler.next(exchange, next);
     }
 
+    private HttpClient.Builder createClientBuilder() throws Exception {
+        HttpClient.Builder clientBuilder = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(ClientConfig.get().getTimeout()))
+                .sslContext(Http2Client.createSSLContext());
+        if(config.getProxyHost() != null) clientBuilder.proxy(ProxySelector.of(new InetSocketAddress(config.getProxyHost(), config.getProxyPort() == 0 ? 443 : config.getProxyPort())));
+        if(config.isEnableHttp2()) clientBuilder.version(HttpClient.Version.HTTP_2);
+        // this a workaround to bypass the hostname verification in jdk11 http client.
+        Map<String, Object> tlsMap = (Map<String, Object>)ClientConfig.get().getMappedConfig().get(Http2Client.TLS);
+        final Properties props = System.getProperties();
+        props.setProperty("jdk.httpclient.allowRestrictedHeaders", "Host");
+        props.setProperty("jdk.httpclient.allowRestrictedHeaders", "Connection");
+        if(tlsMap != null && !Boolean.TRUE.equals(tlsMap.get(TLSConfig.VERIFY_HOSTNAME))) {
+            props.setProperty("jdk.internal.httpclient.disableHostnameVerification", Boolean.TRUE.toString());
+        }
+        return clientBuilder;
+    }
+
     private void copyHeaders(HeaderMap headerMap, HttpRequest.Builder builder) {
         long f = headerMap.fastIterateNonEmpty();
         HeaderValues values;
@@ -97,6 +97,9 @@ public class LightProxyHandler implements HttpHandler {
                 .setMaxRequestTime(config.getMaxRequestTime())
                 .setReuseXForwarded(config.isReuseXForwarded())
                 .setRewriteHostHeader(config.isRewriteHostHeader())
+                .setCoalescingPathPrefixes(config.getCoalescingPathPrefixes())
+                .setCoalescingKeyHeaders(config.getCoalescingKeyHeaders())
+                .setCoalescingMaxBodySize(config.getCoalescingMaxBodySize())
                 .setNext(ResponseCodeHandler.HANDLE_404)
                 .build();
         if(config.isMetricsInjection()) {
@@ -195,6 +198,9 @@ public class LightProxyHandler implements HttpHandler {
                 .setMaxRequestTime(config.getMaxRequestTime())
                 .setReuseXForwarded(config.isReuseXForwarded())
                 .setRewriteHostHeader(config.isRewriteHostHeader())
+                .setCoalescingPathPrefixes(config.getCoalescingPathPrefixes())
+                .setCoalescingKeyHeaders(config.getCoalescingKeyHeaders())
+                .setCoalescingMaxBodySize(config.getCoalescingMaxBodySize())
                 .setNext(ResponseCodeHandler.HANDLE_404)
                 .build();
         if(config.isMetricsInjection()) {
@@ -16,8 +16,15 @@
 
 package com.networknt.proxy;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.networknt.config.Config;
+import com.networknt.config.ConfigException;
+import com.networknt.handler.ProxyHandler;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -39,6 +46,9 @@ public class ProxyConfig {
     private static final String FORWARD_JWT_CLAIMS = "forwardJwtClaims";
     private static final String METRICS_INJECTION = "metricsInjection";
     private static final String METRICS_NAME = "metricsName";
+    private static final String COALESCING_PATH_PREFIXES = "coalescingPathPrefixes";
+    private static final String COALESCING_KEY_HEADERS = "coalescingKeyHeaders";
+    private static final String COALESCING_MAX_BODY_SIZE = "coalescingMaxBodySize";
 
     boolean enabled;
     boolean http2Enabled;
@@ -52,6 +62,9 @@ public class ProxyConfig {
     private boolean forwardJwtClaims;
     boolean metricsInjection;
     String metricsName;
+    List<String> coalescingPathPrefixes;
+    List<String> coalescingKeyHeaders;
+    int coalescingMaxBodySize = ProxyHandler.DEFAULT_COALESCING_MAX_BODY_SIZE;
 
     private Config config;
     private Map<String, Object> mappedConfig;
@@ -117,6 +130,12 @@ public class ProxyConfig {
     public boolean isMetricsInjection() { return metricsInjection; }
     public String getMetricsName() { return metricsName; }
 
+    public List<String> getCoalescingPathPrefixes() { return coalescingPathPrefixes; }
+
+    public List<String> getCoalescingKeyHeaders() { return coalescingKeyHeaders; }
+
+    public int getCoalescingMaxBodySize() { return coalescingMaxBodySize; }
+
     private void setConfigData() {
         Object object = getMappedConfig().get(HTTP2_ENABLED);
         if(object != null && (Boolean) object) {
@@ -147,6 +166,38 @@ public class ProxyConfig {
         if(object != null ) {
             metricsName = (String)object;
         }
+        coalescingPathPrefixes = toList(COALESCING_PATH_PREFIXES, getMappedConfig().get(COALESCING_PATH_PREFIXES));
+        coalescingKeyHeaders = toList(COALESCING_KEY_HEADERS, getMappedConfig().get(COALESCING_KEY_HEADERS));
+        // the default key headers are used if they are not defined.
+        if(coalescingKeyHeaders.isEmpty()) coalescingKeyHeaders = ProxyHandler.DEFAULT_COALESCING_KEY_HEADERS;
+        object = getMappedConfig().get(COALESCING_MAX_BODY_SIZE);
+        if(object != null) {
+            coalescingMaxBodySize = (Integer)object;
+        }
+    }
 
+    private static List<String> toList(String name, Object object) {
+        List<String> list = new ArrayList<>();
+        if(object instanceof String) {
+            String s = ((String)object).trim();
+            if(s.startsWith("[")) {
+                // json format
+                try {
+                    list = Config.getInstance().getMapper().readValue(s, new TypeReference<List<String>>() {});
+                } catch (IOException e) {
+                    throw new ConfigException("could not parse the " + name + " json with a list of strings.");
+                }
+            } else if(!s.isEmpty()) {
+                // comma separated
+                list = Arrays.asList(s.split("\\s*,\\s*"));
+            }
+        } else if(object instanceof List) {
+            for(Object item : (List<?>)object) {
+                list.add((String)item);
+            }
+        } else if(object != null) {
+            throw new ConfigException(name + " must be a string or a list of strings.");
+        }
+        return list;
     }
 }
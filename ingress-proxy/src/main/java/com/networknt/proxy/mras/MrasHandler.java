@@ -19,6 +19,8 @@ import com.networknt.metrics.AbstractMetricsHandler;
 import com.networknt.monad.Failure;
 import com.networknt.monad.Result;
 import com.networknt.monad.Success;
+import com.networknt.proxy.ExchangeBodySubscriber;
+import com.networknt.proxy.ExternalHttpClients;
 import com.networknt.status.Status;
 import com.networknt.utility.ModuleRegistry;
 import io.undertow.Handlers;
@@ -298,46 +300,41 @@ public class MrasHandler implements MiddlewareHandler {
             setExchangeStatus(exchange, METHOD_NOT_ALLOWED, method, requestPath);
             return;
         }
-        if(client == null) {
-            try {
-                HttpClient.Builder clientBuilder = HttpClient.newBuilder()
-                        .followRedirects(HttpClient.Redirect.NORMAL)
-                        .connectTimeout(Duration.ofMillis(ClientConfig.get().getTimeout()))
-                        // we cannot use the Http2Client SSL Context as we need two-way TLS here.
-                        .sslContext(createSSLContext());
-                if(config.getProxyHost() != null) clientBuilder.proxy(ProxySelector.of(new InetSocketAddress(config.getProxyHost(), config.getProxyPort() == 0 ? 443 : config.getProxyPort())));
-                if(config.isEnableHttp2()) clientBuilder.version(HttpClient.Version.HTTP_2);
-                // this a workaround to bypass the hostname verification in jdk11 http client.
-                Map<String, Object> tlsMap = (Map<String, Object>)ClientConfig.get().getMappedConfig().get(Http2Client.TLS);
-                if(tlsMap != null && !Boolean.TRUE.equals(tlsMap.get(TLSConfig.VERIFY_HOSTNAME))) {
-                    final Properties props = System.getProperties();
-                    props.setProperty("jdk.internal.httpclient.disableHostnameVerification", Boolean.TRUE.toString());
-                }
-                client = clientBuilder.build();
-            } catch (IOException e) {
-                logger.error("Cannot create HttpClient:", e);
-                setExchangeStatus(exchange, TLS_TRUSTSTORE_ERROR);
-                return;
-            }
+        HttpClient apiClient;
+        try {
+            apiClient = ExternalHttpClients.getClient(MrasConfig.CONFIG_NAME, request.uri(), this::createClientBuilder);
+        } catch (IOException e) {
+            logger.error("Cannot create HttpClient:", e);
+            setExchangeStatus(exchange, TLS_TRUSTSTORE_ERROR);
+            return;
         }
-        HttpResponse<byte[]> response  = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
-        HttpHeaders responseHeaders = response.headers();
-        byte[] responseBody = response.body();
-        exchange.setStatusCode(response.statusCode());
-        for (Map.Entry<String, List<String>> header : responseHeaders.map().entrySet()) {
-            // remove empty key in the response header start with a colon.
-            if(header.getKey() != null && !header.getKey().startsWith(":") && header.getValue().get(0) != null) {
-                for(String s : header.getValue()) {
-                    if(logger.isTraceEnabled()) logger.trace("copy response header key = " + header.getKey() + " value = " + s);
-                    exchange.getResponseHeaders().add(new HttpString(header.getKey()), s);
-                }
+        // the worker thread is released while the request is in flight, and the response is streamed back.
+        ExchangeBodySubscriber.sendAsync(apiClient, request, exchange, ex -> {
+            if(config.isMetricsInjection() && metricsHandler != null) {
+                if(logger.isTraceEnabled()) logger.trace("inject metrics for " + config.getMetricsName());
+                metricsHandler.injectMetrics(ex, startTime, config.getMetricsName(), endpoint);
             }
+        }, (ex, e) -> {
+            logger.error("Cannot access the MRAS API " + serviceHost + ":", e);
+            setExchangeStatus(ex, ESTABLISH_CONNECTION_ERROR, serviceHost);
+        });
+    }
+
+    private HttpClient.Builder createClientBuilder() throws Exception {
+        HttpClient.Builder clientBuilder = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(ClientConfig.get().getTimeout()))
+                // we cannot use the Http2Client SSL Context as we need two-way TLS here.
+                .sslContext(createSSLContext());
+        if(config.getProxyHost() != null) clientBuilder.proxy(ProxySelector.of(new InetSocketAddress(config.getProxyHost(), config.getProxyPort() == 0 ? 443 : config.getProxyPort())));
+        if(config.isEnableHttp2()) clientBuilder.version(HttpClient.Version.HTTP_2);
+        // this a workaround to bypass the hostname verification in jdk11 http client.
+        Map<String, Object> tlsMap = (Map<String, Object>)ClientConfig.get().getMappedConfig().get(Http2Client.TLS);
+        if(tlsMap != null && !Boolean.TRUE.equals(tlsMap.get(TLSConfig.VERIFY_HOSTNAME))) {
+            final Properties props = System.getProperties();
+            props.setProperty("jdk.internal.httpclient.disableHostnameVerification", Boolean.TRUE.toString());
         }
-        exchange.getResponseSender().send(ByteBuffer.wrap(responseBody));
-        if(config.isMetricsInjection() && metricsHandler != null) {
-            if(logger.isTraceEnabled()) logger.trace("inject metrics for " + config.getMetricsName());
-            metricsHandler.injectMetrics(exchange, startTime, config.getMetricsName(), endpoint);
-        }
+        return clientBuilder;
     }
 
     private Result<TokenResponse> getAccessToken() throws Exception {
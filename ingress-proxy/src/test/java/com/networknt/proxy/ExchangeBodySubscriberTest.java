@@ -0,0 +1,127 @@
+package com.networknt.proxy;
+
+import io.undertow.Undertow;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.SameThreadExecutor;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ExternalServiceHandler is in front of a backend that is slow without blocking its threads. The handler has
+ * only two worker threads, so the concurrent requests can only be completed in time if they do not hold them.
+ */
+public class ExchangeBodySubscriberTest {
+    private static final int BACKEND_PORT = 7098;
+    private static final int PORT = 7099;
+    private static final int LARGE_BODY_SIZE = 4 * 1024 * 1024;
+    static Undertow backend = null;
+    static Undertow server = null;
+    static HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @BeforeClass
+    public static void setUp() {
+        backend = Undertow.builder()
+                .addHttpListener(BACKEND_PORT, "localhost")
+                .setHandler(ExchangeBodySubscriberTest::backend)
+                .build();
+        backend.start();
+
+        ExternalServiceHandler handler = new ExternalServiceHandler("external-service-async");
+        handler.setNext(exchange -> exchange.getResponseSender().send("next"));
+        server = Undertow.builder()
+                .addHttpListener(PORT, "localhost")
+                .setWorkerThreads(2)
+                .setHandler(handler)
+                .build();
+        server.start();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+        if (backend != null) {
+            backend.stop();
+        }
+    }
+
+    private static void backend(HttpServerExchange exchange) {
+        switch (exchange.getRequestPath()) {
+            case "/external/large":
+                byte[] body = new byte[LARGE_BODY_SIZE];
+                for (int i = 0; i < body.length; i++) {
+                    body[i] = (byte) ('a' + i % 26);
+                }
+                exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/octet-stream");
+                exchange.getResponseSender().send(ByteBuffer.wrap(body));
+                break;
+            case "/external/slow":
+                exchange.dispatch(SameThreadExecutor.INSTANCE, () -> exchange.getIoThread().executeAfter(
+                        () -> exchange.getResponseSender().send("slow " + exchange.getQueryString()), 500, TimeUnit.MILLISECONDS));
+                break;
+            default:
+                exchange.setStatusCode(404);
+                exchange.endExchange();
+        }
+    }
+
+    private static HttpRequest request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + path)).build();
+    }
+
+    @Test
+    public void testStreamedBody() throws Exception {
+        HttpResponse<byte[]> response = client.send(request("/external/large"), HttpResponse.BodyHandlers.ofByteArray());
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals("application/octet-stream", response.headers().firstValue("Content-Type").orElse(null));
+        byte[] body = response.body();
+        Assert.assertEquals(LARGE_BODY_SIZE, body.length);
+        for (int i = 0; i < body.length; i++) {
+            if (body[i] != (byte) ('a' + i % 26)) {
+                Assert.fail("The body is different at " + i);
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentSlowRequests() throws Exception {
+        long start = System.currentTimeMillis();
+        List<CompletableFuture<HttpResponse<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(client.sendAsync(request("/external/slow?id=" + i), HttpResponse.BodyHandlers.ofString()));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            HttpResponse<String> response = futures.get(i).get(30, TimeUnit.SECONDS);
+            Assert.assertEquals(200, response.statusCode());
+            Assert.assertEquals("slow id=" + i, response.body());
+        }
+        // 100 requests of 500ms each would take 25 seconds if they blocked the two worker threads.
+        Assert.assertTrue(System.currentTimeMillis() - start < 10000);
+    }
+
+    @Test
+    public void testConnectionRefused() throws Exception {
+        HttpResponse<String> response = client.send(request("/refused"), HttpResponse.BodyHandlers.ofString());
+        Assert.assertTrue(response.body().contains("ERR10053"));
+    }
+
+    @Test
+    public void testNotMapped() throws Exception {
+        HttpResponse<String> response = client.send(request("/other"), HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals("next", response.body());
+    }
+}
@@ -22,6 +22,7 @@ package com.networknt.whitelist;
 import com.networknt.config.Config;
 import com.networknt.config.ConfigException;
 import com.networknt.config.JsonMapper;
+import com.networknt.utility.PathPrefixMatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnio.Bits;
@@ -72,6 +73,7 @@ public class WhitelistConfig {
     boolean enabled;
     boolean defaultAllow;
     Map<String, IpAcl> prefixAcl = new HashMap<>();
+    volatile PathPrefixMatcher<IpAcl> prefixAclMatcher = PathPrefixMatcher.empty();
     private Config config;
     private Map<String, Object> mappedConfig;
 
@@ -124,6 +126,15 @@ public class WhitelistConfig {
         return prefixAcl;
     }
 
+    /**
+     * The prefixAcl compiled for the per request lookup. It is rebuilt whenever the paths are set.
+     *
+     * @return PathPrefixMatcher of the IpAcl for each prefix
+     */
+    public PathPrefixMatcher<IpAcl> getPrefixAclMatcher() {
+        return prefixAclMatcher;
+    }
+
     public Map<String, Object> getMappedConfig() {
         return mappedConfig;
     }
@@ -140,6 +151,8 @@ public class WhitelistConfig {
     }
 
     private void setConfigMap() {
+        // start from an empty map so that the removed paths won't survive a reload.
+        prefixAcl = new HashMap<>();
         // paths white list mapping
         if (mappedConfig.get(PATHS) != null) {
             Object object = mappedConfig.get(PATHS);
@@ -175,6 +188,7 @@ public class WhitelistConfig {
                 addRule(entry.getKey(), peer, !this.defaultAllow);
             }
         }
+        prefixAclMatcher = PathPrefixMatcher.compile(prefixAcl);
     }
 
     private void addRule(final String pathPrefix, final String peer, final boolean deny) {
@@ -31,7 +31,6 @@ import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.util.Arrays;
-import java.util.Map;
 
 public class WhitelistHandler implements MiddlewareHandler {
     private static final Logger logger = LoggerFactory.getLogger(WhitelistHandler.class);
@@ -102,12 +101,7 @@ public class WhitelistHandler implements MiddlewareHandler {
     }
 
     IpAcl findIpAcl(String reqPath) {
-        for(Map.Entry<String, IpAcl> entry: config.getPrefixAcl().entrySet()) {
-            if(reqPath.startsWith(entry.getKey())) {
-                return entry.getValue();
-            }
-        }
-        return null;
+        return config.getPrefixAclMatcher().get(reqPath);
     }
     boolean isAllowed(InetAddress address, String reqPath) {
         boolean isWhitelisted = false;
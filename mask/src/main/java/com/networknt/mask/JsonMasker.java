@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.mask;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single pass masker of the json paths of a key in the json section of mask.yml. The paths are compiled once
+ * into lists of selectors, and the tokens of the input are copied from a JsonParser to a JsonGenerator while the
+ * paths that are still possible are tracked per level. A subtree that no path can reach is copied as it is, and
+ * a string or integer value that is selected by a path is replaced with the masked string. When the selected
+ * value is an array, its string and integer elements are masked.
+ *
+ * The compiled paths support the root $, the child .name and ['name'], the wildcard .* and [*], the index [n]
+ * and the deep scan ..name. The paths of a key with other expressions like filters and slices are not compiled,
+ * and Mask falls back to the JsonPath implementation for the key.
+ *
+ * The memory used is bounded by the depth of the input instead of its size.
+ *
+ * @author Steve Hu
+ */
+final class JsonMasker {
+    static final Logger logger = LoggerFactory.getLogger(JsonMasker.class);
+    private static final int[] NONE = new int[0];
+
+    private final String[] paths;
+    private final Selector[][] selectors;
+    private final String[] regexes;
+    private final int[] initial;
+
+    private JsonMasker(String[] paths, Selector[][] selectors, String[] regexes) {
+        this.paths = paths;
+        this.selectors = selectors;
+        this.regexes = regexes;
+        this.initial = new int[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            initial[i] = state(i, 0);
+        }
+    }
+
+    /**
+     * @param patternMap the map of json path to the regex of the key
+     * @return the masker or null if one of the paths is not supported
+     */
+    static JsonMasker compile(Map<String, Object> patternMap) {
+        int size = patternMap.size();
+        String[] paths = new String[size];
+        Selector[][] selectors = new Selector[size][];
+        String[] regexes = new String[size];
+        int i = 0;
+        for (Map.Entry<String, Object> entry : patternMap.entrySet()) {
+            Selector[] compiled = parse(entry.getKey());
+            if (compiled == null) {
+                return null;
+            }
+            paths[i] = entry.getKey();
+            selectors[i] = compiled;
+            regexes[i] = entry.getValue() == null ? null : entry.getValue().toString();
+            i++;
+        }
+        return new JsonMasker(paths, selectors, regexes);
+    }
+
+    /**
+     * Copy the next value of the parser to the generator with the selected values masked.
+     *
+     * @param parser the parser of the input
+     * @param generator the generator of the output
+     * @throws IOException if the input is not valid json or the output cannot be written
+     */
+    void mask(JsonParser parser, JsonGenerator generator) throws IOException {
+        if (parser.nextToken() == null) {
+            return;
+        }
+        copy(parser, generator, initial, null);
+    }
+
+    /**
+     * Copy the current value with the states of the paths at the value.
+     *
+     * @param states the paths and the number of their selectors that have matched so far
+     * @param arrayRegex the regex of the parent array if the array is selected
+     */
+    private void copy(JsonParser parser, JsonGenerator generator, int[] states, String arrayRegex) throws IOException {
+        int matched = matched(states);
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            if (matched >= 0) {
+                logger.error("The value specified by path {} cannot be masked", paths[matched]);
+            }
+            if (states.length == 0) {
+                generator.copyCurrentStructure(parser);
+                return;
+            }
+            generator.writeStartObject();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                generator.writeFieldName(name);
+                parser.nextToken();
+                copy(parser, generator, next(states, name, -1), null);
+            }
+            generator.writeEndObject();
+        } else if (token == JsonToken.START_ARRAY) {
+            String regex = matched >= 0 ? regexes[matched] : null;
+            if (states.length == 0 && regex == null) {
+                generator.copyCurrentStructure(parser);
+                return;
+            }
+            generator.writeStartArray();
+            int index = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                copy(parser, generator, next(states, null, index++), regex);
+            }
+            generator.writeEndArray();
+        } else {
+            String regex = matched >= 0 ? regexes[matched] : arrayRegex;
+            if (regex != null && (token == JsonToken.VALUE_STRING || token == JsonToken.VALUE_NUMBER_INT)) {
+                generator.writeString(Mask.replaceWithMask(parser.getText(), Mask.MASK_REPLACEMENT_CHAR.charAt(0), regex));
+            } else {
+                if (matched >= 0) {
+                    logger.error("The value specified by path {} cannot be masked", paths[matched]);
+                }
+                generator.copyCurrentEvent(parser);
+            }
+        }
+    }
+
+    /**
+     * @return the index of the first path that is fully matched or -1
+     */
+    private int matched(int[] states) {
+        for (int state : states) {
+            int path = path(state);
+            if (position(state) == selectors[path].length) {
+                return path;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the states of the paths at the child with the name in an object or the index in an array
+     */
+    private int[] next(int[] states, String name, int index) {
+        int[] result = null;
+        int size = 0;
+        for (int state : states) {
+            int path = path(state);
+            int position = position(state);
+            if (position == selectors[path].length) {
+                continue;
+            }
+            Selector selector = selectors[path][position];
+            boolean deep = selector.deep;
+            boolean matches = selector.matches(name, index);
+            if (!deep && !matches) {
+                continue;
+            }
+            if (result == null) {
+                result = new int[states.length * 2];
+            }
+            if (deep) {
+                // a deep scan keeps looking for the selector in the descendants.
+                result[size++] = state;
+            }
+            if (matches) {
+                result[size++] = state(path, position + 1);
+            }
+        }
+        return result == null ? NONE : (size == result.length ? result : Arrays.copyOf(result, size));
+    }
+
+    private static int state(int path, int position) {
+        return path << 16 | position;
+    }
+
+    private static int path(int state) {
+        return state >>> 16;
+    }
+
+    private static int position(int state) {
+        return state & 0xFFFF;
+    }
+
+    /**
+     * @return the selectors of the path or null if the path is not supported
+     */
+    static Selector[] parse(String path) {
+        if (path == null || !path.startsWith("$")) {
+            return null;
+        }
+        List<Selector> selectors = new ArrayList<>();
+        int i = 1;
+        int length = path.length();
+        while (i < length) {
+            boolean deep = false;
+            char c = path.charAt(i);
+            if (c == '.') {
+                i++;
+                if (i < length && path.charAt(i) == '.') {
+                    deep = true;
+                    i++;
+                }
+                if (i >= length) {
+                    return null;
+                }
+                c = path.charAt(i);
+                if (c != '[') {
+                    int end = i;
+                    while (end < length && path.charAt(end) != '.' && path.charAt(end) != '[') {
+                        end++;
+                    }
+                    String name = path.substring(i, end);
+                    if (name.isEmpty()) {
+                        return null;
+                    }
+                    selectors.add("*".equals(name) ? Selector.any(deep) : Selector.field(name, deep));
+                    i = end;
+                    continue;
+                }
+            }
+            if (c != '[') {
+                return null;
+            }
+            int end = path.indexOf(']', i);
+            if (end < 0) {
+                return null;
+            }
+            String content = path.substring(i + 1, end).trim();
+            i = end + 1;
+            if ("*".equals(content)) {
+                selectors.add(Selector.any(deep));
+            } else if (content.length() >= 2 && (content.charAt(0) == '\'' || content.charAt(0) == '"')
+                    && content.charAt(content.length() - 1) == content.charAt(0)) {
+                String name = content.substring(1, content.length() - 1);
+                if (name.indexOf('\'') >= 0 || name.indexOf('"') >= 0) {
+                    // a union of names.
+                    return null;
+                }
+                selectors.add(Selector.field(name, deep));
+            } else {
+                try {
+                    int index = Integer.parseInt(content);
+                    if (index < 0) {
+                        return null;
+                    }
+                    selectors.add(Selector.index(index, deep));
+                } catch (NumberFormatException e) {
+                    // filters, slices and unions are left to JsonPath.
+                    return null;
+                }
+            }
+        }
+        return selectors.toArray(new Selector[0]);
+    }
+
+    static final class Selector {
+        final String name;
+        final int index;
+        final boolean any;
+        final boolean deep;
+
+        private Selector(String name, int index, boolean any, boolean deep) {
+            this.name = name;
+            this.index = index;
+            this.any = any;
+            this.deep = deep;
+        }
+
+        static Selector field(String name, boolean deep) {
+            return new Selector(name, -1, false, deep);
+        }
+
+        static Selector index(int index, boolean deep) {
+            return new Selector(null, index, false, deep);
+        }
+
+        static Selector any(boolean deep) {
+            return new Selector(null, -1, true, deep);
+        }
+
+        boolean matches(String name, int index) {
+            if (any) {
+                return true;
+            }
+            return this.name != null ? this.name.equals(name) : name == null && this.index == index;
+        }
+    }
+}
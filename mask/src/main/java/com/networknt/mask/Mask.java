@@ -16,7 +16,12 @@
 
 package com.networknt.mask;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.jayway.jsonpath.*;
 import com.networknt.config.Config;
 import com.networknt.utility.ModuleRegistry;
@@ -25,7 +30,10 @@ import org.owasp.encoder.Encode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
@@ -39,6 +47,8 @@ import java.util.regex.Pattern;
 public class Mask {
 
     static Map<String, Pattern> patternCache = new ConcurrentHashMap<>();
+    // the compiled json paths per key, and an empty optional if the paths of the key need JsonPath.
+    static Map<String, Optional<JsonMasker>> maskerCache = new ConcurrentHashMap<>();
 
     private static final String MASK_CONFIG = "mask";
     public static final String MASK_REPLACEMENT_CHAR = "*";
@@ -102,7 +112,7 @@ public class Mask {
         return input;
     }
 
-    private static String replaceWithMask(String stringToBeMasked, char maskingChar, String regex) {
+    static String replaceWithMask(String stringToBeMasked, char maskingChar, String regex) {
         if (stringToBeMasked == null || stringToBeMasked.length() == 0)
             return stringToBeMasked;
         String replacementString = "";
@@ -141,10 +151,33 @@ public class Mask {
      * @return String Masked result
      */
     public static String maskJson(String input, String key) {
+        return maskJson(input, key, -1);
+    }
+
+    /**
+     * Replace values in JSON using json path in a single pass, and stop once the result reaches the max size. It
+     * is the same as truncating the masked result, but the rest of the input is not parsed.
+     *
+     * @param input String The source of the string that needs to be masked
+     * @param key String The key maps to a list of json path for masking
+     * @param maxSize int The max length of the result or -1 for no limit
+     * @return String Masked result
+     */
+    public static String maskJson(String input, String key, int maxSize) {
         if(input == null)
             return null;
-        DocumentContext ctx = JsonPath.parse(input);
-        return maskJson(ctx, key);
+        JsonMasker masker = getMasker(key);
+        if(masker != null) {
+            try (JsonParser parser = getMapper().getFactory().createParser(input)) {
+                return maskJson(masker, parser, maxSize);
+            } catch (JsonProcessingException e) {
+                // leave the input that Jackson cannot parse to JsonPath so that the error is the same as before.
+                if(logger.isDebugEnabled()) logger.debug("Failed to parse the input with Jackson: {}", e.getMessage());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return truncate(maskJson(JsonPath.parse(input), key), maxSize);
     }
 
     /**
@@ -156,6 +189,16 @@ public class Mask {
     public static String maskJson(InputStream input, String key) {
         if(input == null)
             return null;
+        JsonMasker masker = getMasker(key);
+        if(masker != null) {
+            try (JsonParser parser = getMapper().getFactory().createParser(input)) {
+                return maskJson(masker, parser, -1);
+            } catch (JsonProcessingException e) {
+                throw new InvalidJsonException(e);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
         DocumentContext ctx = JsonPath.parse(input);
         return maskJson(ctx, key);
     }
@@ -169,10 +212,67 @@ public class Mask {
     public static String maskJson(Object input, String key) {
         if(input == null)
             return null;
+        JsonMasker masker = getMasker(key);
+        if(masker != null) {
+            // the tokens of the object are masked without writing the object to a string first.
+            ObjectMapper mapper = getMapper();
+            try (TokenBuffer buffer = new TokenBuffer(mapper, false)) {
+                mapper.writeValue(buffer, input);
+                try (JsonParser parser = buffer.asParser()) {
+                    return maskJson(masker, parser, -1);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
         DocumentContext ctx = JsonPath.parse(input);
         return maskJson(ctx, key);
     }
 
+    private static String maskJson(JsonMasker masker, JsonParser parser, int maxSize) throws IOException {
+        LimitedWriter writer = new LimitedWriter(maxSize);
+        JsonGenerator generator = getMapper().getFactory().createGenerator(writer);
+        try {
+            masker.mask(parser, generator);
+            generator.close();
+        } catch (LimitReachedException e) {
+            // the result has reached the max size and the rest of the input is skipped.
+        }
+        return writer.toString();
+    }
+
+    /**
+     * @return the compiled json paths of the key or null if the key is masked with JsonPath
+     */
+    private static JsonMasker getMasker(String key) {
+        Optional<JsonMasker> masker = maskerCache.get(key);
+        if(masker == null) {
+            masker = Optional.ofNullable(compileMasker(key));
+            maskerCache.put(key, masker);
+        }
+        return masker.orElse(null);
+    }
+
+    private static JsonMasker compileMasker(String key) {
+        Map<String, Object> jsonConfig = (Map<String, Object>) config.get(MASK_TYPE_JSON);
+        Map<String, Object> patternMap = jsonConfig == null ? null : (Map<String, Object>) jsonConfig.get(key);
+        if(patternMap == null) {
+            if(jsonConfig != null) logger.warn("mask.json doesn't contain the key {} ", Encode.forJava(key));
+            return JsonMasker.compile(Collections.emptyMap());
+        }
+        JsonMasker masker = JsonMasker.compile(patternMap);
+        if(masker == null && logger.isInfoEnabled()) logger.info("The json paths of the key {} are masked with JsonPath", Encode.forJava(key));
+        return masker;
+    }
+
+    private static ObjectMapper getMapper() {
+        return Config.getInstance().getMapper();
+    }
+
+    private static String truncate(String output, int maxSize) {
+        return maxSize >= 0 && output != null && output.length() > maxSize ? output.substring(0, maxSize) : output;
+    }
+
     public static String maskJson(DocumentContext ctx, String key) {
         if(ctx == null)
             return null;
@@ -252,6 +352,57 @@ public class Mask {
         }
     }
 
+    /**
+     * A writer that keeps up to the max size of characters and stops the masking once it is reached.
+     */
+    private static final class LimitedWriter extends Writer {
+        private final StringBuilder builder = new StringBuilder();
+        private final int maxSize;
+
+        LimitedWriter(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            if(maxSize < 0) {
+                builder.append(buffer, offset, length);
+                return;
+            }
+            int remaining = maxSize - builder.length();
+            builder.append(buffer, offset, Math.min(length, remaining));
+            if(length >= remaining) {
+                throw LimitReachedException.INSTANCE;
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return builder.toString();
+        }
+    }
+
+    private static final class LimitReachedException extends IOException {
+        static final LimitReachedException INSTANCE = new LimitReachedException();
+
+        private LimitReachedException() {
+            super("the max size is reached", null);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
     /**
      * Replace values in JSON using json path
      * @param input String The source of the string that needs to be masked
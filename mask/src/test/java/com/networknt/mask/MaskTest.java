@@ -172,4 +172,33 @@ public class MaskTest {
         System.out.println("output = " + output);
         Assert.assertEquals(null, output);
     }
+
+    @Test
+    public void testMaskJsonStreaming() {
+        String input = "{\"name\":\"Steve\",\"ssn\":\"123\",\"family\":[{\"ssn\":\"4567\"}],\"accounts\":[\"a\",\"bb\"],\"card\":{\"number\":\"12345\"},\"pin\":1234,\"active\":true}";
+        String output = Mask.maskJson(input, "testStream");
+        Assert.assertEquals("{\"name\":\"Steve\",\"ssn\":\"***\",\"family\":[{\"ssn\":\"****\"}],\"accounts\":[\"a\",\"**\"],\"card\":{\"number\":\"*****\"},\"pin\":\"****\",\"active\":true}", output);
+        // the object input is masked the same way.
+        Assert.assertEquals(output, Mask.maskJson((Object) JsonPath.parse(input).read("$"), "testStream"));
+    }
+
+    @Test
+    public void testMaskJsonMaxSize() {
+        String input = "{\"name\":\"Steve\",\"contact\":{\"phone\":\"416-111-1111\"},\"password\":\"secret\"}";
+        String masked = Mask.maskJson(input, "test1");
+        Assert.assertEquals(masked.substring(0, 20), Mask.maskJson(input, "test1", 20));
+        Assert.assertEquals(masked, Mask.maskJson(input, "test1", masked.length()));
+        Assert.assertEquals(masked, Mask.maskJson(input, "test1", 10000));
+    }
+
+    @Test
+    public void testMaskJsonFallback() {
+        // a filter is not compiled and the key is masked with JsonPath.
+        String input = "{\"list\":[{\"type\":\"secret\",\"value\":\"abc\"},{\"type\":\"public\",\"value\":\"def\"}]}";
+        String output = Mask.maskJson(input, "testFilter");
+        Assert.assertEquals("{\"list\":[{\"type\":\"secret\",\"value\":\"***\"},{\"type\":\"public\",\"value\":\"def\"}]}", output);
+        Assert.assertNull(JsonMasker.parse("$.list[?(@.type == 'secret')].value"));
+        Assert.assertNull(JsonMasker.parse("$.list[0:2]"));
+        Assert.assertEquals(3, JsonMasker.parse("$.list.[*].creditCardNumber").length);
+    }
 }
@@ -80,6 +80,9 @@ public class APMMetricsHandler extends AbstractMetricsHandler {
                 logger.error("apmmetrics has failed to initialize APMEPAgentSender", e);
             }            
 
+            registerCircuitBreakerGauges(commonTags);
+            registerAuditGauges(commonTags);
+            registerAdaptiveLimitGauges(commonTags);
             // reset the flag so that this block will only be called once.
             firstTime = false;
         }
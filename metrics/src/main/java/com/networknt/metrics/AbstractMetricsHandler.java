@@ -16,10 +16,16 @@
 
 package com.networknt.metrics;
 
+import com.networknt.audit.AuditSink;
+import com.networknt.client.circuitbreaker.CircuitBreakerRegistry;
 import com.networknt.config.JsonMapper;
 import com.networknt.handler.MiddlewareHandler;
 import com.networknt.httpstring.AttachmentConstants;
+import com.networknt.limit.AdaptiveLimiter;
+import com.networknt.limit.AdaptiveLimiterRegistry;
 import com.networknt.utility.Constants;
+import io.dropwizard.metrics.Gauge;
+import io.dropwizard.metrics.Metric;
 import io.dropwizard.metrics.MetricFilter;
 import io.dropwizard.metrics.MetricName;
 import io.dropwizard.metrics.MetricRegistry;
@@ -30,6 +36,7 @@ import org.slf4j.LoggerFactory;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -68,6 +75,78 @@ public abstract class AbstractMetricsHandler implements MiddlewareHandler {
         jvmReporter.start(config.getReportInMinutes(), TimeUnit.MINUTES);
     }
 
+    /**
+     * Export the state and the failure rate of the circuit of each endpoint that is called by the Http2Client
+     * as gauges. The state is 0 for closed, 1 for half open and 2 for opened.
+     *
+     * @param commonTags the common tags of the service
+     */
+    public void registerCircuitBreakerGauges(Map<String, String> commonTags) {
+        CircuitBreakerRegistry.getInstance().addListener(circuit -> {
+            Map<String, String> tags = new HashMap<>();
+            tags.put("endpoint", circuit.getKey());
+            MetricName stateName = new MetricName("circuit_breaker_state").tagged(commonTags).tagged(tags);
+            registry.getOrAdd(stateName, createGaugeBuilder(() -> circuit.getState().ordinal()));
+            MetricName rateName = new MetricName("circuit_breaker_failure_rate").tagged(commonTags).tagged(tags);
+            registry.getOrAdd(rateName, createGaugeBuilder(circuit::getFailureRate));
+        });
+    }
+
+    /**
+     * Register the gauges of the async audit writer. The sink is looked up on each read as it is only started
+     * when the first AuditHandler is created, and the gauges are 0 if the audit is written synchronously.
+     *
+     * @param commonTags the common tags of the service
+     */
+    public void registerAuditGauges(Map<String, String> commonTags) {
+        registry.getOrAdd(new MetricName("audit_dropped").tagged(commonTags),
+                createGaugeBuilder(() -> AuditSink.getInstance() == null ? 0L : AuditSink.getInstance().getDropped()));
+        registry.getOrAdd(new MetricName("audit_pending").tagged(commonTags),
+                createGaugeBuilder(() -> AuditSink.getInstance() == null ? 0 : AuditSink.getInstance().getPending()));
+        registry.getOrAdd(new MetricName("audit_lag").tagged(commonTags),
+                createGaugeBuilder(() -> AuditSink.getInstance() == null ? 0L : AuditSink.getInstance().getLag()));
+    }
+
+    /**
+     * Register the gauges of the limit, the requests in flight and the RTT estimates in milliseconds of each path
+     * prefix of the adaptive limit handler. The limiter is looked up on each read as it is replaced on reload.
+     *
+     * @param commonTags the common tags of the service
+     */
+    public void registerAdaptiveLimitGauges(Map<String, String> commonTags) {
+        AdaptiveLimiterRegistry.getInstance().addListener(name -> {
+            Map<String, String> tags = new HashMap<>();
+            tags.put("pathPrefix", name);
+            registry.getOrAdd(new MetricName("concurrency_limit").tagged(commonTags).tagged(tags),
+                    createGaugeBuilder(() -> readLimiter(name, AdaptiveLimiter::getLimit)));
+            registry.getOrAdd(new MetricName("concurrency_in_flight").tagged(commonTags).tagged(tags),
+                    createGaugeBuilder(() -> readLimiter(name, AdaptiveLimiter::getInFlight)));
+            registry.getOrAdd(new MetricName("concurrency_rtt").tagged(commonTags).tagged(tags),
+                    createGaugeBuilder(() -> readLimiter(name, limiter -> limiter.getRtt() / 1e6)));
+            registry.getOrAdd(new MetricName("concurrency_rtt_no_load").tagged(commonTags).tagged(tags),
+                    createGaugeBuilder(() -> readLimiter(name, limiter -> limiter.getRttNoLoad() / 1e6)));
+        });
+    }
+
+    private static double readLimiter(String name, ToDoubleFunction<AdaptiveLimiter> getter) {
+        AdaptiveLimiter limiter = AdaptiveLimiterRegistry.getInstance().getLimiter(name);
+        return limiter == null ? 0 : getter.applyAsDouble(limiter);
+    }
+
+    private static <T> MetricRegistry.MetricBuilder<Gauge<T>> createGaugeBuilder(Gauge<T> gauge) {
+        return new MetricRegistry.MetricBuilder<Gauge<T>>() {
+            @Override
+            public Gauge<T> newMetric() {
+                return gauge;
+            }
+
+            @Override
+            public boolean isInstance(Metric metric) {
+                return Gauge.class.isInstance(metric);
+            }
+        };
+    }
+
     public void incCounterForStatusCode(int statusCode, Map<String, String> commonTags, Map<String, String> tags) {
         MetricName metricName = new MetricName("request").tagged(commonTags).tagged(tags);
         registry.getOrAdd(metricName, MetricRegistry.MetricBuilder.COUNTERS).inc();
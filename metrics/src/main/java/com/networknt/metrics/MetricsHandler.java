@@ -78,6 +78,9 @@ public class MetricsHandler extends AbstractMetricsHandler {
                 // if there are any exception, chances are influxdb is not available.
                 logger.error("metrics is failed to connect to the influxdb", e);
             }
+            registerCircuitBreakerGauges(commonTags);
+            registerAuditGauges(commonTags);
+            registerAdaptiveLimitGauges(commonTags);
             // reset the flag so that this block will only be called once.
             firstTime = false;
         }
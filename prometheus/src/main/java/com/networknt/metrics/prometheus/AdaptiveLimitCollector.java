@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.metrics.prometheus;
+
+import com.networknt.limit.AdaptiveLimiter;
+import com.networknt.limit.AdaptiveLimiterRegistry;
+import io.prometheus.client.Collector;
+import io.prometheus.client.GaugeMetricFamily;
+
+import java.util.List;
+
+/**
+ * Collect the limit, the requests in flight and the RTT estimates of each path prefix of the adaptive limit handler
+ * from the AdaptiveLimiterRegistry when the metrics are scraped.
+ *
+ * @author Steve Hu
+ */
+public class AdaptiveLimitCollector extends Collector {
+    private static final List<String> LABELS = List.of("pathPrefix");
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        GaugeMetricFamily limit = new GaugeMetricFamily("concurrency_limit", "The concurrency limit of the path prefix.", LABELS);
+        GaugeMetricFamily inFlight = new GaugeMetricFamily("concurrency_in_flight", "The requests in flight of the path prefix.", LABELS);
+        GaugeMetricFamily rtt = new GaugeMetricFamily("concurrency_rtt_seconds", "The moving average of the RTT of the path prefix.", LABELS);
+        GaugeMetricFamily rttNoLoad = new GaugeMetricFamily("concurrency_rtt_no_load_seconds", "The RTT without load of the path prefix.", LABELS);
+        for(AdaptiveLimiter limiter : AdaptiveLimiterRegistry.getInstance().getLimiters()) {
+            List<String> labelValues = List.of(limiter.getName());
+            limit.addMetric(labelValues, limiter.getLimit());
+            inFlight.addMetric(labelValues, limiter.getInFlight());
+            rtt.addMetric(labelValues, limiter.getRtt() / 1e9);
+            rttNoLoad.addMetric(labelValues, limiter.getRttNoLoad() / 1e9);
+        }
+        return List.of(limit, inFlight, rtt, rttNoLoad);
+    }
+}
@@ -59,6 +59,8 @@ public class PrometheusHandler implements MiddlewareHandler {
     private volatile HttpHandler next;
     private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, Summary> response_times = new ConcurrentHashMap<>();
+    // the collector of the adaptive limit handler is registered once for all the handler instances.
+    private static AdaptiveLimitCollector adaptiveLimitCollector;
 
     public static final String REQUEST_TOTAL = "requests_total";
     public static final String SUCCESS_TOTAL = "success_total";
@@ -71,6 +73,13 @@ public class PrometheusHandler implements MiddlewareHandler {
 
     public PrometheusHandler() {
         registry=  CollectorRegistry.defaultRegistry;
+        registerAdaptiveLimitCollector(registry);
+    }
+
+    private static synchronized void registerAdaptiveLimitCollector(CollectorRegistry registry) {
+        if(adaptiveLimitCollector == null) {
+            adaptiveLimitCollector = new AdaptiveLimitCollector().register(registry);
+        }
     }
 
     @Override
@@ -0,0 +1,119 @@
+package com.networknt.handler;
+
+import org.xnio.IoUtils;
+import org.xnio.channels.StreamSourceChannel;
+import org.xnio.conduits.AbstractStreamSinkConduit;
+import org.xnio.conduits.ConduitWritableByteChannel;
+import org.xnio.conduits.Conduits;
+import org.xnio.conduits.StreamSinkConduit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A conduit of the leader of the RequestCoalescer that passes the response body to the next conduit and keeps a
+ * copy of the bytes accepted by it. The listener is called once with the copy when the writes are terminated, or
+ * with null as soon as the body is bigger than the maximum size or the writes are truncated so that the waiters
+ * don't need to wait for the end of a response that cannot be shared.
+ *
+ * @author Steve Hu
+ */
+final class CoalescingSinkConduit extends AbstractStreamSinkConduit<StreamSinkConduit> {
+    private static final int INITIAL_SIZE = 4096;
+    private final int maxSize;
+    private final Consumer<byte[]> listener;
+    private byte[] data;
+    private int size;
+    private boolean done;
+
+    CoalescingSinkConduit(StreamSinkConduit next, int maxSize, Consumer<byte[]> listener) {
+        super(next);
+        this.maxSize = maxSize;
+        this.listener = listener;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int position = src.position();
+        int written = next.write(src);
+        capture(src, position, written);
+        return written;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offs, int len) throws IOException {
+        int[] positions = new int[len];
+        for(int i = 0; i < len; i++) {
+            positions[i] = srcs[offs + i].position();
+        }
+        long written = next.write(srcs, offs, len);
+        for(int i = 0; i < len; i++) {
+            ByteBuffer src = srcs[offs + i];
+            capture(src, positions[i], src.position() - positions[i]);
+        }
+        return written;
+    }
+
+    @Override
+    public int writeFinal(ByteBuffer src) throws IOException {
+        return Conduits.writeFinalBasic(this, src);
+    }
+
+    @Override
+    public long writeFinal(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        return Conduits.writeFinalBasic(this, srcs, offset, length);
+    }
+
+    @Override
+    public long transferFrom(FileChannel src, long position, long count) throws IOException {
+        return src.transferTo(position, count, new ConduitWritableByteChannel(this));
+    }
+
+    @Override
+    public long transferFrom(StreamSourceChannel source, long count, ByteBuffer throughBuffer) throws IOException {
+        return IoUtils.transfer(source, count, throughBuffer, new ConduitWritableByteChannel(this));
+    }
+
+    @Override
+    public void terminateWrites() throws IOException {
+        if(!done) {
+            byte[] body = data == null ? new byte[0] : (data.length == size ? data : Arrays.copyOf(data, size));
+            notify(body);
+        }
+        next.terminateWrites();
+    }
+
+    @Override
+    public void truncateWrites() throws IOException {
+        if(!done) notify(null);
+        next.truncateWrites();
+    }
+
+    private void notify(byte[] body) {
+        done = true;
+        data = null;
+        listener.accept(body);
+    }
+
+    private void capture(ByteBuffer src, int position, int length) {
+        if(length <= 0 || done) {
+            return;
+        }
+        if(size + length > maxSize) {
+            notify(null);
+            return;
+        }
+        if(data == null) {
+            data = new byte[Math.min(maxSize, Math.max(INITIAL_SIZE, length))];
+        } else if(size + length > data.length) {
+            data = Arrays.copyOf(data, Math.min(maxSize, Math.max(size + length, data.length * 2)));
+        }
+        ByteBuffer copy = src.duplicate();
+        copy.position(position);
+        copy.get(data, size, length);
+        size += length;
+    }
+}
@@ -28,16 +28,17 @@ import java.util.concurrent.TimeUnit;
 import javax.net.ssl.SSLPeerUnverifiedException;
 import java.security.cert.CertificateEncodingException;
 
+import com.networknt.handler.config.MethodRewriteMatcher;
 import com.networknt.handler.config.MethodRewriteRule;
 import com.networknt.handler.config.QueryHeaderRewriteRule;
+import com.networknt.handler.config.UrlRewriteMatcher;
 import com.networknt.handler.config.UrlRewriteRule;
 import com.networknt.handler.thread.LightThreadExecutor;
 import com.networknt.httpstring.AttachmentConstants;
 import com.networknt.httpstring.HttpStringConstants;
 import com.networknt.metrics.AbstractMetricsHandler;
 import com.networknt.metrics.MetricsHandler;
-import com.networknt.utility.CollectionUtils;
-import com.networknt.utility.StringUtils;
+import com.networknt.utility.PathPrefixMatcher;
 import io.undertow.UndertowLogger;
 import io.undertow.UndertowMessages;
 import io.undertow.server.*;
@@ -87,20 +88,20 @@ public class ProxyHandler implements HttpHandler {
 
     private static final int DEFAULT_MAX_RETRY_ATTEMPTS = Integer.getInteger("maxRetries", 1);
     private static final int DEFAULT_MAX_QUEUE_SIZE = Integer.getInteger("maxQueueSize", 0);
+    public static final int DEFAULT_COALESCING_MAX_BODY_SIZE = 1024 * 1024;
+    public static final List<String> DEFAULT_COALESCING_KEY_HEADERS = List.of("Authorization", "Cookie", "Accept", "Accept-Encoding", "Accept-Language");
 
     private static final Logger LOG = LoggerFactory.getLogger(ProxyHandler.class);
 
     public static final String UTF_8 = StandardCharsets.UTF_8.name();
 
-    private LightThreadExecutor lightThreadExecutor;
-
     public static final AttachmentKey<ProxyConnection> CONNECTION = AttachmentKey.create(ProxyConnection.class);
     private static final AttachmentKey<HttpServerExchange> EXCHANGE = AttachmentKey.create(HttpServerExchange.class);
     private static final AttachmentKey<XnioExecutor.Key> TIMEOUT_KEY = AttachmentKey.create(XnioExecutor.Key.class);
 
     private final ProxyClient proxyClient;
-    private int maxRequestTime;
-    private final Map<String, Integer> pathPrefixMaxRequestTime;
+    private final int maxRequestTime;
+    private final PathPrefixMatcher<Integer> pathPrefixMaxRequestTime;
     /**
      * Map of additional headers to add to the request.
      */
@@ -112,37 +113,40 @@ public class ProxyHandler implements HttpHandler {
     private volatile boolean reuseXForwarded;
     private volatile int maxConnectionRetries;
     private volatile int maxQueueSize;
-    private volatile List<UrlRewriteRule> urlRewriteRules;
-    private volatile List<MethodRewriteRule> methodRewriteRules;
+    private final UrlRewriteMatcher urlRewriteMatcher;
+    private final MethodRewriteMatcher methodRewriteMatcher;
 
-    private volatile Map<String, List<QueryHeaderRewriteRule>> queryParamRewriteRules;
+    private final PathPrefixMatcher<List<QueryHeaderRewriteRule>> queryParamRewriteMatcher;
 
-    private volatile Map<String, List<QueryHeaderRewriteRule>> headerRewriteRules;
+    private final PathPrefixMatcher<List<QueryHeaderRewriteRule>> headerRewriteMatcher;
 
     private final Predicate idempotentRequestPredicate;
 
+    private final RequestCoalescer requestCoalescer;
+
     private ProxyHandler(Builder builder) {
         this.proxyClient = builder.proxyClient;
         this.maxRequestTime = builder.maxRequestTime;
-        this.pathPrefixMaxRequestTime = builder.pathPrefixMaxRequestTime;
+        this.pathPrefixMaxRequestTime = PathPrefixMatcher.compile(builder.pathPrefixMaxRequestTime);
         this.next = builder.next;
         this.rewriteHostHeader = builder.rewriteHostHeader;
         this.reuseXForwarded = builder.reuseXForwarded;
         this.maxConnectionRetries = builder.maxConnectionRetries;
         this.maxQueueSize = builder.maxQueueSize;
-        this.urlRewriteRules = builder.urlRewriteRules;
-        this.methodRewriteRules = builder.methodRewriteRules;
-        this.queryParamRewriteRules = builder.queryParamRewriteRules;
-        this.headerRewriteRules = builder.headerRewriteRules;
+        this.urlRewriteMatcher = UrlRewriteMatcher.compile(builder.urlRewriteRules);
+        this.methodRewriteMatcher = MethodRewriteMatcher.compile(builder.methodRewriteRules);
+        this.queryParamRewriteMatcher = PathPrefixMatcher.compile(builder.queryParamRewriteRules);
+        this.headerRewriteMatcher = PathPrefixMatcher.compile(builder.headerRewriteRules);
         this.idempotentRequestPredicate = builder.idempotentRequestPredicate;
+        if (builder.coalescingPathPrefixes != null && !builder.coalescingPathPrefixes.isEmpty())
+            this.requestCoalescer = new RequestCoalescer(builder.coalescingPathPrefixes, builder.coalescingKeyHeaders, builder.coalescingMaxBodySize);
+        else this.requestCoalescer = null;
         for (Map.Entry<HttpString, ExchangeAttribute> e : builder.requestHeaders.entrySet()) {
             requestHeaders.put(e.getKey(), e.getValue());
         }
     }
 
     public void handleRequest(final HttpServerExchange exchange) throws Exception {
-        this.lightThreadExecutor = new LightThreadExecutor(exchange);
-
         final ProxyClient.ProxyTarget target = proxyClient.findTarget(exchange);
         if (target == null) {
 
@@ -160,21 +164,18 @@ public class ProxyHandler implements HttpHandler {
             exchange.endExchange();
             return;
         }
-        // check the path prefix for the timeout and then fall back to maxRequestTime.
-        String reqPath = exchange.getRequestPath();
-        long timeout = maxRequestTime > 0 ? System.currentTimeMillis() + maxRequestTime : 0;
-        if (pathPrefixMaxRequestTime != null) {
-            for (Map.Entry<String, Integer> entry : pathPrefixMaxRequestTime.entrySet()) {
-                String key = entry.getKey();
-                if (StringUtils.matchPathToPattern(reqPath, key)) {
-                    maxRequestTime = entry.getValue();
-                    timeout = System.currentTimeMillis() + maxRequestTime;
-                    if (LOG.isTraceEnabled())
-                        LOG.trace("Overwritten maxRequestTime {} and timeout {}.", maxRequestTime, timeout);
-                    break;
-                }
-            }
-        }
+        // join an identical in-flight request, and the exchange is proxied again by this handler if the response
+        // of the in-flight request cannot be shared.
+        if (requestCoalescer != null && requestCoalescer.join(exchange, this))
+            return;
+
+        // check the path prefix for the timeout and then fall back to maxRequestTime. The timeout belongs to
+        // this request only, and it is kept in the ProxyClientHandler of the exchange with the executor.
+        Integer pathMaxRequestTime = pathPrefixMaxRequestTime.get(exchange.getRequestPath());
+        final int requestMaxRequestTime = pathMaxRequestTime != null ? pathMaxRequestTime : maxRequestTime;
+        long timeout = requestMaxRequestTime > 0 ? System.currentTimeMillis() + requestMaxRequestTime : 0;
+        if (pathMaxRequestTime != null && LOG.isTraceEnabled())
+            LOG.trace("Overwritten maxRequestTime {} and timeout {}.", requestMaxRequestTime, timeout);
 
         int maxRetries = maxConnectionRetries;
 
@@ -184,7 +185,7 @@ public class ProxyHandler implements HttpHandler {
         final ProxyClientHandler clientHandler = new ProxyClientHandler(exchange, target, timeout, maxRetries, idempotentRequestPredicate);
 
         if (timeout > 0) {
-            final XnioExecutor.Key key = WorkerUtils.executeAfter(exchange.getIoThread(), () -> clientHandler.cancel(exchange), maxRequestTime, TimeUnit.MILLISECONDS);
+            final XnioExecutor.Key key = WorkerUtils.executeAfter(exchange.getIoThread(), () -> clientHandler.cancel(exchange), requestMaxRequestTime, TimeUnit.MILLISECONDS);
             exchange.putAttachment(TIMEOUT_KEY, key);
             exchange.addExchangeCompleteListener((exchange1, nextListener) -> {
                 key.remove();
@@ -193,7 +194,7 @@ public class ProxyHandler implements HttpHandler {
         }
 
 
-        if (exchange.isInIoThread()) exchange.dispatch(lightThreadExecutor, clientHandler);
+        if (exchange.isInIoThread()) exchange.dispatch(clientHandler.lightThreadExecutor, clientHandler);
 
         else exchange.dispatch(exchange.getIoThread(), clientHandler);
     }
@@ -248,6 +249,13 @@ public class ProxyHandler implements HttpHandler {
         return proxyClient;
     }
 
+    /**
+     * @return the RequestCoalescer or null if the request coalescing is not enabled
+     */
+    public RequestCoalescer getRequestCoalescer() {
+        return requestCoalescer;
+    }
+
     @Override
     public String toString() {
         var proxyTargets = proxyClient.getAllTargets();
@@ -274,10 +282,12 @@ public class ProxyHandler implements HttpHandler {
         private final int maxRetryAttempts;
         private final HttpServerExchange exchange;
         private final Predicate idempotentPredicate;
+        private final LightThreadExecutor lightThreadExecutor;
         private ProxyClient.ProxyTarget target;
 
         ProxyClientHandler(HttpServerExchange exchange, ProxyClient.ProxyTarget target, long timeout, int maxRetryAttempts, Predicate idempotentPredicate) {
             this.exchange = exchange;
+            this.lightThreadExecutor = new LightThreadExecutor(exchange);
             this.timeout = timeout;
             this.maxRetryAttempts = maxRetryAttempts;
             this.target = target;
@@ -292,7 +302,7 @@ public class ProxyHandler implements HttpHandler {
         @Override
         public void completed(final HttpServerExchange exchange, final ProxyConnection connection) {
             exchange.putAttachment(CONNECTION, connection);
-            exchange.dispatch(lightThreadExecutor, new ProxyAction(connection, exchange, requestHeaders, rewriteHostHeader, reuseXForwarded, exchange.isRequestComplete() ? this : null, idempotentPredicate, urlRewriteRules, methodRewriteRules, queryParamRewriteRules, headerRewriteRules));
+            exchange.dispatch(lightThreadExecutor, new ProxyAction(connection, exchange, requestHeaders, rewriteHostHeader, reuseXForwarded, exchange.isRequestComplete() ? this : null, idempotentPredicate, urlRewriteMatcher, methodRewriteMatcher, queryParamRewriteMatcher, headerRewriteMatcher));
         }
 
         @Override
@@ -408,15 +418,15 @@ public class ProxyHandler implements HttpHandler {
         private final boolean reuseXForwarded;
         private final ProxyClientHandler proxyClientHandler;
         private final Predicate idempotentPredicate;
-        private final List<UrlRewriteRule> urlRewriteRules;
-        private final List<MethodRewriteRule> methodRewriteRules;
-        private final Map<String, List<QueryHeaderRewriteRule>> queryParamRewriteRules;
-        private final Map<String, List<QueryHeaderRewriteRule>> headerRewriteRules;
+        private final UrlRewriteMatcher urlRewriteMatcher;
+        private final MethodRewriteMatcher methodRewriteMatcher;
+        private final PathPrefixMatcher<List<QueryHeaderRewriteRule>> queryParamRewriteMatcher;
+        private final PathPrefixMatcher<List<QueryHeaderRewriteRule>> headerRewriteMatcher;
 
         ProxyAction(final ProxyConnection clientConnection, final HttpServerExchange exchange, Map<HttpString, ExchangeAttribute> requestHeaders,
                     boolean rewriteHostHeader, boolean reuseXForwarded, ProxyClientHandler proxyClientHandler, Predicate idempotentPredicate,
-                    List<UrlRewriteRule> urlRewriteRules, List<MethodRewriteRule> methodRewriteRules,
-                    Map<String, List<QueryHeaderRewriteRule>> queryParamRewriteRules, Map<String, List<QueryHeaderRewriteRule>> headerRewriteRules) {
+                    UrlRewriteMatcher urlRewriteMatcher, MethodRewriteMatcher methodRewriteMatcher,
+                    PathPrefixMatcher<List<QueryHeaderRewriteRule>> queryParamRewriteMatcher, PathPrefixMatcher<List<QueryHeaderRewriteRule>> headerRewriteMatcher) {
             this.clientConnection = clientConnection;
             this.exchange = exchange;
             this.requestHeaders = requestHeaders;
@@ -424,10 +434,10 @@ public class ProxyHandler implements HttpHandler {
             this.reuseXForwarded = reuseXForwarded;
             this.proxyClientHandler = proxyClientHandler;
             this.idempotentPredicate = idempotentPredicate;
-            this.urlRewriteRules = urlRewriteRules;
-            this.methodRewriteRules = methodRewriteRules;
-            this.queryParamRewriteRules = queryParamRewriteRules;
-            this.headerRewriteRules = headerRewriteRules;
+            this.urlRewriteMatcher = urlRewriteMatcher;
+            this.methodRewriteMatcher = methodRewriteMatcher;
+            this.queryParamRewriteMatcher = queryParamRewriteMatcher;
+            this.headerRewriteMatcher = headerRewriteMatcher;
             this.lightThreadExecutor = new LightThreadExecutor(exchange);
         }
 
@@ -549,7 +559,7 @@ public class ProxyHandler implements HttpHandler {
             final var inboundRequestHeaders = this.exchange.getRequestHeaders();
             final var outboundRequestHeaders = r.getRequestHeaders();
 
-            copyHeaders(outboundRequestHeaders, inboundRequestHeaders, (List) CollectionUtils.matchEndpointKey(target, (Map) this.headerRewriteRules));
+            copyHeaders(outboundRequestHeaders, inboundRequestHeaders, this.headerRewriteMatcher.get(target));
 
             /* even if client is non-persistent, we don't close connection to backend. */
             if (!this.exchange.isPersistent())
@@ -621,16 +631,15 @@ public class ProxyHandler implements HttpHandler {
 
             // handler the method rewrite here.
             var m = this.exchange.getRequestMethod();
+            var rewritten = this.methodRewriteMatcher.rewrite(target, m.toString());
 
-            if (this.methodRewriteRules != null && this.methodRewriteRules.size() > 0)
-                for (var rule : this.methodRewriteRules)
-                    if (StringUtils.matchPathToPattern(target, rule.getRequestPath()) && m.toString().equals(rule.getSourceMethod())) {
+            if (rewritten != null) {
 
-                        if (LOG.isDebugEnabled())
-                            LOG.debug("Rewrite HTTP method from {} to {} with path {} and pathPattern {}", rule.getSourceMethod(), rule.getTargetMethod(), target, rule.getRequestPath());
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Rewrite HTTP method from {} to {} with path {}", m, rewritten, target);
 
-                        m = new HttpString(rule.getTargetMethod());
-                    }
+                m = new HttpString(rewritten);
+            }
 
             return m;
         }
@@ -644,22 +653,8 @@ public class ProxyHandler implements HttpHandler {
         private void rewriteUrl(StringBuilder uriBuilder, String target) {
 
             /* Rewrites the url. Uses original if there are no rules matches/no rules defined. */
-            if (this.urlRewriteRules != null && this.urlRewriteRules.size() > 0) {
-                var matched = false;
-
-                for (var rule : this.urlRewriteRules) {
-                    var matcher = rule.getPattern().matcher(target);
-
-                    if (matcher.matches()) {
-                        matched = true;
-                        uriBuilder.append(matcher.replaceAll(rule.getReplace()));
-                        break;
-                    }
-                }
-                if (!matched)
-                    uriBuilder.append(target);
-
-            } else uriBuilder.append(target);
+            var rewritten = this.urlRewriteMatcher.rewrite(target);
+            uriBuilder.append(rewritten != null ? rewritten : target);
         }
 
         /**
@@ -670,8 +665,8 @@ public class ProxyHandler implements HttpHandler {
          */
         private void rewriteQueryParams(StringBuilder urlBuilder, String target) {
 
-            if (this.queryParamRewriteRules != null && this.queryParamRewriteRules.size() > 0) {
-                var rules = (List<QueryHeaderRewriteRule>) CollectionUtils.matchEndpointKey(target, (Map) this.queryParamRewriteRules);
+            if (!this.queryParamRewriteMatcher.isEmpty()) {
+                var rules = this.queryParamRewriteMatcher.get(target);
 
                 if (rules != null && rules.size() > 0) {
 
@@ -802,7 +797,7 @@ public class ProxyHandler implements HttpHandler {
                     if (exchange.getConnection().isPushSupported() && result.getConnection().isPushSupported())
                         this.handleServerPush(result);
 
-                    result.setResponseListener(new ResponseCallback(exchange, proxyClientHandler, idempotentPredicate, headerRewriteRules));
+                    result.setResponseListener(new ResponseCallback(exchange, proxyClientHandler, idempotentPredicate, headerRewriteMatcher));
 
                     final IoExceptionHandler handler = new IoExceptionHandler(exchange, clientConnection.getConnection());
 
@@ -882,7 +877,7 @@ public class ProxyHandler implements HttpHandler {
                             if (i > 0)
                                 path = path.substring(0, i);
 
-                            exchange.dispatch(lightThreadExecutor, new ProxyAction(new ProxyConnection(pushedRequest.getConnection(), path), exchange, requestHeaders, rewriteHostHeader, reuseXForwarded, null, idempotentPredicate, urlRewriteRules, methodRewriteRules, queryParamRewriteRules, headerRewriteRules));
+                            exchange.dispatch(lightThreadExecutor, new ProxyAction(new ProxyConnection(pushedRequest.getConnection(), path), exchange, requestHeaders, rewriteHostHeader, reuseXForwarded, null, idempotentPredicate, urlRewriteMatcher, methodRewriteMatcher, queryParamRewriteMatcher, headerRewriteMatcher));
                         });
                         return true;
                     });
@@ -932,13 +927,13 @@ public class ProxyHandler implements HttpHandler {
         private final HttpServerExchange exchange;
         private final ProxyClientHandler proxyClientHandler;
         private final Predicate idempotentPredicate;
-        private final Map<String, List<QueryHeaderRewriteRule>> headerRewriteRules;
+        private final PathPrefixMatcher<List<QueryHeaderRewriteRule>> headerRewriteMatcher;
 
-        private ResponseCallback(HttpServerExchange exchange, ProxyClientHandler proxyClientHandler, Predicate idempotentPredicate, Map<String, List<QueryHeaderRewriteRule>> headerRewriteRules) {
+        private ResponseCallback(HttpServerExchange exchange, ProxyClientHandler proxyClientHandler, Predicate idempotentPredicate, PathPrefixMatcher<List<QueryHeaderRewriteRule>> headerRewriteMatcher) {
             this.exchange = exchange;
             this.proxyClientHandler = proxyClientHandler;
             this.idempotentPredicate = idempotentPredicate;
-            this.headerRewriteRules = headerRewriteRules;
+            this.headerRewriteMatcher = headerRewriteMatcher;
         }
 
         @Override
@@ -953,7 +948,7 @@ public class ProxyHandler implements HttpHandler {
             final HeaderMap outbound = exchange.getResponseHeaders();
             exchange.setStatusCode(response.getResponseCode());
 
-            copyHeaders(outbound, inbound, (List) CollectionUtils.matchEndpointKey(exchange.getRequestPath(), (Map) headerRewriteRules));
+            copyHeaders(outbound, inbound, headerRewriteMatcher.get(exchange.getRequestPath()));
 
             if (exchange.isUpgrade())
                 this.handleUpgradeChannelOnComplete(result);
@@ -1125,6 +1120,9 @@ public class ProxyHandler implements HttpHandler {
         private List<MethodRewriteRule> methodRewriteRules;
         private Map<String, List<QueryHeaderRewriteRule>> queryParamRewriteRules;
         private Map<String, List<QueryHeaderRewriteRule>> headerRewriteRules;
+        private List<String> coalescingPathPrefixes;
+        private List<String> coalescingKeyHeaders = DEFAULT_COALESCING_KEY_HEADERS;
+        private int coalescingMaxBodySize = DEFAULT_COALESCING_MAX_BODY_SIZE;
 
         Builder() {
         }
@@ -1201,6 +1199,41 @@ public class ProxyHandler implements HttpHandler {
             return this;
         }
 
+        /**
+         * Enable the request coalescing for the GET and HEAD requests on the path prefixes.
+         *
+         * @param coalescingPathPrefixes - path prefixes, the coalescing is disabled if it is null or empty
+         * @return - this builder
+         */
+        public Builder setCoalescingPathPrefixes(List<String> coalescingPathPrefixes) {
+            this.coalescingPathPrefixes = coalescingPathPrefixes;
+            return this;
+        }
+
+        /**
+         * The request headers that are part of the key of the coalesced requests in addition to the method, the URI,
+         * and the Host, service_id and service_url headers. A request with a credential header, e.g. Cookie or
+         * X-API-Key, that is not one of the key headers is not coalesced.
+         *
+         * @param coalescingKeyHeaders - header names
+         * @return - this builder
+         */
+        public Builder setCoalescingKeyHeaders(List<String> coalescingKeyHeaders) {
+            this.coalescingKeyHeaders = coalescingKeyHeaders;
+            return this;
+        }
+
+        /**
+         * The max size of a response body that is shared with the coalesced requests.
+         *
+         * @param coalescingMaxBodySize - max size in bytes
+         * @return - this builder
+         */
+        public Builder setCoalescingMaxBodySize(int coalescingMaxBodySize) {
+            this.coalescingMaxBodySize = coalescingMaxBodySize;
+            return this;
+        }
+
         public Builder setMaxConnectionRetries(int maxConnectionRetries) {
             this.maxConnectionRetries = maxConnectionRetries;
             return this;
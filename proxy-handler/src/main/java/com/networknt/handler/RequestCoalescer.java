@@ -0,0 +1,345 @@
+package com.networknt.handler;
+
+import com.networknt.httpstring.AttachmentConstants;
+import com.networknt.httpstring.HttpStringConstants;
+import com.networknt.metrics.AbstractMetricsHandler;
+import com.networknt.utility.PathPrefixMatcher;
+import io.dropwizard.metrics.MetricName;
+import io.dropwizard.metrics.MetricRegistry;
+import io.undertow.server.Connectors;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.Methods;
+import io.undertow.util.SameThreadExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Joins the concurrent identical GET and HEAD requests of the ProxyHandler onto a single backend exchange. The
+ * first request of a key is the leader, and it is proxied as usual while its response is copied. The requests with
+ * the same key that arrive before the leader's response is complete wait for it, and the status, headers and body
+ * of the leader's response are sent to them.
+ * <p>
+ * The key is the method, the request URI, the Host, service_id and service_url headers that are used to route the
+ * request, and the values of the configured key headers. Only the requests without a body on the configured path
+ * prefixes are coalesced. A request that has a credential header, e.g. Cookie, Proxy-Authorization or X-API-Key, that
+ * is not a key header is not coalesced so that the response of one user is never sent to another.
+ * <p>
+ * The waiters are proxied separately if the leader's response body is bigger than the maximum body size, the response
+ * sets a cookie, is private to the user with Cache-Control private or no-store, has Vary *, or the leader's response
+ * is not completely written, e.g. when the client of the leader disconnects.
+ *
+ * @author Steve Hu
+ */
+public final class RequestCoalescer {
+    private static final Logger logger = LoggerFactory.getLogger(RequestCoalescer.class);
+    // the attachment of a waiter that is proxied separately so that it is not coalesced again.
+    private static final AttachmentKey<Boolean> SEPARATE = AttachmentKey.create(Boolean.class);
+    private static final Set<HttpString> EXCLUDED_HEADERS = Set.of(Headers.CONNECTION, Headers.KEEP_ALIVE,
+            Headers.TRANSFER_ENCODING, Headers.CONTENT_LENGTH, Headers.TE, Headers.TRAILER, Headers.UPGRADE,
+            Headers.PROXY_AUTHENTICATE, Headers.DATE);
+    private static final Set<HttpString> CREDENTIAL_HEADERS = Set.of(Headers.AUTHORIZATION, Headers.PROXY_AUTHORIZATION,
+            Headers.COOKIE, HttpStringConstants.SCOPE_TOKEN);
+    // the parts of the names of the custom credential headers, e.g. X-API-Key, X-Auth-Token or X-Session-Id.
+    private static final String[] CREDENTIAL_NAME_PARTS = {"auth", "token", "key", "cookie", "session", "secret", "credential", "password"};
+
+    private final PathPrefixMatcher<Boolean> pathPrefixMatcher;
+    private final HttpString[] keyHeaders;
+    private final int maxBodySize;
+    private final Map<String, InFlight> inFlights = new ConcurrentHashMap<>();
+
+    private final LongAdder leaders = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder separate = new LongAdder();
+
+    RequestCoalescer(List<String> pathPrefixes, List<String> keyHeaders, int maxBodySize) {
+        Map<String, Boolean> prefixes = new HashMap<>();
+        for(String prefix : pathPrefixes) {
+            prefixes.put(prefix, Boolean.TRUE);
+        }
+        this.pathPrefixMatcher = PathPrefixMatcher.compile(prefixes);
+        List<HttpString> headers = new ArrayList<>(List.of(Headers.HOST, HttpStringConstants.SERVICE_ID, HttpStringConstants.SERVICE_URL));
+        if(keyHeaders != null) {
+            for(String header : keyHeaders) {
+                HttpString name = new HttpString(header.trim());
+                if(!headers.contains(name)) headers.add(name);
+            }
+        }
+        this.keyHeaders = headers.toArray(new HttpString[0]);
+        this.maxBodySize = maxBodySize;
+    }
+
+    /**
+     * Join the exchange to the in-flight request with the same key, or make it the leader of a new one.
+     *
+     * @param exchange the exchange of the request
+     * @param proxy    the handler that proxies the exchange if it cannot be completed with the leader's response
+     * @return true if the exchange waits for the response of the leader, false if it should be proxied
+     */
+    boolean join(final HttpServerExchange exchange, final HttpHandler proxy) {
+        if(!isCoalescable(exchange)) return false;
+        final String key = key(exchange);
+        while(true) {
+            InFlight inFlight = inFlights.get(key);
+            if(inFlight == null) {
+                InFlight created = new InFlight(key, proxy);
+                inFlight = inFlights.putIfAbsent(key, created);
+                if(inFlight == null) {
+                    lead(exchange, created);
+                    return false;
+                }
+            }
+            if(inFlight.isOpen()) {
+                final InFlight joined = inFlight;
+                // the waiter is added once the handler returns so that the response is never sent while it is in call.
+                exchange.dispatch(SameThreadExecutor.INSTANCE, () -> {
+                    if(!joined.add(exchange)) {
+                        proxySeparately(exchange, proxy);
+                    }
+                });
+                coalesced.increment();
+                AbstractMetricsHandler metricsHandler = (AbstractMetricsHandler) exchange.getAttachment(AttachmentConstants.METRICS_HANDLER);
+                if(metricsHandler != null) {
+                    AbstractMetricsHandler.registry.getOrAdd(new MetricName("coalesced_request").tagged(metricsHandler.commonTags), MetricRegistry.MetricBuilder.COUNTERS).inc();
+                }
+                if(logger.isTraceEnabled()) logger.trace("Request {} joins the in-flight request.", key);
+                return true;
+            }
+            // the in-flight request is completing, and a new one is started.
+            inFlights.remove(key, inFlight);
+        }
+    }
+
+    private boolean isCoalescable(HttpServerExchange exchange) {
+        HttpString method = exchange.getRequestMethod();
+        if(!Methods.GET.equals(method) && !Methods.HEAD.equals(method)) return false;
+        if(exchange.getAttachment(SEPARATE) != null || exchange.isUpgrade()) return false;
+        HeaderMap headers = exchange.getRequestHeaders();
+        if(headers.contains(Headers.TRANSFER_ENCODING) || headers.contains(Headers.EXPECT)) return false;
+        String contentLength = headers.getFirst(Headers.CONTENT_LENGTH);
+        if(contentLength != null && !"0".equals(contentLength)) return false;
+        if(pathPrefixMatcher.match(exchange.getRequestPath()) == null) return false;
+        for(HeaderValues values : headers) {
+            if(isCredentialHeader(values.getHeaderName()) && !isKeyHeader(values.getHeaderName())) return false;
+        }
+        return true;
+    }
+
+    static boolean isCredentialHeader(HttpString name) {
+        if(CREDENTIAL_HEADERS.contains(name)) return true;
+        String lowerCase = name.toString().toLowerCase(Locale.ROOT);
+        for(String part : CREDENTIAL_NAME_PARTS) {
+            if(lowerCase.contains(part)) return true;
+        }
+        return false;
+    }
+
+    private boolean isKeyHeader(HttpString name) {
+        for(HttpString keyHeader : keyHeaders) {
+            if(keyHeader.equals(name)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * A response is not shared if it sets a cookie, it is private to the user, or it varies on anything.
+     */
+    static boolean isShareable(HeaderMap responseHeaders) {
+        if(responseHeaders.contains(Headers.SET_COOKIE)) return false;
+        HeaderValues cacheControl = responseHeaders.get(Headers.CACHE_CONTROL);
+        if(cacheControl != null) {
+            for(String value : cacheControl) {
+                for(String directive : value.split(",")) {
+                    String name = directive.trim().toLowerCase(Locale.ROOT);
+                    int index = name.indexOf('=');
+                    if(index >= 0) name = name.substring(0, index).trim();
+                    if("private".equals(name) || "no-store".equals(name)) return false;
+                }
+            }
+        }
+        HeaderValues vary = responseHeaders.get(Headers.VARY);
+        if(vary != null) {
+            for(String value : vary) {
+                for(String field : value.split(",")) {
+                    if("*".equals(field.trim())) return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private String key(HttpServerExchange exchange) {
+        StringBuilder sb = new StringBuilder(128).append(exchange.getRequestMethod()).append(' ').append(exchange.getRequestURI());
+        String query = exchange.getQueryString();
+        if(query != null && !query.isEmpty()) sb.append('?').append(query);
+        HeaderMap headers = exchange.getRequestHeaders();
+        for(HttpString name : keyHeaders) {
+            HeaderValues values = headers.get(name);
+            if(values == null) continue;
+            sb.append('\n').append(name).append(':');
+            for(int i = 0; i < values.size(); i++) {
+                if(i > 0) sb.append(',');
+                sb.append(values.get(i));
+            }
+        }
+        return sb.toString();
+    }
+
+    private void lead(HttpServerExchange exchange, InFlight inFlight) {
+        leaders.increment();
+        exchange.addResponseWrapper((factory, ex) -> new CoalescingSinkConduit(factory.create(), maxBodySize,
+                body -> inFlight.complete(ex, body)));
+        exchange.addExchangeCompleteListener((ex, nextListener) -> {
+            try {
+                // nothing is left to do if the response has been sent to the waiters.
+                inFlight.release();
+            } finally {
+                nextListener.proceed();
+            }
+        });
+    }
+
+    private void proxySeparately(HttpServerExchange exchange, HttpHandler proxy) {
+        separate.increment();
+        exchange.putAttachment(SEPARATE, Boolean.TRUE);
+        exchange.getIoThread().execute(() -> Connectors.executeRootHandler(proxy, exchange));
+    }
+
+    /**
+     * @return the number of the requests that were proxied as the leader of an in-flight request
+     */
+    public long getLeaderCount() {
+        return leaders.sum();
+    }
+
+    /**
+     * @return the number of the requests that joined an in-flight request
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return the number of the requests that joined an in-flight request but were proxied separately
+     */
+    public long getSeparateCount() {
+        return separate.sum();
+    }
+
+    /**
+     * The requests that wait for the response of a leader. Once it is closed, no request can join it.
+     */
+    private final class InFlight {
+        final String key;
+        final HttpHandler proxy;
+        private List<HttpServerExchange> waiters = new ArrayList<>();
+        private boolean closed;
+
+        InFlight(String key, HttpHandler proxy) {
+            this.key = key;
+            this.proxy = proxy;
+        }
+
+        synchronized boolean isOpen() {
+            return !closed;
+        }
+
+        synchronized boolean add(HttpServerExchange exchange) {
+            if(closed) return false;
+            waiters.add(exchange);
+            return true;
+        }
+
+        /**
+         * Close the in-flight request so that the next request with the key starts a new one.
+         */
+        private synchronized boolean close() {
+            if(closed) return false;
+            closed = true;
+            inFlights.remove(key, this);
+            return true;
+        }
+
+        /**
+         * Send the response of the leader to the waiters, or proxy them separately if the body is not available.
+         */
+        void complete(HttpServerExchange leader, byte[] body) {
+            if(!close()) return;
+            HeaderMap responseHeaders = leader.getResponseHeaders();
+            if(body == null || !isShareable(responseHeaders)) {
+                if(logger.isTraceEnabled()) logger.trace("The response of {} is not shared with {} waiters.", key, waiters.size());
+                proxyWaiters();
+                return;
+            }
+            int status = leader.getStatusCode();
+            HeaderMap headers = new HeaderMap();
+            for(HeaderValues values : responseHeaders) {
+                if(!EXCLUDED_HEADERS.contains(values.getHeaderName())) {
+                    headers.putAll(values.getHeaderName(), values);
+                }
+            }
+            String contentLength = responseHeaders.getFirst(Headers.CONTENT_LENGTH);
+            if(logger.isTraceEnabled()) logger.trace("Send the response of {} to {} waiters.", key, waiters.size());
+            for(HttpServerExchange waiter : waiters) {
+                waiter.getIoThread().execute(() -> Connectors.executeRootHandler(exchange -> {
+                    exchange.setStatusCode(status);
+                    HeaderMap target = exchange.getResponseHeaders();
+                    for(HeaderValues values : headers) {
+                        target.putAll(values.getHeaderName(), values);
+                    }
+                    injectMetrics(exchange);
+                    if(Methods.HEAD.equals(exchange.getRequestMethod())) {
+                        // the response of a HEAD request has the Content-Length of the GET response.
+                        if(contentLength != null) target.put(Headers.CONTENT_LENGTH, contentLength);
+                        exchange.endExchange();
+                    } else {
+                        target.put(Headers.CONTENT_LENGTH, body.length);
+                        exchange.getResponseSender().send(ByteBuffer.wrap(body));
+                    }
+                }, waiter));
+            }
+            waiters = null;
+        }
+
+        /**
+         * Proxy the waiters separately if the response of the leader has not been sent to them.
+         */
+        void release() {
+            if(close()) proxyWaiters();
+        }
+
+        private void proxyWaiters() {
+            for(HttpServerExchange waiter : waiters) {
+                proxySeparately(waiter, proxy);
+            }
+            waiters = null;
+        }
+    }
+
+    private static void injectMetrics(HttpServerExchange exchange) {
+        AbstractMetricsHandler metricsHandler = (AbstractMetricsHandler) exchange.getAttachment(AttachmentConstants.METRICS_HANDLER);
+        if(metricsHandler != null) {
+            String metricsName = exchange.getAttachment(AttachmentConstants.DOWNSTREAM_METRICS_NAME);
+            if (metricsName != null) {
+                long startTime = exchange.getAttachment(AttachmentConstants.DOWNSTREAM_METRICS_START);
+                // do not pass in the endpoint but use the endpoint from AuditInfo
+                metricsHandler.injectMetrics(exchange, startTime, metricsName, null);
+            }
+        }
+    }
+}
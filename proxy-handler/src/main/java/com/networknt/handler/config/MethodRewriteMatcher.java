@@ -0,0 +1,117 @@
+package com.networknt.handler.config;
+
+import com.networknt.utility.PathPrefixMatcher;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The method rewrite rules compiled into a path prefix matcher so that a request path is only matched against the
+ * rules that can match it instead of all the rules in sequence.
+ * <p>
+ * The request path of a rule is an endpoint pattern that matches the paths that start with it, and a segment in the
+ * form of {name} matches any segment. The candidates of a request path are the rules of the longest matched pattern
+ * and the rules of the shorter patterns that also match it. They are kept in the order of the rules so that the rules
+ * are applied in the same order as before.
+ *
+ * @author Steve Hu
+ */
+public final class MethodRewriteMatcher {
+    private static final MethodRewriteMatcher EMPTY = new MethodRewriteMatcher(PathPrefixMatcher.empty(), 0);
+
+    private final PathPrefixMatcher<MethodRewriteRule[]> prefixMatcher;
+    private final int size;
+
+    private MethodRewriteMatcher(PathPrefixMatcher<MethodRewriteRule[]> prefixMatcher, int size) {
+        this.prefixMatcher = prefixMatcher;
+        this.size = size;
+    }
+
+    /**
+     * Compile the rules into a matcher.
+     *
+     * @param rules the method rewrite rules in the order they are applied. It can be null.
+     * @return MethodRewriteMatcher the compiled matcher
+     */
+    public static MethodRewriteMatcher compile(List<MethodRewriteRule> rules) {
+        if(rules == null || rules.isEmpty()) {
+            return EMPTY;
+        }
+        Map<String, List<MethodRewriteRule>> candidates = new LinkedHashMap<>();
+        for(MethodRewriteRule rule : rules) {
+            candidates.put(rule.getRequestPath(), new ArrayList<>());
+        }
+        // the candidates of a pattern are the rules of the pattern and the shorter patterns that cover it.
+        for(Map.Entry<String, List<MethodRewriteRule>> entry : candidates.entrySet()) {
+            for(MethodRewriteRule rule : rules) {
+                if(covers(rule.getRequestPath(), entry.getKey())) {
+                    entry.getValue().add(rule);
+                }
+            }
+        }
+        Map<String, MethodRewriteRule[]> compiled = new LinkedHashMap<>();
+        for(Map.Entry<String, List<MethodRewriteRule>> entry : candidates.entrySet()) {
+            compiled.put(entry.getKey(), entry.getValue().toArray(new MethodRewriteRule[0]));
+        }
+        return new MethodRewriteMatcher(PathPrefixMatcher.compile(compiled), rules.size());
+    }
+
+    /**
+     * Rewrite the method of a request with the rules that match the path. A rule is applied if its source method
+     * is the method rewritten by the previous rules.
+     *
+     * @param path the request path
+     * @param method the request method
+     * @return String the rewritten method or null if no rule is applied
+     */
+    public String rewrite(String path, String method) {
+        if(size == 0 || path == null) {
+            return null;
+        }
+        MethodRewriteRule[] rules = prefixMatcher.get(path);
+        if(rules == null) {
+            return null;
+        }
+        String rewritten = null;
+        for(MethodRewriteRule rule : rules) {
+            if(rule.getSourceMethod().equals(rewritten == null ? method : rewritten)) {
+                rewritten = rule.getTargetMethod();
+            }
+        }
+        return rewritten;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Check if a pattern matches all the paths that another pattern matches.
+     *
+     * @param pattern the request path of a rule
+     * @param key the request path of another rule
+     * @return true if the segments of the pattern are the leading segments of the key
+     */
+    static boolean covers(String pattern, String key) {
+        String[] patternParts = trim(pattern).split("/");
+        String[] keyParts = trim(key).split("/");
+        if(patternParts.length > keyParts.length) {
+            return false;
+        }
+        for(int i = 0; i < patternParts.length; i++) {
+            String part = patternParts[i];
+            boolean param = part.length() > 1 && part.startsWith("{") && part.endsWith("}");
+            if(!param && !part.equals(keyParts[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String trim(String path) {
+        path = path.trim();
+        return path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+}
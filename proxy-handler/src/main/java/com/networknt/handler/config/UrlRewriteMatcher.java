@@ -0,0 +1,120 @@
+package com.networknt.handler.config;
+
+import com.networknt.utility.PathPrefixMatcher;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+/**
+ * The URL rewrite rules compiled into a path prefix matcher so that a request path is only matched against the
+ * rules that can match it instead of all the rules in sequence.
+ * <p>
+ * The literal path segments at the start of a rule pattern are the prefix of the rule. A path that matches the pattern
+ * must start with these segments, so the rule is only a candidate for the paths under the prefix. The rules without
+ * a literal prefix, e.g. a pattern that starts with a group or contains an alternation, are candidates for all paths.
+ * The candidates of a prefix are kept in the order of the rules so that the first matched rule wins as before.
+ *
+ * @author Steve Hu
+ */
+public final class UrlRewriteMatcher {
+    private static final UrlRewriteMatcher EMPTY = new UrlRewriteMatcher(PathPrefixMatcher.empty(), new UrlRewriteRule[0], 0);
+    private static final String META_CHARACTERS = "\\^$.|?*+()[]{}";
+    private static final String QUANTIFIERS = "?*+{";
+
+    private final PathPrefixMatcher<UrlRewriteRule[]> prefixMatcher;
+    private final UrlRewriteRule[] unprefixed;
+    private final int size;
+
+    private UrlRewriteMatcher(PathPrefixMatcher<UrlRewriteRule[]> prefixMatcher, UrlRewriteRule[] unprefixed, int size) {
+        this.prefixMatcher = prefixMatcher;
+        this.unprefixed = unprefixed;
+        this.size = size;
+    }
+
+    /**
+     * Compile the rules into a matcher.
+     *
+     * @param rules the URL rewrite rules in the order of precedence. It can be null.
+     * @return UrlRewriteMatcher the compiled matcher
+     */
+    public static UrlRewriteMatcher compile(List<UrlRewriteRule> rules) {
+        if(rules == null || rules.isEmpty()) {
+            return EMPTY;
+        }
+        String[] prefixes = new String[rules.size()];
+        List<UrlRewriteRule> unprefixed = new ArrayList<>();
+        Map<String, List<UrlRewriteRule>> candidates = new LinkedHashMap<>();
+        for(int i = 0; i < rules.size(); i++) {
+            prefixes[i] = literalPrefix(rules.get(i).getPattern().pattern());
+            if(prefixes[i] == null) {
+                unprefixed.add(rules.get(i));
+            } else {
+                candidates.put(prefixes[i], new ArrayList<>());
+            }
+        }
+        // the candidates of a prefix are the rules of the prefix, the shorter prefixes and the rules without prefix.
+        for(Map.Entry<String, List<UrlRewriteRule>> entry : candidates.entrySet()) {
+            for(int i = 0; i < rules.size(); i++) {
+                if(prefixes[i] == null || isSegmentPrefix(prefixes[i], entry.getKey())) {
+                    entry.getValue().add(rules.get(i));
+                }
+            }
+        }
+        Map<String, UrlRewriteRule[]> compiled = new LinkedHashMap<>();
+        for(Map.Entry<String, List<UrlRewriteRule>> entry : candidates.entrySet()) {
+            compiled.put(entry.getKey(), entry.getValue().toArray(new UrlRewriteRule[0]));
+        }
+        return new UrlRewriteMatcher(PathPrefixMatcher.compile(compiled), unprefixed.toArray(new UrlRewriteRule[0]), rules.size());
+    }
+
+    /**
+     * Rewrite the path with the first rule that matches it.
+     *
+     * @param path the request path
+     * @return String the rewritten path or null if no rule matches the path
+     */
+    public String rewrite(String path) {
+        if(size == 0 || path == null) {
+            return null;
+        }
+        UrlRewriteRule[] rules = prefixMatcher.get(path);
+        if(rules == null) rules = unprefixed;
+        for(UrlRewriteRule rule : rules) {
+            Matcher matcher = rule.getPattern().matcher(path);
+            if(matcher.matches()) {
+                return matcher.replaceAll(rule.getReplace());
+            }
+        }
+        return null;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Find the literal path segments at the start of a pattern.
+     *
+     * @param pattern the regex of a rule
+     * @return String the prefix without the trailing slash or null if the pattern has no literal prefix
+     */
+    static String literalPrefix(String pattern) {
+        // an alternation can match a path with any other prefix.
+        if(!pattern.startsWith("/") || pattern.indexOf('|') >= 0) {
+            return null;
+        }
+        int end = 0;
+        while(end < pattern.length() && META_CHARACTERS.indexOf(pattern.charAt(end)) < 0) end++;
+        // a quantifier makes the previous character optional.
+        if(end < pattern.length() && QUANTIFIERS.indexOf(pattern.charAt(end)) >= 0) end--;
+        int slash = pattern.lastIndexOf('/', end - 1);
+        return slash <= 0 ? null : pattern.substring(0, slash);
+    }
+
+    private static boolean isSegmentPrefix(String prefix, String path) {
+        return path.startsWith(prefix) && (path.length() == prefix.length() || path.charAt(prefix.length()) == '/');
+    }
+}
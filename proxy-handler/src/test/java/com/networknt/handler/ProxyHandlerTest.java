@@ -0,0 +1,110 @@
+package com.networknt.handler;
+
+import com.networknt.handler.config.UrlRewriteRule;
+import io.undertow.Undertow;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.proxy.LoadBalancingProxyClient;
+import io.undertow.util.SameThreadExecutor;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ProxyHandler is in front of a backend that echoes the request path. The requests with different timeouts are
+ * sent concurrently so that the timeout of one request would be used by the others if it was shared.
+ */
+public class ProxyHandlerTest {
+    private static final int BACKEND_PORT = 7090;
+    private static final int PORT = 7091;
+    private static final int BACKEND_DELAY = 500;
+    static Undertow backend = null;
+    static Undertow server = null;
+    static HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        backend = Undertow.builder()
+                .addHttpListener(BACKEND_PORT, "localhost")
+                .setHandler(ProxyHandlerTest::backend)
+                .build();
+        backend.start();
+
+        ProxyHandler proxyHandler = ProxyHandler.builder()
+                .setProxyClient(new LoadBalancingProxyClient().setConnectionsPerThread(20).addHost(new URI("http://localhost:" + BACKEND_PORT)))
+                .setMaxRequestTime(5000)
+                .setPathPrefixMaxRequestTime(Map.of("/v1/short", 100, "/v1/pets/{petId}/short", 100))
+                .setUrlRewriteRules(List.of(
+                        UrlRewriteRule.convertToUrlRewriteRule("/v1/old/(.*)$ /v1/new/$1"),
+                        UrlRewriteRule.convertToUrlRewriteRule("/v2/(.*)/legacy$ /v2/$1/current"),
+                        UrlRewriteRule.convertToUrlRewriteRule("(/v3/.*)/x$ $1/y")))
+                .build();
+        server = Undertow.builder()
+                .addHttpListener(PORT, "localhost")
+                .setHandler(proxyHandler)
+                .build();
+        server.start();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+        if (backend != null) {
+            backend.stop();
+        }
+    }
+
+    private static void backend(HttpServerExchange exchange) {
+        String path = exchange.getRequestPath();
+        if (path.endsWith("/slow")) {
+            exchange.dispatch(SameThreadExecutor.INSTANCE, () -> exchange.getIoThread().executeAfter(
+                    () -> exchange.getResponseSender().send(path), BACKEND_DELAY, TimeUnit.MILLISECONDS));
+        } else {
+            exchange.getResponseSender().send(path);
+        }
+    }
+
+    private static CompletableFuture<HttpResponse<String>> send(String path) {
+        return client.sendAsync(HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + path)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    public void testConcurrentTimeouts() throws Exception {
+        List<CompletableFuture<HttpResponse<String>>> shortRequests = new ArrayList<>();
+        List<CompletableFuture<HttpResponse<String>>> longRequests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            shortRequests.add(send(i % 2 == 0 ? "/v1/short/slow" : "/v1/pets/" + i + "/short/slow"));
+            longRequests.add(send("/v1/long/slow"));
+        }
+        for (CompletableFuture<HttpResponse<String>> future : shortRequests) {
+            Assert.assertEquals(504, future.get(10, TimeUnit.SECONDS).statusCode());
+        }
+        for (CompletableFuture<HttpResponse<String>> future : longRequests) {
+            HttpResponse<String> response = future.get(10, TimeUnit.SECONDS);
+            Assert.assertEquals(200, response.statusCode());
+            Assert.assertEquals("/v1/long/slow", response.body());
+        }
+        // the timeout of the path prefix is not left behind for the next request.
+        Assert.assertEquals(200, send("/v1/long/slow").get(10, TimeUnit.SECONDS).statusCode());
+    }
+
+    @Test
+    public void testUrlRewrite() throws Exception {
+        Assert.assertEquals("/v1/new/abc", send("/v1/old/abc").get().body());
+        Assert.assertEquals("/v2/pets/current", send("/v2/pets/legacy").get().body());
+        Assert.assertEquals("/v3/a/b/y", send("/v3/a/b/x").get().body());
+        Assert.assertEquals("/v1/other", send("/v1/other").get().body());
+    }
+}
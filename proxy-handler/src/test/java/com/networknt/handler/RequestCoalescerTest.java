@@ -0,0 +1,214 @@
+package com.networknt.handler;
+
+import io.undertow.Undertow;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.proxy.LoadBalancingProxyClient;
+import io.undertow.util.Headers;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The ProxyHandler with the request coalescing is in front of a backend that is slow so that the concurrent
+ * requests find the in-flight request, and the backend counts the requests per path.
+ */
+public class RequestCoalescerTest {
+    private static final int BACKEND_PORT = 7094;
+    private static final int PORT = 7095;
+    private static final int MAX_BODY_SIZE = 1024;
+    static final Map<String, AtomicInteger> counters = new ConcurrentHashMap<>();
+    static Undertow backend = null;
+    static Undertow server = null;
+    static ProxyHandler proxyHandler = null;
+    static HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        backend = Undertow.builder()
+                .addHttpListener(BACKEND_PORT, "localhost")
+                .setHandler(RequestCoalescerTest::backend)
+                .build();
+        backend.start();
+
+        proxyHandler = ProxyHandler.builder()
+                .setProxyClient(new LoadBalancingProxyClient().setConnectionsPerThread(20).addHost(new URI("http://localhost:" + BACKEND_PORT)))
+                .setMaxRequestTime(10000)
+                .setCoalescingPathPrefixes(List.of("/v1"))
+                .setCoalescingMaxBodySize(MAX_BODY_SIZE)
+                .build();
+        server = Undertow.builder()
+                .addHttpListener(PORT, "localhost")
+                .setHandler(proxyHandler)
+                .build();
+        server.start();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+        if (backend != null) {
+            backend.stop();
+        }
+    }
+
+    private static void backend(HttpServerExchange exchange) throws Exception {
+        if (exchange.isInIoThread()) {
+            exchange.dispatch(RequestCoalescerTest::backend);
+            return;
+        }
+        String path = exchange.getRequestPath();
+        String language = exchange.getRequestHeaders().getFirst(Headers.ACCEPT_LANGUAGE);
+        int count = counters.computeIfAbsent(path + " " + language, k -> new AtomicInteger()).incrementAndGet();
+        // the backend is slow so that all the requests arrive while the first one is in flight.
+        Thread.sleep(500);
+        switch (path) {
+            case "/v1/large":
+                exchange.getResponseSender().send("x".repeat(MAX_BODY_SIZE * 4));
+                break;
+            case "/v1/session":
+                // the body is private to the user of the session.
+                String cookie = exchange.getRequestHeaders().getFirst(Headers.COOKIE);
+                exchange.getResponseSender().send(cookie + " " + count);
+                break;
+            case "/v1/private":
+                exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "max-age=60, private");
+                exchange.getResponseSender().send("private" + count);
+                break;
+            case "/v1/vary":
+                exchange.getResponseHeaders().put(Headers.VARY, "Accept, *");
+                exchange.getResponseSender().send("vary" + count);
+                break;
+            case "/v1/cookie":
+                exchange.getResponseHeaders().put(Headers.SET_COOKIE, "session=" + count);
+                exchange.getResponseSender().send("cookie" + count);
+                break;
+            default:
+                exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "text/plain");
+                exchange.getResponseSender().send(path + " " + language + " " + count);
+        }
+    }
+
+    private static List<HttpResponse<String>> sendConcurrently(String path, int n, String language, String... headers) throws Exception {
+        List<CompletableFuture<HttpResponse<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + path))
+                    .header("Accept-Language", language);
+            if (headers.length > 0) builder.headers(headers);
+            futures.add(client.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofString()));
+        }
+        List<HttpResponse<String>> responses = new ArrayList<>();
+        for (CompletableFuture<HttpResponse<String>> future : futures) {
+            responses.add(future.get());
+        }
+        return responses;
+    }
+
+    private static int count(String key) {
+        AtomicInteger counter = counters.get(key);
+        return counter == null ? 0 : counter.get();
+    }
+
+    @Test
+    public void testCoalesced() throws Exception {
+        long coalesced = proxyHandler.getRequestCoalescer().getCoalescedCount();
+        List<HttpResponse<String>> responses = sendConcurrently("/v1/pets", 20, "en");
+        for (HttpResponse<String> response : responses) {
+            Assert.assertEquals(200, response.statusCode());
+            Assert.assertEquals("/v1/pets en 1", response.body());
+            Assert.assertEquals("text/plain", response.headers().firstValue("Content-Type").orElse(null));
+        }
+        Assert.assertEquals(1, count("/v1/pets en"));
+        Assert.assertEquals(coalesced + 19, proxyHandler.getRequestCoalescer().getCoalescedCount());
+
+        // the next request is not in flight anymore.
+        Assert.assertEquals("/v1/pets en 2", sendConcurrently("/v1/pets", 1, "en").get(0).body());
+    }
+
+    @Test
+    public void testKeyHeaders() throws Exception {
+        List<CompletableFuture<List<HttpResponse<String>>>> futures = new ArrayList<>();
+        futures.add(CompletableFuture.supplyAsync(() -> send("/v1/address", "en")));
+        futures.add(CompletableFuture.supplyAsync(() -> send("/v1/address", "fr")));
+        for (CompletableFuture<List<HttpResponse<String>>> future : futures) {
+            for (HttpResponse<String> response : future.get()) {
+                Assert.assertTrue(response.body().endsWith(" 1"));
+            }
+        }
+        Assert.assertEquals(1, count("/v1/address en"));
+        Assert.assertEquals(1, count("/v1/address fr"));
+    }
+
+    @Test
+    public void testPathNotApplied() throws Exception {
+        sendConcurrently("/v2/pets", 5, "en");
+        Assert.assertEquals(5, count("/v2/pets en"));
+    }
+
+    @Test
+    public void testNotShared() throws Exception {
+        List<HttpResponse<String>> responses = sendConcurrently("/v1/large", 5, "en");
+        for (HttpResponse<String> response : responses) {
+            Assert.assertEquals(MAX_BODY_SIZE * 4, response.body().length());
+        }
+        Assert.assertEquals(5, count("/v1/large en"));
+
+        responses = sendConcurrently("/v1/cookie", 5, "en");
+        List<String> cookies = new ArrayList<>();
+        for (HttpResponse<String> response : responses) {
+            String cookie = response.headers().firstValue("Set-Cookie").orElse(null);
+            Assert.assertFalse(cookies.contains(cookie));
+            cookies.add(cookie);
+        }
+        Assert.assertEquals(5, count("/v1/cookie en"));
+    }
+
+    @Test
+    public void testCookiesNotShared() throws Exception {
+        CompletableFuture<List<HttpResponse<String>>> alice = CompletableFuture.supplyAsync(() -> send("/v1/session", "en", "Cookie", "session=alice"));
+        CompletableFuture<List<HttpResponse<String>>> bob = CompletableFuture.supplyAsync(() -> send("/v1/session", "en", "Cookie", "session=bob"));
+        for (HttpResponse<String> response : alice.get()) {
+            Assert.assertTrue(response.body().startsWith("session=alice "));
+        }
+        for (HttpResponse<String> response : bob.get()) {
+            Assert.assertTrue(response.body().startsWith("session=bob "));
+        }
+    }
+
+    @Test
+    public void testCredentialHeaderNotCoalesced() throws Exception {
+        long coalesced = proxyHandler.getRequestCoalescer().getCoalescedCount();
+        sendConcurrently("/v1/apikey", 5, "en", "X-API-Key", "secret");
+        Assert.assertEquals(5, count("/v1/apikey en"));
+        Assert.assertEquals(coalesced, proxyHandler.getRequestCoalescer().getCoalescedCount());
+    }
+
+    @Test
+    public void testPrivateNotShared() throws Exception {
+        sendConcurrently("/v1/private", 5, "en");
+        Assert.assertEquals(5, count("/v1/private en"));
+        sendConcurrently("/v1/vary", 5, "en");
+        Assert.assertEquals(5, count("/v1/vary en"));
+    }
+
+    private static List<HttpResponse<String>> send(String path, String language, String... headers) {
+        try {
+            return sendConcurrently(path, 5, language, headers);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
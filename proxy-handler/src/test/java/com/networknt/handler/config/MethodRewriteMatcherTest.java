@@ -0,0 +1,34 @@
+package com.networknt.handler.config;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class MethodRewriteMatcherTest {
+
+    @Test
+    public void testCovers() {
+        Assert.assertTrue(MethodRewriteMatcher.covers("/v1/pets", "/v1/pets/{petId}"));
+        Assert.assertTrue(MethodRewriteMatcher.covers("/v1/{id}/", "/v1/pets"));
+        Assert.assertFalse(MethodRewriteMatcher.covers("/v1/pets/{petId}", "/v1/pets"));
+        Assert.assertFalse(MethodRewriteMatcher.covers("/v1/cats", "/v1/pets/{petId}"));
+    }
+
+    @Test
+    public void testRewrite() {
+        MethodRewriteMatcher matcher = MethodRewriteMatcher.compile(List.of(
+                new MethodRewriteRule("/v1/pets/{petId}", "PUT", "POST"),
+                new MethodRewriteRule("/v2/pets", "DELETE", "POST"),
+                new MethodRewriteRule("/v1/pets", "POST", "PATCH")));
+        Assert.assertEquals("POST", matcher.rewrite("/v2/pets/1", "DELETE"));
+        // the rules are applied in order, so the shorter pattern defined later rewrites the method again.
+        Assert.assertEquals("PATCH", matcher.rewrite("/v1/pets/1", "PUT"));
+        Assert.assertEquals("PATCH", matcher.rewrite("/v1/pets", "POST"));
+        Assert.assertNull(matcher.rewrite("/v1/pets", "PUT"));
+        Assert.assertNull(matcher.rewrite("/v1", "POST"));
+        Assert.assertNull(matcher.rewrite("/v3/pets/1", "DELETE"));
+        Assert.assertTrue(MethodRewriteMatcher.compile(null).isEmpty());
+        Assert.assertNull(MethodRewriteMatcher.compile(null).rewrite("/v1/pets", "PUT"));
+    }
+}
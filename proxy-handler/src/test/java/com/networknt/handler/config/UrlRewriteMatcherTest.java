@@ -0,0 +1,33 @@
+package com.networknt.handler.config;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class UrlRewriteMatcherTest {
+
+    @Test
+    public void testLiteralPrefix() {
+        Assert.assertEquals("/listings", UrlRewriteMatcher.literalPrefix("/listings/(.*)$"));
+        Assert.assertEquals("/ph/uat/de-asia-ekyc-service", UrlRewriteMatcher.literalPrefix("/ph/uat/de-asia-ekyc-service/v1"));
+        Assert.assertEquals("/tutorial", UrlRewriteMatcher.literalPrefix("/tutorial/linux?/cms"));
+        Assert.assertNull(UrlRewriteMatcher.literalPrefix("(/tutorial/.*)/wordpress/(\\w+)\\.?.*$"));
+        Assert.assertNull(UrlRewriteMatcher.literalPrefix("/v1/a|/v2/b"));
+        Assert.assertNull(UrlRewriteMatcher.literalPrefix("/v1.*"));
+    }
+
+    @Test
+    public void testRulePrecedence() {
+        UrlRewriteMatcher matcher = UrlRewriteMatcher.compile(List.of(
+                UrlRewriteRule.convertToUrlRewriteRule("/v1/(.*)$ /first/$1"),
+                UrlRewriteRule.convertToUrlRewriteRule("/v1/pets/(.*)$ /second/$1"),
+                UrlRewriteRule.convertToUrlRewriteRule("(.*)/x$ $1/y")));
+        // the rule of the shorter prefix is defined first, so it wins over the longer prefix.
+        Assert.assertEquals("/first/pets/1", matcher.rewrite("/v1/pets/1"));
+        Assert.assertEquals("/v2/y", matcher.rewrite("/v2/x"));
+        Assert.assertNull(matcher.rewrite("/v2/z"));
+        Assert.assertTrue(UrlRewriteMatcher.compile(null).isEmpty());
+        Assert.assertNull(UrlRewriteMatcher.compile(null).rewrite("/v1/pets"));
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.limit;
+
+/**
+ * The base of the algorithms that estimate the concurrency limit from the round trip time of the requests. The
+ * minimum RTT that is observed is the RTT without load, and the algorithm compares it with each sample to find out
+ * if the requests are queued.
+ * <p>
+ * The RTT without load is probed again every probeMultiplier * limit samples so that the limit follows a downstream
+ * service that has become slower permanently. The limit is halved for the probe so that the queue is drained, and the
+ * limit is not changed until the samples of the requests that were queued before the probe have been seen.
+ *
+ * @author Steve Hu
+ */
+public abstract class AdaptiveLimit {
+    // the weight of a new sample in the average RTT that is exported.
+    private static final double RTT_ALPHA = 0.1;
+
+    protected final int minLimit;
+    protected final int maxLimit;
+    private final double smoothing;
+    private final int probeMultiplier;
+
+    private double estimatedLimit;
+    private volatile int limit;
+    private volatile long rttNoLoad;
+    private volatile long rtt;
+    private long samples;
+    private long nextProbe;
+    private int probeSamples;
+
+    protected AdaptiveLimit(int initialLimit, int minLimit, int maxLimit, double smoothing, int probeMultiplier) {
+        if(minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid minLimit " + minLimit + " and maxLimit " + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.probeMultiplier = probeMultiplier;
+        this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.limit = (int)estimatedLimit;
+        this.nextProbe = nextProbe();
+    }
+
+    /**
+     * Update the limit with the RTT of a request.
+     *
+     * @param rtt      the round trip time of the request in nanoseconds
+     * @param inFlight the number of the requests in flight when the request was completed
+     * @param dropped  true if the request failed because the downstream service is overloaded
+     * @return int the new limit
+     */
+    public synchronized int update(long rtt, int inFlight, boolean dropped) {
+        this.rtt = this.rtt == 0 ? rtt : (long)(this.rtt + (rtt - this.rtt) * RTT_ALPHA);
+        if(probeSamples > 0) {
+            // the samples of the requests that were queued before the probe are only used for the new baseline.
+            probeSamples--;
+            rttNoLoad = Math.min(rttNoLoad, rtt);
+            return limit;
+        }
+        if(rttNoLoad == 0 || rtt < rttNoLoad) {
+            rttNoLoad = rtt;
+        }
+        if(++samples >= nextProbe) {
+            probeSamples = (int)estimatedLimit;
+            samples = 0;
+            setLimit(estimatedLimit / 2);
+            nextProbe = nextProbe();
+            rttNoLoad = rtt;
+            return limit;
+        }
+        // the limit is not raised if the requests do not use it.
+        if(!dropped && inFlight * 2 < estimatedLimit) {
+            return limit;
+        }
+        double newLimit = newLimit(estimatedLimit, rtt, rttNoLoad, dropped);
+        setLimit(estimatedLimit * (1 - smoothing) + newLimit * smoothing);
+        return limit;
+    }
+
+    /**
+     * Calculate the target limit of a sample. It is smoothed with the current limit by the caller.
+     *
+     * @param limit     the current limit
+     * @param rtt       the RTT of the sample in nanoseconds
+     * @param rttNoLoad the RTT without load in nanoseconds
+     * @param dropped   true if the request failed because the downstream service is overloaded
+     * @return double the target limit
+     */
+    protected abstract double newLimit(double limit, long rtt, long rttNoLoad, boolean dropped);
+
+    private void setLimit(double newLimit) {
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        limit = (int)estimatedLimit;
+    }
+
+    private long nextProbe() {
+        return probeMultiplier <= 0 ? Long.MAX_VALUE : (long)probeMultiplier * Math.max(limit, minLimit);
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return long the minimum RTT in nanoseconds since the last probe, which is the RTT without load
+     */
+    public long getRttNoLoad() {
+        return rttNoLoad;
+    }
+
+    /**
+     * @return long the moving average of the RTT in nanoseconds
+     */
+    public long getRtt() {
+        return rtt;
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.limit;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.networknt.config.Config;
+import com.networknt.config.ConfigException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Config class for the adaptive concurrency limit handler.
+ *
+ * @author Steve Hu
+ */
+public class AdaptiveLimitConfig {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveLimitConfig.class);
+    public static final String CONFIG_NAME = "adaptive-limit";
+    public static final String GRADIENT = "gradient";
+    public static final String VEGAS = "vegas";
+    private static final String ENABLED = "enabled";
+    private static final String ALGORITHM = "algorithm";
+    private static final String INITIAL_LIMIT = "initialLimit";
+    private static final String MIN_LIMIT = "minLimit";
+    private static final String MAX_LIMIT = "maxLimit";
+    private static final String SMOOTHING = "smoothing";
+    private static final String PROBE_MULTIPLIER = "probeMultiplier";
+    private static final String RTT_TOLERANCE = "rttTolerance";
+    private static final String ALPHA = "alpha";
+    private static final String BETA = "beta";
+    private static final String ERROR_CODE = "errorCode";
+    private static final String PATH_PREFIXES = "pathPrefixes";
+
+    private boolean enabled;
+    private String algorithm = GRADIENT;
+    private int initialLimit = 20;
+    private int minLimit = 4;
+    private int maxLimit = 1000;
+    private double smoothing = 0.2;
+    private int probeMultiplier = 30;
+    private double rttTolerance = 1.5;
+    private int alpha = 3;
+    private int beta = 6;
+    private int errorCode = 503;
+    private List<String> pathPrefixes;
+
+    private Map<String, Object> mappedConfig;
+    private final Config config;
+
+    private AdaptiveLimitConfig() {
+        this(CONFIG_NAME);
+    }
+
+    /**
+     * Please note that this constructor is only for testing to load different config files
+     * to test different configurations.
+     *
+     * @param configName String
+     */
+    private AdaptiveLimitConfig(String configName) {
+        config = Config.getInstance();
+        mappedConfig = config.getJsonMapConfigNoCache(configName);
+        setConfigData();
+        setConfigList();
+    }
+
+    public static AdaptiveLimitConfig load() {
+        return new AdaptiveLimitConfig();
+    }
+
+    public static AdaptiveLimitConfig load(String configName) {
+        return new AdaptiveLimitConfig(configName);
+    }
+
+    void reload() {
+        mappedConfig = config.getJsonMapConfigNoCache(CONFIG_NAME);
+        setConfigData();
+        setConfigList();
+    }
+
+    public Map<String, Object> getMappedConfig() {
+        return mappedConfig;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public double getSmoothing() {
+        return smoothing;
+    }
+
+    public int getProbeMultiplier() {
+        return probeMultiplier;
+    }
+
+    public double getRttTolerance() {
+        return rttTolerance;
+    }
+
+    public int getAlpha() {
+        return alpha;
+    }
+
+    public int getBeta() {
+        return beta;
+    }
+
+    public int getErrorCode() {
+        return errorCode;
+    }
+
+    public List<String> getPathPrefixes() {
+        return pathPrefixes;
+    }
+
+    /**
+     * Create the limit of a path prefix with the configured algorithm.
+     *
+     * @return AdaptiveLimit a new limit
+     */
+    public AdaptiveLimit createLimit() {
+        if(VEGAS.equals(algorithm)) {
+            return new VegasLimit(initialLimit, minLimit, maxLimit, smoothing, probeMultiplier, alpha, beta);
+        }
+        return new GradientLimit(initialLimit, minLimit, maxLimit, smoothing, probeMultiplier, rttTolerance);
+    }
+
+    private void setConfigData() {
+        Object object = mappedConfig.get(ENABLED);
+        if(object != null) enabled = (Boolean)object;
+        object = mappedConfig.get(ALGORITHM);
+        if(object != null) {
+            algorithm = ((String)object).trim().toLowerCase();
+            if(!GRADIENT.equals(algorithm) && !VEGAS.equals(algorithm)) {
+                throw new ConfigException("algorithm must be gradient or vegas.");
+            }
+        }
+        object = mappedConfig.get(INITIAL_LIMIT);
+        if(object != null) initialLimit = (Integer)object;
+        object = mappedConfig.get(MIN_LIMIT);
+        if(object != null) minLimit = (Integer)object;
+        object = mappedConfig.get(MAX_LIMIT);
+        if(object != null) maxLimit = (Integer)object;
+        object = mappedConfig.get(SMOOTHING);
+        if(object != null) smoothing = ((Number)object).doubleValue();
+        object = mappedConfig.get(PROBE_MULTIPLIER);
+        if(object != null) probeMultiplier = (Integer)object;
+        object = mappedConfig.get(RTT_TOLERANCE);
+        if(object != null) rttTolerance = ((Number)object).doubleValue();
+        object = mappedConfig.get(ALPHA);
+        if(object != null) alpha = (Integer)object;
+        object = mappedConfig.get(BETA);
+        if(object != null) beta = (Integer)object;
+        object = mappedConfig.get(ERROR_CODE);
+        if(object != null) errorCode = (Integer)object;
+    }
+
+    private void setConfigList() {
+        pathPrefixes = new ArrayList<>();
+        Object object = mappedConfig.get(PATH_PREFIXES);
+        if(object != null) {
+            if(object instanceof String) {
+                String s = ((String)object).trim();
+                if(logger.isTraceEnabled()) logger.trace("pathPrefixes s = " + s);
+                if(s.startsWith("[")) {
+                    // json format
+                    try {
+                        pathPrefixes = Config.getInstance().getMapper().readValue(s, new TypeReference<List<String>>() {});
+                    } catch (Exception e) {
+                        throw new ConfigException("could not parse the pathPrefixes json with a list of strings.");
+                    }
+                } else if(!s.isEmpty()) {
+                    // comma separated
+                    pathPrefixes = Arrays.asList(s.split("\\s*,\\s*"));
+                }
+            } else if (object instanceof List) {
+                for(Object item : (List<?>)object) {
+                    pathPrefixes.add((String)item);
+                }
+            } else {
+                throw new ConfigException("pathPrefixes must be a string or a list of strings.");
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.limit;
+
+import com.networknt.handler.Handler;
+import com.networknt.handler.MiddlewareHandler;
+import com.networknt.status.Status;
+import com.networknt.utility.ModuleRegistry;
+import com.networknt.utility.PathPrefixMatcher;
+import io.undertow.Handlers;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A handler that limits the concurrent requests with a limit that is adjusted to the round trip time of the
+ * requests. When a slow downstream service makes the requests queue up, the RTT grows over the RTT without load
+ * and the limit is lowered so that the excess requests are rejected immediately instead of filling the worker
+ * pool. Each path prefix in the config has its own limiter, and the requests on the other paths are not limited.
+ * <p>
+ * A response with 503 or 504 status code is counted as a dropped request, and it lowers the limit.
+ *
+ * @author Steve Hu
+ */
+public class AdaptiveLimitHandler implements MiddlewareHandler {
+    static final Logger logger = LoggerFactory.getLogger(AdaptiveLimitHandler.class);
+    static final String CONCURRENCY_LIMIT_EXCEEDED = "ERR10085";
+
+    private volatile HttpHandler next;
+    private final AdaptiveLimitConfig config;
+    private volatile PathPrefixMatcher<AdaptiveLimiter> limiters;
+
+    public AdaptiveLimitHandler() {
+        config = AdaptiveLimitConfig.load();
+        limiters = createLimiters(config);
+        if(logger.isInfoEnabled()) logger.info("AdaptiveLimitHandler is loaded with algorithm {} and path prefixes {}.", config.getAlgorithm(), config.getPathPrefixes());
+    }
+
+    private static PathPrefixMatcher<AdaptiveLimiter> createLimiters(AdaptiveLimitConfig config) {
+        AdaptiveLimiterRegistry registry = AdaptiveLimiterRegistry.getInstance();
+        registry.clear();
+        Map<String, AdaptiveLimiter> map = new LinkedHashMap<>();
+        for(String prefix : config.getPathPrefixes()) {
+            AdaptiveLimiter limiter = new AdaptiveLimiter(prefix, config.createLimit());
+            map.put(prefix, limiter);
+            registry.register(limiter);
+        }
+        return PathPrefixMatcher.compile(map);
+    }
+
+    @Override
+    public void handleRequest(final HttpServerExchange exchange) throws Exception {
+        if(logger.isDebugEnabled()) logger.debug("AdaptiveLimitHandler.handleRequest starts.");
+        final AdaptiveLimiter limiter = limiters.get(exchange.getRequestPath());
+        if(limiter == null) {
+            Handler.next(exchange, next);
+            return;
+        }
+        if(!limiter.tryAcquire()) {
+            // the status is written directly as this is the path of an overloaded server.
+            Status status = new Status(CONCURRENCY_LIMIT_EXCEEDED, limiter.getLimit(), limiter.getName());
+            status.setStatusCode(config.getErrorCode());
+            exchange.setStatusCode(config.getErrorCode());
+            exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+            if(logger.isDebugEnabled()) logger.debug("AdaptiveLimitHandler.handleRequest ends with an error code {} for limit {} of {}", config.getErrorCode(), limiter.getLimit(), limiter.getName());
+            exchange.getResponseSender().send(status.toString());
+            return;
+        }
+        final long start = System.nanoTime();
+        exchange.addExchangeCompleteListener((ex, nextListener) -> {
+            try {
+                int statusCode = ex.getStatusCode();
+                limiter.release(System.nanoTime() - start, statusCode == StatusCodes.SERVICE_UNAVAILABLE || statusCode == StatusCodes.GATEWAY_TIME_OUT);
+            } finally {
+                nextListener.proceed();
+            }
+        });
+        if(logger.isDebugEnabled()) logger.debug("AdaptiveLimitHandler.handleRequest ends.");
+        Handler.next(exchange, next);
+    }
+
+    /**
+     * @param path the request path
+     * @return AdaptiveLimiter the limiter of the path or null if the path is not limited
+     */
+    public AdaptiveLimiter getLimiter(String path) {
+        return limiters.get(path);
+    }
+
+    @Override
+    public HttpHandler getNext() {
+        return next;
+    }
+
+    @Override
+    public MiddlewareHandler setNext(final HttpHandler next) {
+        Handlers.handlerNotNull(next);
+        this.next = next;
+        return this;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    @Override
+    public void register() {
+        ModuleRegistry.registerModule(AdaptiveLimitHandler.class.getName(), config.getMappedConfig(), null);
+    }
+
+    @Override
+    public void reload() {
+        config.reload();
+        limiters = createLimiters(config);
+        // after reload, we need to update the config in the module registry to ensure that server info returns the latest configuration.
+        ModuleRegistry.registerModule(AdaptiveLimitHandler.class.getName(), config.getMappedConfig(), null);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The concurrency limiter of a path prefix. A request is accepted if the number of the requests in flight is below
+ * the limit, and the limit is updated with the RTT of the request when it is completed.
+ *
+ * @author Steve Hu
+ */
+public class AdaptiveLimiter {
+    private final String name;
+    private final AdaptiveLimit limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    public AdaptiveLimiter(String name, AdaptiveLimit limit) {
+        this.name = name;
+        this.limit = limit;
+    }
+
+    /**
+     * Acquire a permit for a request.
+     *
+     * @return true if the request is accepted, false if the limit is reached
+     */
+    public boolean tryAcquire() {
+        while(true) {
+            int current = inFlight.get();
+            if(current >= limit.getLimit()) {
+                rejected.increment();
+                return false;
+            }
+            if(inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Release the permit of a completed request and update the limit.
+     *
+     * @param rtt     the round trip time of the request in nanoseconds
+     * @param dropped true if the request failed because the downstream service is overloaded
+     */
+    public void release(long rtt, boolean dropped) {
+        int current = inFlight.getAndDecrement();
+        limit.update(rtt, current, dropped);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return limit.getLimit();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return long the RTT without load in nanoseconds
+     */
+    public long getRttNoLoad() {
+        return limit.getRttNoLoad();
+    }
+
+    /**
+     * @return long the moving average of the RTT in nanoseconds
+     */
+    public long getRtt() {
+        return limit.getRtt();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.limit;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * The registry of the limiters of the AdaptiveLimitHandler so that the metrics and prometheus modules can export the
+ * limit, the requests in flight and the RTT estimates of each path prefix. The limiters are replaced when the
+ * handler is reloaded, and the gauges read the current limiter of the name on each report.
+ *
+ * @author Steve Hu
+ */
+public class AdaptiveLimiterRegistry {
+    private static final AdaptiveLimiterRegistry instance = new AdaptiveLimiterRegistry();
+
+    private final Map<String, AdaptiveLimiter> limiters = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    private AdaptiveLimiterRegistry() {
+    }
+
+    public static AdaptiveLimiterRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * Register a limiter, and replace the limiter with the same name.
+     *
+     * @param limiter the limiter of a path prefix
+     */
+    public void register(AdaptiveLimiter limiter) {
+        if(limiters.put(limiter.getName(), limiter) == null) {
+            for(Consumer<String> listener : listeners) {
+                listener.accept(limiter.getName());
+            }
+        }
+    }
+
+    public AdaptiveLimiter getLimiter(String name) {
+        return limiters.get(name);
+    }
+
+    public Collection<AdaptiveLimiter> getLimiters() {
+        return Collections.unmodifiableCollection(limiters.values());
+    }
+
+    /**
+     * Add a listener that is called with the name of each existing limiter and each limiter that is registered later.
+     *
+     * @param listener the listener of the new limiter names
+     */
+    public void addListener(Consumer<String> listener) {
+        listeners.add(listener);
+        limiters.keySet().forEach(listener);
+    }
+
+    /**
+     * Remove all the limiters. It is mainly for testing.
+     */
+    public void clear() {
+        limiters.clear();
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.limit;
+
+import com.networknt.utility.Constants;
+import com.networknt.utility.PathPrefixMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A rate limiter that doesn't take any lock on the request path. Each key has a generic cell rate
+ * algorithm (GCRA) state per quota, which is a theoretical arrival time updated with a CAS loop. The
+ * quota of value/unit allows a burst of value requests and refills one request every unit/value.
+ * <p>
+ * The key states are kept in a map that is bounded by maxKeys in limit.yml. A key is idle once all
+ * its quotas are fully refilled and it is removed first when the map is over the limit. If that is
+ * not enough, the least recently used keys are removed. The age of the keys to remove is estimated
+ * from a small sample, so an eviction is a single pass over the map without any allocation, and it
+ * brings the map down to 90% of maxKeys so that it only runs once per maxKeys/10 new keys. Only one
+ * thread does the eviction at a time and other threads continue without waiting for it unless the
+ * map has grown to twice maxKeys, in which case they are parked until the eviction is done.
+ * <p>
+ * This limiter is used by the LimitHandler when concurrentLimiter is true in limit.yml.
+ *
+ * @author Steve Hu
+ */
+public class ConcurrentRateLimiter extends RateLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrentRateLimiter.class);
+    static final int DEFAULT_MAX_KEYS = 100000;
+    private static final int EVICTION_SAMPLE_SIZE = 1024;
+    private static final RateLimitResponse ALLOWED = new RateLimitResponse(true, null);
+
+    private final Map<String, KeyState> keyStates = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    // the ages of the sampled keys, it is only used by the thread that holds the eviction lock.
+    private final long[] evictionSample = new long[EVICTION_SAMPLE_SIZE];
+    private final int maxKeys;
+    private final PathPrefixMatcher<List<LimitQuota>> serverQuotas;
+
+    public ConcurrentRateLimiter(LimitConfig config) throws Exception {
+        super(config);
+        this.maxKeys = config.getMaxKeys() > 0 ? config.getMaxKeys() : DEFAULT_MAX_KEYS;
+        Map<String, List<LimitQuota>> server = new LinkedHashMap<>();
+        if(config.getServer() != null) {
+            config.getServer().forEach((k, v) -> server.put(k, Collections.singletonList(v)));
+        }
+        this.serverQuotas = PathPrefixMatcher.compile(server);
+    }
+
+    @Override
+    protected RateLimitResponse isAllowDirect(String directKey, String path, String type) {
+        LimitConfig.RateLimitSet rateLimitSet;
+        if (ADDRESS_TYPE.equalsIgnoreCase(type)) {
+            rateLimitSet = config.getAddress();
+        } else if (CLIENT_TYPE.equalsIgnoreCase(type)) {
+            rateLimitSet = config.getClient();
+        } else {
+            rateLimitSet = config.getUser();
+        }
+        String mapKey = directKey;
+        List<LimitQuota> rateLimit = null;
+        if (rateLimitSet != null && rateLimitSet.directMaps != null) {
+            String keyWithPath = directKey + LimitConfig.SEPARATE_KEY + path;
+            rateLimit = rateLimitSet.directMaps.get(keyWithPath);
+            if (rateLimit != null) {
+                mapKey = keyWithPath;
+            } else {
+                rateLimit = rateLimitSet.directMaps.get(directKey);
+            }
+        }
+        if (rateLimit == null) {
+            rateLimit = config.getRateLimit();
+        }
+        return acquire(mapKey, rateLimit);
+    }
+
+    @Override
+    public RateLimitResponse isAllowByServer(String path) {
+        PathPrefixMatcher.Entry<List<LimitQuota>> entry = serverQuotas.match(path);
+        if (entry != null) {
+            return acquire(entry.getKey(), entry.getValue());
+        }
+        // the path is not covered by a configured prefix and it has its own key with the default quota.
+        return acquire(path, config.getRateLimit());
+    }
+
+    /**
+     * @return the number of keys that have state in the limiter
+     */
+    int getKeyCount() {
+        return keyStates.size();
+    }
+
+    private RateLimitResponse acquire(String key, List<LimitQuota> quotas) {
+        long now = System.nanoTime();
+        KeyState state = keyStates.get(key);
+        if (state == null) {
+            state = keyStates.computeIfAbsent(key, k -> new KeyState(quotas, now));
+            if (keyStates.size() > maxKeys) {
+                evictIfFull(now);
+            }
+        }
+        state.lastAccess = now;
+        for (int i = 0; i < state.quotas.length; i++) {
+            long interval = state.intervals[i];
+            long tolerance = state.tolerances[i];
+            while (true) {
+                long tat = state.tats.get(i);
+                long start = tat - now > 0 ? tat : now;
+                if (start - now > tolerance) {
+                    // give back what has been taken from the previous quotas as the request is rejected.
+                    for (int j = 0; j < i; j++) {
+                        state.tats.getAndAdd(j, -state.intervals[j]);
+                    }
+                    return reject(state.quotas[i], start - now, interval, tolerance);
+                }
+                if (state.tats.compareAndSet(i, tat, start + interval)) {
+                    break;
+                }
+            }
+        }
+        return ALLOWED;
+    }
+
+    private RateLimitResponse reject(LimitQuota limitQuota, long backlog, long interval, long tolerance) {
+        long wait = backlog - tolerance;
+        long reset = Math.max(1L, (wait + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        long remaining = Math.max(0L, (tolerance - backlog) / interval);
+        Map<String, String> headers = new HashMap<>();
+        headers.put(Constants.RATELIMIT_LIMIT, limitQuota.value + "/" + limitQuota.unit);
+        headers.put(Constants.RATELIMIT_REMAINING, String.valueOf(remaining));
+        headers.put(Constants.RATELIMIT_RESET, reset + "s");
+        return new RateLimitResponse(false, headers);
+    }
+
+    /**
+     * Only one thread evicts at a time. The others continue unless the map has grown to twice the limit,
+     * in which case they wait for the eviction so that a flood of new keys can't outrun it.
+     */
+    private void evictIfFull(long now) {
+        if (evictionLock.tryLock()) {
+            try {
+                evict(now);
+            } finally {
+                evictionLock.unlock();
+            }
+        } else if (keyStates.size() > 2 * maxKeys) {
+            evictionLock.lock();
+            try {
+                // the map might have been evicted while this thread was waiting.
+                if (keyStates.size() > maxKeys) evict(now);
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void evict(long now) {
+        int before = keyStates.size();
+        int excess = before - (maxKeys - maxKeys / 10);
+        if (excess <= 0) {
+            return;
+        }
+        // an idle key has the same state as a new key, so nothing is lost by removing it, and it is
+        // counted as the oldest. The keys are sampled in the hash order of the map, which is unrelated
+        // to the last access, so the age of the excess-th oldest key is estimated from the sample.
+        long[] ages = evictionSample;
+        int n = 0;
+        for (KeyState state : keyStates.values()) {
+            if (n == ages.length) break;
+            ages[n++] = state.isIdle(now) ? Long.MAX_VALUE : now - state.lastAccess;
+        }
+        long threshold = Long.MAX_VALUE;
+        if (n > 0) {
+            Arrays.sort(ages, 0, n);
+            threshold = ages[(int) Math.max(0, n - Math.max(1, (long) n * excess / before))];
+        }
+        final long minAge = threshold;
+        keyStates.values().removeIf(state -> state.isIdle(now) || now - state.lastAccess >= minAge);
+        if(logger.isDebugEnabled()) logger.debug("Evicted " + (before - keyStates.size()) + " rate limit keys and " + keyStates.size() + " keys left.");
+    }
+
+    private static long getWindowNanos(TimeUnit unit) {
+        if (TimeUnit.DAYS.equals(unit)) {
+            return TimeUnit.DAYS.toNanos(1);
+        } else if (TimeUnit.HOURS.equals(unit)) {
+            return TimeUnit.HOURS.toNanos(1);
+        } else if (TimeUnit.MINUTES.equals(unit)) {
+            return TimeUnit.MINUTES.toNanos(1);
+        } else {
+            return TimeUnit.SECONDS.toNanos(1);
+        }
+    }
+
+    /**
+     * The GCRA state of all the quotas for a key. A theoretical arrival time at or before now means the
+     * quota is fully available.
+     */
+    private static final class KeyState {
+        final LimitQuota[] quotas;
+        final long[] intervals;
+        final long[] tolerances;
+        final AtomicLongArray tats;
+        volatile long lastAccess;
+
+        KeyState(List<LimitQuota> quotaList, long now) {
+            int n = quotaList.size();
+            quotas = quotaList.toArray(new LimitQuota[n]);
+            intervals = new long[n];
+            tolerances = new long[n];
+            tats = new AtomicLongArray(n);
+            for (int i = 0; i < n; i++) {
+                long window = getWindowNanos(quotas[i].unit);
+                intervals[i] = window / Math.max(1, quotas[i].value);
+                tolerances[i] = quotas[i].value > 0 ? window - intervals[i] : -1L;
+                tats.set(i, now);
+            }
+            lastAccess = now;
+        }
+
+        boolean isIdle(long now) {
+            for (int i = 0; i < quotas.length; i++) {
+                if (tats.get(i) - now > 0) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.limit;
+
+/**
+ * The limit is multiplied by the gradient of the RTT without load and the RTT of the sample, which is between 0.5
+ * and 1.0, and a queue of the square root of the limit is added so that the limit grows while the RTT is below the
+ * tolerance. A dropped request halves the target limit.
+ *
+ * @author Steve Hu
+ */
+public class GradientLimit extends AdaptiveLimit {
+    private final double rttTolerance;
+
+    public GradientLimit(int initialLimit, int minLimit, int maxLimit, double smoothing, int probeMultiplier, double rttTolerance) {
+        super(initialLimit, minLimit, maxLimit, smoothing, probeMultiplier);
+        this.rttTolerance = rttTolerance;
+    }
+
+    @Override
+    protected double newLimit(double limit, long rtt, long rttNoLoad, boolean dropped) {
+        double gradient = dropped ? 0.5 : Math.max(0.5, Math.min(1.0, rttTolerance * rttNoLoad / rtt));
+        return limit * gradient + Math.sqrt(limit);
+    }
+}
@@ -38,6 +38,8 @@ public class LimitConfig {
     private static final String USER_ID_KEY = "userIdKeyResolver";
     private static final String ADDRESS_KEY = "addressKeyResolver";
     private static final String RATE_LIMIT = "rateLimit";
+    private static final String CONCURRENT_LIMITER = "concurrentLimiter";
+    private static final String MAX_KEYS = "maxKeys";
     private static final String SERVER = "server";
     private static final String ADDRESS = "address";
     private static final String CLIENT = "client";
@@ -52,6 +54,8 @@ public class LimitConfig {
     String clientIdKeyResolver;
     String addressKeyResolver;
     String userIdKeyResolver;
+    boolean concurrentLimiter;
+    int maxKeys;
 
     LimitKey key;
     List<LimitQuota> rateLimit;
@@ -149,6 +153,22 @@ public class LimitConfig {
         this.userIdKeyResolver = userIdKeyResolver;
     }
 
+    public boolean isConcurrentLimiter() {
+        return concurrentLimiter;
+    }
+
+    public void setConcurrentLimiter(boolean concurrentLimiter) {
+        this.concurrentLimiter = concurrentLimiter;
+    }
+
+    public int getMaxKeys() {
+        return maxKeys;
+    }
+
+    public void setMaxKeys(int maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
     public LimitKey getKey() {
         return key;
     }
@@ -234,6 +254,14 @@ public class LimitConfig {
         if(object != null) {
             setUserIdKeyResolver((String) object);
         }
+        object = getMappedConfig().get(CONCURRENT_LIMITER);
+        if(object != null && (Boolean) object) {
+            setConcurrentLimiter(true);
+        }
+        object = getMappedConfig().get(MAX_KEYS);
+        if(object != null) {
+            maxKeys = (int) object;
+        }
     }
 
     private void setRateLimitConfig() {
@@ -48,7 +48,7 @@ public class LimitHandler implements MiddlewareHandler {
     public LimitHandler() throws Exception{
         config = LimitConfig.load();
         logger.info("RateLimit started with key type:" + config.getKey().name());
-        rateLimiter = new RateLimiter(config);
+        rateLimiter = createRateLimiter(config);
     }
 
     /**
@@ -62,7 +62,11 @@ public class LimitHandler implements MiddlewareHandler {
     public LimitHandler(LimitConfig cfg) throws Exception{
         config = cfg;
         logger.info("RateLimit started with key type:" + config.getKey().name());
-        rateLimiter = new RateLimiter(cfg);
+        rateLimiter = createRateLimiter(cfg);
+    }
+
+    private static RateLimiter createRateLimiter(LimitConfig config) throws Exception {
+        return config.isConcurrentLimiter() ? new ConcurrentRateLimiter(config) : new RateLimiter(config);
     }
 
     @Override
@@ -111,7 +115,7 @@ public class LimitHandler implements MiddlewareHandler {
     public void reload() {
         config.reload();
         try {
-            rateLimiter = new RateLimiter(config);
+            rateLimiter = createRateLimiter(config);
         } catch (Exception e) {
             logger.error("Failed to recreate RateLimiter with reloaded config.", e);
         }
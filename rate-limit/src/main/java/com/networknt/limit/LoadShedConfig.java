@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.limit;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.networknt.config.Config;
+import com.networknt.config.ConfigException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Config class for the load shedding handler.
+ *
+ * @author Steve Hu
+ */
+public class LoadShedConfig {
+    private static final Logger logger = LoggerFactory.getLogger(LoadShedConfig.class);
+    public static final String CONFIG_NAME = "load-shed";
+    private static final String ENABLED = "enabled";
+    private static final String DEFAULT_PRIORITY = "defaultPriority";
+    private static final String QUEUE_THRESHOLDS = "queueThresholds";
+    private static final String PATH_PREFIX_PRIORITIES = "pathPrefixPriorities";
+    private static final String CLIENT_PRIORITIES = "clientPriorities";
+    private static final String PRIORITY_HEADER = "priorityHeader";
+    private static final String RETRY_AFTER = "retryAfter";
+
+    private boolean enabled;
+    private LoadShedPriority defaultPriority = LoadShedPriority.NORMAL;
+    private Map<LoadShedPriority, Integer> queueThresholds;
+    private Map<String, LoadShedPriority> pathPrefixPriorities;
+    private Map<String, LoadShedPriority> clientPriorities;
+    private String priorityHeader;
+    private int retryAfter = 5;
+
+    private Map<String, Object> mappedConfig;
+    private final Config config;
+
+    private LoadShedConfig() {
+        this(CONFIG_NAME);
+    }
+
+    /**
+     * Please note that this constructor is only for testing to load different config files
+     * to test different configurations.
+     *
+     * @param configName String
+     */
+    private LoadShedConfig(String configName) {
+        config = Config.getInstance();
+        mappedConfig = config.getJsonMapConfigNoCache(configName);
+        setConfigData();
+        setConfigMap();
+    }
+
+    public static LoadShedConfig load() {
+        return new LoadShedConfig();
+    }
+
+    public static LoadShedConfig load(String configName) {
+        return new LoadShedConfig(configName);
+    }
+
+    void reload() {
+        mappedConfig = config.getJsonMapConfigNoCache(CONFIG_NAME);
+        setConfigData();
+        setConfigMap();
+    }
+
+    public Map<String, Object> getMappedConfig() {
+        return mappedConfig;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public LoadShedPriority getDefaultPriority() {
+        return defaultPriority;
+    }
+
+    /**
+     * @param priority the priority class
+     * @return int the worker queue size from which the requests of the class are shed
+     */
+    public int getQueueThreshold(LoadShedPriority priority) {
+        Integer threshold = queueThresholds.get(priority);
+        return threshold == null ? Integer.MAX_VALUE : threshold;
+    }
+
+    public Map<String, LoadShedPriority> getPathPrefixPriorities() {
+        return pathPrefixPriorities;
+    }
+
+    public Map<String, LoadShedPriority> getClientPriorities() {
+        return clientPriorities;
+    }
+
+    public String getPriorityHeader() {
+        return priorityHeader;
+    }
+
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+
+    private void setConfigData() {
+        Object object = mappedConfig.get(ENABLED);
+        if(object != null) enabled = (Boolean)object;
+        object = mappedConfig.get(DEFAULT_PRIORITY);
+        if(object != null) defaultPriority = LoadShedPriority.of((String)object);
+        object = mappedConfig.get(PRIORITY_HEADER);
+        priorityHeader = object == null || ((String)object).trim().isEmpty() ? null : ((String)object).trim();
+        object = mappedConfig.get(RETRY_AFTER);
+        if(object != null) retryAfter = (Integer)object;
+    }
+
+    private void setConfigMap() {
+        queueThresholds = new EnumMap<>(LoadShedPriority.class);
+        queueThresholds.put(LoadShedPriority.LOW, 0);
+        queueThresholds.put(LoadShedPriority.NORMAL, 64);
+        queueThresholds.put(LoadShedPriority.HIGH, 512);
+        for(Map.Entry<String, Object> entry : toMap(QUEUE_THRESHOLDS).entrySet()) {
+            LoadShedPriority priority = LoadShedPriority.of(entry.getKey());
+            if(priority == LoadShedPriority.CRITICAL) {
+                throw new ConfigException("queueThresholds cannot have a threshold for critical as it is never shed.");
+            }
+            queueThresholds.put(priority, Integer.valueOf(entry.getValue().toString()));
+        }
+        pathPrefixPriorities = toPriorities(toMap(PATH_PREFIX_PRIORITIES));
+        clientPriorities = toPriorities(toMap(CLIENT_PRIORITIES));
+    }
+
+    private static Map<String, LoadShedPriority> toPriorities(Map<String, Object> map) {
+        Map<String, LoadShedPriority> priorities = new LinkedHashMap<>();
+        for(Map.Entry<String, Object> entry : map.entrySet()) {
+            priorities.put(entry.getKey(), LoadShedPriority.of(entry.getValue().toString()));
+        }
+        return priorities;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> toMap(String name) {
+        Object object = mappedConfig.get(name);
+        if(object == null) return new LinkedHashMap<>();
+        if(object instanceof Map) {
+            return (Map<String, Object>)object;
+        } else if(object instanceof String) {
+            String s = ((String)object).trim();
+            if(logger.isTraceEnabled()) logger.trace(name + " s = " + s);
+            if(s.isEmpty()) return new LinkedHashMap<>();
+            if(s.startsWith("{")) {
+                // json map
+                try {
+                    return Config.getInstance().getMapper().readValue(s, new TypeReference<LinkedHashMap<String, Object>>() {});
+                } catch (Exception e) {
+                    throw new ConfigException("could not parse the " + name + " json with a map.");
+                }
+            }
+            // key=value pairs separated with &
+            Map<String, Object> map = new LinkedHashMap<>();
+            for(String keyValue : s.split(" *& *")) {
+                String[] pairs = keyValue.split(" *= *", 2);
+                if(pairs.length != 2) throw new ConfigException(name + " has an entry without a value: " + keyValue);
+                map.put(pairs[0], pairs[1]);
+            }
+            return map;
+        }
+        throw new ConfigException(name + " must be a JSON map or a YAML map.");
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.limit;
+
+import com.networknt.handler.Handler;
+import com.networknt.handler.MiddlewareHandler;
+import com.networknt.httpstring.AttachmentConstants;
+import com.networknt.status.Status;
+import com.networknt.utility.Constants;
+import com.networknt.utility.ModuleRegistry;
+import com.networknt.utility.PathPrefixMatcher;
+import io.undertow.Handlers;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnio.management.XnioWorkerMXBean;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A handler that sheds the requests of the lower priority classes first when the XNIO worker pool is saturated so
+ * that the health checks, the token endpoints and the important business traffic are still served. The pool is
+ * saturated when all the worker threads are busy, and a request is shed if the worker queue has reached the
+ * threshold of its class. The shed requests get 503 with a Retry-After header.
+ * <p>
+ * The priority of a request is decided by the first one that is found of the path prefix, the client id in the
+ * auditInfo of the JWT, the priority header and the default priority. The client id is only available if the handler
+ * is after the JWT verifier in the chain. The priority header cannot make a request critical. The health check and
+ * server info endpoints are always critical and never shed.
+ *
+ * @author Steve Hu
+ */
+public class LoadShedHandler implements MiddlewareHandler {
+    static final Logger logger = LoggerFactory.getLogger(LoadShedHandler.class);
+    static final String SERVICE_OVERLOADED = "ERR10086";
+    static final List<String> PROTECTED_PATH_PREFIXES = List.of("/health", "/adm/health", "/server/info", "/adm/server/info");
+
+    private volatile HttpHandler next;
+    private final LoadShedConfig config;
+    private volatile PathPrefixMatcher<LoadShedPriority> pathPrefixPriorities;
+    private volatile HttpString priorityHeader;
+    private final Map<LoadShedPriority, LongAdder> shed = new EnumMap<>(LoadShedPriority.class);
+
+    public LoadShedHandler() {
+        config = LoadShedConfig.load();
+        for(LoadShedPriority priority : LoadShedPriority.values()) {
+            shed.put(priority, new LongAdder());
+        }
+        setPriorities();
+        if(logger.isInfoEnabled()) logger.info("LoadShedHandler is loaded.");
+    }
+
+    private void setPriorities() {
+        Map<String, LoadShedPriority> map = new LinkedHashMap<>();
+        // the protected path prefixes are first so that the same prefixes in the config are ignored.
+        for(String prefix : PROTECTED_PATH_PREFIXES) {
+            map.put(prefix, LoadShedPriority.CRITICAL);
+        }
+        for(Map.Entry<String, LoadShedPriority> entry : config.getPathPrefixPriorities().entrySet()) {
+            map.putIfAbsent(entry.getKey(), entry.getValue());
+        }
+        pathPrefixPriorities = PathPrefixMatcher.compile(map);
+        priorityHeader = config.getPriorityHeader() == null ? null : new HttpString(config.getPriorityHeader());
+    }
+
+    @Override
+    public void handleRequest(final HttpServerExchange exchange) throws Exception {
+        if(logger.isDebugEnabled()) logger.debug("LoadShedHandler.handleRequest starts.");
+        XnioWorkerMXBean worker = exchange.getConnection().getWorker().getMXBean();
+        // nothing is shed until all the worker threads are busy.
+        if(worker.getBusyWorkerThreadCount() >= worker.getMaxWorkerPoolSize()) {
+            int queueSize = worker.getWorkerQueueSize();
+            LoadShedPriority priority = getPriority(exchange);
+            if(priority != LoadShedPriority.CRITICAL && queueSize >= config.getQueueThreshold(priority)) {
+                shed.get(priority).increment();
+                // the status is written directly as this is the path of an overloaded server.
+                Status status = new Status(SERVICE_OVERLOADED, priority.name().toLowerCase());
+                exchange.setStatusCode(status.getStatusCode());
+                exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+                exchange.getResponseHeaders().put(Headers.RETRY_AFTER, config.getRetryAfter());
+                if(logger.isDebugEnabled()) logger.debug("LoadShedHandler.handleRequest ends with {} request shed at worker queue size {}", priority, queueSize);
+                exchange.getResponseSender().send(status.toString());
+                return;
+            }
+        }
+        if(logger.isDebugEnabled()) logger.debug("LoadShedHandler.handleRequest ends.");
+        Handler.next(exchange, next);
+    }
+
+    /**
+     * @param exchange the exchange of the request
+     * @return LoadShedPriority the priority class of the request
+     */
+    LoadShedPriority getPriority(HttpServerExchange exchange) {
+        LoadShedPriority priority = pathPrefixPriorities.get(exchange.getRequestPath());
+        if(priority != null) return priority;
+        if(!config.getClientPriorities().isEmpty()) {
+            Map<String, Object> auditInfo = exchange.getAttachment(AttachmentConstants.AUDIT_INFO);
+            if(auditInfo != null && auditInfo.get(Constants.CLIENT_ID_STRING) != null) {
+                priority = config.getClientPriorities().get(auditInfo.get(Constants.CLIENT_ID_STRING));
+                if(priority != null) return priority;
+            }
+        }
+        HttpString header = priorityHeader;
+        if(header != null) {
+            String value = exchange.getRequestHeaders().getFirst(header);
+            if(value != null) {
+                try {
+                    priority = LoadShedPriority.of(value);
+                    return priority == LoadShedPriority.CRITICAL ? LoadShedPriority.HIGH : priority;
+                } catch (Exception e) {
+                    if(logger.isDebugEnabled()) logger.debug("Invalid priority header value {} is ignored.", value);
+                }
+            }
+        }
+        return config.getDefaultPriority();
+    }
+
+    /**
+     * @param priority the priority class
+     * @return long the number of the requests of the class that have been shed
+     */
+    public long getShedCount(LoadShedPriority priority) {
+        return shed.get(priority).sum();
+    }
+
+    @Override
+    public HttpHandler getNext() {
+        return next;
+    }
+
+    @Override
+    public MiddlewareHandler setNext(final HttpHandler next) {
+        Handlers.handlerNotNull(next);
+        this.next = next;
+        return this;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    @Override
+    public void register() {
+        ModuleRegistry.registerModule(LoadShedHandler.class.getName(), config.getMappedConfig(), null);
+    }
+
+    @Override
+    public void reload() {
+        config.reload();
+        setPriorities();
+        // after reload, we need to update the config in the module registry to ensure that server info returns the latest configuration.
+        ModuleRegistry.registerModule(LoadShedHandler.class.getName(), config.getMappedConfig(), null);
+    }
+}
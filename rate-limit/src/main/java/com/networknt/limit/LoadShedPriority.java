@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.limit;
+
+import com.networknt.config.ConfigException;
+
+/**
+ * The priority classes of the load shedding handler. The lower classes are shed first when the worker pool is
+ * saturated, and the critical requests are never shed.
+ *
+ * @author Steve Hu
+ */
+public enum LoadShedPriority {
+    CRITICAL, HIGH, NORMAL, LOW;
+
+    /**
+     * @param value the name of the priority in any case
+     * @return LoadShedPriority the priority
+     */
+    public static LoadShedPriority of(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ConfigException("Invalid priority " + value + ". It must be critical, high, normal or low.");
+        }
+    }
+}
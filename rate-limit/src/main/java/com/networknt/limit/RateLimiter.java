@@ -4,6 +4,7 @@ import com.networknt.exception.FrameworkException;
 import com.networknt.limit.key.KeyResolver;
 import com.networknt.status.Status;
 import com.networknt.utility.Constants;
+import com.networknt.utility.PathPrefixMatcher;
 
 import io.undertow.server.HttpServerExchange;
 import org.slf4j.Logger;
@@ -27,6 +28,9 @@ public class RateLimiter {
     protected LimitConfig config;
 
     private Map<String, Map<Long, AtomicLong>> serverTimeMap = new ConcurrentHashMap<>();
+    // the configured server path prefixes compiled once as the RateLimiter is recreated on reload.
+    private PathPrefixMatcher<Map<Long, AtomicLong>> serverTimeMatcher = PathPrefixMatcher.empty();
+    private PathPrefixMatcher<LimitQuota> serverQuotaMatcher = PathPrefixMatcher.empty();
 
     private Map<String, Map<TimeUnit, Map<Long, AtomicLong>>> directTimeMap = new ConcurrentHashMap<>();
     private static final Logger logger = LoggerFactory.getLogger(RateLimiter.class);
@@ -49,6 +53,8 @@ public class RateLimiter {
         if (LimitKey.SERVER.equals(config.getKey())) {
             if (this.config.getServer()!=null && !this.config.getServer().isEmpty()) {
                 this.config.getServer().forEach((k,v)->serverTimeMap.put(k, new ConcurrentHashMap<>()));
+                serverTimeMatcher = PathPrefixMatcher.compile(serverTimeMap);
+                serverQuotaMatcher = PathPrefixMatcher.compile(this.config.getServer());
             }
         } else if (LimitKey.ADDRESS.equals(config.getKey())) {
             if (this.config.getAddress()!=null) {
@@ -257,34 +263,16 @@ public class RateLimiter {
     }
 
     private Map<Long, AtomicLong> lookupServerTimeMap(String path) {
-        String prefix = null;
-        for(String s: serverTimeMap.keySet()) {
-            if(path.startsWith(s)) {
-                prefix = s;
-                break;
-            }
-        }
-        if(prefix == null) {
-            return null;
-        } else {
-            return serverTimeMap.get(prefix);
+        Map<Long, AtomicLong> timeMap = serverTimeMatcher.get(path);
+        if(timeMap == null) {
+            // the path is not covered by a configured prefix and it has its own time map.
+            timeMap = serverTimeMap.get(path);
         }
-
+        return timeMap;
     }
 
     private LimitQuota lookupLimitQuota(String path) {
-        String prefix = null;
-        for(String s: this.config.getServer().keySet()) {
-            if(path.startsWith(s)) {
-                prefix = s;
-                break;
-            }
-        }
-        if(prefix == null) {
-            return null;
-        } else {
-            return this.config.getServer().get(prefix);
-        }
+        return serverQuotaMatcher.get(path);
     }
 
     private String getRateLimitReset(Long currentTimeWindow, Map<Long, AtomicLong> timeMap,  LimitQuota limitQuota) {
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.limit;
+
+/**
+ * The TCP Vegas congestion control applied to the concurrency. The number of the queued requests is estimated with
+ * limit * (1 - rttNoLoad / rtt). The limit grows fast while the queue is below log10(limit), slowly while it is below
+ * alpha, and shrinks once it is above beta or a request is dropped.
+ *
+ * @author Steve Hu
+ */
+public class VegasLimit extends AdaptiveLimit {
+    private final int alpha;
+    private final int beta;
+
+    public VegasLimit(int initialLimit, int minLimit, int maxLimit, double smoothing, int probeMultiplier, int alpha, int beta) {
+        super(initialLimit, minLimit, maxLimit, smoothing, probeMultiplier);
+        this.alpha = alpha;
+        this.beta = beta;
+    }
+
+    @Override
+    protected double newLimit(double limit, long rtt, long rttNoLoad, boolean dropped) {
+        double log = Math.max(1, Math.log10(limit));
+        if(dropped) {
+            return limit - log;
+        }
+        double queueSize = Math.ceil(limit * (1 - (double)rttNoLoad / rtt));
+        if(queueSize <= log) {
+            return limit + beta * log;
+        } else if(queueSize < alpha * log) {
+            return limit + log;
+        } else if(queueSize > beta * log) {
+            return limit - log;
+        }
+        return limit;
+    }
+}
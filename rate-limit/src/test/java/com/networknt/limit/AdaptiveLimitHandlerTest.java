@@ -0,0 +1,102 @@
+package com.networknt.limit;
+
+import io.undertow.Handlers;
+import io.undertow.Undertow;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Methods;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The limit of the path prefixes is fixed at 4 so that the requests over the limit of a slow path are rejected
+ * while the requests of the other path prefixes are not affected.
+ */
+public class AdaptiveLimitHandlerTest {
+    private static final int PORT = 7096;
+    static Undertow server = null;
+    static AdaptiveLimitHandler handler = null;
+    static HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @BeforeClass
+    public static void setUp() {
+        handler = new AdaptiveLimitHandler();
+        handler.setNext(Handlers.routing()
+                .add(Methods.GET, "/v1/slow", AdaptiveLimitHandlerTest::slow)
+                .add(Methods.GET, "/v1/fast", exchange -> exchange.getResponseSender().send("fast"))
+                .add(Methods.GET, "/health", exchange -> exchange.getResponseSender().send("OK")));
+        server = Undertow.builder()
+                .addHttpListener(PORT, "localhost")
+                .setHandler(handler)
+                .build();
+        server.start();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    private static void slow(HttpServerExchange exchange) throws Exception {
+        if (exchange.isInIoThread()) {
+            exchange.dispatch(AdaptiveLimitHandlerTest::slow);
+            return;
+        }
+        Thread.sleep(500);
+        exchange.getResponseSender().send("slow");
+    }
+
+    private static CompletableFuture<HttpResponse<String>> send(String path) {
+        return client.sendAsync(HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + path)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    public void testLimitPerPathPrefix() throws Exception {
+        List<CompletableFuture<HttpResponse<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            futures.add(send("/v1/slow"));
+        }
+        // wait until the slow requests are in flight.
+        AdaptiveLimiter limiter = handler.getLimiter("/v1/slow");
+        for (int i = 0; i < 100 && limiter.getInFlight() + limiter.getRejected() < 12; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals("fast", send("/v1/fast").get().body());
+        Assert.assertEquals("OK", send("/health").get().body());
+
+        int ok = 0;
+        int rejected = 0;
+        for (CompletableFuture<HttpResponse<String>> future : futures) {
+            HttpResponse<String> response = future.get();
+            if (response.statusCode() == 200) {
+                ok++;
+            } else {
+                Assert.assertEquals(503, response.statusCode());
+                Assert.assertTrue(response.body(), response.body().contains("ERR10085"));
+                rejected++;
+            }
+        }
+        Assert.assertEquals(4, ok);
+        Assert.assertEquals(8, rejected);
+        Assert.assertEquals(0, limiter.getInFlight());
+        Assert.assertTrue(limiter.getRtt() > 0);
+    }
+
+    @Test
+    public void testRegistry() {
+        Assert.assertNull(handler.getLimiter("/health"));
+        Assert.assertSame(handler.getLimiter("/v1/fast/1"), AdaptiveLimiterRegistry.getInstance().getLimiter("/v1/fast"));
+        Assert.assertEquals(4, AdaptiveLimiterRegistry.getInstance().getLimiter("/v1/slow").getLimit());
+    }
+}
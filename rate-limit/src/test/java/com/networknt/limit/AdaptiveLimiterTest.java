@@ -0,0 +1,175 @@
+package com.networknt.limit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulate a downstream service with a number of workers and a service time in virtual milliseconds, and more
+ * requests than it can serve. The downstream service becomes slower in the middle of the simulation, and the limit
+ * must converge to the new capacity so that the queue and the RTT stay bounded.
+ */
+public class AdaptiveLimiterTest {
+    private static final int ARRIVALS_PER_MS = 4;
+
+    @Test
+    public void testGradientConverges() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("/", new GradientLimit(20, 4, 1000, 0.2, 30, 1.5));
+        assertConverges(limiter);
+    }
+
+    @Test
+    public void testVegasConverges() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("/", new VegasLimit(20, 4, 1000, 0.2, 30, 3, 6));
+        assertConverges(limiter);
+    }
+
+    @Test
+    public void testDroppedLowersLimit() {
+        AdaptiveLimit limit = new GradientLimit(100, 4, 1000, 1.0, 0, 1.5);
+        long rtt = TimeUnit.MILLISECONDS.toNanos(10);
+        limit.update(rtt, 100, false);
+        int before = limit.getLimit();
+        limit.update(rtt, 100, true);
+        Assert.assertTrue(limit.getLimit() < before);
+    }
+
+    @Test
+    public void testLimitIsNotRaisedWhenNotUsed() {
+        AdaptiveLimit limit = new VegasLimit(20, 4, 1000, 1.0, 0, 3, 6);
+        long rtt = TimeUnit.MILLISECONDS.toNanos(10);
+        for (int i = 0; i < 100; i++) {
+            limit.update(rtt, 5, false);
+        }
+        Assert.assertEquals(20, limit.getLimit());
+    }
+
+    @Test
+    public void testRejected() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("/", new GradientLimit(4, 4, 4, 0.2, 0, 1.5));
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(limiter.tryAcquire());
+        }
+        Assert.assertFalse(limiter.tryAcquire());
+        Assert.assertEquals(1, limiter.getRejected());
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(10), false);
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertEquals(4, limiter.getInFlight());
+    }
+
+    private static void assertConverges(AdaptiveLimiter limiter) {
+        Downstream downstream = new Downstream(limiter, 40, 20);
+        Window before = downstream.run(30000, 10000);
+        // the downstream service is slower and has fewer workers.
+        downstream.workers = new long[10];
+        downstream.serviceTime = 40;
+        Window after = downstream.run(60000, 10000);
+
+        Assert.assertTrue(before.toString(), before.limit() >= 40 && before.limit() <= 120);
+        Assert.assertTrue(before.toString(), before.rtt() < 20 * 2.5);
+        Assert.assertTrue(after.toString(), after.limit() >= 10 && after.limit() <= 30);
+        Assert.assertTrue(after.toString(), after.rtt() < 40 * 2.5);
+        Assert.assertTrue(after.toString(), after.maxQueue < 30);
+    }
+
+    /**
+     * The RTT and the limit that are averaged over the last part of a phase of the simulation.
+     */
+    private static class Window {
+        long limitSum;
+        long ticks;
+        long rttSum;
+        long completed;
+        int maxQueue;
+
+        double limit() {
+            return (double)limitSum / ticks;
+        }
+
+        double rtt() {
+            return (double)rttSum / completed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("limit=%.1f rtt=%.1fms maxQueue=%d", limit(), rtt(), maxQueue);
+        }
+    }
+
+    private static class Downstream {
+        final AdaptiveLimiter limiter;
+        final Deque<long[]> queue = new ArrayDeque<>();
+        final Random random = new Random(1);
+        long[] workers;
+        long[] started;
+        long serviceTime;
+        long now;
+
+        Downstream(AdaptiveLimiter limiter, int workers, long serviceTime) {
+            this.limiter = limiter;
+            this.workers = new long[workers];
+            this.serviceTime = serviceTime;
+        }
+
+        /**
+         * Run the simulation for the duration in virtual milliseconds, and measure the last window.
+         */
+        Window run(long duration, long window) {
+            Window result = new Window();
+            // the requests of the workers of the previous phase are completed by the new workers.
+            Deque<Long> pending = new ArrayDeque<>();
+            if(started != null) {
+                for(int i = 0; i < started.length; i++) {
+                    if(started[i] >= 0) pending.add(started[i]);
+                }
+            }
+            started = new long[workers.length];
+            for(int i = 0; i < workers.length; i++) {
+                started[i] = -1;
+                Long start = pending.poll();
+                if(start != null) {
+                    started[i] = start;
+                    workers[i] = now + serviceTime;
+                }
+            }
+            for(Long start : pending) {
+                queue.addFirst(new long[] {start});
+            }
+            long end = now + duration;
+            for(; now < end; now++) {
+                boolean measured = end - now <= window;
+                for(int i = 0; i < workers.length; i++) {
+                    if(started[i] >= 0 && workers[i] <= now) {
+                        long rtt = now - started[i];
+                        limiter.release(TimeUnit.MILLISECONDS.toNanos(rtt), false);
+                        started[i] = -1;
+                        if(measured) {
+                            result.rttSum += rtt;
+                            result.completed++;
+                        }
+                    }
+                }
+                for(int i = 0; i < ARRIVALS_PER_MS; i++) {
+                    if(limiter.tryAcquire()) queue.add(new long[] {now});
+                }
+                for(int i = 0; i < workers.length && !queue.isEmpty(); i++) {
+                    if(started[i] < 0) {
+                        started[i] = queue.poll()[0];
+                        // the service time varies by 10 percent.
+                        workers[i] = now + serviceTime + random.nextInt((int)serviceTime / 10 + 1);
+                    }
+                }
+                if(measured) {
+                    result.limitSum += limiter.getLimit();
+                    result.ticks++;
+                    result.maxQueue = Math.max(result.maxQueue, queue.size());
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.networknt.limit;
+
+import com.networknt.utility.Constants;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+public class ConcurrentRateLimiterTest {
+
+    @Test
+    public void testByServer() throws Exception {
+        LimitConfig limitConfig = LimitConfig.load();
+        RateLimiter rateLimiter = new ConcurrentRateLimiter(limitConfig);
+        List<RateLimitResponse> responseList = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            responseList.add(rateLimiter.isAllowByServer("/v1/address/1"));
+        }
+        List<RateLimitResponse> rejects = responseList.stream().filter(r -> !r.isAllow()).collect(Collectors.toList());
+        Assert.assertEquals(2, rejects.size());
+        Assert.assertEquals("10/SECONDS", rejects.get(0).getHeaders().get(Constants.RATELIMIT_LIMIT));
+        Assert.assertEquals("0", rejects.get(0).getHeaders().get(Constants.RATELIMIT_REMAINING));
+        Assert.assertEquals("1s", rejects.get(0).getHeaders().get(Constants.RATELIMIT_RESET));
+        // the other prefix has its own quota.
+        Assert.assertTrue(rateLimiter.isAllowByServer("/v2/address").isAllow());
+    }
+
+    @Test
+    public void testByAddressWithPath() throws Exception {
+        LimitConfig limitConfig = LimitConfig.load();
+        limitConfig.setKey(LimitKey.ADDRESS);
+        ConcurrentRateLimiter rateLimiter = new ConcurrentRateLimiter(limitConfig);
+        // 192.168.1.100 has 10/h and 192.168.1.102 has 10/s for /v1/address
+        int allowed = 0;
+        for (int i = 0; i < 20; i++) {
+            if (rateLimiter.isAllowDirect("192.168.1.100", "/v1/address", RateLimiter.ADDRESS_TYPE).isAllow()) allowed++;
+            if (rateLimiter.isAllowDirect("192.168.1.102", "/v1/address", RateLimiter.ADDRESS_TYPE).isAllow()) allowed++;
+        }
+        Assert.assertEquals(20, allowed);
+        Assert.assertEquals(2, rateLimiter.getKeyCount());
+    }
+
+    @Test
+    public void testConcurrentSingleKey() throws Exception {
+        LimitConfig limitConfig = LimitConfig.load();
+        limitConfig.setKey(LimitKey.CLIENT);
+        limitConfig.setRateLimit(Arrays.asList(new LimitQuota(100000, TimeUnit.SECONDS), new LimitQuota(100, TimeUnit.DAYS)));
+        ConcurrentRateLimiter rateLimiter = new ConcurrentRateLimiter(limitConfig);
+        AtomicInteger allowed = new AtomicInteger();
+        Callable<Void> task = () -> {
+            for (int i = 0; i < 50; i++) {
+                if (rateLimiter.isAllowDirect("unknown-client", "/v1/address", RateLimiter.CLIENT_TYPE).isAllow()) {
+                    allowed.incrementAndGet();
+                }
+            }
+            return null;
+        };
+        ExecutorService executorService = Executors.newFixedThreadPool(64);
+        for (Future<Void> future : executorService.invokeAll(Collections.nCopies(64, task))) {
+            future.get();
+        }
+        executorService.shutdown();
+        // the daily quota is the limit and the rejected requests must not consume the per second quota.
+        Assert.assertEquals(100, allowed.get());
+    }
+
+    /**
+     * Address keyed limiting with a million distinct client addresses must keep the number of keys bounded.
+     */
+    @Test
+    public void testMillionAddresses() throws Exception {
+        LimitConfig limitConfig = LimitConfig.load();
+        limitConfig.setKey(LimitKey.ADDRESS);
+        limitConfig.setMaxKeys(10000);
+        ConcurrentRateLimiter rateLimiter = new ConcurrentRateLimiter(limitConfig);
+        int threads = 8;
+        int perThread = 125000;
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger maxKeyCount = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            tasks.add(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    int n = thread * perThread + i;
+                    String address = "10." + (n >>> 16) + "." + ((n >>> 8) & 0xff) + "." + (n & 0xff);
+                    if (!rateLimiter.isAllowDirect(address, "/v1/pets", RateLimiter.ADDRESS_TYPE).isAllow()) {
+                        rejected.incrementAndGet();
+                    }
+                    if ((i & 0xff) == 0) {
+                        maxKeyCount.accumulateAndGet(rateLimiter.getKeyCount(), Math::max);
+                    }
+                }
+                return null;
+            });
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        for (Future<Void> future : executorService.invokeAll(tasks)) {
+            future.get();
+        }
+        executorService.shutdown();
+        Assert.assertEquals(0, rejected.get());
+        Assert.assertTrue("key count " + rateLimiter.getKeyCount(), rateLimiter.getKeyCount() <= 10000 + 10000 / 10);
+        Assert.assertTrue("max key count " + maxKeyCount.get(), maxKeyCount.get() <= 10000 * 2 + threads);
+    }
+
+    /**
+     * Compare the throughput of the RateLimiter and the ConcurrentRateLimiter with 1, 8 and 64 threads. It is
+     * ignored as it takes a while, and it should be run manually when the limiter is changed.
+     */
+    @Ignore
+    @Test
+    public void testThroughput() throws Exception {
+        LimitConfig limitConfig = LimitConfig.load();
+        limitConfig.setKey(LimitKey.ADDRESS);
+        limitConfig.setRateLimit(Collections.singletonList(new LimitQuota(Integer.MAX_VALUE, TimeUnit.SECONDS)));
+        for (int threads : new int[] {1, 8, 64}) {
+            System.out.println("threads = " + threads
+                    + " RateLimiter ops/s = " + throughput(new RateLimiter(limitConfig), threads)
+                    + " ConcurrentRateLimiter ops/s = " + throughput(new ConcurrentRateLimiter(limitConfig), threads));
+        }
+    }
+
+    private long throughput(RateLimiter rateLimiter, int threads) throws Exception {
+        int perThread = 2000000 / threads;
+        Callable<Void> task = () -> {
+            for (int i = 0; i < perThread; i++) {
+                rateLimiter.isAllowDirect("10.0.0." + (i & 0x3f), "/v1/pets", RateLimiter.ADDRESS_TYPE);
+            }
+            return null;
+        };
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        for (Future<Void> future : executorService.invokeAll(Collections.nCopies(threads, task))) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executorService.shutdown();
+        return (long) perThread * threads * TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+}
@@ -0,0 +1,116 @@
+package com.networknt.limit;
+
+import io.undertow.Handlers;
+import io.undertow.Undertow;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Methods;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xnio.management.XnioWorkerMXBean;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The server has two worker threads that are blocked by the test so that the worker pool is saturated, and the
+ * requests are queued or shed by their priority.
+ */
+public class LoadShedHandlerTest {
+    private static final int PORT = 7097;
+    static Undertow server = null;
+    static LoadShedHandler handler = null;
+    static CountDownLatch release = new CountDownLatch(1);
+    static HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @BeforeClass
+    public static void setUp() {
+        handler = new LoadShedHandler();
+        handler.setNext(Handlers.routing()
+                .add(Methods.GET, "/v1/block", LoadShedHandlerTest::block)
+                .add(Methods.GET, "/v1/queued", LoadShedHandlerTest::block)
+                .add(Methods.GET, "/v1/low", exchange -> exchange.getResponseSender().send("low"))
+                .add(Methods.GET, "/health", exchange -> exchange.getResponseSender().send("OK")));
+        server = Undertow.builder()
+                .setWorkerThreads(2)
+                .addHttpListener(PORT, "localhost")
+                .setHandler(handler)
+                .build();
+        server.start();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        release.countDown();
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    private static void block(HttpServerExchange exchange) throws Exception {
+        if (exchange.isInIoThread()) {
+            exchange.dispatch(LoadShedHandlerTest::block);
+            return;
+        }
+        release.await();
+        exchange.getResponseSender().send("done");
+    }
+
+    private static CompletableFuture<HttpResponse<String>> send(String path, String... headers) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + path));
+        if (headers.length > 0) {
+            builder.headers(headers);
+        }
+        return client.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static void await(BooleanSupplier condition) throws Exception {
+        for (int i = 0; i < 200 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    public void testShedByPriority() throws Exception {
+        XnioWorkerMXBean worker = server.getWorker().getMXBean();
+        // nothing is shed before the worker pool is saturated.
+        Assert.assertEquals("low", send("/v1/low").get().body());
+
+        List<CompletableFuture<HttpResponse<String>>> accepted = new ArrayList<>();
+        accepted.add(send("/v1/block"));
+        accepted.add(send("/v1/block"));
+        await(() -> worker.getBusyWorkerThreadCount() == 2);
+
+        HttpResponse<String> response = send("/v1/low").get();
+        Assert.assertEquals(503, response.statusCode());
+        Assert.assertEquals("5", response.headers().firstValue("Retry-After").orElse(null));
+        Assert.assertTrue(response.body(), response.body().contains("ERR10086"));
+        // the protected path cannot be lowered by the config.
+        Assert.assertEquals("OK", send("/health").get().body());
+
+        // the normal requests are queued until the queue threshold of the class is reached.
+        accepted.add(send("/v1/queued"));
+        accepted.add(send("/v1/queued"));
+        await(() -> worker.getWorkerQueueSize() == 2);
+        Assert.assertEquals(503, send("/v1/queued").get().statusCode());
+        // the header raises the priority of the request, but it cannot make it critical.
+        accepted.add(send("/v1/queued", "X-Priority", "critical"));
+        await(() -> worker.getWorkerQueueSize() == 3);
+        Assert.assertEquals(1, handler.getShedCount(LoadShedPriority.LOW));
+        Assert.assertEquals(1, handler.getShedCount(LoadShedPriority.NORMAL));
+
+        release.countDown();
+        for (CompletableFuture<HttpResponse<String>> future : accepted) {
+            Assert.assertEquals("done", future.get().body());
+        }
+    }
+}
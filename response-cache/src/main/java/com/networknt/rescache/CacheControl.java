@@ -0,0 +1,127 @@
+package com.networknt.rescache;
+
+import io.undertow.util.HeaderValues;
+
+import java.util.Locale;
+
+/**
+ * The directives of the Cache-Control headers of a request or a response that are used by the cache. A
+ * directive with a field name argument like no-cache="Set-Cookie" is applied to the whole message, and
+ * a delta-seconds argument that is not a valid number is treated as 0.
+ *
+ * @author Steve Hu
+ */
+final class CacheControl {
+    static final long UNSET = -1;
+    static final CacheControl EMPTY = new CacheControl();
+
+    boolean noStore;
+    boolean noCache;
+    boolean isPrivate;
+    boolean isPublic;
+    boolean mustRevalidate;
+    boolean onlyIfCached;
+    long maxAge = UNSET;
+    long sMaxAge = UNSET;
+    long staleWhileRevalidate = UNSET;
+    long staleIfError = UNSET;
+
+    /**
+     * @param values the values of the Cache-Control headers. It can be null.
+     * @return the parsed directives
+     */
+    static CacheControl parse(HeaderValues values) {
+        if(values == null || values.isEmpty()) {
+            return EMPTY;
+        }
+        CacheControl cacheControl = new CacheControl();
+        for(String value : values) {
+            cacheControl.parse(value);
+        }
+        return cacheControl;
+    }
+
+    private void parse(String value) {
+        int length = value.length();
+        int start = 0;
+        while(start < length) {
+            // find the end of the directive outside of a quoted argument.
+            int end = start;
+            boolean quoted = false;
+            while(end < length) {
+                char c = value.charAt(end);
+                if(c == '"') {
+                    quoted = !quoted;
+                } else if(c == ',' && !quoted) {
+                    break;
+                }
+                end++;
+            }
+            directive(value, start, end);
+            start = end + 1;
+        }
+    }
+
+    private void directive(String value, int start, int end) {
+        int equals = value.indexOf('=', start);
+        String name;
+        String argument = null;
+        if(equals >= 0 && equals < end) {
+            name = value.substring(start, equals).trim().toLowerCase(Locale.ROOT);
+            argument = value.substring(equals + 1, end).trim();
+            if(argument.length() >= 2 && argument.charAt(0) == '"' && argument.charAt(argument.length() - 1) == '"') {
+                argument = argument.substring(1, argument.length() - 1);
+            }
+        } else {
+            name = value.substring(start, end).trim().toLowerCase(Locale.ROOT);
+        }
+        switch(name) {
+            case "no-store":
+                noStore = true;
+                break;
+            case "no-cache":
+                noCache = true;
+                break;
+            case "private":
+                isPrivate = true;
+                break;
+            case "public":
+                isPublic = true;
+                break;
+            case "must-revalidate":
+            case "proxy-revalidate":
+                mustRevalidate = true;
+                break;
+            case "only-if-cached":
+                onlyIfCached = true;
+                break;
+            case "max-age":
+                maxAge = seconds(argument);
+                break;
+            case "s-maxage":
+                sMaxAge = seconds(argument);
+                // s-maxage implies proxy-revalidate for a shared cache.
+                mustRevalidate = true;
+                break;
+            case "stale-while-revalidate":
+                staleWhileRevalidate = seconds(argument);
+                break;
+            case "stale-if-error":
+                staleIfError = seconds(argument);
+                break;
+            default:
+                // the other directives are not used by the cache.
+        }
+    }
+
+    private static long seconds(String argument) {
+        if(argument == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(argument));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
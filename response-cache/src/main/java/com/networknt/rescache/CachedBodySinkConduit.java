@@ -0,0 +1,100 @@
+package com.networknt.rescache;
+
+import org.xnio.IoUtils;
+import org.xnio.channels.StreamSourceChannel;
+import org.xnio.conduits.AbstractStreamSinkConduit;
+import org.xnio.conduits.ConduitWritableByteChannel;
+import org.xnio.conduits.Conduits;
+import org.xnio.conduits.StreamSinkConduit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A conduit that replaces the response body with a cached body. It is used when a revalidation of a stale
+ * response returns 304 to a request that is not conditional, or an error when the stale response can be
+ * served instead. The body written by the previous handler is discarded, and the cached body is written to
+ * the next conduit in flush once the writes are terminated, so it never blocks the IO thread.
+ *
+ * @author Steve Hu
+ */
+final class CachedBodySinkConduit extends AbstractStreamSinkConduit<StreamSinkConduit> {
+    private final byte[] body;
+    private ByteBuffer pending;
+    private boolean terminated;
+    private boolean nextTerminated;
+
+    CachedBodySinkConduit(StreamSinkConduit next, byte[] body) {
+        super(next);
+        this.body = body;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        int remaining = src.remaining();
+        src.position(src.limit());
+        return remaining;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offs, int len) {
+        long written = 0;
+        for(int i = offs; i < offs + len; i++) {
+            written += write(srcs[i]);
+        }
+        return written;
+    }
+
+    @Override
+    public int writeFinal(ByteBuffer src) throws IOException {
+        return Conduits.writeFinalBasic(this, src);
+    }
+
+    @Override
+    public long writeFinal(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        return Conduits.writeFinalBasic(this, srcs, offset, length);
+    }
+
+    @Override
+    public long transferFrom(FileChannel src, long position, long count) throws IOException {
+        return src.transferTo(position, count, new ConduitWritableByteChannel(this));
+    }
+
+    @Override
+    public long transferFrom(StreamSourceChannel source, long count, ByteBuffer throughBuffer) throws IOException {
+        return IoUtils.transfer(source, count, throughBuffer, new ConduitWritableByteChannel(this));
+    }
+
+    @Override
+    public void terminateWrites() {
+        if(!terminated) {
+            terminated = true;
+            pending = ByteBuffer.wrap(body);
+        }
+    }
+
+    @Override
+    public boolean flush() throws IOException {
+        if(pending != null) {
+            while(pending.hasRemaining()) {
+                if(next.write(pending) == 0) {
+                    // the caller of flush waits for the next conduit to become writable.
+                    return false;
+                }
+            }
+            pending = null;
+        }
+        if(terminated && !nextTerminated) {
+            next.terminateWrites();
+            nextTerminated = true;
+        }
+        return next.flush();
+    }
+
+    @Override
+    public void truncateWrites() throws IOException {
+        pending = null;
+        next.truncateWrites();
+    }
+}
@@ -0,0 +1,195 @@
+package com.networknt.rescache;
+
+import io.undertow.util.DateUtils;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * An immutable response in the cache with the values that are needed to calculate its age and freshness
+ * as described in RFC 7234 section 4.2. The times are in milliseconds and the ages and lifetimes are in
+ * seconds. There is no heuristic freshness, so a response without max-age, s-maxage or Expires is stale
+ * as soon as it is stored and it is revalidated with its ETag or Last-Modified on the next request.
+ *
+ * @author Steve Hu
+ */
+final class CachedResponse {
+    // the hop-by-hop headers and the headers that are calculated when the response is served.
+    private static final Set<HttpString> EXCLUDED_HEADERS = Set.of(Headers.CONNECTION, Headers.KEEP_ALIVE,
+            Headers.PROXY_AUTHENTICATE, Headers.PROXY_AUTHORIZATION, Headers.TE, Headers.TRAILER, Headers.TRANSFER_ENCODING,
+            Headers.UPGRADE, Headers.CONTENT_LENGTH, Headers.AGE);
+
+    final int status;
+    final HeaderMap headers;
+    final byte[] body;
+    final CacheControl cacheControl;
+    final String etag;
+    final String lastModified;
+    final long responseTime;
+    final long correctedInitialAge;
+    final long freshnessLifetime;
+
+    private CachedResponse(int status, HeaderMap headers, byte[] body, long requestTime, long responseTime) {
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+        this.responseTime = responseTime;
+        this.cacheControl = CacheControl.parse(headers.get(Headers.CACHE_CONTROL));
+        this.etag = headers.getFirst(Headers.ETAG);
+        this.lastModified = headers.getFirst(Headers.LAST_MODIFIED);
+
+        long date = time(headers.getFirst(Headers.DATE), responseTime);
+        if(date == 0) {
+            date = responseTime;
+        }
+        long apparentAge = Math.max(0, responseTime - date) / 1000;
+        long responseDelay = Math.max(0, responseTime - requestTime) / 1000;
+        this.correctedInitialAge = Math.max(apparentAge, seconds(headers.getFirst(Headers.AGE)) + responseDelay);
+
+        if(cacheControl.noCache) {
+            freshnessLifetime = 0;
+        } else if(cacheControl.sMaxAge != CacheControl.UNSET) {
+            freshnessLifetime = cacheControl.sMaxAge;
+        } else if(cacheControl.maxAge != CacheControl.UNSET) {
+            freshnessLifetime = cacheControl.maxAge;
+        } else if(headers.contains(Headers.EXPIRES)) {
+            // an invalid Expires like 0 means already expired.
+            freshnessLifetime = Math.max(0, time(headers.getFirst(Headers.EXPIRES), date) - date) / 1000;
+        } else {
+            freshnessLifetime = 0;
+        }
+    }
+
+    /**
+     * Create a cached response from the response of the origin server.
+     *
+     * @param status the status code
+     * @param responseHeaders the response headers
+     * @param body the response body
+     * @param requestTime the time the request is sent
+     * @param responseTime the time the response is received
+     * @return the cached response
+     */
+    static CachedResponse create(int status, HeaderMap responseHeaders, byte[] body, long requestTime, long responseTime) {
+        return new CachedResponse(status, copy(responseHeaders, new HeaderMap()), body, requestTime, responseTime);
+    }
+
+    /**
+     * Freshen the response with the headers of a 304 response to a conditional request as described in
+     * RFC 7234 section 4.3.4. The headers of the 304 response replace the stored ones.
+     *
+     * @param notModifiedHeaders the headers of the 304 response
+     * @param requestTime the time the conditional request is sent
+     * @param responseTime the time the 304 response is received
+     * @return the freshened response
+     */
+    CachedResponse freshen(HeaderMap notModifiedHeaders, long requestTime, long responseTime) {
+        HeaderMap merged = copy(headers, new HeaderMap());
+        for(HeaderValues values : notModifiedHeaders) {
+            if(!EXCLUDED_HEADERS.contains(values.getHeaderName())) {
+                merged.putAll(values.getHeaderName(), values);
+            }
+        }
+        return new CachedResponse(status, merged, body, requestTime, responseTime);
+    }
+
+    /**
+     * @param now the current time
+     * @return the current age in seconds
+     */
+    long age(long now) {
+        return correctedInitialAge + Math.max(0, now - responseTime) / 1000;
+    }
+
+    boolean isFresh(long age) {
+        return age < freshnessLifetime;
+    }
+
+    /**
+     * @return the approximate size in bytes of the response in the cache
+     */
+    int weight() {
+        int weight = 256 + body.length;
+        for(HeaderValues values : headers) {
+            weight += values.getHeaderName().length();
+            for(String value : values) {
+                weight += value.length();
+            }
+        }
+        return weight;
+    }
+
+    boolean hasValidator() {
+        return etag != null || lastModified != null;
+    }
+
+    /**
+     * @return true if the stale response can be served while another request revalidates it
+     */
+    boolean isStaleWhileRevalidate(long age) {
+        return !cacheControl.mustRevalidate && !cacheControl.noCache
+                && cacheControl.staleWhileRevalidate != CacheControl.UNSET && age < freshnessLifetime + cacheControl.staleWhileRevalidate;
+    }
+
+    /**
+     * @return true if the stale response can be served when the origin server responds with an error
+     */
+    boolean isStaleIfError(long age) {
+        return !cacheControl.mustRevalidate && !cacheControl.noCache
+                && cacheControl.staleIfError != CacheControl.UNSET && age < freshnessLifetime + cacheControl.staleIfError;
+    }
+
+    /**
+     * Copy the headers that are served from the cache.
+     *
+     * @param source the source headers
+     * @param target the target headers
+     * @return the target headers
+     */
+    static HeaderMap copy(HeaderMap source, HeaderMap target) {
+        Set<String> connectionHeaders = null;
+        HeaderValues connection = source.get(Headers.CONNECTION);
+        if(connection != null) {
+            // the headers listed in the Connection header are hop-by-hop as well.
+            connectionHeaders = new HashSet<>();
+            for(String value : connection) {
+                for(String name : value.split(",")) {
+                    connectionHeaders.add(name.trim().toLowerCase());
+                }
+            }
+        }
+        for(HeaderValues values : source) {
+            HttpString name = values.getHeaderName();
+            if(EXCLUDED_HEADERS.contains(name) || connectionHeaders != null && connectionHeaders.contains(name.toString().toLowerCase())) {
+                continue;
+            }
+            target.putAll(name, values);
+        }
+        return target;
+    }
+
+    private static long time(String value, long defaultTime) {
+        if(value == null) {
+            return defaultTime;
+        }
+        Date date = DateUtils.parseDate(value);
+        // an invalid date is in the past.
+        return date == null ? 0 : date.getTime();
+    }
+
+    private static long seconds(String value) {
+        if(value == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.networknt.rescache;
+
+import org.xnio.IoUtils;
+import org.xnio.channels.StreamSourceChannel;
+import org.xnio.conduits.AbstractStreamSinkConduit;
+import org.xnio.conduits.ConduitWritableByteChannel;
+import org.xnio.conduits.Conduits;
+import org.xnio.conduits.StreamSinkConduit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A conduit that passes the response body to the next conduit and keeps a copy of the bytes that are accepted
+ * by it. The copy is dropped as soon as it is bigger than the maximum size, and the response is not cached.
+ * The listener is called with the copy, or null if it is dropped, when the writes are terminated. If the length of
+ * the response is known, the listener is called before the last bytes are passed to the next conduit so that the
+ * response is cached before the client can send its next request.
+ *
+ * @author Steve Hu
+ */
+final class CachingSinkConduit extends AbstractStreamSinkConduit<StreamSinkConduit> {
+    private static final int INITIAL_SIZE = 4096;
+    private final int maxSize;
+    private final long contentLength;
+    private byte[] data;
+    private int size;
+    private boolean overflow;
+    private boolean terminated;
+    private boolean truncated;
+    private boolean complete;
+    private final Consumer<byte[]> listener;
+
+    CachingSinkConduit(StreamSinkConduit next, int maxSize, Consumer<byte[]> listener) {
+        this(next, maxSize, -1, listener);
+    }
+
+    CachingSinkConduit(StreamSinkConduit next, int maxSize, long contentLength, Consumer<byte[]> listener) {
+        super(next);
+        this.maxSize = maxSize;
+        this.contentLength = contentLength;
+        this.listener = listener;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if(completes(src.remaining())) {
+            capture(src, src.position(), src.remaining());
+            complete();
+            return next.write(src);
+        }
+        int position = src.position();
+        int written = next.write(src);
+        capture(src, position, written);
+        return written;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offs, int len) throws IOException {
+        long remaining = 0;
+        for(int i = 0; i < len; i++) {
+            remaining += srcs[offs + i].remaining();
+        }
+        if(completes(remaining)) {
+            for(int i = 0; i < len; i++) {
+                ByteBuffer src = srcs[offs + i];
+                capture(src, src.position(), src.remaining());
+            }
+            complete();
+            return next.write(srcs, offs, len);
+        }
+        int[] positions = new int[len];
+        for(int i = 0; i < len; i++) {
+            positions[i] = srcs[offs + i].position();
+        }
+        long written = next.write(srcs, offs, len);
+        for(int i = 0; i < len; i++) {
+            ByteBuffer src = srcs[offs + i];
+            capture(src, positions[i], src.position() - positions[i]);
+        }
+        return written;
+    }
+
+    @Override
+    public int writeFinal(ByteBuffer src) throws IOException {
+        return Conduits.writeFinalBasic(this, src);
+    }
+
+    @Override
+    public long writeFinal(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        return Conduits.writeFinalBasic(this, srcs, offset, length);
+    }
+
+    @Override
+    public long transferFrom(FileChannel src, long position, long count) throws IOException {
+        return src.transferTo(position, count, new ConduitWritableByteChannel(this));
+    }
+
+    @Override
+    public long transferFrom(StreamSourceChannel source, long count, ByteBuffer throughBuffer) throws IOException {
+        return IoUtils.transfer(source, count, throughBuffer, new ConduitWritableByteChannel(this));
+    }
+
+    @Override
+    public void terminateWrites() throws IOException {
+        if(!terminated) {
+            terminated = true;
+            if(!complete) listener.accept(getBody());
+        }
+        next.terminateWrites();
+    }
+
+    @Override
+    public void truncateWrites() throws IOException {
+        truncated = true;
+        data = null;
+        next.truncateWrites();
+    }
+
+    /**
+     * @return true if the bytes complete the body of the known length
+     */
+    private boolean completes(long remaining) {
+        return !complete && contentLength >= 0 && !overflow && !truncated && remaining > 0 && size + remaining >= contentLength;
+    }
+
+    /**
+     * The whole body is copied, and the bytes that the next conduit doesn't accept now are not copied again.
+     */
+    private void complete() {
+        complete = true;
+        listener.accept(getBody());
+    }
+
+    /**
+     * @return the copy of the body or null if the body is bigger than the maximum size or not completely written
+     */
+    private byte[] getBody() {
+        if(overflow || truncated || !terminated && !complete) {
+            return null;
+        }
+        if(data == null) {
+            return new byte[0];
+        }
+        return data.length == size ? data : Arrays.copyOf(data, size);
+    }
+
+    private void capture(ByteBuffer src, int position, int length) {
+        if(length <= 0 || overflow || truncated || complete) {
+            return;
+        }
+        if(size + length > maxSize) {
+            overflow = true;
+            data = null;
+            return;
+        }
+        if(data == null) {
+            data = new byte[Math.min(maxSize, Math.max(INITIAL_SIZE, length))];
+        } else if(size + length > data.length) {
+            data = Arrays.copyOf(data, Math.min(maxSize, Math.max(size + length, data.length * 2)));
+        }
+        ByteBuffer copy = src.duplicate();
+        copy.position(position);
+        copy.get(data, size, length);
+        size += length;
+    }
+}
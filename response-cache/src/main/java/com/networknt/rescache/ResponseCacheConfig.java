@@ -0,0 +1,161 @@
+package com.networknt.rescache;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.networknt.config.Config;
+import com.networknt.config.ConfigException;
+import com.networknt.utility.PathPrefixMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The config of the ResponseCacheHandler in response-cache.yml.
+ *
+ * @author Steve Hu
+ */
+public class ResponseCacheConfig {
+    private static final Logger logger = LoggerFactory.getLogger(ResponseCacheConfig.class);
+    public static final String CONFIG_NAME = "response-cache";
+    private static final String ENABLED = "enabled";
+    private static final String CACHE_NAME = "cacheName";
+    private static final String MAX_SIZE = "maxSize";
+    private static final String EXPIRY_IN_MINUTES = "expiryInMinutes";
+    private static final String MAX_ENTRY_SIZE = "maxEntrySize";
+    private static final String MAX_MEMORY_SIZE = "maxMemorySize";
+    private static final String APPLIED_PATH_PREFIXES = "appliedPathPrefixes";
+
+    private boolean enabled;
+    private String cacheName = "response";
+    private int maxSize = 1000;
+    private int expiryInMinutes = 60;
+    private int maxEntrySize = 1024 * 1024;
+    private long maxMemorySize = 64L * 1024 * 1024;
+    private List<String> appliedPathPrefixes;
+    private volatile PathPrefixMatcher<Boolean> appliedPathPrefixMatcher = PathPrefixMatcher.empty();
+
+    private Map<String, Object> mappedConfig;
+    private final Config config;
+
+    private ResponseCacheConfig() {
+        this(CONFIG_NAME);
+    }
+
+    /**
+     * Please note that this constructor is only for testing to load different config files
+     * to test different configurations.
+     *
+     * @param configName String
+     */
+    private ResponseCacheConfig(String configName) {
+        config = Config.getInstance();
+        mappedConfig = config.getJsonMapConfigNoCache(configName);
+        setConfigData();
+        setConfigList();
+    }
+
+    public static ResponseCacheConfig load() {
+        return new ResponseCacheConfig();
+    }
+
+    public static ResponseCacheConfig load(String configName) {
+        return new ResponseCacheConfig(configName);
+    }
+
+    void reload() {
+        mappedConfig = config.getJsonMapConfigNoCache(CONFIG_NAME);
+        setConfigData();
+        setConfigList();
+    }
+
+    public Map<String, Object> getMappedConfig() {
+        return mappedConfig;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getExpiryInMinutes() {
+        return expiryInMinutes;
+    }
+
+    public int getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    public long getMaxMemorySize() {
+        return maxMemorySize;
+    }
+
+    public List<String> getAppliedPathPrefixes() {
+        return appliedPathPrefixes;
+    }
+
+    /**
+     * @return PathPrefixMatcher of the appliedPathPrefixes. It is empty if all the paths are cached.
+     */
+    public PathPrefixMatcher<Boolean> getAppliedPathPrefixMatcher() {
+        return appliedPathPrefixMatcher;
+    }
+
+    private void setConfigData() {
+        Object object = mappedConfig.get(ENABLED);
+        if(object != null) enabled = (Boolean)object;
+        object = mappedConfig.get(CACHE_NAME);
+        if(object != null) cacheName = (String)object;
+        object = mappedConfig.get(MAX_SIZE);
+        if(object != null) maxSize = (Integer)object;
+        object = mappedConfig.get(EXPIRY_IN_MINUTES);
+        if(object != null) expiryInMinutes = (Integer)object;
+        object = mappedConfig.get(MAX_ENTRY_SIZE);
+        if(object != null) maxEntrySize = (Integer)object;
+        object = mappedConfig.get(MAX_MEMORY_SIZE);
+        if(object != null) maxMemorySize = ((Number)object).longValue();
+    }
+
+    private void setConfigList() {
+        appliedPathPrefixes = new ArrayList<>();
+        Object object = mappedConfig.get(APPLIED_PATH_PREFIXES);
+        if(object != null) {
+            if(object instanceof String) {
+                String s = ((String)object).trim();
+                if(logger.isTraceEnabled()) logger.trace("appliedPathPrefixes s = " + s);
+                if(s.startsWith("[")) {
+                    // json format
+                    try {
+                        appliedPathPrefixes = Config.getInstance().getMapper().readValue(s, new TypeReference<List<String>>() {});
+                    } catch (Exception e) {
+                        throw new ConfigException("could not parse the appliedPathPrefixes json with a list of strings.");
+                    }
+                } else if(!s.isEmpty()) {
+                    // comma separated
+                    appliedPathPrefixes = Arrays.asList(s.split("\\s*,\\s*"));
+                }
+            } else if (object instanceof List) {
+                for(Object item : (List<?>)object) {
+                    appliedPathPrefixes.add((String)item);
+                }
+            } else {
+                throw new ConfigException("appliedPathPrefixes must be a string or a list of strings.");
+            }
+        }
+        Map<String, Boolean> prefixes = new HashMap<>();
+        for(String prefix : appliedPathPrefixes) {
+            prefixes.put(prefix, Boolean.TRUE);
+        }
+        appliedPathPrefixMatcher = PathPrefixMatcher.compile(prefixes);
+    }
+}
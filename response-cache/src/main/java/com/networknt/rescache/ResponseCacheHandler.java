@@ -0,0 +1,501 @@
+package com.networknt.rescache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Weigher;
+import com.networknt.cache.CacheManager;
+import com.networknt.cache.CaffeineCacheManager;
+import com.networknt.handler.Handler;
+import com.networknt.handler.MiddlewareHandler;
+import com.networknt.service.SingletonServiceFactory;
+import com.networknt.utility.ModuleRegistry;
+import io.undertow.Handlers;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.ConduitFactory;
+import io.undertow.util.DateUtils;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.Methods;
+import io.undertow.util.StatusCodes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnio.conduits.StreamSinkConduit;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A shared HTTP cache in front of the proxy handler of the light-gateway or http-sidecar that follows the
+ * caching semantics of RFC 7234. The responses to GET requests are stored in a cache of the CacheManager and
+ * served to the GET and HEAD requests without going to the backend while they are fresh.
+ * <p>
+ * An entry is keyed by the method, the normalized URL and the values of the request headers that are listed
+ * in the Vary header of the response. The Vary header names of a URL and the keys of its variants are kept in
+ * a separate index entry so that the key of a request can be built before the response is known, and all the
+ * variants of the URL can be invalidated together. A variant is only served if it is in the current index.
+ * When the handler creates the cache, it is bounded by the total size of the responses.
+ * <p>
+ * A response is stored if the request and the response don't have no-store, the response is not private and
+ * doesn't set a cookie, its status is cacheable by default and it has an explicit freshness lifetime or a
+ * validator. A request with an Authorization header is only cached if the response is public, or it has
+ * s-maxage or must-revalidate.
+ * <p>
+ * A stale entry is revalidated by passing the request to the next handler with If-None-Match and
+ * If-Modified-Since built from its ETag and Last-Modified. A 304 response freshens the entry and the cached
+ * body is sent to the client. If the response has stale-while-revalidate, the other requests for the entry
+ * are served the stale response while the revalidation is in progress. As the handler chain always runs
+ * on the exchange of a client, there is no background request, and the request that finds the entry stale
+ * first is the one that revalidates it. If the response has stale-if-error, the stale response is served
+ * when the revalidation returns a 5xx error.
+ * <p>
+ * A successful POST, PUT, PATCH or DELETE request invalidates the entries of its URL.
+ *
+ * @author Steve Hu
+ */
+public class ResponseCacheHandler implements MiddlewareHandler {
+    private static final Logger logger = LoggerFactory.getLogger(ResponseCacheHandler.class);
+    private static final String VARY_PREFIX = "VARY ";
+    private static final String[] NO_VARY = new String[0];
+    private static final Weigher<Object, Object> WEIGHER = (key, value) -> ((String)key).length()
+            + (value instanceof CachedResponse ? ((CachedResponse)value).weight() : 256);
+    // the status codes that are cacheable by default in RFC 7231 section 6.1.
+    private static final Set<Integer> CACHEABLE_STATUS = Set.of(200, 203, 204, 300, 301, 404, 405, 410, 414, 501);
+    private static final Set<HttpString> UNSAFE_METHODS = Set.of(Methods.POST, Methods.PUT, Methods.PATCH, Methods.DELETE);
+
+    public static ResponseCacheConfig config;
+
+    private volatile HttpHandler next;
+    private volatile Cache<Object, Object> cache;
+    // the keys of the entries that are being revalidated by a request.
+    private final Map<String, Boolean> revalidating = new ConcurrentHashMap<>();
+
+    public ResponseCacheHandler() {
+        config = ResponseCacheConfig.load();
+        cache = createCache(config);
+        if(logger.isInfoEnabled()) logger.info("ResponseCacheHandler is loaded.");
+    }
+
+    /**
+     * This is the constructor that is not supposed to be used. It should only be called by the test cases
+     * to load different configuration for testing.
+     * @param configName configuration file name
+     */
+    @Deprecated
+    public ResponseCacheHandler(String configName) {
+        config = ResponseCacheConfig.load(configName);
+        cache = createCache(config);
+        if(logger.isInfoEnabled()) logger.info("ResponseCacheHandler is loaded.");
+    }
+
+    /**
+     * Find the cache with the configured name in the CacheManager. The cache is created if it is not defined
+     * in cache.yml, and a CaffeineCacheManager is registered if there is no cache manager at all.
+     */
+    private static Cache<Object, Object> createCache(ResponseCacheConfig config) {
+        CacheManager cacheManager = CacheManager.getInstance();
+        if(cacheManager == null) {
+            cacheManager = SingletonServiceFactory.getBean(CacheManager.class);
+        }
+        if(cacheManager == null) {
+            cacheManager = new CaffeineCacheManager();
+            SingletonServiceFactory.setBean(CacheManager.class.getName(), cacheManager);
+        }
+        Cache<Object, Object> cache = cacheManager.getCache(config.getCacheName());
+        if(cache == null) {
+            try {
+                cacheManager.addCache(config.getCacheName(), config.getMaxMemorySize(), WEIGHER, config.getExpiryInMinutes());
+            } catch (UnsupportedOperationException e) {
+                cacheManager.addCache(config.getCacheName(), config.getMaxSize(), config.getExpiryInMinutes());
+            }
+            cache = cacheManager.getCache(config.getCacheName());
+        }
+        return cache;
+    }
+
+    @Override
+    public void handleRequest(final HttpServerExchange exchange) throws Exception {
+        if(logger.isDebugEnabled()) logger.debug("ResponseCacheHandler.handleRequest starts.");
+        HttpString method = exchange.getRequestMethod();
+        boolean get = Methods.GET.equals(method);
+        if(!get && !Methods.HEAD.equals(method) || !isApplied(exchange.getRequestPath())) {
+            if(UNSAFE_METHODS.contains(method)) {
+                invalidateOnSuccess(exchange);
+            }
+            if(logger.isDebugEnabled()) logger.debug("ResponseCacheHandler.handleRequest ends.");
+            Handler.next(exchange, next);
+            return;
+        }
+        HeaderMap requestHeaders = exchange.getRequestHeaders();
+        CacheControl requestCacheControl = CacheControl.parse(requestHeaders.get(Headers.CACHE_CONTROL));
+        if(requestCacheControl.noStore) {
+            if(logger.isDebugEnabled()) logger.debug("ResponseCacheHandler.handleRequest ends with no-store.");
+            Handler.next(exchange, next);
+            return;
+        }
+        String primaryKey = primaryKey(exchange);
+        String key = null;
+        CachedResponse entry = null;
+        VaryIndex index = (VaryIndex)cache.getIfPresent(VARY_PREFIX + primaryKey);
+        if(index != null) {
+            key = variantKey(primaryKey, index.names, requestHeaders);
+            // a variant that is not in the index is left from before an invalidation.
+            if(index.keys.contains(key)) entry = (CachedResponse)cache.getIfPresent(key);
+        }
+        long now = System.currentTimeMillis();
+        boolean noCache = requestCacheControl.noCache
+                || requestCacheControl == CacheControl.EMPTY && hasNoCachePragma(requestHeaders);
+        if(entry != null && !noCache) {
+            long age = entry.age(now);
+            if(entry.isFresh(age) && (requestCacheControl.maxAge == CacheControl.UNSET || age <= requestCacheControl.maxAge)) {
+                if(logger.isTraceEnabled()) logger.trace("Serve the fresh response of {} with age {}", key, age);
+                serve(exchange, entry, age);
+                return;
+            }
+            if(entry.isStaleWhileRevalidate(age) && revalidating.containsKey(key)) {
+                if(logger.isTraceEnabled()) logger.trace("Serve the stale response of {} while it is revalidated", key);
+                serve(exchange, entry, age);
+                return;
+            }
+        }
+        if(requestCacheControl.onlyIfCached) {
+            exchange.setStatusCode(StatusCodes.GATEWAY_TIME_OUT);
+            exchange.endExchange();
+            return;
+        }
+        CacheExchange cacheExchange = new CacheExchange(primaryKey, get, now);
+        if(entry != null && revalidating.putIfAbsent(key, Boolean.TRUE) == null) {
+            cacheExchange.revalidationKey = key;
+            cacheExchange.stale = entry;
+            // keep the conditional headers of the client, and the 304 response is passed to the client.
+            if(entry.hasValidator() && !requestHeaders.contains(Headers.IF_NONE_MATCH) && !requestHeaders.contains(Headers.IF_MODIFIED_SINCE)) {
+                if(entry.etag != null) requestHeaders.put(Headers.IF_NONE_MATCH, entry.etag);
+                if(entry.lastModified != null) requestHeaders.put(Headers.IF_MODIFIED_SINCE, entry.lastModified);
+                cacheExchange.conditional = true;
+            }
+        }
+        exchange.addResponseWrapper(cacheExchange::wrap);
+        exchange.addExchangeCompleteListener((ex, nextListener) -> {
+            try {
+                cacheExchange.complete(ex);
+            } catch (Throwable e) {
+                logger.error("Failed to cache the response of " + primaryKey, e);
+            } finally {
+                if(cacheExchange.revalidationKey != null) {
+                    revalidating.remove(cacheExchange.revalidationKey);
+                }
+                nextListener.proceed();
+            }
+        });
+        if(logger.isDebugEnabled()) logger.debug("ResponseCacheHandler.handleRequest ends.");
+        Handler.next(exchange, next);
+    }
+
+    private boolean isApplied(String requestPath) {
+        return config.getAppliedPathPrefixMatcher().isEmpty() || config.getAppliedPathPrefixMatcher().match(requestPath) != null;
+    }
+
+    /**
+     * Invalidate the entries of the URL when the response of an unsafe method is successful. It is done when the
+     * response starts so that the next request of the client doesn't find the entries.
+     */
+    private void invalidateOnSuccess(HttpServerExchange exchange) {
+        String primaryKey = primaryKey(exchange);
+        exchange.addResponseWrapper((factory, ex) -> {
+            if(ex.getStatusCode() >= 200 && ex.getStatusCode() < 400) {
+                invalidate(primaryKey);
+            }
+            return factory.create();
+        });
+    }
+
+    /**
+     * Invalidate the index and all the variants of the URL.
+     */
+    void invalidate(String primaryKey) {
+        VaryIndex index = (VaryIndex)cache.asMap().remove(VARY_PREFIX + primaryKey);
+        if(index != null) {
+            cache.invalidateAll(index.keys);
+        }
+        cache.invalidate(primaryKey);
+    }
+
+    /**
+     * Send a cached response to the client, or a 304 response if the conditional headers of the request match.
+     */
+    private static void serve(HttpServerExchange exchange, CachedResponse entry, long age) {
+        HeaderMap responseHeaders = exchange.getResponseHeaders();
+        if(entry.status == StatusCodes.OK && isNotModified(exchange.getRequestHeaders(), entry)) {
+            exchange.setStatusCode(StatusCodes.NOT_MODIFIED);
+            for(HttpString name : new HttpString[]{Headers.CACHE_CONTROL, Headers.CONTENT_LOCATION, Headers.DATE, Headers.ETAG, Headers.EXPIRES, Headers.VARY, Headers.LAST_MODIFIED}) {
+                HeaderValues values = entry.headers.get(name);
+                if(values != null) responseHeaders.putAll(name, values);
+            }
+            responseHeaders.put(Headers.AGE, age);
+            exchange.endExchange();
+            return;
+        }
+        exchange.setStatusCode(entry.status);
+        CachedResponse.copy(entry.headers, responseHeaders);
+        responseHeaders.put(Headers.AGE, age);
+        responseHeaders.put(Headers.CONTENT_LENGTH, entry.body.length);
+        exchange.getResponseSender().send(ByteBuffer.wrap(entry.body));
+    }
+
+    private static boolean isNotModified(HeaderMap requestHeaders, CachedResponse entry) {
+        HeaderValues ifNoneMatch = requestHeaders.get(Headers.IF_NONE_MATCH);
+        if(ifNoneMatch != null) {
+            if(entry.etag == null) return false;
+            String etag = weak(entry.etag);
+            for(String value : ifNoneMatch) {
+                for(String tag : value.split(",")) {
+                    tag = tag.trim();
+                    if("*".equals(tag) || weak(tag).equals(etag)) return true;
+                }
+            }
+            return false;
+        }
+        String ifModifiedSince = requestHeaders.getFirst(Headers.IF_MODIFIED_SINCE);
+        if(ifModifiedSince != null && entry.lastModified != null) {
+            Date since = DateUtils.parseDate(ifModifiedSince);
+            Date lastModified = DateUtils.parseDate(entry.lastModified);
+            return since != null && lastModified != null && !lastModified.after(since);
+        }
+        return false;
+    }
+
+    private static String weak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private static boolean hasNoCachePragma(HeaderMap requestHeaders) {
+        HeaderValues pragma = requestHeaders.get(Headers.PRAGMA);
+        if(pragma != null) {
+            for(String value : pragma) {
+                if(value.toLowerCase(Locale.ROOT).contains("no-cache")) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The key of the URL. The scheme and host are lower case, the default port is removed and the query
+     * parameters are sorted so that the same resource has the same key.
+     */
+    static String primaryKey(HttpServerExchange exchange) {
+        String scheme = exchange.getRequestScheme().toLowerCase(Locale.ROOT);
+        String host = exchange.getHostAndPort().toLowerCase(Locale.ROOT);
+        if("http".equals(scheme) && host.endsWith(":80")) {
+            host = host.substring(0, host.length() - 3);
+        } else if("https".equals(scheme) && host.endsWith(":443")) {
+            host = host.substring(0, host.length() - 4);
+        }
+        StringBuilder sb = new StringBuilder(64).append("GET ").append(scheme).append("://").append(host).append(exchange.getRequestPath());
+        String query = exchange.getQueryString();
+        if(query != null && !query.isEmpty()) {
+            String[] parameters = query.split("&");
+            Arrays.sort(parameters);
+            sb.append('?');
+            for(int i = 0; i < parameters.length; i++) {
+                if(i > 0) sb.append('&');
+                sb.append(parameters[i]);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the lower case names of the Vary header sorted, or null if it contains *
+     */
+    static String[] varyHeaders(HeaderMap responseHeaders) {
+        HeaderValues values = responseHeaders.get(Headers.VARY);
+        if(values == null) return NO_VARY;
+        List<String> names = new ArrayList<>();
+        for(String value : values) {
+            for(String name : value.split(",")) {
+                name = name.trim().toLowerCase(Locale.ROOT);
+                if("*".equals(name)) return null;
+                if(!name.isEmpty() && !names.contains(name)) names.add(name);
+            }
+        }
+        String[] result = names.toArray(NO_VARY);
+        Arrays.sort(result);
+        return result;
+    }
+
+    static String variantKey(String primaryKey, String[] vary, HeaderMap requestHeaders) {
+        if(vary.length == 0) return primaryKey;
+        StringBuilder sb = new StringBuilder(primaryKey);
+        for(String name : vary) {
+            sb.append('\n').append(name).append(':');
+            HeaderValues values = requestHeaders.get(name);
+            if(values != null) {
+                for(int i = 0; i < values.size(); i++) {
+                    if(i > 0) sb.append(',');
+                    sb.append(values.get(i).trim());
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public HttpHandler getNext() {
+        return next;
+    }
+
+    @Override
+    public MiddlewareHandler setNext(final HttpHandler next) {
+        Handlers.handlerNotNull(next);
+        this.next = next;
+        return this;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    @Override
+    public void register() {
+        ModuleRegistry.registerModule(ResponseCacheHandler.class.getName(), config.getMappedConfig(), null);
+    }
+
+    @Override
+    public void reload() {
+        config.reload();
+        cache = createCache(config);
+        ModuleRegistry.registerModule(ResponseCacheHandler.class.getName(), config.getMappedConfig(), null);
+    }
+
+    /**
+     * The Vary header names of a URL and the keys of its variants that are stored.
+     */
+    private static final class VaryIndex {
+        final String[] names;
+        final Set<String> keys = ConcurrentHashMap.newKeySet();
+
+        VaryIndex(String[] names) {
+            this.names = names;
+        }
+    }
+
+    /**
+     * The state of a request that goes to the backend. It captures the response body when the response starts,
+     * or replaces the response with the cached one, and stores the response when the exchange is completed.
+     */
+    private final class CacheExchange {
+        final String primaryKey;
+        final boolean get;
+        final long requestTime;
+        String revalidationKey;
+        CachedResponse stale;
+        boolean conditional;
+        boolean replaced;
+
+        CacheExchange(String primaryKey, boolean get, long requestTime) {
+            this.primaryKey = primaryKey;
+            this.get = get;
+            this.requestTime = requestTime;
+        }
+
+        StreamSinkConduit wrap(ConduitFactory<StreamSinkConduit> factory, HttpServerExchange exchange) {
+            // the conduit is created when the response starts, and the status and headers are known. The next
+            // conduit is created after the status and headers are replaced as its transfer encoding depends on them.
+            int status = exchange.getStatusCode();
+            if(stale != null) {
+                long now = System.currentTimeMillis();
+                CachedResponse replacement = null;
+                if(status == StatusCodes.NOT_MODIFIED && conditional) {
+                    replacement = stale.freshen(exchange.getResponseHeaders(), requestTime, now);
+                    store(exchange, replacement);
+                } else if(status >= 500 && stale.isStaleIfError(stale.age(now))) {
+                    replacement = stale;
+                }
+                if(replacement != null) {
+                    replaced = true;
+                    exchange.setStatusCode(replacement.status);
+                    HeaderMap responseHeaders = exchange.getResponseHeaders();
+                    responseHeaders.clear();
+                    CachedResponse.copy(replacement.headers, responseHeaders);
+                    responseHeaders.put(Headers.AGE, replacement.age(now));
+                    responseHeaders.put(Headers.CONTENT_LENGTH, replacement.body.length);
+                    return new CachedBodySinkConduit(factory.create(), replacement.body);
+                }
+            }
+            if(get && CACHEABLE_STATUS.contains(status)) {
+                return new CachingSinkConduit(factory.create(), config.getMaxEntrySize(), exchange.getResponseContentLength(), body -> captured(exchange, body));
+            }
+            return factory.create();
+        }
+
+        /**
+         * Store the response when the body is completely written to the next conduit, before the client receives
+         * the end of the response.
+         */
+        void captured(HttpServerExchange exchange, byte[] body) {
+            if(body == null) {
+                if(logger.isTraceEnabled()) logger.trace("The response of {} is too large to cache", primaryKey);
+                return;
+            }
+            try {
+                if(isStorable(exchange)) {
+                    store(exchange, CachedResponse.create(exchange.getStatusCode(), exchange.getResponseHeaders(), body, requestTime, System.currentTimeMillis()));
+                }
+            } catch (Throwable e) {
+                logger.error("Failed to cache the response of " + primaryKey, e);
+            }
+        }
+
+        void complete(HttpServerExchange exchange) {
+            if(replaced || stale == null || exchange.getStatusCode() != StatusCodes.NOT_MODIFIED) return;
+            HeaderMap responseHeaders = exchange.getResponseHeaders();
+            // the client revalidated with its own validator that matches the stored response.
+            if(stale.etag != null && stale.etag.equals(responseHeaders.getFirst(Headers.ETAG))) {
+                store(exchange, stale.freshen(responseHeaders, requestTime, System.currentTimeMillis()));
+            }
+        }
+
+        private boolean isStorable(HttpServerExchange exchange) {
+            HeaderMap responseHeaders = exchange.getResponseHeaders();
+            CacheControl cacheControl = CacheControl.parse(responseHeaders.get(Headers.CACHE_CONTROL));
+            if(cacheControl.noStore || cacheControl.isPrivate || responseHeaders.contains(Headers.SET_COOKIE)) {
+                return false;
+            }
+            if(exchange.getRequestHeaders().contains(Headers.AUTHORIZATION)
+                    && !cacheControl.isPublic && cacheControl.sMaxAge == CacheControl.UNSET && !cacheControl.mustRevalidate) {
+                return false;
+            }
+            return cacheControl.maxAge != CacheControl.UNSET || cacheControl.sMaxAge != CacheControl.UNSET
+                    || responseHeaders.contains(Headers.EXPIRES) || responseHeaders.contains(Headers.ETAG)
+                    || responseHeaders.contains(Headers.LAST_MODIFIED);
+        }
+
+        private void store(HttpServerExchange exchange, CachedResponse response) {
+            String[] vary = varyHeaders(response.headers);
+            if(vary == null) return;
+            String indexKey = VARY_PREFIX + primaryKey;
+            VaryIndex index = (VaryIndex)cache.get(indexKey, k -> new VaryIndex(vary));
+            if(!Arrays.equals(index.names, vary)) {
+                // the Vary header of the URL has changed, and the variants of the old names are dropped.
+                VaryIndex created = new VaryIndex(vary);
+                if(cache.asMap().replace(indexKey, index, created)) {
+                    cache.invalidateAll(index.keys);
+                }
+                index = created;
+            }
+            String key = variantKey(primaryKey, vary, exchange.getRequestHeaders());
+            cache.put(key, response);
+            index.keys.add(key);
+            if(logger.isTraceEnabled()) logger.trace("Store the response of {} with freshness lifetime {}", key, response.freshnessLifetime);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.networknt.rescache;
+
+import io.undertow.Undertow;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.proxy.LoadBalancingProxyClient;
+import io.undertow.server.handlers.proxy.ProxyHandler;
+import io.undertow.util.Headers;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The cache handler is in front of an Undertow proxy handler to a local backend that counts the requests
+ * per path so that the tests know which requests are served from the cache.
+ */
+public class ResponseCacheHandlerTest {
+    private static final int BACKEND_PORT = 7092;
+    private static final int PORT = 7093;
+    static final Map<String, AtomicInteger> counters = new ConcurrentHashMap<>();
+    static final AtomicInteger notModified = new AtomicInteger();
+    static Undertow backend = null;
+    static Undertow server = null;
+    static HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        backend = Undertow.builder()
+                .addHttpListener(BACKEND_PORT, "localhost")
+                .setHandler(ResponseCacheHandlerTest::backend)
+                .build();
+        backend.start();
+
+        ResponseCacheHandler handler = new ResponseCacheHandler();
+        handler.setNext(ProxyHandler.builder()
+                .setProxyClient(new LoadBalancingProxyClient().addHost(new URI("http://localhost:" + BACKEND_PORT)))
+                .setMaxRequestTime(30000)
+                .build());
+        server = Undertow.builder()
+                .addHttpListener(PORT, "localhost")
+                .setHandler(handler)
+                .build();
+        server.start();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+        if (backend != null) {
+            backend.stop();
+        }
+    }
+
+    private static void backend(HttpServerExchange exchange) throws Exception {
+        String path = exchange.getRequestPath();
+        int count = counters.computeIfAbsent(path, k -> new AtomicInteger()).incrementAndGet();
+        switch (path) {
+            case "/fresh":
+                exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "max-age=60");
+                exchange.getResponseSender().send("fresh" + count);
+                break;
+            case "/etag":
+                exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "no-cache");
+                exchange.getResponseHeaders().put(Headers.ETAG, "\"v1\"");
+                if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst(Headers.IF_NONE_MATCH))) {
+                    notModified.incrementAndGet();
+                    exchange.setStatusCode(304);
+                    exchange.endExchange();
+                } else {
+                    exchange.getResponseSender().send("etag");
+                }
+                break;
+            case "/swr":
+                if (count > 1) {
+                    // the revalidation is slow so that the other requests find it in progress.
+                    if (exchange.isInIoThread()) {
+                        exchange.dispatch(ResponseCacheHandlerTest::backend);
+                        counters.get(path).decrementAndGet();
+                        return;
+                    }
+                    Thread.sleep(500);
+                }
+                exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "max-age=2, stale-while-revalidate=60");
+                exchange.getResponseSender().send("swr" + count);
+                break;
+            case "/vary":
+                exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "max-age=60");
+                exchange.getResponseHeaders().put(Headers.VARY, "Accept-Language");
+                exchange.getResponseSender().send(exchange.getRequestHeaders().getFirst(Headers.ACCEPT_LANGUAGE) + count);
+                break;
+            case "/variants":
+                exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "max-age=60");
+                exchange.getResponseHeaders().put(Headers.VARY, "Accept-Language");
+                exchange.getResponseSender().send(exchange.getRequestHeaders().getFirst(Headers.ACCEPT_LANGUAGE) + count);
+                break;
+            case "/query":
+                exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "max-age=60");
+                exchange.getResponseSender().send("query" + count);
+                break;
+            case "/private":
+                exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "private, max-age=60");
+                exchange.getResponseSender().send("private" + count);
+                break;
+            case "/large":
+                exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "max-age=60");
+                exchange.getResponseSender().send("x".repeat(2 * 1024 * 1024));
+                break;
+            default:
+                exchange.setStatusCode(404);
+                exchange.endExchange();
+        }
+    }
+
+    private static HttpResponse<String> get(String path, String... headers) throws Exception {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + path));
+        if (headers.length > 0) {
+            builder.headers(headers);
+        }
+        return client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static int count(String path) {
+        AtomicInteger counter = counters.get(path);
+        return counter == null ? 0 : counter.get();
+    }
+
+    @Test
+    public void testFreshResponseIsServedFromCache() throws Exception {
+        HttpResponse<String> first = get("/fresh");
+        HttpResponse<String> second = get("/fresh");
+        Assert.assertEquals("fresh1", first.body());
+        Assert.assertEquals("fresh1", second.body());
+        Assert.assertEquals(1, count("/fresh"));
+        Assert.assertTrue(second.headers().firstValue("Age").isPresent());
+        Assert.assertEquals("max-age=60", second.headers().firstValue("Cache-Control").orElse(null));
+
+        // the client asks for a validation.
+        HttpResponse<String> third = get("/fresh", "Cache-Control", "no-cache");
+        Assert.assertEquals("fresh2", third.body());
+        // a successful unsafe request invalidates the entry.
+        client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + "/fresh"))
+                .POST(HttpRequest.BodyPublishers.ofString("update")).build(), HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals("fresh4", get("/fresh").body());
+    }
+
+    @Test
+    public void testRevalidationWithETag() throws Exception {
+        Assert.assertEquals("etag", get("/etag").body());
+        int before = notModified.get();
+        HttpResponse<String> response = get("/etag");
+        // the 304 of the backend is turned into the cached response for the client.
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals("etag", response.body());
+        Assert.assertEquals(before + 1, notModified.get());
+        Assert.assertEquals(2, count("/etag"));
+
+        // the client revalidates with its own validator.
+        response = get("/etag", "If-None-Match", "\"v1\"");
+        Assert.assertEquals(304, response.statusCode());
+    }
+
+    @Test
+    public void testStaleWhileRevalidate() throws Exception {
+        Assert.assertEquals("swr1", get("/swr").body());
+        TimeUnit.MILLISECONDS.sleep(3100);
+        CompletableFuture<HttpResponse<String>> revalidation = client.sendAsync(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + "/swr")).build(), HttpResponse.BodyHandlers.ofString());
+        TimeUnit.MILLISECONDS.sleep(150);
+        long start = System.nanoTime();
+        HttpResponse<String> stale = get("/swr");
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assert.assertEquals("swr1", stale.body());
+        Assert.assertTrue("the stale response is served without waiting " + elapsed, elapsed < 300);
+        Assert.assertFalse(revalidation.isDone());
+        Assert.assertEquals("swr2", revalidation.get().body());
+        Assert.assertEquals("swr2", get("/swr").body());
+        Assert.assertEquals(2, count("/swr"));
+    }
+
+    @Test
+    public void testVary() throws Exception {
+        Assert.assertEquals("en1", get("/vary", "Accept-Language", "en").body());
+        Assert.assertEquals("fr2", get("/vary", "Accept-Language", "fr").body());
+        Assert.assertEquals("en1", get("/vary", "Accept-Language", "en").body());
+        Assert.assertEquals("fr2", get("/vary", "Accept-Language", "fr").body());
+        Assert.assertEquals(2, count("/vary"));
+    }
+
+    @Test
+    public void testInvalidateVariants() throws Exception {
+        Assert.assertEquals("en1", get("/variants", "Accept-Language", "en").body());
+        Assert.assertEquals("fr2", get("/variants", "Accept-Language", "fr").body());
+        Assert.assertEquals("fr2", get("/variants", "Accept-Language", "fr").body());
+        client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + "/variants"))
+                .POST(HttpRequest.BodyPublishers.ofString("update")).build(), HttpResponse.BodyHandlers.ofString());
+        // the first variant rebuilds the index, and the other variant is not served from before the update.
+        Assert.assertEquals("en4", get("/variants", "Accept-Language", "en").body());
+        Assert.assertEquals("fr5", get("/variants", "Accept-Language", "fr").body());
+        Assert.assertEquals("fr5", get("/variants", "Accept-Language", "fr").body());
+        Assert.assertEquals("en4", get("/variants", "Accept-Language", "en").body());
+        Assert.assertEquals(5, count("/variants"));
+    }
+
+    @Test
+    public void testNotStored() throws Exception {
+        Assert.assertEquals("private1", get("/private").body());
+        Assert.assertEquals("private2", get("/private").body());
+        // bigger than the maxEntrySize.
+        Assert.assertEquals(2 * 1024 * 1024, get("/large").body().length());
+        Assert.assertEquals(2 * 1024 * 1024, get("/large").body().length());
+        Assert.assertEquals(2, count("/large"));
+    }
+
+    @Test
+    public void testOnlyIfCached() throws Exception {
+        Assert.assertEquals(504, get("/missing", "Cache-Control", "only-if-cached").statusCode());
+        Assert.assertEquals(0, count("/missing"));
+    }
+
+    @Test
+    public void testPrimaryKeyIsNormalized() throws Exception {
+        Assert.assertEquals("query1", get("/query?b=2&a=1").body());
+        Assert.assertEquals("query1", get("/query?a=1&b=2").body());
+        Assert.assertEquals("query2", get("/query?a=1").body());
+        Assert.assertEquals(2, count("/query"));
+    }
+}
@@ -31,6 +31,7 @@ import com.networknt.status.Status;
 import com.networknt.utility.FingerPrintUtil;
 import org.jose4j.jwk.JsonWebKey;
 import org.jose4j.jwk.JsonWebKeySet;
+import org.jose4j.jws.JsonWebSignature;
 import org.jose4j.jwt.JwtClaims;
 import org.jose4j.jwt.MalformedClaimException;
 import org.jose4j.jwt.NumericDate;
@@ -40,6 +41,7 @@ import org.jose4j.keys.resolvers.JwksVerificationKeyResolver;
 import org.jose4j.keys.resolvers.VerificationKeyResolver;
 import org.jose4j.keys.resolvers.X509VerificationKeyResolver;
 import org.jose4j.lang.JoseException;
+import org.jose4j.lang.UnresolvableKeyException;
 import org.owasp.encoder.Encode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,10 +50,17 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.security.Key;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
 import java.util.regex.Pattern;
@@ -78,6 +87,10 @@ public class JwtVerifier extends TokenVerifier {
     public static final String KID = "kid";
     public static final String SECURITY_CONFIG = "security";
     private static final int CACHE_EXPIRED_IN_MINUTES = 15;
+    private static final int MAX_VERIFICATION_CONSUMERS = 1000;
+    private static final int MAX_UNKNOWN_KIDS = 10000;
+    // the source of the jwk for the single oauth server that is not identified by a serviceId.
+    private static final String SINGLE_JWK_SOURCE = "";
 
     public static final String JWT_KEY_RESOLVER_X509CERT = "X509Certificate";
     public static final String JWT_KEY_RESOLVER_JWKS = "JsonWebKeySet";
@@ -91,16 +104,45 @@ public class JwtVerifier extends TokenVerifier {
     static Cache<String, JwtClaims> cache;
     static Map<String, X509Certificate> certMap;
     static Map<String, List<JsonWebKey>> jwksMap;
+    // the in-flight jwk requests by serviceIds and kid so that only one request goes to the key service.
+    static final Map<String, CompletableFuture<List<JsonWebKey>>> jwkRequests = new ConcurrentHashMap<>();
+    // the last jwk set retrieved by serviceId for the background refresh.
+    static final Map<String, List<JsonWebKey>> jwkSets = new ConcurrentHashMap<>();
+    // the jwk list retrieved by serviceIds and kid when the kid was not found in it.
+    static Cache<String, List<JsonWebKey>> unknownKids;
+    static volatile long jwkVersion;
+    private static ScheduledExecutorService jwkRefreshExecutor;
+    private static ScheduledFuture<?> jwkRefreshTask;
     static String audience;  // this is the audience from the client.yml with single oauth provider.
     static Map<String, String> audienceMap; // this is the audience map from the client.yml with multiple oauth providers.
     static List<String> fingerPrints;
 
+    // the consumer that parses the token without any validation to get the kid. It is built once and shared.
+    final JwtConsumer parseConsumer;
+    // the consumers that verify the signature with a resolved public key by serviceId, kid and alg.
+    final Cache<String, JwtConsumer> verificationConsumers;
+    private volatile long consumerVersion;
+
     public JwtVerifier(SecurityConfig config) {
         this.config = config;
         this.secondsOfAllowedClockSkew = config.getClockSkewInSeconds();
         this.bootstrapFromKeyService = config.isBootstrapFromKeyService();
         this.enableRelaxedKeyValidation = config.isEnableRelaxedKeyValidation();
         this.enableJwtCache = config.isEnableJwtCache();
+        JwtConsumerBuilder parseBuilder = new JwtConsumerBuilder()
+                .setSkipAllValidators()
+                .setDisableRequireSignature()
+                .setSkipSignatureVerification();
+        if (this.enableRelaxedKeyValidation) {
+            parseBuilder.setRelaxVerificationKeyValidation();
+        }
+        this.parseConsumer = parseBuilder.build();
+        // the consumers expire with the jwk refresh interval, or with the jwt cache if the refresh is disabled, so
+        // that a key is resolved from the cached certificates or jwk again even if the background refresh is off.
+        this.verificationConsumers = Caffeine.newBuilder()
+                .maximumSize(MAX_VERIFICATION_CONSUMERS)
+                .expireAfterWrite(config.getJwkRefreshIntervalInSeconds() > 0 ? config.getJwkRefreshIntervalInSeconds() : TimeUnit.MINUTES.toSeconds(CACHE_EXPIRED_IN_MINUTES), TimeUnit.SECONDS)
+                .build();
         if (Boolean.TRUE.equals(enableJwtCache)) {
             cache = Caffeine.newBuilder()
                     .maximumSize(config.getJwtCacheFullSize())
@@ -114,11 +156,23 @@ public class JwtVerifier extends TokenVerifier {
 
         this.cacheCertificates();
 
+        if (config.getUnknownKidCacheInSeconds() > 0) {
+            unknownKids = Caffeine.newBuilder()
+                    .maximumSize(MAX_UNKNOWN_KIDS)
+                    .expireAfterWrite(config.getUnknownKidCacheInSeconds(), TimeUnit.SECONDS)
+                    .build();
+        } else {
+            unknownKids = null;
+        }
         // if KeyResolver is jwk and bootstrap from jwk is true, load jwk during server startup.
+        jwkSets.clear();
         if (JWT_KEY_RESOLVER_JWKS.equals(keyResolver) && bootstrapFromKeyService) {
             jwksMap = getJsonWebKeyMap();
         } else {
-            jwksMap = new HashMap<>();
+            jwksMap = new ConcurrentHashMap<>();
+        }
+        if (JWT_KEY_RESOLVER_JWKS.equals(keyResolver) && config.getJwkRefreshIntervalInSeconds() > 0) {
+            scheduleJwkRefresh(this, config.getJwkRefreshIntervalInSeconds());
         }
     }
 
@@ -194,7 +248,7 @@ public class JwtVerifier extends TokenVerifier {
      * @throws ExpiredTokenException throw when the token is expired
      */
     public JwtClaims verifyJwt(String jwt, boolean ignoreExpiry, boolean isToken, String pathPrefix, String requestPath, List<String> jwkServiceIds) throws InvalidJwtException, ExpiredTokenException {
-        return verifyJwt(jwt, ignoreExpiry, isToken, pathPrefix, requestPath, jwkServiceIds, this::getKeyResolver);
+        return verifyJwt(jwt, ignoreExpiry, isToken, pathPrefix, requestPath, jwkServiceIds, null);
     }
 
     /**
@@ -209,7 +263,7 @@ public class JwtVerifier extends TokenVerifier {
      * @throws ExpiredTokenException throw when the token is expired
      */
     public JwtClaims verifyJwt(String jwt, boolean ignoreExpiry, boolean isToken) throws InvalidJwtException, ExpiredTokenException {
-        return verifyJwt(jwt, ignoreExpiry, isToken, null, null, null, this::getKeyResolver);
+        return verifyJwt(jwt, ignoreExpiry, isToken, null, null, null, null);
     }
 
     /**
@@ -219,12 +273,16 @@ public class JwtVerifier extends TokenVerifier {
      * In most cases, we need to verify the expiry of the jwt token. The only time we need to ignore expiry
      * verification is in SPA middleware handlers which need to verify csrf token in jwt against the csrf
      * token in the request header to renew the expired token.
+     * <p>
+     * The token is parsed only once. If getKeyResolver is null, the public key is resolved from the configured
+     * certificates or JWK and the consumer that verifies with it is cached by serviceId, kid and alg so that the
+     * next token signed by the same key doesn't need to resolve the key or build the consumer again.
      *
      * @param jwt            String of Json web token
      * @param ignoreExpiry   If true, don't verify if the token is expired.
      * @param isToken        True if the jwt is an OAuth 2.0 access token
      * @param pathPrefix     pathPrefix for the jwt token cache key
-     * @param getKeyResolver How to get VerificationKeyResolver
+     * @param getKeyResolver How to get VerificationKeyResolver or null to use the configured certificates and JWK
      * @param requestPath    the request path that used to find the right auth server config
      * @param jwkServiceIds  a list of jwk serviceIds defined in the client.yml to retrieve jwk.
      * @return JwtClaims object
@@ -251,19 +309,7 @@ public class JwtVerifier extends TokenVerifier {
         }
 
 
-        JwtConsumer consumer;
-        JwtConsumerBuilder pKeyBuilder = new JwtConsumerBuilder()
-                .setSkipAllValidators()
-                .setDisableRequireSignature()
-                .setSkipSignatureVerification();
-
-        if (this.enableRelaxedKeyValidation) {
-            pKeyBuilder.setRelaxVerificationKeyValidation();
-        }
-
-        consumer = pKeyBuilder.build();
-
-        JwtContext jwtContext = consumer.process(jwt);
+        JwtContext jwtContext = parseConsumer.process(jwt);
         claims = jwtContext.getJwtClaims();
         JsonWebStructure structure = jwtContext.getJoseObjects().get(0);
         // need this kid to load public key certificate for signature verification
@@ -276,20 +322,16 @@ public class JwtVerifier extends TokenVerifier {
         // validate the audience against the configured audience.
         validateAudience(claims, requestPath, jwkServiceIds, jwtContext);
 
-        JwtConsumerBuilder jwtBuilder = new JwtConsumerBuilder()
-                .setRequireExpirationTime()
-                .setAllowedClockSkewInSeconds(315360000) // use seconds of 10 years to skip expiration validation as we need skip it in some cases.
-                .setSkipDefaultAudienceValidation()
-                .setVerificationKeyResolver(getKeyResolver.apply(kid, jwkServiceIds != null ? jwkServiceIds : requestPath));
-
-        if (this.enableRelaxedKeyValidation) {
-            jwtBuilder.setRelaxVerificationKeyValidation();
+        Object requestPathOrJwkServiceIds = jwkServiceIds != null ? jwkServiceIds : requestPath;
+        JwtConsumer consumer;
+        if (getKeyResolver == null) {
+            consumer = getVerificationConsumer(structure, kid, requestPathOrJwkServiceIds);
+        } else {
+            consumer = buildVerificationConsumer(getKeyResolver.apply(kid, requestPathOrJwkServiceIds), null);
         }
 
-        consumer = jwtBuilder.build();
-
-        // Validate the JWT and process it to the Claims
-        jwtContext = consumer.process(jwt);
+        // Validate the JWT on the parsed jose objects without parsing the token again.
+        consumer.processContext(jwtContext);
         claims = jwtContext.getJwtClaims();
         if (Boolean.TRUE.equals(enableJwtCache)) {
             if(pathPrefix != null) {
@@ -304,6 +346,73 @@ public class JwtVerifier extends TokenVerifier {
         return claims;
     }
 
+    /**
+     * Get the consumer that verifies the signature with the public key of the kid. The key is resolved with the
+     * configured certificates or JWK on the first token of the kid and the consumer is cached. If the key cannot
+     * be resolved, a consumer with the resolver is returned without caching so that the error is reported by
+     * the consumer as usual.
+     *
+     * @param structure the parsed jose object of the token
+     * @param kid key id from the JWT token
+     * @param requestPathOrJwkServiceIds the request path or jwkServiceIds of incoming request
+     * @return JwtConsumer
+     */
+    private JwtConsumer getVerificationConsumer(JsonWebStructure structure, String kid, Object requestPathOrJwkServiceIds) {
+        long version = jwkVersion;
+        if (consumerVersion != version) {
+            // the jwk has been refreshed and some keys might be removed from the key service.
+            verificationConsumers.invalidateAll();
+            consumerVersion = version;
+        }
+        String consumerKey = getConsumerKey(kid, structure.getAlgorithmHeaderValue(), requestPathOrJwkServiceIds);
+        JwtConsumer consumer = verificationConsumers.getIfPresent(consumerKey);
+        if (consumer != null) {
+            return consumer;
+        }
+        VerificationKeyResolver resolver = getKeyResolver(kid, requestPathOrJwkServiceIds);
+        if (resolver != null && structure instanceof JsonWebSignature) {
+            try {
+                Key key = resolver.resolveKey((JsonWebSignature) structure, Collections.emptyList());
+                if (key != null) {
+                    consumer = buildVerificationConsumer(null, key);
+                    verificationConsumers.put(consumerKey, consumer);
+                    if (logger.isDebugEnabled()) logger.debug("Cached the verification consumer for " + consumerKey);
+                    return consumer;
+                }
+            } catch (UnresolvableKeyException e) {
+                if (logger.isDebugEnabled()) logger.debug("Cannot resolve the key for " + consumerKey + " - " + e.getMessage());
+            }
+        }
+        return buildVerificationConsumer(resolver, null);
+    }
+
+    private JwtConsumer buildVerificationConsumer(VerificationKeyResolver resolver, Key key) {
+        JwtConsumerBuilder jwtBuilder = new JwtConsumerBuilder()
+                .setRequireExpirationTime()
+                .setAllowedClockSkewInSeconds(315360000) // use seconds of 10 years to skip expiration validation as we need skip it in some cases.
+                .setSkipDefaultAudienceValidation();
+        if (key != null) {
+            jwtBuilder.setVerificationKey(key);
+        } else {
+            jwtBuilder.setVerificationKeyResolver(resolver);
+        }
+        if (this.enableRelaxedKeyValidation) {
+            jwtBuilder.setRelaxVerificationKeyValidation();
+        }
+        return jwtBuilder.build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private String getConsumerKey(String kid, String alg, Object requestPathOrJwkServiceIds) {
+        String prefix = null;
+        if (requestPathOrJwkServiceIds instanceof String) {
+            prefix = getServiceIdByRequestPath(ClientConfig.get(), (String) requestPathOrJwkServiceIds);
+        } else if (requestPathOrJwkServiceIds instanceof List) {
+            prefix = String.join(",", (List<String>) requestPathOrJwkServiceIds);
+        }
+        return prefix == null ? kid + ":" + alg : prefix + ":" + kid + ":" + alg;
+    }
+
     /**
      * validate the audience against the configured audience in the jwk section of the client.yml
      *
@@ -427,7 +536,10 @@ public class JwtVerifier extends TokenVerifier {
                 // try jwk if kid cannot be found in the certificate map.
                 ClientConfig clientConfig = ClientConfig.get();
                 List<JsonWebKey> jwkList = null;
-                if(requestPathOrJwkServiceIds == null) {
+                if(kid == null) {
+                    // the jwk cache is keyed by kid and a token without kid always goes to the key service.
+                    jwkList = null;
+                } else if(requestPathOrJwkServiceIds == null) {
                     // single oauth server, kid is the key for the jwk cache
                     jwkList = jwksMap.get(kid);
                 } else if(requestPathOrJwkServiceIds instanceof String) {
@@ -454,23 +566,10 @@ public class JwtVerifier extends TokenVerifier {
                 }
 
                 if (jwkList == null) {
-                    jwkList = getJsonWebKeySetForToken(kid, requestPathOrJwkServiceIds);
+                    jwkList = loadJwkList(kid, requestPathOrJwkServiceIds, clientConfig);
                     if (jwkList == null || jwkList.isEmpty()) {
                         throw new RuntimeException("no JWK for kid: " + kid);
                     }
-                    if(requestPathOrJwkServiceIds == null) {
-                        // single jwk setup and kid is the key for the jwk cache.
-                        cacheJwkList(jwkList, null);
-                    } else if(requestPathOrJwkServiceIds instanceof String) {
-                        // a single request path is passed in.
-                        String serviceId = getServiceIdByRequestPath(clientConfig, (String)requestPathOrJwkServiceIds);
-                        cacheJwkList(jwkList, serviceId);
-                    } else if(requestPathOrJwkServiceIds instanceof List) {
-                        // called with a list of serviceIds from the UnifiedSecurityHandler.
-                        for(String serviceId: (List<String>)requestPathOrJwkServiceIds) {
-                            cacheJwkList(jwkList, serviceId);
-                        }
-                    }
                 }
                 logger.debug("Got Json web key set from local cache");
                 return new JwksVerificationKeyResolver(jwkList);
@@ -481,8 +580,131 @@ public class JwtVerifier extends TokenVerifier {
         }
     }
 
+    /**
+     * Get the jwk list for a kid that is not in the cache from the key service. Only one request goes to the key
+     * service for the same serviceIds and kid, and the other requests wait for its result. A kid that cannot be
+     * found on the key service is remembered with the retrieved jwk list for unknownKidCacheInSeconds so that the
+     * tokens with the same kid are rejected the same way without hitting the key service again.
+     *
+     * @param kid key id from the JWT token
+     * @param requestPathOrJwkServiceIds the request path or jwkServiceIds of incoming request
+     * @param clientConfig ClientConfig
+     * @return {@link List} of {@link JsonWebKey} or null if there is no jwk
+     */
+    @SuppressWarnings("unchecked")
+    private List<JsonWebKey> loadJwkList(String kid, Object requestPathOrJwkServiceIds, ClientConfig clientConfig) {
+        List<String> sources;
+        if(requestPathOrJwkServiceIds instanceof String) {
+            String serviceId = getServiceIdByRequestPath(clientConfig, (String)requestPathOrJwkServiceIds);
+            sources = Collections.singletonList(serviceId == null ? SINGLE_JWK_SOURCE : serviceId);
+        } else if(requestPathOrJwkServiceIds instanceof List) {
+            sources = (List<String>)requestPathOrJwkServiceIds;
+        } else {
+            sources = Collections.singletonList(SINGLE_JWK_SOURCE);
+        }
+        String requestKey = String.join(",", sources) + ":" + kid;
+        Cache<String, List<JsonWebKey>> unknown = unknownKids;
+        List<JsonWebKey> unknownJwkList = unknown == null ? null : unknown.getIfPresent(requestKey);
+        if(unknownJwkList != null) {
+            if(logger.isDebugEnabled()) logger.debug("Skip the key service as kid {} was not found recently.", kid);
+            return unknownJwkList;
+        }
+        CompletableFuture<List<JsonWebKey>> request = new CompletableFuture<>();
+        CompletableFuture<List<JsonWebKey>> inflight = jwkRequests.putIfAbsent(requestKey, request);
+        if(inflight != null) {
+            // another request is getting the jwk for the same kid, wait for the result of it.
+            try {
+                return inflight.join();
+            } catch (CompletionException e) {
+                if(e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+                throw e;
+            }
+        }
+        try {
+            List<JsonWebKey> jwkList = getJsonWebKeySetForToken(kid, requestPathOrJwkServiceIds);
+            if(jwkList != null && !jwkList.isEmpty()) {
+                for(String source : sources) {
+                    cacheJwkList(jwkList, SINGLE_JWK_SOURCE.equals(source) ? null : source);
+                }
+                if(sources.size() == 1) {
+                    jwkSets.put(sources.get(0), jwkList);
+                } else {
+                    // the list is merged from all the serviceIds, mark them to be retrieved by the refresh.
+                    sources.forEach(source -> jwkSets.putIfAbsent(source, Collections.emptyList()));
+                }
+            }
+            if(unknown != null && (jwkList == null || jwkList.isEmpty() || (kid != null && jwkList.stream().noneMatch(jwk -> kid.equals(jwk.getKeyId()))))) {
+                unknown.put(requestKey, jwkList == null ? Collections.emptyList() : jwkList);
+            }
+            request.complete(jwkList);
+            return jwkList;
+        } catch (RuntimeException e) {
+            request.completeExceptionally(e);
+            throw e;
+        } finally {
+            jwkRequests.remove(requestKey, request);
+        }
+    }
+
+    private static synchronized void scheduleJwkRefresh(JwtVerifier verifier, int intervalInSeconds) {
+        if(jwkRefreshTask != null) {
+            jwkRefreshTask.cancel(false);
+        }
+        if(jwkRefreshExecutor == null) {
+            jwkRefreshExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "jwk-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        jwkRefreshTask = jwkRefreshExecutor.scheduleWithFixedDelay(verifier::refreshJwk, intervalInSeconds, intervalInSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Retrieve the jwk sets that have been used from the key service again. The new keys are added to the cache and
+     * the keys that are removed from the key service are removed from the cache. If the key service is not available,
+     * the cached keys are kept.
+     */
+    void refreshJwk() {
+        try {
+            ClientConfig clientConfig = ClientConfig.get();
+            boolean changed = false;
+            for(Map.Entry<String, List<JsonWebKey>> entry : jwkSets.entrySet()) {
+                String source = entry.getKey();
+                String serviceId = SINGLE_JWK_SOURCE.equals(source) ? null : source;
+                List<JsonWebKey> jwkList = retrieveJwk(null, serviceId == null ? null : getJwkConfig(clientConfig, serviceId));
+                if(jwkList == null || jwkList.isEmpty()) {
+                    continue;
+                }
+                List<JsonWebKey> previous = entry.getValue();
+                if(new JsonWebKeySet(jwkList).toJson().equals(new JsonWebKeySet(previous).toJson())) {
+                    continue;
+                }
+                Set<String> kids = new HashSet<>();
+                jwkList.forEach(jwk -> kids.add(jwk.getKeyId()));
+                for(JsonWebKey jwk : previous) {
+                    if(jwk.getKeyId() != null && !kids.contains(jwk.getKeyId())) {
+                        jwksMap.remove(serviceId == null ? jwk.getKeyId() : serviceId + ":" + jwk.getKeyId());
+                    }
+                }
+                cacheJwkList(jwkList, serviceId);
+                jwkSets.put(source, jwkList);
+                changed = true;
+                if(logger.isInfoEnabled()) logger.info("Refreshed JWK for {} with kids {}", serviceId == null ? "the single oauth server" : "serviceId " + serviceId, kids);
+            }
+            if(changed) {
+                jwkVersion++;
+                Cache<String, List<JsonWebKey>> unknown = unknownKids;
+                if(unknown != null) unknown.invalidateAll();
+            }
+        } catch (Throwable e) {
+            logger.error("Failed to refresh JWK", e);
+        }
+    }
+
     private void cacheJwkList(List<JsonWebKey> jwkList, String serviceId) {
         for (JsonWebKey jwk : jwkList) {
+            if(jwk.getKeyId() == null) continue;
             if(serviceId != null) {
                 if(logger.isTraceEnabled()) logger.trace("cache the jwkList with serviceId {} kid {} and key {}", serviceId, jwk.getKeyId(), serviceId + ":" + jwk.getKeyId());
                 jwksMap.put(serviceId + ":" + jwk.getKeyId(), jwkList);
@@ -498,13 +720,8 @@ public class JwtVerifier extends TokenVerifier {
             if (pathPrefixServices == null || pathPrefixServices.size() == 0) {
                 throw new ConfigException("pathPrefixServices property is missing or has an empty value in client.yml");
             }
-            // lookup the serviceId based on the full path and the prefix mapping by iteration here.
-            String serviceId = null;
-            for (Map.Entry<String, String> entry : pathPrefixServices.entrySet()) {
-                if (requestPath.startsWith(entry.getKey())) {
-                    serviceId = entry.getValue();
-                }
-            }
+            // lookup the serviceId with the longest prefix that matches the full path.
+            String serviceId = clientConfig.getPathPrefixServiceMatcher().get(requestPath);
             if (serviceId == null) {
                 throw new ConfigException("serviceId cannot be identified in client.yml with the requestPath = " + requestPath);
             }
@@ -525,7 +742,7 @@ public class JwtVerifier extends TokenVerifier {
     private Map<String, List<JsonWebKey>> getJsonWebKeyMap() {
         // the jwk indicator will ensure that the kid is not concat to the uri for path parameter.
         // the kid is not needed to get JWK. We need to figure out only one jwk server or multiple.
-        jwksMap = new HashMap<>();
+        jwksMap = new ConcurrentHashMap<>();
         ClientConfig clientConfig = ClientConfig.get();
         Map<String, Object> tokenConfig = clientConfig.getTokenConfig();
         Map<String, Object> keyConfig = (Map<String, Object>) tokenConfig.get(ClientConfig.KEY);
@@ -562,7 +779,9 @@ public class JwtVerifier extends TokenVerifier {
                             if (logger.isErrorEnabled())
                                 logger.error("Cannot get JWK from OAuth server.");
                         } else {
+                            jwkSets.put(serviceId, jwkList);
                             for (JsonWebKey jwk : jwkList) {
+                                if (jwk.getKeyId() == null) continue;
                                 jwksMap.put(serviceId + ":" + jwk.getKeyId(), jwkList);
                                 if (logger.isDebugEnabled())
                                     logger.debug("Successfully cached JWK for serviceId {} kid {} with key {}", serviceId, jwk.getKeyId(), serviceId + ":" + jwk.getKeyId());
@@ -601,7 +820,9 @@ public class JwtVerifier extends TokenVerifier {
                 if (jwkList == null || jwkList.isEmpty()) {
                     throw new RuntimeException("cannot get JWK from OAuth server");
                 }
+                jwkSets.put(SINGLE_JWK_SOURCE, jwkList);
                 for (JsonWebKey jwk : jwkList) {
+                    if (jwk.getKeyId() == null) continue;
                     jwksMap.put(jwk.getKeyId(), jwkList);
 
                     if (logger.isDebugEnabled())
@@ -647,13 +868,8 @@ public class JwtVerifier extends TokenVerifier {
                 if (pathPrefixServices == null || pathPrefixServices.size() == 0) {
                     throw new ConfigException("pathPrefixServices property is missing or has an empty value in client.yml");
                 }
-                // lookup the serviceId based on the full path and the prefix mapping by iteration here.
-                String serviceId = null;
-                for (Map.Entry<String, String> entry : pathPrefixServices.entrySet()) {
-                    if (requestPath.startsWith(entry.getKey())) {
-                        serviceId = entry.getValue();
-                    }
-                }
+                // lookup the serviceId with the longest prefix that matches the full path.
+                String serviceId = clientConfig.getPathPrefixServiceMatcher().get(requestPath);
                 if (serviceId == null) {
                     throw new ConfigException("serviceId cannot be identified in client.yml with the requestPath = " + requestPath);
                 }
@@ -33,6 +33,8 @@ public class SecurityConfig {
     private static final String CERTIFICATE = "certificate";
     private static final String CLOCK_SKEW_IN_SECONDS = "clockSkewInSeconds";
     private static final String KEY_RESOLVER = "keyResolver";
+    private static final String UNKNOWN_KID_CACHE_IN_SECONDS = "unknownKidCacheInSeconds";
+    private static final String JWK_REFRESH_INTERVAL_IN_SECONDS = "jwkRefreshIntervalInSeconds";
     private static final String LOG_JWT_TOKEN = "logJwtToken";
     private static final String LOG_CLIENT_USER_SCOPE = "logClientUserScope";
     private static final String ENABLE_JWT_CACHE = "enableJwtCache";
@@ -59,6 +61,8 @@ public class SecurityConfig {
     private boolean enableMockJwt;
     private int clockSkewInSeconds;
     private String keyResolver;
+    private int unknownKidCacheInSeconds = 10;
+    private int jwkRefreshIntervalInSeconds;
     private boolean logJwtToken;
     private boolean logClientUserScope;
     private boolean enableJwtCache;
@@ -140,6 +144,14 @@ public class SecurityConfig {
         return keyResolver;
     }
 
+    public int getUnknownKidCacheInSeconds() {
+        return unknownKidCacheInSeconds;
+    }
+
+    public int getJwkRefreshIntervalInSeconds() {
+        return jwkRefreshIntervalInSeconds;
+    }
+
     public boolean isLogJwtToken() {
         return logJwtToken;
     }
@@ -264,6 +276,10 @@ public class SecurityConfig {
             if(jwtMap != null) {
                 clockSkewInSeconds = (Integer) jwtMap.get(CLOCK_SKEW_IN_SECONDS);
                 keyResolver = (String) jwtMap.get(KEY_RESOLVER);
+                object = jwtMap.get(UNKNOWN_KID_CACHE_IN_SECONDS);
+                if(object != null) unknownKidCacheInSeconds = (Integer) object;
+                object = jwtMap.get(JWK_REFRESH_INTERVAL_IN_SECONDS);
+                if(object != null) jwkRefreshIntervalInSeconds = (Integer) object;
             }
         }
     }
@@ -74,13 +74,8 @@ public class SwtVerifier extends TokenVerifier {
                 if (pathPrefixServices == null || pathPrefixServices.size() == 0) {
                     throw new ConfigException("pathPrefixServices property is missing or has an empty value in client.yml");
                 }
-                // lookup the serviceId based on the full path and the prefix mapping by iteration here.
-                String serviceId = null;
-                for (Map.Entry<String, String> entry : pathPrefixServices.entrySet()) {
-                    if (requestPath.startsWith(entry.getKey())) {
-                        serviceId = entry.getValue();
-                    }
-                }
+                // lookup the serviceId with the longest prefix that matches the full path.
+                String serviceId = clientConfig.getPathPrefixServiceMatcher().get(requestPath);
                 if (serviceId == null) {
                     throw new ConfigException("serviceId cannot be identified in client.yml with the requestPath = " + requestPath);
                 }
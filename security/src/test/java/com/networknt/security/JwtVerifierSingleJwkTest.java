@@ -33,7 +33,12 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class JwtVerifierSingleJwkTest extends JwtVerifierJwkBase {
@@ -59,6 +64,9 @@ public class JwtVerifierSingleJwkTest extends JwtVerifierJwkBase {
     static Undertow server4 = null;
 
     static SSLContext sslContext;
+    static final AtomicInteger keyRequests = new AtomicInteger();
+    // the key set returned by the key service of server3. It is changed to test the key rotation.
+    static volatile String keySet = jsonWebKeySetJson111;
 
     @BeforeClass
     public static void beforeClass() throws IOException {
@@ -160,8 +168,9 @@ public class JwtVerifierSingleJwkTest extends JwtVerifierJwkBase {
                     .setServerOption(UndertowOptions.RECORD_REQUEST_START_TIME, false)
                     .setHandler(new PathHandler()
                             .addExactPath(KEY, exchange -> {
+                                keyRequests.incrementAndGet();
                                 exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
-                                exchange.getResponseSender().send(jsonWebKeySetJson111);
+                                exchange.getResponseSender().send(keySet);
                             })
                             .addExactPath(TOKEN, exchange -> exchange.getRequestReceiver().receiveFullString(new Receiver.FullStringCallback() {
                                 @Override
@@ -369,6 +378,53 @@ public class JwtVerifierSingleJwkTest extends JwtVerifierJwkBase {
         System.out.println("jwtClaims = " + claims);
     }
 
+    @Test
+    public void testUnknownKid() throws Exception {
+        JwtVerifier jwtVerifier = new JwtVerifier(securityConfig);
+        String jwt = getJwt(60, "999");
+        int before = keyRequests.get();
+        AtomicInteger rejected = new AtomicInteger();
+        Callable<Void> task = () -> {
+            try {
+                jwtVerifier.verifyJwt(jwt, false, true);
+            } catch (Exception e) {
+                rejected.incrementAndGet();
+            }
+            return null;
+        };
+        ExecutorService executorService = Executors.newFixedThreadPool(16);
+        for (Future<Void> future : executorService.invokeAll(Collections.nCopies(32, task))) {
+            future.get();
+        }
+        executorService.shutdown();
+        Assert.assertEquals(32, rejected.get());
+        // the key service only returns kid 111 and it is called once for all the tokens with kid 999.
+        Assert.assertEquals(before + 1, keyRequests.get());
+    }
+
+    @Test
+    public void testRefreshRotatedKey() throws Exception {
+        JwtVerifier jwtVerifier = new JwtVerifier(securityConfig);
+        Assert.assertNotNull(jwtVerifier.verifyJwt(getJwt(60, "111"), false, true));
+        try {
+            // the key service rotates the key from kid 111 to 113.
+            keySet = jsonWebKeySetJson111.replace("\"kid\":\"111\"", "\"kid\":\"113\"");
+            jwtVerifier.refreshJwk();
+            int before = keyRequests.get();
+            Assert.assertNotNull(jwtVerifier.verifyJwt(getJwt(60, "113"), false, true));
+            // the new key is found in the refreshed cache without another call to the key service.
+            Assert.assertEquals(before, keyRequests.get());
+            try {
+                jwtVerifier.verifyJwt(getJwt(60, "111"), false, true);
+                Assert.fail("the token signed with the removed key should be rejected");
+            } catch (Exception e) {
+                // the removed key is not in the cache and the key service doesn't return it either.
+            }
+        } finally {
+            keySet = jsonWebKeySetJson111;
+        }
+    }
+
     @Test
     public void testVerifySign() throws Exception {
         JwtClaims claims = ClaimsUtil.getTestClaims("steve", "EMPLOYEE", "f7d42348-c647-4efb-a52d-4c5787421e72", Arrays.asList("write:pets", "read:pets"), "user");
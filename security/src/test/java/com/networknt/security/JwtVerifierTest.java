@@ -24,6 +24,7 @@ import org.jose4j.jwk.PublicJsonWebKey;
 import org.jose4j.jws.AlgorithmIdentifiers;
 import org.jose4j.jws.JsonWebSignature;
 import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.consumer.InvalidJwtException;
 import org.jose4j.keys.resolvers.JwksVerificationKeyResolver;
 import org.jose4j.lang.JoseException;
 import org.junit.Assert;
@@ -234,6 +235,27 @@ public class JwtVerifierTest {
         System.out.println("jwtClaims = " + claims);
     }
     
+    @Test
+    public void testVerifyJwtWithCachedKey() throws Exception {
+        JwtVerifier jwtVerifier = new JwtVerifier(SecurityConfig.load(CONFIG_NAME));
+        String jwt1 = JwtIssuer.getJwt(ClaimsUtil.getTestClaims("steve", "EMPLOYEE", "f7d42348-c647-4efb-a52d-4c5787421e72", Arrays.asList("write:pets", "read:pets"), "user"));
+        String jwt2 = JwtIssuer.getJwt(ClaimsUtil.getTestClaims("eric", "EMPLOYEE", "f7d42348-c647-4efb-a52d-4c5787421e72", Arrays.asList("write:pets", "read:pets"), "user"));
+        Assert.assertEquals("steve", jwtVerifier.verifyJwt(jwt1, false, true).getStringClaimValue(Constants.USER_ID_STRING));
+        Assert.assertEquals(1, jwtVerifier.verificationConsumers.estimatedSize());
+        // the second token with the same kid is verified with the cached consumer.
+        Assert.assertEquals("eric", jwtVerifier.verifyJwt(jwt2, false, true).getStringClaimValue(Constants.USER_ID_STRING));
+        Assert.assertEquals(1, jwtVerifier.verificationConsumers.estimatedSize());
+        // the payload of the first token with the signature of the second one must be rejected.
+        String[] parts1 = jwt1.split("\\.");
+        String[] parts2 = jwt2.split("\\.");
+        try {
+            jwtVerifier.verifyJwt(parts1[0] + "." + parts1[1] + "." + parts2[2], false, true);
+            Assert.fail("InvalidJwtException is expected");
+        } catch (InvalidJwtException e) {
+            // expected
+        }
+    }
+
     @Test
     public void testRelaxedKeyValidation() throws Exception {
         String jwt = "eyJraWQiOiJ7XCJwcm92aWRlcl90eXBlXCI6XCJkYlwiLFwiYWxpYXNcIjpcImtleXRlc3RcIixcInR5cGVcIjpcImxvY2FsXCIsXCJ2ZXJzaW9uXCI6XCIxXCJ9IiwiYWxnIjoiUlMyNTYifQ" +
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.server;
+
+import com.networknt.config.Config;
+import com.networknt.config.ConfigInjection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parse the config files of the handlers and services in parallel at the server startup so that the modules do not
+ * load them one after another when they are used for the first time.
+ * <p>
+ * The config files are discovered from the classes in the handler.yml and service.yml. The config name of a class is
+ * the CONFIG_NAME constant of the class or of the config class in the same package, e.g. LimitConfig for LimitHandler.
+ * The config.yml and values.yml that all the other files depend on are loaded before the parallel loading, and the
+ * values.yml is resolved once for all the files. A file that cannot be parsed is skipped here, and the error is
+ * reported when the module loads it.
+ *
+ * @author Steve Hu
+ */
+public class ConfigPreloader {
+    private static final Logger logger = LoggerFactory.getLogger(ConfigPreloader.class);
+    private static final String HANDLER_CONFIG_NAME = "handler";
+    private static final String SERVICE_CONFIG_NAME = "service";
+    private static final String CONFIG_NAME_FIELD = "CONFIG_NAME";
+    private static final String[] CLASS_SUFFIXES = {"HttpHandler", "Handler", "StartupHook", "ShutdownHook", "Provider", "Impl"};
+
+    private ConfigPreloader() {
+    }
+
+    /**
+     * Discover the config files from the handler.yml and service.yml and preload them.
+     *
+     * @param threads the number of the threads that parse the files
+     * @return Map the load time in milliseconds of each preloaded config file
+     */
+    public static Map<String, Long> preload(int threads) {
+        Set<String> configNames = new LinkedHashSet<>();
+        for(String className : discoverClassNames(Config.getInstance().getJsonMapConfigNoCache(HANDLER_CONFIG_NAME),
+                Config.getInstance().getJsonMapConfigNoCache(SERVICE_CONFIG_NAME))) {
+            configNames.addAll(configNames(className));
+        }
+        return preload(configNames, threads);
+    }
+
+    /**
+     * Preload the config files in parallel.
+     *
+     * @param configNames the names of the config files without the extension
+     * @param threads the number of the threads that parse the files
+     * @return Map the load time in milliseconds of each preloaded config file
+     */
+    public static Map<String, Long> preload(Collection<String> configNames, int threads) {
+        long start = System.nanoTime();
+        Map<String, Long> loadTimes = Collections.synchronizedMap(new LinkedHashMap<>());
+        if(configNames.isEmpty()) return loadTimes;
+        // the values.yml is shared by all the threads.
+        try (ConfigInjection.ResolutionContext ignored = ConfigInjection.openResolutionContext()) {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for(String configName : configNames) {
+                tasks.add(() -> {
+                    long loadStart = System.nanoTime();
+                    try {
+                        if(Config.getInstance().preloadConfig(configName)) {
+                            loadTimes.put(configName, (System.nanoTime() - loadStart) / 1000000);
+                        }
+                    } catch (Exception e) {
+                        logger.warn("Failed to preload config " + configName, e);
+                    }
+                    return null;
+                });
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tasks.size())), new PreloadThreadFactory());
+            try {
+                for(Future<Void> future : executor.invokeAll(tasks)) {
+                    future.get();
+                }
+            } catch (Exception e) {
+                logger.error("Failed to preload config files", e);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        if(logger.isDebugEnabled()) {
+            loadTimes.forEach((configName, millis) -> logger.debug("preloaded config {} in {}ms", configName, millis));
+        }
+        logger.info("preloaded {} config files in {}ms with {} threads", loadTimes.size(), (System.nanoTime() - start) / 1000000, threads);
+        return loadTimes;
+    }
+
+    /**
+     * Find the classes of the handlers in the handler.yml and the singletons in the service.yml.
+     *
+     * @param handlerConfig the handler.yml as a map. It can be null.
+     * @param serviceConfig the service.yml as a map. It can be null.
+     * @return Set the class names
+     */
+    static Set<String> discoverClassNames(Map<String, Object> handlerConfig, Map<String, Object> serviceConfig) {
+        Set<String> classNames = new LinkedHashSet<>();
+        if(handlerConfig != null && handlerConfig.get("handlers") instanceof List) {
+            for(Object handler : (List<?>)handlerConfig.get("handlers")) {
+                if(handler instanceof String) {
+                    // the handler can be named with class@name.
+                    String className = (String)handler;
+                    int index = className.indexOf('@');
+                    classNames.add((index < 0 ? className : className.substring(0, index)).trim());
+                }
+            }
+        }
+        if(serviceConfig != null && serviceConfig.get("singletons") instanceof List) {
+            for(Object singleton : (List<?>)serviceConfig.get("singletons")) {
+                if(singleton instanceof Map) {
+                    // the key is the interfaces and the value is the implementations.
+                    for(Object implementation : ((Map<?, ?>)singleton).values()) {
+                        addImplementations(implementation, classNames);
+                    }
+                }
+            }
+        }
+        return classNames;
+    }
+
+    private static void addImplementations(Object implementation, Set<String> classNames) {
+        if(implementation instanceof String) {
+            classNames.add(((String)implementation).trim());
+        } else if(implementation instanceof List) {
+            for(Object item : (List<?>)implementation) {
+                addImplementations(item, classNames);
+            }
+        } else if(implementation instanceof Map) {
+            // the implementation with the properties or the constructor parameters.
+            for(Object key : ((Map<?, ?>)implementation).keySet()) {
+                if(key instanceof String) classNames.add(((String)key).trim());
+            }
+        }
+    }
+
+    /**
+     * Find the config names of a class.
+     *
+     * @param className the class of a handler or a singleton
+     * @return List the config names. It is empty if the class has no config or cannot be found.
+     */
+    static List<String> configNames(String className) {
+        List<String> configNames = new ArrayList<>();
+        int index = className.lastIndexOf('.');
+        String packageName = className.substring(0, index + 1);
+        String simpleName = className.substring(index + 1);
+        addConfigName(className, configNames);
+        String baseName = simpleName;
+        for(String suffix : CLASS_SUFFIXES) {
+            if(simpleName.endsWith(suffix) && simpleName.length() > suffix.length()) {
+                baseName = simpleName.substring(0, simpleName.length() - suffix.length());
+                break;
+            }
+        }
+        addConfigName(packageName + baseName + "Config", configNames);
+        return configNames;
+    }
+
+    private static void addConfigName(String className, List<String> configNames) {
+        try {
+            Class<?> clazz = Class.forName(className, false, ConfigPreloader.class.getClassLoader());
+            Field field = clazz.getDeclaredField(CONFIG_NAME_FIELD);
+            if(Modifier.isStatic(field.getModifiers()) && field.getType() == String.class) {
+                field.setAccessible(true);
+                String configName = (String)field.get(null);
+                if(configName != null && !configNames.contains(configName)) configNames.add(configName);
+            }
+        } catch (ClassNotFoundException | NoSuchFieldException e) {
+            // the class has no config.
+        } catch (Throwable e) {
+            if(logger.isDebugEnabled()) logger.debug("Failed to get the config name of " + className, e);
+        }
+    }
+
+    private static class PreloadThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "config-preload-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package com.networknt.server;
 
 import com.networknt.common.SecretConstants;
 import com.networknt.config.Config;
+import com.networknt.config.ConfigInjection;
 import com.networknt.handler.Handler;
 import com.networknt.handler.HandlerProvider;
 import com.networknt.handler.MiddlewareHandler;
@@ -112,22 +113,35 @@ public class Server {
 
             loadConfigs();
 
-            // comment out as we are using values.yml property file in logback.xml
-            // MDC.put(SID, getServerConfig().getServiceId());
+            // the values.yml is read once for all the config files that are loaded during the startup.
+            try (ConfigInjection.ResolutionContext ignored = ConfigInjection.openResolutionContext()) {
+                // comment out as we are using values.yml property file in logback.xml
+                // MDC.put(SID, getServerConfig().getServiceId());
 
-            // merge status.yml and app-status.yml if app-status.yml is provided
-            mergeStatusConfig();
+                // parse the config files of the handlers and services in parallel before they are used.
+                int preloadConfigThreads = getServerConfig().getPreloadConfigThreads();
+                if (preloadConfigThreads > 0) {
+                    ConfigPreloader.preload(preloadConfigThreads);
+                }
+
+                // merge status.yml and app-status.yml if app-status.yml is provided
+                mergeStatusConfig();
 
-            // register the module to /server/info
-            List<String> masks = new ArrayList<>();
-            masks.add("keystorePass");
-            masks.add("keyPass");
-            masks.add("truststorePass");
-            masks.add("bootstrapStorePass");
-            ModuleRegistry.registerModule(Server.class.getName(), Config.getInstance().getJsonMapConfigNoCache(SERVER_CONFIG_NAME), masks);
+                // register the module to /server/info
+                List<String> masks = new ArrayList<>();
+                masks.add("keystorePass");
+                masks.add("keyPass");
+                masks.add("truststorePass");
+                masks.add("bootstrapStorePass");
+                ModuleRegistry.registerModule(Server.class.getName(), Config.getInstance().getJsonMapConfigNoCache(SERVER_CONFIG_NAME), masks);
 
-            // start the server
-            start();
+                // start the server
+                start();
+
+                // the modules have loaded their config files, and the preloaded files of the unused ones are dropped.
+                int unused = Config.getInstance().clearPreloadedConfig();
+                if (unused > 0 && logger.isDebugEnabled()) logger.debug("dropped {} preloaded config files that are not used", unused);
+            }
         } catch (RuntimeException e) {
             // Handle any exception encountered during server start-up
             logger.error("Server is not operational! Failed with exception", e);
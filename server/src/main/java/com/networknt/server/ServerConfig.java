@@ -56,6 +56,7 @@ public class ServerConfig {
     String bootstrapStorePass;
     long maxTransferFileSize;
     boolean startOnRegistryFailure;
+    int preloadConfigThreads;
 
 	public ServerConfig() {
     }
@@ -343,4 +344,12 @@ public class ServerConfig {
     public void setStartOnRegistryFailure(boolean startOnRegistryFailure) {
         this.startOnRegistryFailure = startOnRegistryFailure;
     }
+
+    public int getPreloadConfigThreads() {
+        return preloadConfigThreads;
+    }
+
+    public void setPreloadConfigThreads(int preloadConfigThreads) {
+        this.preloadConfigThreads = preloadConfigThreads;
+    }
 }
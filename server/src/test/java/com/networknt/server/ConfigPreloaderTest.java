@@ -0,0 +1,136 @@
+package com.networknt.server;
+
+import com.networknt.config.Config;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The config files are generated in the config folder of the test classes so that they are loaded from the classpath
+ * like the other config files.
+ */
+public class ConfigPreloaderTest {
+    static final Logger logger = LoggerFactory.getLogger(ConfigPreloaderTest.class);
+    private static final int FILES = 50;
+    private static final int ENTRIES = 1000;
+    private static final List<File> files = new ArrayList<>();
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        File dir = new File(ConfigPreloaderTest.class.getClassLoader().getResource("config/server.yml").toURI()).getParentFile();
+        for (String set : new String[]{"serial", "parallel", "warmup"}) {
+            for (int i = 0; i < FILES; i++) {
+                StringBuilder sb = new StringBuilder();
+                for (int j = 0; j < ENTRIES; j++) {
+                    sb.append("key").append(j).append(": ${preload.key").append(j).append(":value").append(j).append("}\n");
+                }
+                sb.append("list:\n");
+                for (int j = 0; j < ENTRIES; j++) {
+                    sb.append("  - name: item").append(j).append("\n    enabled: ${preload.enabled:true}\n");
+                }
+                File file = new File(dir, configName(set, i) + ".yml");
+                Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+                files.add(file);
+            }
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    private static String configName(String set, int i) {
+        return "preload-" + set + "-" + i;
+    }
+
+    private static List<String> configNames(String set) {
+        List<String> configNames = new ArrayList<>();
+        for (int i = 0; i < FILES; i++) {
+            configNames.add(configName(set, i));
+        }
+        return configNames;
+    }
+
+    @Test
+    public void testPreload() {
+        ConfigPreloader.preload(configNames("warmup"), 1);
+
+        long start = System.nanoTime();
+        Map<String, Long> serial = ConfigPreloader.preload(configNames("serial"), 1);
+        long serialTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        Map<String, Long> parallel = ConfigPreloader.preload(configNames("parallel"), 4);
+        long parallelTime = System.nanoTime() - start;
+        logger.info("preloaded {} files in {}ms with 1 thread and {}ms with 4 threads on {} processors", FILES,
+                serialTime / 1000000, parallelTime / 1000000, Runtime.getRuntime().availableProcessors());
+
+        // the load time of each file is reported.
+        Assert.assertEquals(FILES, serial.size());
+        Assert.assertEquals(FILES, parallel.size());
+        Assert.assertTrue(parallel.keySet().containsAll(configNames("parallel")));
+        // the files are parsed with the cpu, so the wall clock is only reduced with more than one processor.
+        if (Runtime.getRuntime().availableProcessors() > 1) {
+            Assert.assertTrue(parallelTime < serialTime);
+        }
+
+        // the preloaded config is injected, and it is used by the first load.
+        Map<String, Object> config = Config.getInstance().getJsonMapConfig(configName("parallel", 7));
+        Assert.assertEquals("value999", config.get("key999"));
+        Assert.assertEquals(true, ((Map<?, ?>) ((List<?>) config.get("list")).get(0)).get("enabled"));
+        // the file is not preloaded again once it is loaded.
+        Assert.assertTrue(ConfigPreloader.preload(List.of(configName("parallel", 7)), 1).isEmpty());
+        // the preloaded config is consumed by the first load and not cached without the caller.
+        Config.getInstance().getJsonMapConfigNoCache(configName("serial", 3));
+        Assert.assertEquals(1, ConfigPreloader.preload(List.of(configName("serial", 3)), 1).size());
+    }
+
+    @Test
+    public void testClearPreloadedConfig() {
+        Config.getInstance().clearPreloadedConfig();
+        Assert.assertEquals(1, ConfigPreloader.preload(List.of(configName("warmup", 1)), 1).size());
+        // the preloaded config that is not loaded after the startup is dropped, and it is not preloaded anymore.
+        Assert.assertTrue(Config.getInstance().clearPreloadedConfig() >= 1);
+        Assert.assertEquals(0, Config.getInstance().clearPreloadedConfig());
+        Assert.assertEquals(1, ConfigPreloader.preload(List.of(configName("warmup", 1)), 1).size());
+        Config.getInstance().clearPreloadedConfig();
+    }
+
+    @Test
+    public void testPreloadMissing() {
+        Assert.assertTrue(ConfigPreloader.preload(List.of("preload-missing"), 2).isEmpty());
+    }
+
+    @Test
+    public void testDiscoverClassNames() {
+        Set<String> classNames = ConfigPreloader.discoverClassNames(
+                Config.getInstance().getJsonMapConfigNoCache("handler"),
+                Config.getInstance().getJsonMapConfigNoCache("service"));
+        Assert.assertTrue(classNames.contains("com.networknt.server.TestHandler"));
+        Assert.assertTrue(classNames.contains("com.networknt.server.Test1StartupHook"));
+        Assert.assertTrue(classNames.contains("com.networknt.registry.URLImpl"));
+        Assert.assertTrue(classNames.contains("com.networknt.consul.client.ConsulClientImpl"));
+        Assert.assertFalse(classNames.contains("java.lang.String"));
+    }
+
+    @Test
+    public void testConfigNames() {
+        Assert.assertEquals(List.of("server"), ConfigPreloader.configNames("com.networknt.server.Server"));
+        Assert.assertEquals(List.of("server"), ConfigPreloader.configNames("com.networknt.server.ServerConfig"));
+        Assert.assertTrue(ConfigPreloader.configNames("com.networknt.server.TestHandler").isEmpty());
+        Assert.assertTrue(ConfigPreloader.configNames("com.networknt.server.Unknown").isEmpty());
+    }
+}
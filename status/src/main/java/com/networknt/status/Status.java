@@ -24,11 +24,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
-import java.util.IllegalFormatException;
 import java.util.Map;
 
-import static java.lang.String.format;
-
 /**
  * For every status response, there is only one message returned. This means the server
  * will fail fast and won't return multiple message at all. Two benefits for this design:
@@ -59,8 +56,14 @@ public class Status {
     private String message;
     private String description;
     private Map<String, Object> metadata;
+    // the template and the arguments of the description that is formatted when it is used for the first time.
+    // the template is volatile so that a Status shared by threads publishes the formatted description with it.
+    private volatile StatusTemplate template;
+    private Object[] args;
     // make sure that the status.yml is cached in a static variable to avoid loading everytime.
     private static Map<String, Object> config = Config.getInstance().getJsonMapConfig(CONFIG_NAME);
+    // the status codes compiled from the config so that a new status does not copy the definition.
+    private static Map<String, StatusTemplate> templates = StatusTemplate.compile(config);
 
     static {
         ModuleRegistry.registerModule(Status.class.getName(), config, null);
@@ -86,20 +89,13 @@ public class Status {
      */
     public Status(final String code, final Object... args) {
         this.code = code;
-        @SuppressWarnings("unchecked")
-        Map<String, Object> map = (Map<String, Object>) config.get(code);
-        if (map != null) {
-            this.statusCode = (Integer) map.get("statusCode");
-            this.message = (String) map.get("message");
-            this.description = (String) map.get("description");
-            try {
-                this.description = format(this.description, args);
-            } catch (IllegalFormatException e) {
-//                logger.warn(format("Error formatting description of status %s", code), e);
-            }
-            if ((this.severity = (String) map.get("severity")) == null)
-                this.severity = defaultSeverity;
-
+        StatusTemplate template = getTemplate(code);
+        if (template != null) {
+            this.statusCode = template.getStatusCode();
+            this.message = template.getMessage();
+            this.severity = template.getSeverity();
+            this.template = template;
+            this.args = args;
         }
     }
 
@@ -112,22 +108,9 @@ public class Status {
      * @param metadata a map of metadata attributes
      */
     public Status(final String code, final Map<String, Object> metadata, final Object... args) {
-        this.code = code;
-        @SuppressWarnings("unchecked")
-        Map<String, Object> map = (Map<String, Object>) config.get(code);
-        if (map != null) {
-            this.statusCode = (Integer) map.get("statusCode");
-            this.message = (String) map.get("message");
-            this.description = (String) map.get("description");
+        this(code, args);
+        if (template != null) {
             this.metadata = metadata;
-            try {
-                this.description = format(this.description, args);
-            } catch (IllegalFormatException e) {
-//                logger.warn(format("Error formatting description of status %s", code), e);
-            }
-            if ((this.severity = (String) map.get("severity")) == null)
-                this.severity = defaultSeverity;
-
         }
     }
 
@@ -207,12 +190,27 @@ public class Status {
         this.message = message;
     }
 
+    /**
+     * Get the description that is formatted with the arguments of the constructor the first time it is called.
+     *
+     * @return String the description
+     */
     public String getDescription() {
+        // read the fields once as another thread might format the description at the same time. The arguments
+        // are not cleared so that a thread that has read the template still formats it with them.
+        StatusTemplate template = this.template;
+        Object[] args = this.args;
+        if (template != null) {
+            description = template.formatDescription(args);
+            this.template = null;
+        }
         return description;
     }
 
     public void setDescription(String description) {
         this.description = description;
+        this.template = null;
+        this.args = null;
     }
 
     public void setSeverity(String severity) {
@@ -303,9 +301,30 @@ public class Status {
 
     public static void reload() {
         config = Config.getInstance().getJsonMapConfigNoCache(CONFIG_NAME);
+        templates = StatusTemplate.compile(config);
         ModuleRegistry.registerModule(Status.class.getName(), config, null);
     }
 
+    /**
+     * Get the template of a status code. The codes that are added to the config after it is loaded, e.g. the
+     * app-status.yml that is merged by the server, are compiled when they are used for the first time.
+     *
+     * @param code the status code
+     * @return StatusTemplate or null if the code is not defined
+     */
+    public static StatusTemplate getTemplate(String code) {
+        if (code == null) {
+            return null;
+        }
+        Map<String, StatusTemplate> templates = Status.templates;
+        StatusTemplate template = templates.get(code);
+        if (template == null) {
+            template = StatusTemplate.of(code, config.get(code));
+            if (template != null) templates.putIfAbsent(code, template);
+        }
+        return template;
+    }
+
     /**
      * This static method is very important for any customized status wrapper to get the light-4j
      * status before customizing it. There are several organizations that have their own customized
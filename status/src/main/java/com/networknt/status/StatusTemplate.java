@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.status;
+
+import java.util.ArrayList;
+import java.util.Formattable;
+import java.util.IllegalFormatException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable status definition of a code in the status.yml that is compiled when the config is loaded. All the
+ * Status objects of the same code share the template, so a new Status only keeps the template and the arguments.
+ * <p>
+ * The description is formatted when it is used. A description that only has %s and %% placeholders is split into
+ * the literal parts when the template is compiled, and it is formatted by appending the parts and the arguments.
+ * Other descriptions are formatted with String.format. As before, the description is not formatted if the arguments
+ * do not match the placeholders.
+ *
+ * @author Steve Hu
+ */
+public final class StatusTemplate {
+    private final int statusCode;
+    private final String code;
+    private final String message;
+    private final String description;
+    private final String severity;
+    // the literal parts between the %s placeholders, or null if the description is formatted with String.format.
+    private final String[] parts;
+
+    StatusTemplate(int statusCode, String code, String message, String description, String severity) {
+        this.statusCode = statusCode;
+        this.code = code;
+        this.message = message;
+        this.description = description;
+        this.severity = severity;
+        this.parts = split(description);
+    }
+
+    /**
+     * Compile the status codes in the status config.
+     *
+     * @param config the status.yml as a map
+     * @return Map the templates by code
+     */
+    static Map<String, StatusTemplate> compile(Map<String, Object> config) {
+        Map<String, StatusTemplate> templates = new ConcurrentHashMap<>();
+        if (config != null) {
+            for (Map.Entry<String, Object> entry : config.entrySet()) {
+                StatusTemplate template = of(entry.getKey(), entry.getValue());
+                if (template != null) templates.put(entry.getKey(), template);
+            }
+        }
+        return templates;
+    }
+
+    /**
+     * Create the template of a code from its definition in the status config.
+     *
+     * @param code the status code
+     * @param definition the definition of the code
+     * @return StatusTemplate or null if the definition is not a status code
+     */
+    static StatusTemplate of(String code, Object definition) {
+        if (!(definition instanceof Map)) {
+            return null;
+        }
+        Map<?, ?> map = (Map<?, ?>) definition;
+        Object statusCode = map.get("statusCode");
+        Object severity = map.get("severity");
+        return new StatusTemplate(statusCode instanceof Integer ? (Integer) statusCode : 0, code,
+                (String) map.get("message"), (String) map.get("description"),
+                severity == null ? Status.defaultSeverity : (String) severity);
+    }
+
+    /**
+     * Split a description into the literal parts between the %s placeholders.
+     *
+     * @param description the description
+     * @return String[] the parts or null if the description has other conversions
+     */
+    static String[] split(String description) {
+        if (description == null) {
+            return null;
+        }
+        List<String> parts = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < description.length(); i++) {
+            char c = description.charAt(i);
+            if (c != '%') {
+                sb.append(c);
+                continue;
+            }
+            char next = i + 1 < description.length() ? description.charAt(i + 1) : 0;
+            if (next == 's') {
+                parts.add(sb.toString());
+                sb.setLength(0);
+            } else if (next == '%') {
+                sb.append('%');
+            } else {
+                return null;
+            }
+            i++;
+        }
+        parts.add(sb.toString());
+        return parts.toArray(new String[0]);
+    }
+
+    /**
+     * Format the description with the arguments. It returns the same result as String.format.
+     *
+     * @param args the arguments of the description. It can be null.
+     * @return String the formatted description or the description itself if the arguments do not match.
+     */
+    public String formatDescription(Object[] args) {
+        if (description == null) {
+            return null;
+        }
+        if (parts == null || hasFormattable(args)) {
+            try {
+                return String.format(description, args);
+            } catch (IllegalFormatException e) {
+                return description;
+            }
+        }
+        int placeholders = parts.length - 1;
+        if (placeholders == 0) {
+            return parts[0];
+        }
+        // String.format prints null for each placeholder if the arguments are null.
+        if (args != null && args.length < placeholders) {
+            return description;
+        }
+        StringBuilder sb = new StringBuilder(description.length() + 16 * placeholders);
+        sb.append(parts[0]);
+        for (int i = 0; i < placeholders; i++) {
+            sb.append(args == null ? null : args[i]).append(parts[i + 1]);
+        }
+        return sb.toString();
+    }
+
+    private static boolean hasFormattable(Object[] args) {
+        if (args != null) {
+            for (Object arg : args) {
+                if (arg instanceof Formattable) return true;
+            }
+        }
+        return false;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getSeverity() {
+        return severity;
+    }
+}
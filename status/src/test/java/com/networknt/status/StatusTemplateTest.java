@@ -0,0 +1,98 @@
+package com.networknt.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.networknt.config.Config;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.IllegalFormatException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class StatusTemplateTest {
+
+    @Test
+    public void testSplit() {
+        Assert.assertArrayEquals(new String[]{"Query parameter ", " is required on path ", " but not found."},
+                StatusTemplate.split("Query parameter %s is required on path %s but not found."));
+        Assert.assertArrayEquals(new String[]{"100% of ", ""}, StatusTemplate.split("100%% of %s"));
+        Assert.assertArrayEquals(new String[]{"No placeholder"}, StatusTemplate.split("No placeholder"));
+        Assert.assertNull(StatusTemplate.split("Count %d"));
+        Assert.assertNull(StatusTemplate.split("Position %1$s"));
+        Assert.assertNull(StatusTemplate.split("Trailing %"));
+        Assert.assertNull(StatusTemplate.split(null));
+    }
+
+    @Test
+    public void testFormatDescription() {
+        String[] descriptions = {"Query parameter %s is required on path %s but not found.", "100%% of %s", "No placeholder",
+                "Count %d", "Upper %S", "Trailing %", "%s%s%s"};
+        Object[][] argsList = {null, new Object[0], new Object[]{"a"}, new Object[]{"a", 1}, new Object[]{"a", null, 2.5, "d"},
+                new Object[]{1, 2, 3}};
+        for (String description : descriptions) {
+            StatusTemplate template = new StatusTemplate(400, "ERR00000", "MESSAGE", description, "ERROR");
+            for (Object[] args : argsList) {
+                Assert.assertEquals(description, format(description, args), template.formatDescription(args));
+            }
+        }
+        Assert.assertNull(new StatusTemplate(400, "ERR00000", "MESSAGE", null, "ERROR").formatDescription(new Object[]{"a"}));
+    }
+
+    private static String format(String description, Object[] args) {
+        try {
+            return String.format(description, args);
+        } catch (IllegalFormatException e) {
+            return description;
+        }
+    }
+
+    @Test
+    public void testLazyDescription() {
+        AtomicInteger count = new AtomicInteger();
+        Object arg = new Object() {
+            @Override
+            public String toString() {
+                count.incrementAndGet();
+                return "parameter name";
+            }
+        };
+        Status status = new Status("ERR11000", arg, "original url");
+        Assert.assertEquals(400, status.getStatusCode());
+        Assert.assertEquals("VALIDATOR_REQUEST_PARAMETER_QUERY_MISSING", status.getMessage());
+        Assert.assertEquals("ERROR", status.getSeverity());
+        Assert.assertEquals(0, count.get());
+        Assert.assertEquals("Query parameter parameter name is required on path original url but not found in request.", status.getDescription());
+        Assert.assertEquals("Query parameter parameter name is required on path original url but not found in request.", status.getDescription());
+        Assert.assertEquals(1, count.get());
+
+        status = new Status("ERR11000", arg, "original url");
+        status.setDescription("custom");
+        Assert.assertEquals("custom", status.getDescription());
+        Assert.assertEquals(1, count.get());
+    }
+
+    @Test
+    public void testTemplateShared() {
+        Assert.assertSame(Status.getTemplate("ERR11000"), Status.getTemplate("ERR11000"));
+        Assert.assertNull(Status.getTemplate("ERR99999"));
+        Assert.assertNull(Status.getTemplate(null));
+        Status status = new Status("ERR99999");
+        Assert.assertEquals("ERR99999", status.getCode());
+        Assert.assertNull(status.getDescription());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSerialization() throws Exception {
+        ObjectMapper mapper = Config.getInstance().getMapper();
+        Status status = new Status("ERR11000", "parameter name", "original url");
+        Map<String, Object> map = mapper.readValue(mapper.writeValueAsString(status), Map.class);
+        Assert.assertEquals(400, map.get("statusCode"));
+        Assert.assertEquals("ERR11000", map.get("code"));
+        Assert.assertEquals("VALIDATOR_REQUEST_PARAMETER_QUERY_MISSING", map.get("message"));
+        Assert.assertEquals("Query parameter parameter name is required on path original url but not found in request.", map.get("description"));
+        Assert.assertEquals("ERROR", map.get("severity"));
+        Assert.assertFalse(map.containsKey("template"));
+        Assert.assertFalse(map.containsKey("args"));
+    }
+}
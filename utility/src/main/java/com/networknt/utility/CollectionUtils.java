@@ -151,6 +151,9 @@ public abstract class CollectionUtils {
     /**
      * Get the object from a map with the key as the endpoint patter with request path.
      *
+     * The first key in the iteration order of the map that matches wins, and the map is scanned on each call. A
+     * handler that looks up the same map on each request should compile it into a {@link PathPrefixMatcher} once.
+     *
      * @param path request path
      * @param map  map of object with the key as the endpoint pattern
      * @return the object that matches the endpoint pattern or null if no match.
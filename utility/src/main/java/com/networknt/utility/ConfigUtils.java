@@ -13,24 +13,30 @@ public class ConfigUtils {
     public static final String DELIMITOR = "@";
     protected static final String INTERNAL_KEY_FORMAT = "%s %s";
 
+    private static final AtomicReference<ServiceEntryIndex> serviceEntryIndex = new AtomicReference<>();
+
+    /**
+     * Find the endpoint key in the form of prefix@method for the request path and method. The mapping is
+     * compiled into a {@link PathPrefixMatcher} per method the first time it is passed in and the compiled
+     * index is reused as long as the same mapping instance is passed in. A config reload that replaces the
+     * mapping object will trigger a rebuild on the next call.
+     *
+     * @param method the lower case http method
+     * @param searchKey the request path
+     * @param mapping a map with prefix@method as the key
+     * @return the key of the longest matched prefix for the method or null if not found
+     */
     public static String findServiceEntry(String method, String searchKey, Map<String, Object> mapping) {
         if(logger.isDebugEnabled()) logger.debug("findServiceEntry for " + searchKey + " and method: " + method);
-        if(logger.isDebugEnabled()) logger.debug("mapping size: " + mapping.size());
-        String result = null;
-        for (Map.Entry<String, Object> entry : mapping.entrySet()) {
-        	String[] tokens = StringUtils.trimToEmpty(entry.getKey()).split(DELIMITOR);
-            String ConfigPrefix = tokens[0];
-            String ConfigMethod = tokens[1];
-            if(logger.isDebugEnabled()) logger.debug("prefix: " + ConfigPrefix);
-            if(logger.isDebugEnabled()) logger.debug("method: " + ConfigMethod);
-            if(searchKey.startsWith(ConfigPrefix)) {
-                if((searchKey.length() == ConfigPrefix.length() || searchKey.charAt(ConfigPrefix.length()) == '/')
-                		&& method.equals(ConfigMethod)) {
-                    result = entry.getKey();
-                    break;
-                }
-            }
+        ServiceEntryIndex index = serviceEntryIndex.get();
+        if(index == null || index.mapping != mapping) {
+            index = new ServiceEntryIndex(mapping);
+            serviceEntryIndex.set(index);
+            if(logger.isDebugEnabled()) logger.debug("mapping size: " + mapping.size());
         }
+        PathPrefixMatcher<String> matcher = index.methodMatchers.get(method);
+        PathPrefixMatcher.Entry<String> entry = matcher == null ? null : matcher.match(searchKey);
+        String result = entry == null ? null : entry.getValue();
         if(result == null) {
             if(logger.isDebugEnabled()) logger.debug("serviceEntry not found!");
         } else {
@@ -61,4 +67,28 @@ public class ConfigUtils {
         return String.format(INTERNAL_KEY_FORMAT, method, ConfigUtils.normalisePath(path));
     }
 
-}
\ No newline at end of file
+    /**
+     * The prefix@method keys of a mapping compiled into one matcher per method. The value of each matcher
+     * entry is the original key so that the caller can use it to look up the mapping.
+     */
+    private static final class ServiceEntryIndex {
+        private final Map<String, Object> mapping;
+        private final Map<String, PathPrefixMatcher<String>> methodMatchers;
+
+        ServiceEntryIndex(Map<String, Object> mapping) {
+            this.mapping = mapping;
+            Map<String, Map<String, String>> methodPrefixes = new HashMap<>();
+            for (String key : mapping.keySet()) {
+                String[] tokens = StringUtils.trimToEmpty(key).split(DELIMITOR);
+                if(tokens.length != 2) {
+                    logger.warn("Invalid key {}", key);
+                    continue;
+                }
+                methodPrefixes.computeIfAbsent(tokens[1], k -> new LinkedHashMap<>()).put(tokens[0], key);
+            }
+            Map<String, PathPrefixMatcher<String>> matchers = new HashMap<>();
+            methodPrefixes.forEach((k, v) -> matchers.put(k, PathPrefixMatcher.compile(v)));
+            this.methodMatchers = matchers;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.utility;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable segment trie that is compiled once from a map of path prefixes and used to find the
+ * longest configured prefix of a request path. It replaces the linear scans with startsWith or split
+ * that used to run on every request in handlers that are configured with a path prefix map.
+ * <p>
+ * A key matches a path if all the '/' separated segments of the key are equal to the leading segments
+ * of the path. A segment in the key in the form of {name} matches any non-empty segment of the path so
+ * that endpoint templates like /v1/pets/{petId} can be compiled as well. A literal segment always takes
+ * precedence over a template segment on the same level. A trailing slash in the key is ignored.
+ * <p>
+ * The lookup doesn't allocate. The returned {@link Entry} is created when the matcher is compiled and
+ * it links to the entry of the next shorter prefix that also matches so that a handler can apply all
+ * matched prefixes without another lookup. As the matcher is immutable, a config class rebuilds it on
+ * reload and replaces the reference so that a request always sees a consistent snapshot.
+ *
+ * @param <V> the value type of the entries
+ * @author Steve Hu
+ */
+public final class PathPrefixMatcher<V> {
+    private static final Logger logger = LoggerFactory.getLogger(PathPrefixMatcher.class);
+    private static final PathPrefixMatcher<Object> EMPTY = new PathPrefixMatcher<>(new Node<>(), 0);
+
+    private final Node<V> root;
+    private final int size;
+
+    private PathPrefixMatcher(Node<V> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> PathPrefixMatcher<V> empty() {
+        return (PathPrefixMatcher<V>) EMPTY;
+    }
+
+    /**
+     * Compile a map of path prefix to value into a matcher. If two keys are the same after the trailing
+     * slash is removed, the first one in the iteration order of the map wins.
+     *
+     * @param map a map of path prefix or endpoint template to value. It can be null.
+     * @param <V> the value type
+     * @return PathPrefixMatcher the compiled matcher
+     */
+    public static <V> PathPrefixMatcher<V> compile(Map<String, ? extends V> map) {
+        if(map == null || map.isEmpty()) {
+            return empty();
+        }
+        BuildNode<V> root = new BuildNode<>();
+        int size = 0;
+        for(Map.Entry<String, ? extends V> entry : map.entrySet()) {
+            String key = entry.getKey();
+            if(key == null) continue;
+            BuildNode<V> node = root;
+            for(String segment : segments(key.trim())) {
+                node = node.child(segment);
+            }
+            if(node.entry != null) {
+                logger.warn("Duplicate path prefix {} is ignored as {} is defined already.", key, node.entry.key);
+                continue;
+            }
+            node.entry = new Entry<>(key, entry.getValue());
+            size++;
+        }
+        return new PathPrefixMatcher<>(root.freeze(null), size);
+    }
+
+    /**
+     * Find the longest prefix that matches the path.
+     *
+     * @param path the request path
+     * @return Entry the matched entry or null if there is no match
+     */
+    public Entry<V> match(String path) {
+        if(path == null || size == 0) {
+            return null;
+        }
+        return find(root, path, 0);
+    }
+
+    /**
+     * Find the value of the longest prefix that matches the path.
+     *
+     * @param path the request path
+     * @return V the value of the matched entry or null if there is no match
+     */
+    public V get(String path) {
+        Entry<V> entry = match(path);
+        return entry == null ? null : entry.value;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static <V> Entry<V> find(Node<V> node, String path, int start) {
+        Entry<V> best = null;
+        if(start <= path.length()) {
+            int end = path.indexOf('/', start);
+            if(end < 0) end = path.length();
+            Node<V> child = node.child(path, start, end);
+            if(child != null) {
+                best = find(child, path, end + 1);
+            }
+            if(best == null && node.param != null && end > start) {
+                best = find(node.param, path, end + 1);
+            }
+        }
+        return best != null ? best : node.entry;
+    }
+
+    private static List<String> segments(String key) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        int end;
+        while((end = key.indexOf('/', start)) >= 0) {
+            segments.add(key.substring(start, end));
+            start = end + 1;
+        }
+        segments.add(key.substring(start));
+        // ignore the trailing slash so that /v1/pets/ and /v1/pets are the same prefix.
+        if(segments.size() > 1 && segments.get(segments.size() - 1).isEmpty()) {
+            segments.remove(segments.size() - 1);
+        }
+        return segments;
+    }
+
+    private static boolean isParam(String segment) {
+        return segment.length() > 1 && segment.charAt(0) == '{' && segment.charAt(segment.length() - 1) == '}';
+    }
+
+    private static int hash(String s, int start, int end) {
+        int h = 0;
+        for(int i = start; i < end; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h;
+    }
+
+    /**
+     * A compiled prefix and its value. The entry is shared by all the lookups and it is immutable.
+     *
+     * @param <V> the value type
+     */
+    public static final class Entry<V> {
+        private final String key;
+        private final V value;
+        private Entry<V> parent;
+
+        Entry(String key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        /**
+         * @return the prefix as it is defined in the source map
+         */
+        public String getKey() {
+            return key;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        /**
+         * @return the entry of the next shorter prefix that matches the same paths or null
+         */
+        public Entry<V> getParent() {
+            return parent;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    private static final class Node<V> {
+        private static final String[] NO_LABELS = new String[0];
+        private static final int[] NO_HASHES = new int[0];
+
+        Entry<V> entry;
+        Node<V> param;
+        // literal children sorted by the hash code of the label for a binary search.
+        String[] labels = NO_LABELS;
+        int[] hashes = NO_HASHES;
+        Node<V>[] children;
+
+        Node<V> child(String path, int start, int end) {
+            if(labels.length == 0) return null;
+            int h = hash(path, start, end);
+            int i = Arrays.binarySearch(hashes, h);
+            if(i < 0) return null;
+            // move to the first label with the same hash code and compare each of them.
+            while(i > 0 && hashes[i - 1] == h) i--;
+            int len = end - start;
+            for(; i < hashes.length && hashes[i] == h; i++) {
+                String label = labels[i];
+                if(label.length() == len && path.regionMatches(start, label, 0, len)) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class BuildNode<V> {
+        final Map<String, BuildNode<V>> literals = new LinkedHashMap<>();
+        BuildNode<V> param;
+        Entry<V> entry;
+
+        BuildNode<V> child(String segment) {
+            if(isParam(segment)) {
+                if(param == null) param = new BuildNode<>();
+                return param;
+            }
+            return literals.computeIfAbsent(segment, k -> new BuildNode<>());
+        }
+
+        @SuppressWarnings("unchecked")
+        Node<V> freeze(Entry<V> parent) {
+            Node<V> node = new Node<>();
+            if(entry != null) {
+                entry.parent = parent;
+                parent = entry;
+            }
+            node.entry = entry;
+            if(param != null) {
+                node.param = param.freeze(parent);
+            }
+            if(!literals.isEmpty()) {
+                List<String> sorted = new ArrayList<>(literals.keySet());
+                sorted.sort(Comparator.comparingInt(String::hashCode));
+                int n = sorted.size();
+                node.labels = new String[n];
+                node.hashes = new int[n];
+                node.children = new Node[n];
+                for(int i = 0; i < n; i++) {
+                    String label = sorted.get(i);
+                    node.labels[i] = label;
+                    node.hashes[i] = label.hashCode();
+                    node.children[i] = literals.get(label).freeze(parent);
+                }
+            }
+            return node;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.networknt.utility;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class PathPrefixMatcherTest {
+
+    @Test
+    public void testLongestPrefix() {
+        Map<String, String> map = new HashMap<>();
+        map.put("/v1/pets", "pets");
+        map.put("/v1/pets/mine", "mine");
+        map.put("/v2", "v2");
+        PathPrefixMatcher<String> matcher = PathPrefixMatcher.compile(map);
+        Assert.assertEquals(3, matcher.size());
+        Assert.assertEquals("pets", matcher.get("/v1/pets"));
+        Assert.assertEquals("pets", matcher.get("/v1/pets/"));
+        Assert.assertEquals("pets", matcher.get("/v1/pets/123"));
+        Assert.assertEquals("mine", matcher.get("/v1/pets/mine/123"));
+        Assert.assertEquals("v2", matcher.get("/v2/address"));
+        Assert.assertNull(matcher.get("/v1/petstore"));
+        Assert.assertNull(matcher.get("/v1"));
+        Assert.assertNull(matcher.get("/v3"));
+    }
+
+    @Test
+    public void testEntryKeyAndParent() {
+        Map<String, String> map = new LinkedHashMap<>();
+        map.put("/", "root");
+        map.put("/v1/", "v1");
+        map.put("/v1/pets", "pets");
+        PathPrefixMatcher<String> matcher = PathPrefixMatcher.compile(map);
+        PathPrefixMatcher.Entry<String> entry = matcher.match("/v1/pets/123");
+        Assert.assertEquals("/v1/pets", entry.getKey());
+        Assert.assertEquals("/v1/", entry.getParent().getKey());
+        Assert.assertEquals("/", entry.getParent().getParent().getKey());
+        Assert.assertNull(entry.getParent().getParent().getParent());
+        Assert.assertEquals("root", matcher.get("/v2"));
+    }
+
+    @Test
+    public void testTemplate() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("/v1/cat/{petId}", "123");
+        map.put("/v1/dog/{petId}/uploadImage", "456");
+        map.put("/v1/fish/{petId}/uploadImage/{imageId}", "789");
+        map.put("/v1/fish/{petId}", "000");
+        PathPrefixMatcher<Object> matcher = PathPrefixMatcher.compile(map);
+        Assert.assertEquals("123", matcher.get("/v1/cat/123"));
+        Assert.assertEquals("456", matcher.get("/v1/dog/123/uploadImage"));
+        Assert.assertEquals("789", matcher.get("/v1/fish/123/uploadImage/456"));
+        Assert.assertEquals("000", matcher.get("/v1/fish/123/uploadImage"));
+        Assert.assertNull(matcher.get("/v1/dog/123"));
+        Assert.assertNull(matcher.get("/v1/cat/"));
+    }
+
+    @Test
+    public void testLiteralBeforeTemplate() {
+        Map<String, String> map = new HashMap<>();
+        map.put("/v1/pets/{petId}", "template");
+        map.put("/v1/pets/mine", "literal");
+        PathPrefixMatcher<String> matcher = PathPrefixMatcher.compile(map);
+        Assert.assertEquals("literal", matcher.get("/v1/pets/mine"));
+        Assert.assertEquals("template", matcher.get("/v1/pets/yours"));
+    }
+
+    @Test
+    public void testInternalKey() {
+        Map<String, String> map = new HashMap<>();
+        map.put("get /v1/pets", "petstore");
+        map.put("post /v1/pets", "petstore-write");
+        PathPrefixMatcher<String> matcher = PathPrefixMatcher.compile(map);
+        Assert.assertEquals("petstore", matcher.get("get /v1/pets/1"));
+        Assert.assertEquals("petstore-write", matcher.get("post /v1/pets"));
+        Assert.assertNull(matcher.get("put /v1/pets"));
+    }
+
+    @Test
+    public void testEmpty() {
+        PathPrefixMatcher<String> matcher = PathPrefixMatcher.compile(null);
+        Assert.assertTrue(matcher.isEmpty());
+        Assert.assertNull(matcher.match("/v1/pets"));
+        Assert.assertNull(PathPrefixMatcher.compile(new HashMap<String, String>()).get("/"));
+    }
+}